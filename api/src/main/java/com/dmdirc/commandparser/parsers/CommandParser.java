@@ -29,6 +29,7 @@ import com.dmdirc.interfaces.WindowModel;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -76,6 +77,18 @@ public interface CommandParser {
      */
     void parseCommand(@Nonnull WindowModel origin, String line);
 
+    /**
+     * Parses each of the specified strings as a command, in order.
+     *
+     * @param origin The container which received the commands
+     * @param lines  The lines to be parsed
+     */
+    default void parseCommands(@Nonnull final WindowModel origin, final Collection<String> lines) {
+        for (String line : lines) {
+            parseCommand(origin, line);
+        }
+    }
+
     /**
      * Handles the specified string as a non-command.
      *
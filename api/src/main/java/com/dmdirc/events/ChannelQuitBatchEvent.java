@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.events;
+
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Fired in place of individual {@link ChannelQuitEvent}s when a large number of users quit a
+ * channel at once, for example during a netsplit.
+ */
+public class ChannelQuitBatchEvent extends ChannelDisplayableEvent {
+
+    /** The maximum number of nicknames to include in {@link #getNicknames()}. */
+    private static final int MAX_LISTED_NICKNAMES = 30;
+
+    private final List<GroupChatUser> clients;
+    private final String message;
+    private final boolean netsplit;
+
+    public ChannelQuitBatchEvent(final LocalDateTime timestamp, final GroupChat channel,
+            final Collection<GroupChatUser> clients, final String message,
+            final boolean netsplit) {
+        super(timestamp, channel);
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.message = message;
+        this.netsplit = netsplit;
+    }
+
+    public ChannelQuitBatchEvent(final GroupChat channel,
+            final Collection<GroupChatUser> clients, final String message,
+            final boolean netsplit) {
+        super(channel);
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.message = message;
+        this.netsplit = netsplit;
+    }
+
+    public List<GroupChatUser> getClients() {
+        return clients;
+    }
+
+    public int getCount() {
+        return clients.size();
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Determines whether the users quit as a result of a netsplit.
+     *
+     * @return True if the quit message was a netsplit message, false otherwise.
+     */
+    public boolean isNetsplit() {
+        return netsplit;
+    }
+
+    /**
+     * Gets a comma-separated list of the nicknames of users who quit. If a large number of users
+     * quit, only the first few are listed.
+     *
+     * @return A summary of the nicknames of the users who quit.
+     */
+    public String getNicknames() {
+        final String listed = clients.stream()
+                .limit(MAX_LISTED_NICKNAMES)
+                .map(GroupChatUser::getNickname)
+                .collect(Collectors.joining(", "));
+        if (clients.size() > MAX_LISTED_NICKNAMES) {
+            return listed + " and " + (clients.size() - MAX_LISTED_NICKNAMES) + " others";
+        }
+        return listed;
+    }
+
+}
@@ -25,6 +25,8 @@ package com.dmdirc.events;
 import com.dmdirc.interfaces.User;
 import com.dmdirc.util.colours.Colour;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Describes a property that may be set on a {@link com.dmdirc.interfaces.Displayable} to affect its display.
  */
@@ -44,6 +46,18 @@ public interface DisplayProperty<T> {
     /** A user that the displayable is linked to. */
     DisplayProperty<User> LINK_USER = new DisplayPropertyImpl<>();
 
-    final class DisplayPropertyImpl<T> implements DisplayProperty<T> {}
+    final class DisplayPropertyImpl<T> implements DisplayProperty<T> {
+
+        /** The next ordinal to be assigned to a property. */
+        private static final AtomicInteger NEXT_ORDINAL = new AtomicInteger();
+
+        /** A small, unique index for this property, used by {@link DisplayPropertyMap}. */
+        final int ordinal = nextOrdinal();
+
+        static int nextOrdinal() {
+            return NEXT_ORDINAL.getAndIncrement();
+        }
+
+    }
 
 }
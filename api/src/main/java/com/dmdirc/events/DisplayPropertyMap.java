@@ -22,19 +22,41 @@
 
 package com.dmdirc.events;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Provides a map of {@link DisplayProperty}s to values, maintaining type safety.
+ *
+ * <p>Values are stored in a small array indexed by each property's ordinal. The array is never
+ * modified once published: every change replaces it with an updated copy, so
+ * {@link #snapshot()} can share it with an immutable view without copying any values.
  */
 public class DisplayPropertyMap {
 
-    public static final DisplayPropertyMap EMPTY = new ReadOnlyDisplayPropertyMap();
+    public static final DisplayPropertyMap EMPTY = new ReadOnlyDisplayPropertyMap(new Object[0]);
+
+    /** Slots shared by all maps without any properties. */
+    private static final Object[] NO_SLOTS = new Object[0];
+    /** Updater used to replace {@link #slots} atomically. */
+    private static final AtomicReferenceFieldUpdater<DisplayPropertyMap, Object[]> SLOTS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DisplayPropertyMap.class, Object[].class, "slots");
+    /** Ordinals assigned to properties that are not {@link DisplayProperty.DisplayPropertyImpl}s. */
+    private static final Map<DisplayProperty<?>, Integer> FOREIGN_ORDINALS = new ConcurrentHashMap<>();
+
+    /** Property values, indexed by ordinal. Never modified after being assigned. */
+    private volatile Object[] slots;
 
-    private final Map<DisplayProperty<?>, Object> properties = new ConcurrentHashMap<>();
+    public DisplayPropertyMap() {
+        this(NO_SLOTS);
+    }
+
+    private DisplayPropertyMap(final Object[] slots) {
+        this.slots = slots;
+    }
 
     /**
      * Gets the value of the specified property, if present.
@@ -43,9 +65,36 @@ public class DisplayPropertyMap {
      * @param <T> The type of value the property takes.
      * @return An optional containing the value of the property if it was present.
      */
-    @SuppressWarnings("unchecked")
     public <T> Optional<T> get(final DisplayProperty<T> property) {
-        return Optional.ofNullable((T) properties.get(property));
+        return Optional.ofNullable(getOrDefault(property, null));
+    }
+
+    /**
+     * Gets the value of the specified property, without allocating an {@link Optional}.
+     *
+     * @param property The property to be retrieved.
+     * @param defaultValue The value to return if the property is not present.
+     * @param <T> The type of value the property takes.
+     * @return The value of the property, or {@code defaultValue} if it was not present.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrDefault(final DisplayProperty<T> property, final T defaultValue) {
+        final Object[] current = slots;
+        final int ordinal = getOrdinal(property);
+        final Object value = ordinal < current.length ? current[ordinal] : null;
+        return value == null ? defaultValue : (T) value;
+    }
+
+    /**
+     * Determines whether the specified property is present.
+     *
+     * @param property The property to be checked.
+     * @return True if the property has a value, false otherwise.
+     */
+    public boolean contains(final DisplayProperty<?> property) {
+        final Object[] current = slots;
+        final int ordinal = getOrdinal(property);
+        return ordinal < current.length && current[ordinal] != null;
     }
 
     /**
@@ -56,7 +105,17 @@ public class DisplayPropertyMap {
      * @param <T> The type of value the property takes.
      */
     public <T> void put(final DisplayProperty<T> property, final T value) {
-        properties.put(property, value);
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final int ordinal = getOrdinal(property);
+        Object[] current;
+        Object[] updated;
+        do {
+            current = slots;
+            updated = Arrays.copyOf(current, Math.max(current.length, ordinal + 1));
+            updated[ordinal] = value;
+        } while (!SLOTS_UPDATER.compareAndSet(this, current, updated));
     }
 
     /**
@@ -65,7 +124,26 @@ public class DisplayPropertyMap {
      * @param other The map to add properties from.
      */
     public void putAll(final DisplayPropertyMap other) {
-        properties.putAll(other.getProperties());
+        final Object[] source = other.slots;
+        if (source.length == 0) {
+            return;
+        }
+        Object[] current;
+        Object[] updated;
+        do {
+            current = slots;
+            if (current.length == 0) {
+                // Nothing to merge with, so the other map's (immutable) slots can be shared.
+                updated = source;
+            } else {
+                updated = Arrays.copyOf(current, Math.max(current.length, source.length));
+                for (int i = 0; i < source.length; i++) {
+                    if (source[i] != null) {
+                        updated[i] = source[i];
+                    }
+                }
+            }
+        } while (!SLOTS_UPDATER.compareAndSet(this, current, updated));
     }
 
     /**
@@ -75,23 +153,69 @@ public class DisplayPropertyMap {
      * @param <T> The type of value the property takes
      */
     public <T> void remove(final DisplayProperty<T> property) {
-        properties.remove(property);
+        final int ordinal = getOrdinal(property);
+        Object[] current;
+        Object[] updated;
+        do {
+            current = slots;
+            if (ordinal >= current.length || current[ordinal] == null) {
+                return;
+            }
+            updated = Arrays.copyOf(current, current.length);
+            updated[ordinal] = null;
+        } while (!SLOTS_UPDATER.compareAndSet(this, current, updated));
     }
 
     /**
-     * Returns a readonly copy of this map's properties
+     * Returns an immutable view of the properties currently in this map. Later changes to this
+     * map are not reflected in the snapshot. Taking a snapshot does not copy any values.
      *
-     * @return This map's properties.
+     * @return An immutable map containing this map's current properties.
      */
-    Map<DisplayProperty<?>, Object> getProperties() {
-        return Collections.unmodifiableMap(properties);
+    public DisplayPropertyMap snapshot() {
+        final Object[] current = slots;
+        for (Object value : current) {
+            if (value != null) {
+                return new ReadOnlyDisplayPropertyMap(current);
+            }
+        }
+        return EMPTY;
+    }
+
+    private static int getOrdinal(final DisplayProperty<?> property) {
+        if (property instanceof DisplayProperty.DisplayPropertyImpl) {
+            return ((DisplayProperty.DisplayPropertyImpl<?>) property).ordinal;
+        }
+        return FOREIGN_ORDINALS.computeIfAbsent(property,
+                p -> DisplayProperty.DisplayPropertyImpl.nextOrdinal());
     }
 
     private static class ReadOnlyDisplayPropertyMap extends DisplayPropertyMap {
+
+        ReadOnlyDisplayPropertyMap(final Object[] slots) {
+            super(slots);
+        }
+
         @Override
         public <T> void put(final DisplayProperty<T> property, final T value) {
             throw new UnsupportedOperationException("Read only");
         }
+
+        @Override
+        public void putAll(final DisplayPropertyMap other) {
+            throw new UnsupportedOperationException("Read only");
+        }
+
+        @Override
+        public <T> void remove(final DisplayProperty<T> property) {
+            throw new UnsupportedOperationException("Read only");
+        }
+
+        @Override
+        public DisplayPropertyMap snapshot() {
+            return this;
+        }
+
     }
 
 }
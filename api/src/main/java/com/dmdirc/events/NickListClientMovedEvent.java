@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.events;
+
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.List;
+
+/**
+ * Fired when a user changes position in the sorted list of users, for example because their
+ * nickname or modes changed.
+ */
+public class NickListClientMovedEvent extends NickListEvent {
+
+    private final GroupChatUser user;
+    private final int fromIndex;
+    private final int toIndex;
+    private final List<GroupChatUser> snapshot;
+
+    public NickListClientMovedEvent(final GroupChat channel, final GroupChatUser user,
+            final int fromIndex, final int toIndex, final List<GroupChatUser> snapshot) {
+        super(channel);
+        this.user = user;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.snapshot = snapshot;
+    }
+
+    public GroupChatUser getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the position the user was at before the change.
+     *
+     * @return The user's old position.
+     */
+    public int getFromIndex() {
+        return fromIndex;
+    }
+
+    /**
+     * Gets the position the user is at after the change.
+     *
+     * @return The user's new position.
+     */
+    public int getToIndex() {
+        return toIndex;
+    }
+
+    /**
+     * Gets a snapshot of the sorted nicklist immediately after the change.
+     *
+     * @return The nicklist snapshot.
+     */
+    public List<GroupChatUser> getSnapshot() {
+        return snapshot;
+    }
+
+}
@@ -26,6 +26,9 @@ import com.dmdirc.interfaces.GroupChat;
 import com.dmdirc.interfaces.GroupChatUser;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
  * Fired when a user is removed from the list of users.
@@ -33,19 +36,51 @@ import java.time.LocalDateTime;
 public class NickListClientRemovedEvent extends NickListEvent {
 
     private final GroupChatUser user;
+    private final int index;
+    private final List<GroupChatUser> snapshot;
 
     public NickListClientRemovedEvent(final LocalDateTime timestamp, final GroupChat channel,
             final GroupChatUser user) {
         super(timestamp, channel);
         this.user = user;
+        this.index = -1;
+        this.snapshot = null;
     }
 
     public NickListClientRemovedEvent(final GroupChat channel, final GroupChatUser user) {
         super(channel);
         this.user = user;
+        this.index = -1;
+        this.snapshot = null;
+    }
+
+    public NickListClientRemovedEvent(final GroupChat channel, final GroupChatUser user, final int index,
+            final List<GroupChatUser> snapshot) {
+        super(channel);
+        this.user = user;
+        this.index = index;
+        this.snapshot = snapshot;
     }
 
     public GroupChatUser getUser() {
         return user;
     }
+
+    /**
+     * Gets the position in the sorted nicklist the user was removed from.
+     *
+     * @return The user's position, or empty if not known.
+     */
+    public OptionalInt getIndex() {
+        return index < 0 ? OptionalInt.empty() : OptionalInt.of(index);
+    }
+
+    /**
+     * Gets a snapshot of the sorted nicklist immediately after the change.
+     *
+     * @return The nicklist snapshot, or empty if not known.
+     */
+    public Optional<List<GroupChatUser>> getSnapshot() {
+        return Optional.ofNullable(snapshot);
+    }
 }
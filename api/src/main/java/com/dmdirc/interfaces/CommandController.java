@@ -26,6 +26,7 @@ import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.parsers.CommandParser;
+import com.dmdirc.ui.input.TabCompletionSource;
 
 import java.util.List;
 import java.util.Map;
@@ -70,6 +71,16 @@ public interface CommandController {
      */
     List<String> getCommandNames(final CommandType type);
 
+    /**
+     * Gets a source of tab completion entries for all commands of the specified types. The source
+     * reflects commands registered or unregistered after it is created.
+     *
+     * @param types The types of command to complete
+     *
+     * @return A completion source offering the names of commands of the given types
+     */
+    TabCompletionSource getCompletionSource(final CommandType... types);
+
     /**
      * Retrieves a map of all {@link CommandInfo}s and their associated {@link Command}s of the
      * specified type.
@@ -55,7 +55,7 @@ public interface Displayable {
      * @return True if the property is present, false otherwise.
      */
     default boolean hasDisplayProperty(final DisplayProperty<?> property) {
-        return getDisplayProperty(property).isPresent();
+        return getDisplayProperties().contains(property);
     }
 
     /**
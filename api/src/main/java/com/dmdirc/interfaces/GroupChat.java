@@ -26,7 +26,10 @@ import com.dmdirc.Topic;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.parser.common.ChannelListModeItem;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -148,6 +151,37 @@ public interface GroupChat extends Chat {
      */
     Collection<GroupChatUser> getUsers();
 
+    /**
+     * Returns an immutable snapshot of the users on this GroupChat, sorted by their most important
+     * mode and then by nickname.
+     *
+     * <p>This reflects the users as displayed, and may briefly differ from {@link #getUsers()}.
+     * In particular, users who quit in a netsplit or mass quit remain until the batch of quits is
+     * applied, which may be up to the "channel.quitbatchdelay" setting later.
+     *
+     * <p>The default implementation sorts a copy of {@link #getUsers()} on each call.
+     * Implementations that maintain a sorted list should return a snapshot of it instead.
+     *
+     * @return Sorted users in the GroupChat
+     */
+    default List<GroupChatUser> getNickList() {
+        final List<GroupChatUser> users = new ArrayList<>(getUsers());
+        users.sort((first, second) -> {
+            final Comparator<String> modeComparator = second.getModeComparator();
+            if (modeComparator != null) {
+                final int modes = modeComparator.compare(first.getAllModes(),
+                        second.getAllModes());
+                if (modes != 0) {
+                    return modes;
+                }
+            }
+            final int nicknames = String.CASE_INSENSITIVE_ORDER.compare(first.getNickname(),
+                    second.getNickname());
+            return nicknames == 0 ? first.getNickname().compareTo(second.getNickname()) : nicknames;
+        });
+        return Collections.unmodifiableList(users);
+    }
+
     /**
      * Kicks the specified user, optionally with the specified message.
      *
@@ -64,6 +64,18 @@ public interface TabCompleter {
      */
     void removeEntry(TabCompletionType type, String entry);
 
+    /**
+     * Removes multiple entries from this tab completer's list.
+     *
+     * @param type    The type of the entries that should be removed
+     * @param removed The entries to be removed
+     */
+    default void removeEntries(final TabCompletionType type, final Iterable<String> removed) {
+        for (String entry : removed) {
+            removeEntry(type, entry);
+        }
+    }
+
     /**
      * Clears all entries in this tab completer.
      */
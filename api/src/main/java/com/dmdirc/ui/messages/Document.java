@@ -66,4 +66,16 @@ public interface Document {
      */
     int getLineHeight(int line);
 
+    /**
+     * Loads lines older than the first line in the document from persistent history, if any is
+     * available. Loaded lines are inserted at the start of the document.
+     *
+     * @param count The maximum number of lines to load
+     *
+     * @return The number of lines that were loaded
+     */
+    default int loadOlderLines(final int count) {
+        return 0;
+    }
+
 }
@@ -56,4 +56,16 @@ public interface DocumentListener extends EventListener {
      */
     void repaintNeeded();
 
+    /**
+     * Lines have been inserted at the start of the textpane. By default this is treated as the
+     * textpane being cleared and all of its lines being re-added.
+     *
+     * @param length Number of lines inserted
+     * @param size   New number of lines
+     */
+    default void linesPrepended(final int length, final int size) {
+        cleared();
+        linesAdded(0, size, size);
+    }
+
 }
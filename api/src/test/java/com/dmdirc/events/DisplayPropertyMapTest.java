@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.events;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DisplayPropertyMapTest {
+
+    @Test
+    public void testGetAndPut() {
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        assertFalse(map.get(DisplayProperty.NO_TIMESTAMPS).isPresent());
+        assertFalse(map.contains(DisplayProperty.NO_TIMESTAMPS));
+
+        map.put(DisplayProperty.NO_TIMESTAMPS, true);
+        assertTrue(map.get(DisplayProperty.NO_TIMESTAMPS).get());
+        assertTrue(map.contains(DisplayProperty.NO_TIMESTAMPS));
+        assertFalse(map.contains(DisplayProperty.DO_NOT_DISPLAY));
+    }
+
+    @Test
+    public void testGetOrDefault() {
+        final DisplayLocation location = (model, event) -> false;
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        assertSame(DisplayLocation.SOURCE,
+                map.getOrDefault(DisplayProperty.DISPLAY_LOCATION, DisplayLocation.SOURCE));
+
+        map.put(DisplayProperty.DISPLAY_LOCATION, location);
+        assertSame(location,
+                map.getOrDefault(DisplayProperty.DISPLAY_LOCATION, DisplayLocation.SOURCE));
+    }
+
+    @Test
+    public void testRemove() {
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        map.put(DisplayProperty.NO_TIMESTAMPS, true);
+        map.remove(DisplayProperty.NO_TIMESTAMPS);
+        assertFalse(map.contains(DisplayProperty.NO_TIMESTAMPS));
+    }
+
+    @Test
+    public void testPutAllMergesProperties() {
+        final DisplayPropertyMap first = new DisplayPropertyMap();
+        first.put(DisplayProperty.NO_TIMESTAMPS, true);
+        final DisplayPropertyMap second = new DisplayPropertyMap();
+        second.put(DisplayProperty.DO_NOT_DISPLAY, true);
+        second.put(DisplayProperty.NO_TIMESTAMPS, false);
+
+        first.putAll(second);
+
+        assertFalse(first.get(DisplayProperty.NO_TIMESTAMPS).get());
+        assertTrue(first.get(DisplayProperty.DO_NOT_DISPLAY).get());
+    }
+
+    @Test
+    public void testPutAllIntoEmptyMapIsIndependent() {
+        final DisplayPropertyMap source = new DisplayPropertyMap();
+        source.put(DisplayProperty.NO_TIMESTAMPS, true);
+        final DisplayPropertyMap target = new DisplayPropertyMap();
+
+        target.putAll(source);
+        target.put(DisplayProperty.DO_NOT_DISPLAY, true);
+        source.remove(DisplayProperty.NO_TIMESTAMPS);
+
+        assertTrue(target.contains(DisplayProperty.NO_TIMESTAMPS));
+        assertFalse(source.contains(DisplayProperty.DO_NOT_DISPLAY));
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterChanges() {
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        map.put(DisplayProperty.NO_TIMESTAMPS, true);
+
+        final DisplayPropertyMap snapshot = map.snapshot();
+        map.put(DisplayProperty.DO_NOT_DISPLAY, true);
+        map.remove(DisplayProperty.NO_TIMESTAMPS);
+
+        assertTrue(snapshot.contains(DisplayProperty.NO_TIMESTAMPS));
+        assertFalse(snapshot.contains(DisplayProperty.DO_NOT_DISPLAY));
+    }
+
+    @Test
+    public void testSnapshotOfEmptyMapIsShared() {
+        assertSame(DisplayPropertyMap.EMPTY, new DisplayPropertyMap().snapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() {
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        map.put(DisplayProperty.NO_TIMESTAMPS, true);
+        map.snapshot().put(DisplayProperty.DO_NOT_DISPLAY, true);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEmptyIsReadOnlyForPutAll() {
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        map.put(DisplayProperty.NO_TIMESTAMPS, true);
+        DisplayPropertyMap.EMPTY.putAll(map);
+    }
+
+    @Test
+    public void testSupportsCustomProperties() {
+        final DisplayProperty<String> custom = new DisplayProperty<String>() {};
+        final DisplayPropertyMap map = new DisplayPropertyMap();
+        map.put(custom, "value");
+        assertEquals("value", map.get(custom).get());
+        assertFalse(map.contains(DisplayProperty.NO_TIMESTAMPS));
+    }
+
+}
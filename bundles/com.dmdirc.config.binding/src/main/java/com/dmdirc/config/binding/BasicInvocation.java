@@ -17,6 +17,8 @@
 
 package com.dmdirc.config.binding;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
@@ -31,6 +33,20 @@ public class BasicInvocation extends Invocation {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BasicInvocation.class);
 
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    public void invoke(final AccessibleObject element, final MethodHandle setter,
+            final Object instance, final Object value) {
+        try {
+            setter.invokeExact(instance, value);
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            // Method handles throw whatever the target throws, where reflection would wrap it.
+            LOGGER.warn("Unable to set field: " + ex.getMessage(), ex);
+        }
+    }
+
     @Override
     public void invoke(final Field field, final Object instance, final Object value) {
         try {
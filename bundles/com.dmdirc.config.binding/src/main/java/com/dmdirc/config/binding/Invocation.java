@@ -17,6 +17,7 @@
 
 package com.dmdirc.config.binding;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -43,6 +44,24 @@ public abstract class Invocation {
         }
     }
 
+    /**
+     * Invokes the specified element on the specified instance with the specified value, using a
+     * pre-resolved method handle if the implementation supports it.
+     *
+     * <p>The default implementation ignores the handle and defers to
+     * {@link #invoke(AccessibleObject, Object, Object)}.
+     *
+     * @param element  Element to call, can be a {@link Method} or {@link Field}
+     * @param setter   Handle that sets the field or calls the method, of type
+     *                 {@code (Object, Object)void}
+     * @param instance Instance to call the element on
+     * @param value    Value to be passed to the element
+     */
+    public void invoke(final AccessibleObject element, final MethodHandle setter,
+            final Object instance, final Object value) {
+        invoke(element, instance, value);
+    }
+
     /**
      * Sets a field on the specified instance to the specified value.
      *
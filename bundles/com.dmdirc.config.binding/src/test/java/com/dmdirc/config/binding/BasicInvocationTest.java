@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config.binding;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BasicInvocationTest {
+
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    private BasicInvocation invocation;
+    private Target target;
+
+    @Before
+    public void setUp() {
+        invocation = new BasicInvocation();
+        target = new Target();
+    }
+
+    @Test
+    public void testInvokesSetterHandle() throws ReflectiveOperationException {
+        invocation.invoke(getMethod("setValue"), getSetter("setValue"), target, "foo");
+        assertEquals("foo", target.value);
+    }
+
+    @Test
+    public void testLogsRuntimeExceptionFromSetterHandle() throws ReflectiveOperationException {
+        invocation.invoke(getMethod("setBroken"), getSetter("setBroken"), target, "foo");
+    }
+
+    @Test
+    public void testLogsCheckedExceptionFromSetterHandle() throws ReflectiveOperationException {
+        invocation.invoke(getMethod("setChecked"), getSetter("setChecked"), target, "foo");
+    }
+
+    @Test
+    public void testLogsRuntimeExceptionFromSetterMethod() throws ReflectiveOperationException {
+        invocation.invoke(getMethod("setBroken"), target, "foo");
+    }
+
+    @Test(expected = AssertionError.class)
+    public void testRethrowsErrorFromSetterHandle() throws ReflectiveOperationException {
+        invocation.invoke(getMethod("setFailing"), getSetter("setFailing"), target, "foo");
+    }
+
+    private static Method getMethod(final String name) throws NoSuchMethodException {
+        return Target.class.getMethod(name, String.class);
+    }
+
+    private static MethodHandle getSetter(final String name) throws ReflectiveOperationException {
+        return MethodHandles.lookup().unreflect(getMethod(name)).asType(SETTER_TYPE);
+    }
+
+    public static class Target {
+
+        private String value;
+
+        public void setValue(final String value) {
+            this.value = value;
+        }
+
+        public void setBroken(final String value) {
+            throw new IllegalStateException("Broken setter");
+        }
+
+        public void setChecked(final String value) throws IOException {
+            throw new IOException("Checked setter");
+        }
+
+        public void setFailing(final String value) {
+            throw new AssertionError("Failing setter");
+        }
+
+    }
+
+}
@@ -34,4 +34,19 @@ public interface ConfigChangeListener {
      */
     void configChanged(String domain, String key);
 
+    /**
+     * Called when a group of monitored config entries have been changed together, for example
+     * when a config file is reloaded or a batch of changes is applied. The change set only
+     * contains settings this listener was registered for.
+     *
+     * <p>The default implementation calls {@link #configChanged(String, String)} for each setting
+     * in turn. Listeners that do expensive work regardless of which setting changed should
+     * override this to do that work once per change set.
+     *
+     * @param changes The settings that were altered
+     */
+    default void configChanged(final ConfigChangeSet changes) {
+        changes.forEach(this::configChanged);
+    }
+
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config.provider;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable set of configuration settings that have changed, grouped by domain.
+ */
+public final class ConfigChangeSet {
+
+    /** An empty change set. */
+    private static final ConfigChangeSet EMPTY = new ConfigChangeSet(Collections.emptyMap(), 0);
+
+    /** The keys that have changed in each domain. */
+    private final Map<String, Set<String>> changes;
+    /** The total number of changed settings. */
+    private final int size;
+
+    private ConfigChangeSet(final Map<String, Set<String>> changes, final int size) {
+        this.changes = changes;
+        this.size = size;
+    }
+
+    /**
+     * Creates a change set containing a single setting.
+     *
+     * @param domain The domain of the setting that changed
+     * @param key    The key of the setting that changed
+     *
+     * @return A change set containing only the given setting
+     */
+    public static ConfigChangeSet of(final String domain, final String key) {
+        return new ConfigChangeSet(Collections.singletonMap(domain, Collections.singleton(key)), 1);
+    }
+
+    /**
+     * Creates a new builder for change sets.
+     *
+     * @return A new, empty, builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the domains that contain at least one changed setting.
+     *
+     * @return The set of changed domains, in the order they were first changed
+     */
+    public Set<String> getDomains() {
+        return Collections.unmodifiableSet(changes.keySet());
+    }
+
+    /**
+     * Gets the keys that have changed within the given domain.
+     *
+     * @param domain The domain to retrieve keys for
+     *
+     * @return The set of changed keys, which may be empty
+     */
+    public Set<String> getKeys(final String domain) {
+        return Collections.unmodifiableSet(changes.getOrDefault(domain, Collections.emptySet()));
+    }
+
+    /**
+     * Determines whether the given setting is part of this change set.
+     *
+     * @param domain The domain of the setting
+     * @param key    The key of the setting
+     *
+     * @return True if the setting has changed, false otherwise
+     */
+    public boolean contains(final String domain, final String key) {
+        return changes.getOrDefault(domain, Collections.emptySet()).contains(key);
+    }
+
+    /**
+     * Determines whether this change set contains any settings.
+     *
+     * @return True if there are no changed settings, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the total number of changed settings across all domains.
+     *
+     * @return The number of changed settings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the given consumer with the domain and key of each changed setting.
+     *
+     * @param consumer The consumer to call
+     */
+    public void forEach(final BiConsumer<String, String> consumer) {
+        changes.forEach((domain, keys) -> keys.forEach(key -> consumer.accept(domain, key)));
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigChangeSet" + changes;
+    }
+
+    /**
+     * Builds {@link ConfigChangeSet}s, ignoring duplicate settings.
+     */
+    public static final class Builder {
+
+        /** The keys that have changed in each domain. */
+        private final Map<String, Set<String>> changes = new LinkedHashMap<>();
+        /** The total number of changed settings. */
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a changed setting.
+         *
+         * @param domain The domain of the setting that changed
+         * @param key    The key of the setting that changed
+         *
+         * @return This builder
+         */
+        public Builder add(final String domain, final String key) {
+            if (changes.computeIfAbsent(domain, d -> new LinkedHashSet<>()).add(key)) {
+                size++;
+            }
+            return this;
+        }
+
+        /**
+         * Adds all the settings in the given change set.
+         *
+         * @param changeSet The change set to add
+         *
+         * @return This builder
+         */
+        public Builder addAll(final ConfigChangeSet changeSet) {
+            changeSet.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Determines whether any settings have been added to this builder.
+         *
+         * @return True if no settings have been added, false otherwise
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Builds a change set containing the settings added so far.
+         *
+         * @return A new change set
+         */
+        public ConfigChangeSet build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+
+            final Map<String, Set<String>> copy = new LinkedHashMap<>();
+            changes.forEach((domain, keys) -> copy.put(domain, new LinkedHashSet<>(keys)));
+            return new ConfigChangeSet(copy, size);
+        }
+
+    }
+
+}
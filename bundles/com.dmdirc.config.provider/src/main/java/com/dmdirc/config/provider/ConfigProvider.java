@@ -34,6 +34,22 @@ public interface ConfigProvider extends ReadOnlyConfigProvider {
      */
     void addListener(ConfigChangeListener listener);
 
+    /**
+     * Applies a group of changes to this identity as a single batch. Listeners are not notified
+     * while the changes are being applied; once the batch is complete each listener receives one
+     * {@link ConfigChangeSet} describing every setting that changed. Batches may be nested, in
+     * which case listeners are notified when the outermost batch completes.
+     *
+     * <p>The default implementation simply applies the changes, notifying listeners of each one
+     * as it happens.
+     *
+     * @param changes The changes to apply, typically a series of calls to {@code setOption} and
+     *                {@code unsetOption}
+     */
+    default void batch(final Runnable changes) {
+        changes.run();
+    }
+
     /**
      * Deletes this identity from disk.
      *
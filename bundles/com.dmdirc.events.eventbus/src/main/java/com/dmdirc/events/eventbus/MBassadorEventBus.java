@@ -17,6 +17,8 @@
 
 package com.dmdirc.events.eventbus;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import net.engio.mbassy.bus.MBassador;
 import net.engio.mbassy.bus.config.BusConfiguration;
 import net.engio.mbassy.bus.config.Feature;
@@ -31,6 +33,10 @@ public class MBassadorEventBus implements EventBus {
     private static final Logger LOG = LoggerFactory.getLogger(MBassadorEventBus.class);
 
     private final MBassador<BaseEvent> bus;
+    /** The number of events published synchronously. */
+    private final LongAdder published = new LongAdder();
+    /** The number of events published asynchronously. */
+    private final LongAdder publishedAsync = new LongAdder();
 
     public MBassadorEventBus() {
         bus = new MBassador<>(new BusConfiguration()
@@ -52,12 +58,32 @@ public class MBassadorEventBus implements EventBus {
 
     @Override
     public void publish(BaseEvent message) {
+        published.increment();
         bus.publish(message);
     }
 
     @Override
     public void publishAsync(BaseEvent message) {
+        publishedAsync.increment();
         bus.publishAsync(message);
     }
 
+    /**
+     * Gets the number of events that have been published synchronously.
+     *
+     * @return The number of synchronous publications.
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * Gets the number of events that have been published asynchronously.
+     *
+     * @return The number of asynchronous publications.
+     */
+    public long getPublishedAsyncCount() {
+        return publishedAsync.sum();
+    }
+
 }
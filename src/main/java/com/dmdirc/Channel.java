@@ -23,6 +23,7 @@ import com.dmdirc.events.ChannelSelfJoinEvent;
 import com.dmdirc.events.ChannelSelfMessageEvent;
 import com.dmdirc.events.CommandErrorEvent;
 import com.dmdirc.events.NickListClientAddedEvent;
+import com.dmdirc.events.NickListClientMovedEvent;
 import com.dmdirc.events.NickListClientRemovedEvent;
 import com.dmdirc.events.NickListClientsChangedEvent;
 import com.dmdirc.events.NickListUpdatedEvent;
@@ -48,6 +49,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -70,6 +72,8 @@ public class Channel extends FrameContainer implements GroupChat {
     private final ConfigProviderMigrator configMigrator;
     /** Manager used to retrieve {@link GroupChatUser}s */
     private final GroupChatUserManager groupChatUserManager;
+    /** The users in this channel, sorted by mode and nickname. */
+    private final NickListIndex nickList = new NickListIndex();
     /** Whether we're currently in this channel or not. */
     private boolean isOnChannel;
     /** Reason for leaving the channel. */
@@ -81,13 +85,15 @@ public class Channel extends FrameContainer implements GroupChat {
      * @param connection          The connection object that this channel belongs to
      * @param newChannelInfo      The parser's channel object that corresponds to this channel
      * @param configMigrator      The config migrator which provides the config for this channel.
+     * @param executorService     The executor to use to deliver batched quits.
      */
     public Channel(
             final Connection connection,
             final ChannelInfo newChannelInfo,
             final ConfigProviderMigrator configMigrator,
             final BackBufferFactory backBufferFactory,
-            final GroupChatUserManager groupChatUserManager) {
+            final GroupChatUserManager groupChatUserManager,
+            final ScheduledExecutorService executorService) {
         super("channel-inactive",
                 newChannelInfo.getName(),
                 new StyledMessageUtils().stripControlCodes(newChannelInfo.getName()), // TODO: Inject this
@@ -107,7 +113,8 @@ public class Channel extends FrameContainer implements GroupChat {
         topics = EvictingQueue.create(
                 getConfigManager().getOptionInt("channel", "topichistorysize"));
 
-        eventHandler = new ChannelEventHandler(this, getEventBus(), groupChatUserManager);
+        eventHandler = new ChannelEventHandler(this, getEventBus(), groupChatUserManager,
+                executorService);
 
         initBackBuffer();
         registerCallbacks();
@@ -248,6 +255,7 @@ public class Channel extends FrameContainer implements GroupChat {
         }
 
         setIcon("channel-inactive");
+        nickList.reset(Collections.emptyList());
 
         // Needs to be published synchronously so that nicklists are cleared before the parser
         // is disconnected (which happens synchronously after this method returns).
@@ -280,7 +288,9 @@ public class Channel extends FrameContainer implements GroupChat {
      * @param client The client to be added
      */
     public void addClient(final GroupChatUser client) {
-        getEventBus().publishAsync(new NickListClientAddedEvent(this, client));
+        nickList.add(client).ifPresent(change -> getEventBus().publishAsync(
+                new NickListClientAddedEvent(this, client, change.getToIndex(),
+                        change.getSnapshot())));
 
         getInputModel().get().getTabCompleter().addEntry(
                 TabCompletionType.CHANNEL_NICK, client.getNickname());
@@ -292,7 +302,9 @@ public class Channel extends FrameContainer implements GroupChat {
      * @param client The client to be removed
      */
     public void removeClient(final GroupChatUser client) {
-        getEventBus().publishAsync(new NickListClientRemovedEvent(this, client));
+        nickList.remove(client).ifPresent(change -> getEventBus().publishAsync(
+                new NickListClientRemovedEvent(this, client, change.getFromIndex(),
+                        change.getSnapshot())));
 
         getInputModel().get().getTabCompleter().removeEntry(
                 TabCompletionType.CHANNEL_NICK, client.getNickname());
@@ -302,13 +314,35 @@ public class Channel extends FrameContainer implements GroupChat {
         }
     }
 
+    /**
+     * Removes the specified clients from this channel, updating the nicklist and tab completer in
+     * a single operation.
+     *
+     * @param clients The clients to be removed
+     */
+    public void removeClients(final Collection<GroupChatUser> clients) {
+        final List<GroupChatUser> remaining = nickList.removeAll(clients);
+        if (isOnChannel) {
+            getEventBus().publishAsync(new NickListClientsChangedEvent(this, remaining));
+        }
+
+        getInputModel().get().getTabCompleter().removeEntries(TabCompletionType.CHANNEL_NICK,
+                clients.stream().map(GroupChatUser::getNickname).collect(Collectors.toList()));
+
+        final Optional<User> localUser = connection.getLocalUser();
+        if (localUser.isPresent()
+                && clients.stream().anyMatch(c -> c.getUser().equals(localUser.get()))) {
+            resetWindow(PartReason.REMOTE_PART);
+        }
+    }
+
     /**
      * Replaces the list of known clients on this channel with the specified one.
      *
      * @param clients The list of clients to use
      */
     public void setClients(final Collection<GroupChatUser> clients) {
-        getEventBus().publishAsync(new NickListClientsChangedEvent(this, clients));
+        getEventBus().publishAsync(new NickListClientsChangedEvent(this, nickList.reset(clients)));
 
         getInputModel().get().getTabCompleter().clear(TabCompletionType.CHANNEL_NICK);
 
@@ -324,13 +358,45 @@ public class Channel extends FrameContainer implements GroupChat {
      * @param newName The new nickname of the client
      */
     public void renameClient(final String oldName, final String newName) {
+        final ChannelClientInfo client = channelInfo.getChannelClient(newName);
+        if (client == null) {
+            getInputModel().get().getTabCompleter().removeEntry(
+                    TabCompletionType.CHANNEL_NICK, oldName);
+            getInputModel().get().getTabCompleter().addEntry(
+                    TabCompletionType.CHANNEL_NICK, newName);
+            refreshClients();
+        } else {
+            renameClient(groupChatUserManager.getUserFromClient(client, this), oldName);
+        }
+    }
+
+    /**
+     * Renames a client that is in this channel.
+     *
+     * @param client  The client that has been renamed
+     * @param oldName The old nickname of the client
+     */
+    public void renameClient(final GroupChatUser client, final String oldName) {
         getInputModel().get().getTabCompleter().removeEntry(
                 TabCompletionType.CHANNEL_NICK, oldName);
         getInputModel().get().getTabCompleter().addEntry(
-                TabCompletionType.CHANNEL_NICK, newName);
+                TabCompletionType.CHANNEL_NICK, client.getNickname());
+        updateClient(client);
         refreshClients();
     }
 
+    /**
+     * Moves a client to its correct position in the nicklist after its modes or nickname have
+     * changed.
+     *
+     * @param client The client that has changed
+     */
+    public void updateClient(final GroupChatUser client) {
+        nickList.update(client).ifPresent(change -> getEventBus().publishAsync(
+                new NickListClientMovedEvent(this, client, change.getFromIndex(),
+                        change.getToIndex(), change.getSnapshot())));
+    }
+
     @Override
     public void refreshClients() {
         if (!isOnChannel) {
@@ -403,6 +469,11 @@ public class Channel extends FrameContainer implements GroupChat {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<GroupChatUser> getNickList() {
+        return nickList.snapshot();
+    }
+
     @Override
     public WindowModel getWindowModel() {
         return this;
@@ -33,6 +33,7 @@ import com.dmdirc.events.ChannelNoModesDiscoveredEvent;
 import com.dmdirc.events.ChannelNoTopicEvent;
 import com.dmdirc.events.ChannelNoticeEvent;
 import com.dmdirc.events.ChannelPartEvent;
+import com.dmdirc.events.ChannelQuitBatchEvent;
 import com.dmdirc.events.ChannelQuitEvent;
 import com.dmdirc.events.ChannelSelfModeChangeEvent;
 import com.dmdirc.events.ChannelSelfNickChangeEvent;
@@ -60,6 +61,7 @@ import com.google.common.base.Strings;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -76,12 +78,28 @@ public class ChannelEventHandler extends EventHandler {
     /** Event bus to send events on. */
     private final EventBus eventBus;
     private final GroupChatUserManager groupChatUserManager;
+    /** Batcher used to coalesce netsplits and mass quits. */
+    private final QuitBatcher quitBatcher;
+    /**
+     * Lock held while batched quits are applied, and while joins, names and nick changes are
+     * handled, so a batch delivered by the executor is never applied out of order.
+     */
+    private final Object membershipLock = new Object();
 
     public ChannelEventHandler(final Channel owner, final EventBus eventBus,
-            final GroupChatUserManager groupChatUserManager) {
+            final GroupChatUserManager groupChatUserManager,
+            final ScheduledExecutorService executorService) {
         this.owner = owner;
         this.eventBus = eventBus;
         this.groupChatUserManager = groupChatUserManager;
+        this.quitBatcher = new QuitBatcher(owner, owner.getConfigManager(), executorService,
+                membershipLock, this::handleQuitBatch);
+    }
+
+    @Override
+    public void unregisterCallbacks() {
+        super.unregisterCallbacks();
+        quitBatcher.flush();
     }
 
     @Nonnull
@@ -120,9 +138,12 @@ public class ChannelEventHandler extends EventHandler {
             return;
         }
 
-        owner.setClients(event.getChannel().getChannelClients().stream()
-                .map(client -> groupChatUserManager.getUserFromClient(client, owner))
-                .collect(Collectors.toList()));
+        synchronized (membershipLock) {
+            quitBatcher.flush();
+            owner.setClients(event.getChannel().getChannelClients().stream()
+                    .map(client -> groupChatUserManager.getUserFromClient(client, owner))
+                    .collect(Collectors.toList()));
+        }
         eventBus.publishAsync(new ChannelGotNamesEvent(event.getDate(), owner));
     }
 
@@ -178,10 +199,14 @@ public class ChannelEventHandler extends EventHandler {
             return;
         }
 
-        eventBus.publishAsync(new ChannelJoinEvent(
-                event.getDate(), owner,
-                groupChatUserManager.getUserFromClient(event.getClient(), owner)));
-        owner.addClient(groupChatUserManager.getUserFromClient(event.getClient(), owner));
+        synchronized (membershipLock) {
+            // Apply any batched quits first, in case this user is rejoining.
+            quitBatcher.flush();
+            eventBus.publishAsync(new ChannelJoinEvent(
+                    event.getDate(), owner,
+                    groupChatUserManager.getUserFromClient(event.getClient(), owner)));
+            owner.addClient(groupChatUserManager.getUserFromClient(event.getClient(), owner));
+        }
     }
 
     @Handler
@@ -224,11 +249,30 @@ public class ChannelEventHandler extends EventHandler {
             return;
         }
 
-        eventBus.publishAsync(new ChannelQuitEvent(
-                event.getDate(), owner,
-                groupChatUserManager.getUserFromClient(event.getClient(), owner),
-                event.getReason()));
-        owner.removeClient(groupChatUserManager.getUserFromClient(event.getClient(), owner));
+        final GroupChatUser user = groupChatUserManager.getUserFromClient(event.getClient(), owner);
+        if (!quitBatcher.offer(event.getDate(), user, event.getReason())) {
+            eventBus.publishAsync(new ChannelQuitEvent(event.getDate(), owner, user,
+                    event.getReason()));
+            owner.removeClient(user);
+        }
+    }
+
+    /**
+     * Handles a batch of quits delivered by the {@link QuitBatcher}. This is called with
+     * {@link #membershipLock} held, either on the parser thread or on the connection's executor.
+     *
+     * @param event The batch event to handle.
+     */
+    private void handleQuitBatch(final ChannelQuitBatchEvent event) {
+        if (event.getCount() == 1) {
+            final GroupChatUser user = event.getClients().get(0);
+            eventBus.publishAsync(new ChannelQuitEvent(event.getTimestamp(), owner, user,
+                    event.getMessage()));
+            owner.removeClient(user);
+        } else {
+            eventBus.publishAsync(event);
+            owner.removeClients(event.getClients());
+        }
     }
 
     @Handler
@@ -252,7 +296,10 @@ public class ChannelEventHandler extends EventHandler {
         final String oldNick = event.getOldNick();
         final ChannelClientInfo client = event.getClient();
 
-        owner.renameClient(oldNick, client.getClient().getNickname());
+        synchronized (membershipLock) {
+            quitBatcher.flush();
+            owner.renameClient(groupChatUserManager.getUserFromClient(client, owner), oldNick);
+        }
 
         if (isMyself(client)) {
             eventBus.publishAsync(
@@ -277,6 +324,7 @@ public class ChannelEventHandler extends EventHandler {
         final GroupChatUser targetClient = groupChatUserManager.getUserFromClient(event.getTargetClient(), owner);
         final LocalDateTime date = event.getDate();
 
+        owner.updateClient(targetClient);
         eventBus.publishAsync(new ChannelUserModeChangeEvent(date, owner, client, targetClient, event.getMode()));
     }
 
@@ -17,6 +17,7 @@
 
 package com.dmdirc;
 
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.parsers.ChannelCommandParser;
 import com.dmdirc.events.ChannelOpenedEvent;
@@ -29,6 +30,8 @@ import com.dmdirc.ui.WindowManager;
 import com.dmdirc.ui.input.TabCompleterFactory;
 import com.dmdirc.ui.messages.BackBufferFactory;
 
+import java.util.concurrent.ScheduledExecutorService;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -40,6 +43,7 @@ public class ChannelFactory {
 
     private final TabCompleterFactory tabCompleterFactory;
     private final CommandController commandController;
+    private final CommandHistory commandHistory;
     private final EventBus eventBus;
     private final BackBufferFactory backBufferFactory;
     private final GroupChatUserManager groupChatUserManager;
@@ -47,26 +51,38 @@ public class ChannelFactory {
 
     @Inject
     public ChannelFactory(final TabCompleterFactory tabCompleterFactory,
-            final CommandController commandController,
+            final CommandController commandController, final CommandHistory commandHistory,
             final EventBus eventBus, final BackBufferFactory backBufferFactory,
             final GroupChatUserManager groupChatUserManager, final WindowManager windowManager) {
         this.tabCompleterFactory = tabCompleterFactory;
         this.commandController = commandController;
+        this.commandHistory = commandHistory;
         this.eventBus = eventBus;
         this.backBufferFactory = backBufferFactory;
         this.groupChatUserManager = groupChatUserManager;
         this.windowManager = windowManager;
     }
 
+    /**
+     * Creates a new channel.
+     *
+     * @param connection      The connection the channel belongs to.
+     * @param channelInfo     The parser's information about the channel.
+     * @param configMigrator  The config migrator which provides the config for the channel.
+     * @param executorService The connection's executor, which the channel uses to deliver
+     *                        batched quits. It is shut down when the connection is closed.
+     * @return The new channel.
+     */
     public Channel getChannel(final Connection connection,
             final ChannelInfo channelInfo,
-            final ConfigProviderMigrator configMigrator) {
+            final ConfigProviderMigrator configMigrator,
+            final ScheduledExecutorService executorService) {
         final Channel channel = new Channel(connection, channelInfo, configMigrator,
-                backBufferFactory, groupChatUserManager);
+                backBufferFactory, groupChatUserManager, executorService);
         channel.setInputModel(new DefaultInputModel(
                 channel::sendLine,
                 new ChannelCommandParser(
-                        connection.getWindowModel(),
+                        commandHistory,
                         commandController,
                         eventBus,
                         channel),
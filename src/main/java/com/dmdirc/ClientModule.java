@@ -36,6 +36,7 @@ import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.util.system.LifecycleController;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.interfaces.config.IdentityController;
+import com.dmdirc.metrics.MetricsRegistry;
 import com.dmdirc.plugins.PluginModule;
 import com.dmdirc.ui.messages.ColourManager;
 import com.dmdirc.ui.messages.ColourManagerFactory;
@@ -45,12 +46,16 @@ import com.dmdirc.updater.UpdaterModule;
 import com.dmdirc.util.LoggingExecutorService;
 import com.dmdirc.util.io.Downloader;
 import com.dmdirc.util.system.SystemInfo;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dagger.Module;
 import dagger.ObjectGraph;
 import dagger.Provides;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.inject.Named;
-import javax.inject.Provider;
 import javax.inject.Singleton;
 
 /**
@@ -95,8 +100,32 @@ public class ClientModule {
 
     @Provides
     @Singleton
-    public EventBus getMBassador() {
-        return new MBassadorEventBus();
+    @Named("startup")
+    public ExecutorService getStartupExecutor() {
+        // Bounded so startup doesn't swamp small machines; idle threads exit once startup is done.
+        final int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("startup-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Provides
+    @Singleton
+    public EventBus getMBassador(final MetricsRegistry metricsRegistry) {
+        final MBassadorEventBus eventBus = new MBassadorEventBus();
+        metricsRegistry.registerGauge("eventbus.published", eventBus::getPublishedCount);
+        metricsRegistry.registerGauge("eventbus.published.async", eventBus::getPublishedAsyncCount);
+        return eventBus;
+    }
+
+    @Provides
+    @Singleton
+    public MetricsRegistry getMetricsRegistry() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.publish(ManagementFactory.getPlatformMBeanServer());
+        return registry;
     }
 
     @Provides
@@ -106,11 +135,8 @@ public class ClientModule {
 
     @Provides
     @Singleton
-    public CommandManager getCommandManager(
-            final ConnectionManager connectionManager,
-            final Provider<GlobalWindow> globalWindowProvider,
-            @GlobalConfig final AggregateConfigProvider globalConfig) {
-        final CommandManager manager = new CommandManager(connectionManager, globalWindowProvider);
+    public CommandManager getCommandManager(@GlobalConfig final AggregateConfigProvider globalConfig) {
+        final CommandManager manager = new CommandManager();
         manager.initialise(globalConfig);
         return manager;
     }
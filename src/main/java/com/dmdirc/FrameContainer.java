@@ -95,7 +95,8 @@ public class FrameContainer implements WindowModel {
         this.backBufferFactory = backBufferFactory;
 
         this.eventBus = eventBus;
-        this.unreadStatusManager = new UnreadStatusManagerImpl(this);
+        this.unreadStatusManager = new UnreadStatusManagerImpl(this,
+                () -> backBufferFactory.getColourManager(config));
         this.eventBus.subscribe(unreadStatusManager);
         configManager.getBinder().bind(unreadStatusManager, UnreadStatusManagerImpl.class);
 
@@ -206,6 +207,8 @@ public class FrameContainer implements WindowModel {
         configManager.getBinder().unbind(unreadStatusManager);
         eventBus.publish(new FrameClosingEvent(this));
         backBuffer.stopAddingEvents();
+        backBufferFactory.releaseBackBuffer(backBuffer);
+        configManager.removeListener(changer);
     }
 
     @Override
@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
 import net.engio.mbassy.listener.Handler;
@@ -56,12 +57,17 @@ public class GroupChatManagerImpl implements GroupChatManager {
     /** A set of channels we want to join without focusing. */
     private final Collection<String> backgroundChannels = new HashSet<>();
 
+    /** The connection's executor, used by channels to deliver batched quits. */
+    private final ScheduledExecutorService executorService;
+
     public GroupChatManagerImpl(final Connection connection,
             final IdentityFactory identityFactory,
-            final ChannelFactory channelFactory) {
+            final ChannelFactory channelFactory,
+            final ScheduledExecutorService executorService) {
         this.connection = connection;
         this.identityFactory = identityFactory;
         this.channelFactory = channelFactory;
+        this.executorService = executorService;
     }
 
     @Override
@@ -145,7 +151,7 @@ public class GroupChatManagerImpl implements GroupChatManager {
                     connection.getProtocol(), connection.getIrcd(), connection.getNetwork(),
                     connection.getAddress(), chan.getName());
             final Channel newChan = channelFactory.getChannel(
-                    connection, chan, channelConfig);
+                    connection, chan, channelConfig, executorService);
             connection.getWindowModel().getInputModel().get().getTabCompleter()
                     .addEntry(TabCompletionType.CHANNEL, chan.getName());
             newChan.getWindowModel().getEventBus().subscribe(this);
@@ -39,6 +39,9 @@ import com.dmdirc.plugins.PluginManager;
 import com.dmdirc.plugins.Service;
 import com.dmdirc.plugins.ServiceManager;
 import com.dmdirc.plugins.ServiceProvider;
+import com.dmdirc.startup.StartupTaskGraph;
+import com.dmdirc.startup.StartupTimeline;
+import com.dmdirc.ui.HeadlessUIController;
 import com.dmdirc.ui.WarningDialog;
 
 import ch.qos.logback.classic.LoggerContext;
@@ -48,14 +51,17 @@ import ch.qos.logback.core.spi.ContextAware;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +73,8 @@ import dagger.ObjectGraph;
  */
 public class Main {
 
+    private static final Logger LOG = LoggerFactory.getLogger(Main.class);
+
     /** The UI to use for the client. */
     private final Collection<UIController> CONTROLLERS = new HashSet<>();
     /** The identity manager the client will use. */
@@ -95,6 +103,10 @@ public class Main {
     private final ModeAliasReporter reporter;
     private final ServiceManager serviceManager;
     private final ProgramErrorManager errorManager;
+    /** The executor to run startup tasks on. */
+    private final ExecutorService startupExecutor;
+    /** The timeline to record startup tasks in. */
+    private final StartupTimeline startupTimeline;
 
     static {
         // TODO: Can this go in a Dagger module?
@@ -123,7 +135,9 @@ public class Main {
             final Set<CommandDetails> commands,
             final ModeAliasReporter reporter,
             final ServiceManager serviceManager,
-            final ProgramErrorManager errorManager) {
+            final ProgramErrorManager errorManager,
+            @Named("startup") final ExecutorService startupExecutor,
+            final StartupTimeline startupTimeline) {
         this.identityManager = identityManager;
         this.connectionManager = connectionManager;
         this.commandLineParser = commandLineParser;
@@ -138,6 +152,8 @@ public class Main {
         this.reporter = reporter;
         this.serviceManager = serviceManager;
         this.errorManager = errorManager;
+        this.startupExecutor = startupExecutor;
+        this.startupTimeline = startupTimeline;
     }
 
     /**
@@ -173,28 +189,65 @@ public class Main {
     }
 
     /**
-     * Initialises the client.
+     * Initialises the client. Independent startup tasks are run concurrently on the startup
+     * executor; each task only starts once the tasks it depends on have finished.
      */
     public void init() {
         Thread.setDefaultUncaughtExceptionHandler(new DMDircExceptionHandler());
         setupLogback();
-        migrators.stream().filter(Migrator::needsMigration).forEach(Migrator::migrate);
-        commands.forEach(c -> commandManager.registerCommand(c.getCommand(), c.getInfo()));
-
-        loadUIs(serviceManager);
-
-        doFirstRun();
-
-        lifecycleComponents.forEach(SystemLifecycleComponent::startUp);
 
-        pluginManager.doAutoLoad();
-
-        eventBus.publishAsync(new ClientOpenedEvent());
-        eventBus.subscribe(reporter);
+        final StartupTaskGraph tasks = new StartupTaskGraph(startupTimeline)
+                .addTask("migrate", () -> migrators.stream().filter(Migrator::needsMigration)
+                        .forEach(Migrator::migrate))
+                .addTask("commands", () -> commands.forEach(
+                        c -> commandManager.registerCommand(c.getCommand(), c.getInfo())));
+
+        // The UI and plugins may rely on any core component, so wait for all of them to start.
+        final List<String> coreTasks = new ArrayList<>();
+        coreTasks.add("migrate");
+        coreTasks.add("commands");
+        final Set<String> lifecycleNames = new HashSet<>();
+        for (SystemLifecycleComponent component : lifecycleComponents) {
+            final String name = getUniqueName("lifecycle:" + component.getClass().getName(),
+                    lifecycleNames);
+            tasks.addTask(name, component::startUp, "migrate", "commands");
+            coreTasks.add(name);
+        }
 
-        commandLineParser.processArguments(connectionManager);
+        tasks.addTask("ui", () -> loadUIs(serviceManager), coreTasks)
+                .addTask("firstrun", this::doFirstRun, "ui")
+                .addTask("plugins", () -> pluginManager.doAutoLoad(commandLineParser.isHeadless()),
+                        "firstrun")
+                .addTask("opened", () -> {
+                    eventBus.publishAsync(new ClientOpenedEvent());
+                    eventBus.subscribe(reporter);
+                }, "plugins")
+                .addTask("arguments", () -> commandLineParser.processArguments(connectionManager),
+                        "opened")
+                .addTask("globalwindow", globalWindowManager::init, "opened")
+                .run(startupExecutor);
+
+        final String report = startupTimeline.getReport();
+        LOG.debug("{}", report);
+        if (commandLineParser.isTimelineEnabled()) {
+            System.out.println(report);
+        }
+    }
 
-        globalWindowManager.init();
+    /**
+     * Gets a name based on the given name that is not already in use, and marks it as used.
+     *
+     * @param name The preferred name.
+     * @param used The names that are already in use.
+     *
+     * @return The preferred name, or the preferred name with a numeric suffix if it was in use.
+     */
+    private static String getUniqueName(final String name, final Set<String> used) {
+        String result = name;
+        for (int i = 2; !used.add(result); i++) {
+            result = name + '#' + i;
+        }
+        return result;
     }
 
     /**
@@ -232,11 +285,19 @@ public class Main {
     }
 
     /**
-     * Attempts to find and activate a service which provides a UI that we can use.
+     * Attempts to find and activate a service which provides a UI that we can use. If the client
+     * was started headless, no UI services are activated.
      *
      * @param pm The plugin manager to use to load plugins
      */
     protected void loadUIs(final ServiceManager pm) {
+        if (commandLineParser.isHeadless()) {
+            // Don't activate any UI plugins, so none of their classes are loaded.
+            System.out.println("DMDirc is running without a user interface.");
+            CONTROLLERS.add(new HeadlessUIController());
+            return;
+        }
+
         final List<Service> uis = pm.getServicesByType("ui");
 
         // First try: go for our desired service type
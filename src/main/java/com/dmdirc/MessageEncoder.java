@@ -17,6 +17,8 @@
 
 package com.dmdirc;
 
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ReadOnlyConfigProvider;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.interfaces.GroupChat;
 import com.dmdirc.interfaces.WindowModel;
@@ -24,7 +26,21 @@ import com.dmdirc.parser.interfaces.Encoder;
 import com.dmdirc.parser.interfaces.Parser;
 import com.dmdirc.util.LogUtils;
 
-import java.io.UnsupportedEncodingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +48,18 @@ import org.slf4j.LoggerFactory;
 /**
  * An {@link Encoder} implementation that reads the desired encoding from the relevant target's
  * config file.
+ *
+ * <p>If the encoding is UTF-8 and a fallback encoding is configured, each line is first decoded as
+ * UTF-8 and is only decoded using the fallback encoding if it is not valid UTF-8.
  */
 public class MessageEncoder implements Encoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(MessageEncoder.class);
+    /** Initial number of characters that each decoder can hold without growing its buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    /** Decoders for each config provider, updated whenever the provider's encoding changes. */
+    private static final Cache<AggregateConfigProvider, LineDecoder> DECODERS =
+            CacheBuilder.newBuilder().weakKeys().build();
     /** The connection that owns this encoder. */
     private final Connection connection;
     /** The parser that this encoder will work for. */
@@ -55,23 +79,155 @@ public class MessageEncoder implements Encoder {
     @Override
     public String encode(final String source, final String target,
             final byte[] message, final int offset, final int length) {
-        String encoding = connection.getWindowModel().getConfigManager()
-                .getOption("general", "encoding");
+        return getDecoder(getConfig(target)).decode(message, offset, length);
+    }
+
+    /**
+     * Gets the config provider that determines the encoding for the given target.
+     *
+     * @param target The target of the message, if any
+     *
+     * @return The target channel's config if it is a known channel, otherwise the connection's
+     */
+    private AggregateConfigProvider getConfig(@Nullable final String target) {
+        final AggregateConfigProvider config = connection.getWindowModel().getConfigManager();
 
         if (target != null && parser.isValidChannelName(target)) {
-            encoding = connection.getGroupChatManager().getChannel(target)
+            return connection.getGroupChatManager().getChannel(target)
                     .map(GroupChat::getWindowModel)
                     .map(WindowModel::getConfigManager)
-                    .map(cm -> cm.getOption("general", "encoding"))
-                    .orElse(encoding);
+                    .orElse(config);
+        }
+
+        return config;
+    }
+
+    /**
+     * Gets the decoder for the given config provider, creating it if required. New decoders listen
+     * for changes to the provider's encoding settings for as long as the provider exists.
+     *
+     * @param config The config provider to get a decoder for
+     *
+     * @return A decoder using the encoding configured in the provider
+     */
+    private static LineDecoder getDecoder(final AggregateConfigProvider config) {
+        try {
+            return DECODERS.get(config, () -> {
+                final LineDecoder decoder = new LineDecoder();
+                decoder.update(config);
+                config.addChangeListener("general", "encoding", (domain, key) -> decoder.update(config));
+                config.addChangeListener("general", "encodingfallback",
+                        (domain, key) -> decoder.update(config));
+                return decoder;
+            });
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Unable to create decoder", ex.getCause());
+        }
+    }
+
+    /**
+     * Gets the charset with the given name, falling back to the platform default if it is invalid.
+     *
+     * @param name The name of the charset, if one is configured
+     *
+     * @return The named charset, or the default charset if it is not supported
+     */
+    private static Charset getCharset(@Nullable final String name) {
+        if (name == null) {
+            return Charset.defaultCharset();
         }
 
         try {
-            return new String(message, offset, length, encoding);
-        } catch (UnsupportedEncodingException ex) {
-            LOG.warn(LogUtils.USER_ERROR, "Unsupported encoding: {}", encoding, ex);
-            return new String(message, offset, length);
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            LOG.warn(LogUtils.USER_ERROR, "Unsupported encoding: {}", name, ex);
+            return Charset.defaultCharset();
+        }
+    }
+
+    /**
+     * Decodes lines using a reusable character buffer. Decoders must not hold a reference to the
+     * config provider they're created for, as that would prevent it being removed from the cache.
+     */
+    private static final class LineDecoder {
+
+        /** Lock guarding the decoders and buffer. */
+        private final Object lock = new Object();
+        /** The decoder for the configured encoding. */
+        private CharsetDecoder primary;
+        /** The decoder to use for lines that aren't valid in the primary encoding, if any. */
+        @Nullable
+        private CharsetDecoder fallback;
+        /** Buffer that decoded characters are written to before being copied into a string. */
+        private CharBuffer chars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        /**
+         * Reads the encoding settings from the given config provider and updates the decoders.
+         *
+         * @param config The config provider to read settings from
+         */
+        void update(final ReadOnlyConfigProvider config) {
+            final Charset charset = getCharset(config.getOption("general", "encoding"));
+            final String fallbackName = config.getOptionString("general", "encodingfallback", false,
+                    ReadOnlyConfigProvider.PERMISSIVE_VALIDATOR);
+            final boolean useFallback = fallbackName != null && charset.equals(StandardCharsets.UTF_8);
+
+            synchronized (lock) {
+                // When falling back, malformed lines must be reported so they can be re-decoded.
+                primary = charset.newDecoder()
+                        .onMalformedInput(useFallback ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                fallback = useFallback
+                        ? getCharset(fallbackName).newDecoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        : null;
+            }
+        }
+
+        /**
+         * Decodes part of the given byte array.
+         *
+         * @param message The bytes to decode
+         * @param offset  The offset of the first byte to decode
+         * @param length  The number of bytes to decode
+         *
+         * @return The decoded string
+         */
+        String decode(final byte[] message, final int offset, final int length) {
+            synchronized (lock) {
+                final ByteBuffer bytes = ByteBuffer.wrap(message, offset, length);
+                if (!decode(primary, bytes) && fallback != null) {
+                    bytes.position(offset);
+                    decode(fallback, bytes);
+                }
+
+                chars.flip();
+                return chars.toString();
+            }
         }
+
+        /**
+         * Decodes the remaining bytes in the buffer into {@link #chars}, growing it if needed.
+         *
+         * @param decoder The decoder to use
+         * @param bytes   The bytes to decode
+         *
+         * @return True if the bytes were decoded, false if they were malformed and the decoder is
+         *         set to report malformed input
+         */
+        private boolean decode(final CharsetDecoder decoder, final ByteBuffer bytes) {
+            final int required = (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte());
+            if (required > chars.capacity()) {
+                chars = CharBuffer.allocate(Math.max(required, chars.capacity() * 2));
+            }
+
+            chars.clear();
+            decoder.reset();
+            final CoderResult result = decoder.decode(bytes, chars, true);
+            return !result.isError() && !decoder.flush(chars).isError();
+        }
+
     }
 
 }
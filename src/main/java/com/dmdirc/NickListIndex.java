@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc;
+
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nullable;
+
+/**
+ * Maintains the users of a channel sorted by their most important mode and then by nickname.
+ *
+ * <p>Users are stored in a persistent treap, so inserting, removing or repositioning a user takes
+ * O(log n) time and reports the user's position in the list. Every change produces a new tree
+ * that shares most of its nodes with the previous one, so {@link #snapshot()} is free and
+ * snapshots remain valid and unchanged while the index is modified.
+ */
+class NickListIndex {
+
+    /** The sort keys of the users currently in the index. */
+    private final Map<GroupChatUser, Entry> entries = new HashMap<>();
+    /** Lock guarding modifications to the index. */
+    private final Object lock = new Object();
+    /** The root of the current tree. */
+    @Nullable private volatile Node root;
+    /** Sequence used to break ties between otherwise identical sort keys. */
+    private long nextSequence;
+
+    /**
+     * Adds a user to the index.
+     *
+     * @param user The user to add.
+     * @return The change made, or empty if the user was already present.
+     */
+    Optional<Change> add(final GroupChatUser user) {
+        synchronized (lock) {
+            if (entries.containsKey(user)) {
+                return Optional.empty();
+            }
+
+            final Entry entry = createEntry(user);
+            entries.put(user, entry);
+            root = insert(root, entry);
+            return Optional.of(new Change(-1, rank(root, entry), snapshot()));
+        }
+    }
+
+    /**
+     * Removes a user from the index.
+     *
+     * @param user The user to remove.
+     * @return The change made, or empty if the user was not present.
+     */
+    Optional<Change> remove(final GroupChatUser user) {
+        synchronized (lock) {
+            final Entry entry = entries.remove(user);
+            if (entry == null) {
+                return Optional.empty();
+            }
+
+            final int index = rank(root, entry);
+            root = delete(root, entry);
+            return Optional.of(new Change(index, -1, snapshot()));
+        }
+    }
+
+    /**
+     * Removes multiple users from the index.
+     *
+     * @param users The users to remove.
+     * @return A snapshot of the index after the users have been removed.
+     */
+    List<GroupChatUser> removeAll(final Iterable<GroupChatUser> users) {
+        synchronized (lock) {
+            Node newRoot = root;
+            for (GroupChatUser user : users) {
+                final Entry entry = entries.remove(user);
+                if (entry != null) {
+                    newRoot = delete(newRoot, entry);
+                }
+            }
+            root = newRoot;
+            return snapshot();
+        }
+    }
+
+    /**
+     * Re-reads the modes and nickname of a user, and moves it to its correct position.
+     *
+     * @param user The user to update.
+     * @return The change made, or empty if the user was not present or did not move.
+     */
+    Optional<Change> update(final GroupChatUser user) {
+        synchronized (lock) {
+            final Entry oldEntry = entries.get(user);
+            if (oldEntry == null) {
+                return Optional.empty();
+            }
+
+            final Entry newEntry = createEntry(user);
+            if (oldEntry.modes.equals(newEntry.modes)
+                    && oldEntry.nickname.equals(newEntry.nickname)) {
+                return Optional.empty();
+            }
+
+            final int from = rank(root, oldEntry);
+            entries.put(user, newEntry);
+            root = insert(delete(root, oldEntry), newEntry);
+            return Optional.of(new Change(from, rank(root, newEntry), snapshot()));
+        }
+    }
+
+    /**
+     * Replaces the contents of the index with the given users.
+     *
+     * @param users The users that should be in the index.
+     * @return A snapshot of the new contents of the index.
+     */
+    List<GroupChatUser> reset(final Iterable<GroupChatUser> users) {
+        synchronized (lock) {
+            entries.clear();
+            Node newRoot = null;
+            for (GroupChatUser user : users) {
+                if (!entries.containsKey(user)) {
+                    final Entry entry = createEntry(user);
+                    entries.put(user, entry);
+                    newRoot = insert(newRoot, entry);
+                }
+            }
+            root = newRoot;
+            return snapshot();
+        }
+    }
+
+    /**
+     * Gets an immutable snapshot of the current contents of the index. This does not copy the
+     * contents.
+     *
+     * @return A sorted list of the users currently in the index.
+     */
+    List<GroupChatUser> snapshot() {
+        return new Snapshot(root);
+    }
+
+    private Entry createEntry(final GroupChatUser user) {
+        return new Entry(user, user.getAllModes(), user.getNickname(), nextSequence++);
+    }
+
+    private static int compare(final Entry first, final Entry second) {
+        final Comparator<String> modeComparator = second.user.getModeComparator();
+        if (modeComparator != null) {
+            final int modes = modeComparator.compare(first.modes, second.modes);
+            if (modes != 0) {
+                return modes;
+            }
+        }
+
+        final int nicknames = String.CASE_INSENSITIVE_ORDER.compare(first.nickname, second.nickname);
+        if (nicknames != 0) {
+            return nicknames;
+        }
+
+        final int exact = first.nickname.compareTo(second.nickname);
+        return exact == 0 ? Long.compare(first.sequence, second.sequence) : exact;
+    }
+
+    private static int size(@Nullable final Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node insert(@Nullable final Node node, final Entry entry) {
+        return insert(node, entry, ThreadLocalRandom.current().nextInt());
+    }
+
+    private static Node insert(@Nullable final Node node, final Entry entry, final int priority) {
+        if (node == null) {
+            return new Node(entry, priority, null, null);
+        }
+
+        if (priority > node.priority) {
+            final Node[] parts = split(node, entry);
+            return new Node(entry, priority, parts[0], parts[1]);
+        }
+
+        if (compare(entry, node.entry) < 0) {
+            return new Node(node.entry, node.priority, insert(node.left, entry, priority),
+                    node.right);
+        } else {
+            return new Node(node.entry, node.priority, node.left,
+                    insert(node.right, entry, priority));
+        }
+    }
+
+    /**
+     * Splits a tree into the nodes that sort before the given entry, and those that sort after.
+     */
+    private static Node[] split(@Nullable final Node node, final Entry entry) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        if (compare(node.entry, entry) < 0) {
+            final Node[] parts = split(node.right, entry);
+            return new Node[]{new Node(node.entry, node.priority, node.left, parts[0]), parts[1]};
+        } else {
+            final Node[] parts = split(node.left, entry);
+            return new Node[]{parts[0], new Node(node.entry, node.priority, parts[1], node.right)};
+        }
+    }
+
+    @Nullable
+    private static Node delete(@Nullable final Node node, final Entry entry) {
+        if (node == null) {
+            return null;
+        }
+
+        if (node.entry == entry) {
+            return merge(node.left, node.right);
+        }
+
+        if (compare(entry, node.entry) < 0) {
+            return new Node(node.entry, node.priority, delete(node.left, entry), node.right);
+        } else {
+            return new Node(node.entry, node.priority, node.left, delete(node.right, entry));
+        }
+    }
+
+    /**
+     * Merges two trees, where every entry in the first sorts before every entry in the second.
+     */
+    @Nullable
+    private static Node merge(@Nullable final Node first, @Nullable final Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+
+        if (first.priority > second.priority) {
+            return new Node(first.entry, first.priority, first.left, merge(first.right, second));
+        } else {
+            return new Node(second.entry, second.priority, merge(first, second.left), second.right);
+        }
+    }
+
+    /**
+     * Gets the number of entries that sort before the given entry.
+     */
+    private static int rank(@Nullable final Node root, final Entry entry) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.entry == entry) {
+                return rank + size(node.left);
+            }
+
+            if (compare(entry, node.entry) < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * The sort key for a user, captured when the user was added or last updated.
+     */
+    private static class Entry {
+
+        private final GroupChatUser user;
+        private final String modes;
+        private final String nickname;
+        private final long sequence;
+
+        Entry(final GroupChatUser user, final String modes, final String nickname,
+                final long sequence) {
+            this.user = user;
+            this.modes = modes == null ? "" : modes;
+            this.nickname = nickname == null ? "" : nickname;
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * An immutable node in the treap.
+     */
+    private static class Node {
+
+        private final Entry entry;
+        private final int priority;
+        private final int size;
+        @Nullable private final Node left;
+        @Nullable private final Node right;
+
+        Node(final Entry entry, final int priority, @Nullable final Node left,
+                @Nullable final Node right) {
+            this.entry = entry;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+
+    }
+
+    /**
+     * A change made to the index.
+     */
+    static class Change {
+
+        private final int fromIndex;
+        private final int toIndex;
+        private final List<GroupChatUser> snapshot;
+
+        Change(final int fromIndex, final int toIndex, final List<GroupChatUser> snapshot) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Gets the position of the user before the change.
+         *
+         * @return The old position, or -1 if the user was added.
+         */
+        int getFromIndex() {
+            return fromIndex;
+        }
+
+        /**
+         * Gets the position of the user after the change.
+         *
+         * @return The new position, or -1 if the user was removed.
+         */
+        int getToIndex() {
+            return toIndex;
+        }
+
+        /**
+         * Gets a snapshot of the index immediately after the change.
+         *
+         * @return The index's contents after the change.
+         */
+        List<GroupChatUser> getSnapshot() {
+            return snapshot;
+        }
+
+    }
+
+    /**
+     * An immutable view of the index at a point in time.
+     */
+    private static class Snapshot extends AbstractList<GroupChatUser> {
+
+        @Nullable private final Node root;
+
+        Snapshot(@Nullable final Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public GroupChatUser get(final int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+
+            int remaining = index;
+            Node node = root;
+            while (true) {
+                final int leftSize = NickListIndex.size(node.left);
+                if (remaining < leftSize) {
+                    node = node.left;
+                } else if (remaining == leftSize) {
+                    return node.entry.user;
+                } else {
+                    remaining -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return NickListIndex.size(root);
+        }
+
+        @Override
+        public Iterator<GroupChatUser> iterator() {
+            return new SnapshotIterator(root);
+        }
+
+    }
+
+    /**
+     * Iterates over a snapshot in order, without copying it.
+     */
+    private static class SnapshotIterator implements Iterator<GroupChatUser> {
+
+        private final Deque<Node> stack = new ArrayDeque<>();
+
+        SnapshotIterator(@Nullable final Node root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public GroupChatUser next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+
+            final Node node = stack.pop();
+            pushLeft(node.right);
+            return node.entry.user;
+        }
+
+        private void pushLeft(@Nullable final Node start) {
+            Node node = start;
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package com.dmdirc;
 
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.parsers.QueryCommandParser;
 import com.dmdirc.events.QueryOpenedEvent;
@@ -38,6 +39,7 @@ public class QueryFactory {
 
     private final TabCompleterFactory tabCompleterFactory;
     private final CommandController commandController;
+    private final CommandHistory commandHistory;
     private final BackBufferFactory backBufferFactory;
     private final WindowManager windowManager;
 
@@ -45,10 +47,12 @@ public class QueryFactory {
     public QueryFactory(
             final TabCompleterFactory tabCompleterFactory,
             final CommandController commandController,
+            final CommandHistory commandHistory,
             final BackBufferFactory backBufferFactory,
             final WindowManager windowManager) {
         this.tabCompleterFactory = tabCompleterFactory;
         this.commandController = commandController;
+        this.commandHistory = commandHistory;
         this.backBufferFactory = backBufferFactory;
         this.windowManager = windowManager;
     }
@@ -58,7 +62,7 @@ public class QueryFactory {
         query.setInputModel(new DefaultInputModel(
                 query::sendLine,
                 new QueryCommandParser(
-                        connection.getWindowModel(),
+                        commandHistory,
                         commandController,
                         connection.getWindowModel().getEventBus(),
                         query),
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.ChannelQuitBatchEvent;
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import com.google.common.base.Strings;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Detects netsplits and mass quits in a channel, and coalesces the resulting quits into a single
+ * {@link ChannelQuitBatchEvent}.
+ *
+ * <p>Quits are batched if their message looks like a netsplit (two server names separated by a
+ * space), or if they have the same message as a quit received shortly before. A batch is
+ * delivered once the configured delay has elapsed since its first quit, or sooner if a quit with a
+ * different message arrives.
+ *
+ * <p>Batches are delivered while holding a delivery lock supplied by the owner. The owner should
+ * hold the same lock, and {@link #flush()} any pending batch, when applying other changes to the
+ * channel's membership, so a batch delivered by the executor cannot be applied after a later
+ * join or nick change.
+ */
+class QuitBatcher {
+
+    /**
+     * Pattern matching netsplit quit messages, e.g. "hub.example.net leaf.example.net" or
+     * "*.net *.split".
+     */
+    static final Pattern NETSPLIT_PATTERN =
+            Pattern.compile("[\\w*-]+(?:\\.[\\w*-]+)+ [\\w*-]+(?:\\.[\\w*-]+)+");
+
+    /** The channel quits are being batched for. */
+    private final GroupChat channel;
+    /** The config to read batching settings from. */
+    private final AggregateConfigProvider config;
+    /** The executor to use to deliver batches after the delay. */
+    private final ScheduledExecutorService executor;
+    /** The consumer to deliver completed batches to. */
+    private final Consumer<ChannelQuitBatchEvent> consumer;
+    /** Lock held while delivering batches. Always acquired before {@link #lock}. */
+    private final Object deliveryLock;
+    /** Lock guarding the batch state. Never held while calling the consumer. */
+    private final Object lock = new Object();
+    /** The users in the current batch. */
+    private final List<GroupChatUser> pending = new ArrayList<>();
+    /** The time of the first quit in the current batch. */
+    private LocalDateTime batchDate;
+    /** The quit message of the current batch. */
+    private String batchMessage;
+    /** Whether the current batch is a netsplit. */
+    private boolean batchNetsplit;
+    /** The scheduled delivery of the current batch. */
+    @Nullable private ScheduledFuture<?> batchFuture;
+    /** The message of the last quit seen. */
+    @Nullable private String lastMessage;
+    /** The time the last quit was seen, as given by {@link System#nanoTime()}. */
+    private long lastQuitTime;
+
+    QuitBatcher(final GroupChat channel, final AggregateConfigProvider config,
+            final ScheduledExecutorService executor, final Object deliveryLock,
+            final Consumer<ChannelQuitBatchEvent> consumer) {
+        this.channel = channel;
+        this.config = config;
+        this.executor = executor;
+        this.deliveryLock = deliveryLock;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Offers a quit to the batcher. If the quit ends the current batch, that batch is delivered
+     * before this method returns.
+     *
+     * @param date    The time the user quit.
+     * @param user    The user who quit.
+     * @param message The user's quit message.
+     * @return True if the quit has been added to a batch, false if it should be handled normally.
+     */
+    boolean offer(final LocalDateTime date, final GroupChatUser user,
+            @Nullable final String message) {
+        if (!config.getOptionBool("channel", "batchquits")) {
+            return false;
+        }
+
+        final String reason = Strings.nullToEmpty(message);
+        final boolean netsplit = NETSPLIT_PATTERN.matcher(reason).matches();
+        final long delay = config.getOptionInt("channel", "quitbatchdelay");
+        final long now = System.nanoTime();
+
+        synchronized (deliveryLock) {
+            ChannelQuitBatchEvent previous = null;
+            final boolean batched;
+            synchronized (lock) {
+                final boolean repeated = !reason.isEmpty() && reason.equals(lastMessage)
+                        && now - lastQuitTime <= TimeUnit.MILLISECONDS.toNanos(delay);
+                lastMessage = reason;
+                lastQuitTime = now;
+
+                if (!pending.isEmpty() && !reason.equals(batchMessage)) {
+                    previous = takeBatch();
+                }
+
+                if (!pending.isEmpty()) {
+                    batched = true;
+                } else {
+                    batched = (netsplit || repeated) && startBatch(date, reason, netsplit, delay);
+                }
+                if (batched) {
+                    pending.add(user);
+                }
+            }
+
+            if (previous != null) {
+                consumer.accept(previous);
+            }
+            return batched;
+        }
+    }
+
+    /**
+     * Starts a new batch and schedules its delivery. Must be called with {@link #lock} held.
+     *
+     * @param date     The time of the first quit in the batch.
+     * @param reason   The quit message of the batch.
+     * @param netsplit Whether the batch is a netsplit.
+     * @param delay    The delay before the batch is delivered, in milliseconds.
+     * @return True if the batch was started, false if the executor has been shut down.
+     */
+    private boolean startBatch(final LocalDateTime date, final String reason,
+            final boolean netsplit, final long delay) {
+        try {
+            batchFuture = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // The connection is closing; deliver quits individually.
+            return false;
+        }
+
+        batchDate = date;
+        batchMessage = reason;
+        batchNetsplit = netsplit;
+        return true;
+    }
+
+    /**
+     * Removes the pending batch and cancels its scheduled delivery. Must be called with
+     * {@link #lock} held, and only if there is a pending batch.
+     *
+     * @return An event describing the batch.
+     */
+    private ChannelQuitBatchEvent takeBatch() {
+        if (batchFuture != null) {
+            batchFuture.cancel(false);
+            batchFuture = null;
+        }
+
+        final ChannelQuitBatchEvent event = new ChannelQuitBatchEvent(batchDate, channel,
+                pending, batchMessage, batchNetsplit);
+        pending.clear();
+        return event;
+    }
+
+    /**
+     * Immediately delivers any pending batch.
+     */
+    void flush() {
+        synchronized (deliveryLock) {
+            final ChannelQuitBatchEvent event;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                event = takeBatch();
+            }
+
+            consumer.accept(event);
+        }
+    }
+
+}
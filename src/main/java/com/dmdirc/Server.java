@@ -35,6 +35,7 @@ import com.dmdirc.config.provider.ConfigChangeListener;
 import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.config.provider.ConfigProviderMigrator;
 import com.dmdirc.interfaces.config.IdentityFactory;
+import com.dmdirc.metrics.MetricsRegistry;
 import com.dmdirc.parser.common.DefaultStringConverter;
 import com.dmdirc.parser.common.IgnoreList;
 import com.dmdirc.parser.common.ParserError;
@@ -66,6 +67,7 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -91,6 +93,8 @@ public class Server implements Connection {
     private static final Logger LOG = LoggerFactory.getLogger(Server.class);
     /** The name of the general domain. */
     private static final String DOMAIN_GENERAL = "general";
+    /** Source of the numbers used to name each connection's metrics. */
+    private static final AtomicInteger METRICS_ID = new AtomicInteger();
 
     /** Manager of group chats. */
     private final GroupChatManagerImpl groupChatManager;
@@ -157,6 +161,10 @@ public class Server implements Connection {
     private final MessageEncoderFactory messageEncoderFactory;
     /** The manager to use for highlighting. */
     private final HighlightManager highlightManager;
+    /** The registry holding this connection's metrics. */
+    private final MetricsRegistry metricsRegistry;
+    /** The prefix of the names of this connection's metrics. */
+    private final String metricsPrefix = "connection." + METRICS_ID.incrementAndGet();
     /** Listener to use for config changes. */
     private final ConfigChangeListener configListener = (domain, key) -> updateTitle();
     private final WindowModel windowModel;
@@ -178,7 +186,8 @@ public class Server implements Connection {
             final ScheduledExecutorService executorService,
             @Nonnull final URI uri,
             @Nonnull final Profile profile,
-            final UserManager userManager) {
+            final UserManager userManager,
+            final MetricsRegistry metricsRegistry) {
         this.windowModel = windowModel;
         this.parserFactory = parserFactory;
         this.identityFactory = identityFactory;
@@ -188,11 +197,16 @@ public class Server implements Connection {
         this.userSettings = userSettings;
         this.messageEncoderFactory = messageEncoderFactory;
         this.userManager = userManager;
-        this.groupChatManager = groupChatManagerFactory.create(this);
+        this.metricsRegistry = metricsRegistry;
+        this.groupChatManager = groupChatManagerFactory.create(this, executorService);
         this.inviteManager = new InviteManagerImpl(this);
 
         awayMessage = Optional.empty();
-        eventHandler = new ServerEventHandler(this, groupChatManager, windowModel.getEventBus());
+        eventHandler = new ServerEventHandler(this, groupChatManager, windowModel.getEventBus(),
+                metricsRegistry, metricsPrefix);
+        metricsRegistry.registerGauge(metricsPrefix + ".channels",
+                () -> groupChatManager.getChannels().size());
+        metricsRegistry.registerGauge(metricsPrefix + ".queries", queries::size);
 
         this.address = uri;
         this.profile = profile;
@@ -688,6 +702,7 @@ public class Server implements Connection {
             groupChatManager.closeAll();
             closeQueries();
             inviteManager.removeInvites();
+            metricsRegistry.removeAll(metricsPrefix);
             windowModel.getEventBus().unsubscribe(this);
         }
     }
@@ -48,11 +48,15 @@ import com.dmdirc.events.StatusBarMessageEvent;
 import com.dmdirc.events.UserInfoResponseEvent;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.metrics.Counter;
+import com.dmdirc.metrics.MetricsRegistry;
 import com.dmdirc.parser.common.AwayState;
 import com.dmdirc.parser.events.AuthNoticeEvent;
 import com.dmdirc.parser.events.AwayStateEvent;
 import com.dmdirc.parser.events.ChannelSelfJoinEvent;
 import com.dmdirc.parser.events.ConnectErrorEvent;
+import com.dmdirc.parser.events.DataInEvent;
+import com.dmdirc.parser.events.DataOutEvent;
 import com.dmdirc.parser.events.ErrorInfoEvent;
 import com.dmdirc.parser.events.InviteEvent;
 import com.dmdirc.parser.events.MOTDEndEvent;
@@ -82,6 +86,7 @@ import com.dmdirc.parser.events.WallDesyncEvent;
 import com.dmdirc.parser.events.WallopEvent;
 import com.dmdirc.parser.events.WalluserEvent;
 import com.dmdirc.ui.StatusMessage;
+import com.google.common.base.Utf8;
 
 import java.util.List;
 import java.util.Optional;
@@ -110,18 +115,33 @@ public class ServerEventHandler extends EventHandler {
     private final GroupChatManagerImpl groupChatManager;
     /** Event bus to post events to. */
     private final EventBus eventBus;
+    /** Counter of lines received from the server. */
+    private final Counter linesIn;
+    /** Counter of lines sent to the server. */
+    private final Counter linesOut;
+    /** Counter of bytes received from the server. */
+    private final Counter bytesIn;
+    /** Counter of bytes sent to the server. */
+    private final Counter bytesOut;
 
     /**
      * Creates a new instance of ServerEventHandler.
      *
-     * @param owner    The Server instance that we're handling events for
-     * @param eventBus The event bus to post events to
+     * @param owner           The Server instance that we're handling events for
+     * @param eventBus        The event bus to post events to
+     * @param metricsRegistry The registry to record traffic metrics in
+     * @param metricsPrefix   The prefix to use for the names of the traffic metrics
      */
     public ServerEventHandler(final Server owner, final GroupChatManagerImpl groupChatManager,
-            final EventBus eventBus) {
+            final EventBus eventBus, final MetricsRegistry metricsRegistry,
+            final String metricsPrefix) {
         this.owner = owner;
         this.groupChatManager = groupChatManager;
         this.eventBus = eventBus;
+        this.linesIn = metricsRegistry.getCounter(metricsPrefix + ".lines.in");
+        this.linesOut = metricsRegistry.getCounter(metricsPrefix + ".lines.out");
+        this.bytesIn = metricsRegistry.getCounter(metricsPrefix + ".bytes.in");
+        this.bytesOut = metricsRegistry.getCounter(metricsPrefix + ".bytes.out");
     }
 
     @Nonnull
@@ -130,6 +150,18 @@ public class ServerEventHandler extends EventHandler {
         return owner;
     }
 
+    @Handler
+    public void onDataIn(final DataInEvent event) {
+        linesIn.increment();
+        bytesIn.add(getEncodedLength(event.getData()));
+    }
+
+    @Handler
+    public void onDataOut(final DataOutEvent event) {
+        linesOut.increment();
+        bytesOut.add(getEncodedLength(event.getData()));
+    }
+
     @Handler
     public void onChannelSelfJoin(final ChannelSelfJoinEvent event) {
         groupChatManager.addChannel(event.getChannel());
@@ -417,4 +449,20 @@ public class ServerEventHandler extends EventHandler {
         eventBus.publishAsync(new ServerErrorEvent(owner, event.getMessage()));
     }
 
+    /**
+     * Gets the number of bytes a line occupies when encoded as UTF-8, which is close enough to the
+     * number of bytes on the wire for metrics.
+     *
+     * @param line The line to measure
+     * @return The approximate encoded length of the line
+     */
+    private static int getEncodedLength(final String line) {
+        try {
+            return Utf8.encodedLength(line);
+        } catch (IllegalArgumentException ex) {
+            // Unpaired surrogates; fall back to counting characters.
+            return line.length();
+        }
+    }
+
 }
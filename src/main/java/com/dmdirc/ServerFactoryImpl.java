@@ -17,6 +17,7 @@
 
 package com.dmdirc;
 
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.parsers.ServerCommandParser;
 import com.dmdirc.config.UserConfig;
@@ -26,6 +27,7 @@ import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.config.provider.ConfigProviderMigrator;
 import com.dmdirc.interfaces.config.IdentityFactory;
+import com.dmdirc.metrics.MetricsRegistry;
 import com.dmdirc.ui.core.components.WindowComponent;
 import com.dmdirc.ui.input.TabCompleterFactory;
 import com.dmdirc.ui.messages.BackBufferFactory;
@@ -49,12 +51,14 @@ public class ServerFactoryImpl {
     private final IdentityFactory identityFactory;
     private final Provider<QueryFactory> queryFactory;
     private final Provider<CommandController> commandController;
+    private final CommandHistory commandHistory;
     private final EventBus eventBus;
     private final MessageEncoderFactory messageEncoderFactory;
     private final ConfigProvider userSettings;
     private final BackBufferFactory backBufferFactory;
     private final GroupChatManagerImplFactory groupChatManagerFactory;
     private final UserManager userManager;
+    private final MetricsRegistry metricsRegistry;
 
     @Inject
     public ServerFactoryImpl(
@@ -63,23 +67,27 @@ public class ServerFactoryImpl {
             final IdentityFactory identityFactory,
             final Provider<QueryFactory> queryFactory,
             final Provider<CommandController> commandController,
+            final CommandHistory commandHistory,
             final EventBus eventBus,
             final MessageEncoderFactory messageEncoderFactory,
             @UserConfig final ConfigProvider userSettings,
             final BackBufferFactory backBufferFactory,
             final GroupChatManagerImplFactory groupChatManagerFactory,
-            final UserManager userManager) {
+            final UserManager userManager,
+            final MetricsRegistry metricsRegistry) {
         this.parserFactory = parserFactory;
         this.tabCompleterFactory = tabCompleterFactory;
         this.identityFactory = identityFactory;
         this.queryFactory = queryFactory;
         this.commandController = commandController;
+        this.commandHistory = commandHistory;
         this.eventBus = eventBus;
         this.messageEncoderFactory = messageEncoderFactory;
         this.userSettings = userSettings;
         this.backBufferFactory = backBufferFactory;
         this.groupChatManagerFactory = groupChatManagerFactory;
         this.userManager = userManager;
+        this.metricsRegistry = metricsRegistry;
     }
 
     public Server getServer(
@@ -96,13 +104,13 @@ public class ServerFactoryImpl {
         final Server server = new Server(windowModel, configMigrator, parserFactory,
                 identityFactory, queryFactory.get(),
                 messageEncoderFactory, userSettings, groupChatManagerFactory, executorService,
-                uri, profile, userManager);
+                uri, profile, userManager, metricsRegistry);
         windowModel.setConnection(server);
         windowModel.initBackBuffer();
         windowModel.setInputModel(new DefaultInputModel(
                 server::sendLine,
                 new ServerCommandParser(
-                        server.getWindowModel().getConfigManager(),
+                        commandHistory,
                         commandController.get(),
                         eventBus,
                         server),
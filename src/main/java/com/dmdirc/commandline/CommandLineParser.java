@@ -30,10 +30,10 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiFunction;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -53,11 +53,16 @@ public class CommandLineParser {
     private static final Object[][] ARGUMENTS = {
         {'c', "connect", "Connect to the specified server", Boolean.TRUE},
         {'d', "directory", "Use the specified configuration directory", Boolean.TRUE},
-        {'e', "existing", "Try to use an existing instance of DMDirc (use with -c)", Boolean.FALSE},
+        {'e', "existing", "Try to use an existing instance of DMDirc (use with -c, -j or -R)",
+                Boolean.FALSE},
         {'h', "help", "Show command line options and exit", Boolean.FALSE},
+        {'H', "headless", "Run without a user interface", Boolean.FALSE},
+        {'j', "join", "Join a channel in an existing instance, as network/#channel", Boolean.TRUE},
         {'l', "launcher", "Specifies the version of DMDirc's launcher", Boolean.TRUE},
         {'p', "portable", "Enable portable mode", Boolean.FALSE},
         {'r', "disable-reporting", "Disable automatic error reporting", Boolean.FALSE},
+        {'R', "raw", "Send a raw line in an existing instance, as network/line", Boolean.TRUE},
+        {'t', "timeline", "Print how long each startup task took", Boolean.FALSE},
         {'v', "version", "Display client version and exit", Boolean.FALSE},
         {'k', "check", "Check if an existing instance of DMDirc exists.", Boolean.FALSE}
     };
@@ -73,12 +78,20 @@ public class CommandLineParser {
     private final SystemInfo systemInfo;
     /** Whether to disable error reporting or not. */
     private boolean disablereporting;
+    /** Whether to run without a user interface. */
+    private boolean headless;
+    /** Whether to print the startup timeline. */
+    private boolean timeline;
     /** The version string passed for the launcher. */
     private Optional<String> launcherVersion;
     /** The configuration directory. */
     private String configDirectory;
-    /** The RMI server we're using. */
-    private RemoteInterface server;
+    /** The commands to pass to an existing instance. */
+    private final List<RemoteCommand> remoteCommands = new ArrayList<>();
+    /** Whether to pass commands to an existing instance. */
+    private boolean useExisting;
+    /** Whether to check for an existing instance and exit. */
+    private boolean checkExisting;
 
     /**
      * Creates a new instance of CommandLineParser.
@@ -130,18 +143,19 @@ public class CommandLineParser {
             doUnknownArg("Missing parameter for argument: " + previousArg);
         }
 
-        if (server != null) {
-            try {
-                server.connect(addresses);
-                System.exit(0);
-            } catch (RemoteException ex) {
-                System.err.println("Unable to execute remote connection: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+        if (checkExisting) {
+            doExistingCheck();
+        }
+
+        if (useExisting) {
+            doExisting();
+        } else if (remoteCommands.size() > addresses.size()) {
+            System.err.println("Channels and raw lines can only be sent to an existing instance"
+                    + " (use with -e)");
         }
 
         if (serverManagerProvider != null) {
-            new RemoteServer(serverManagerProvider).bind();
+            new RemoteServer(serverManagerProvider).bind(getBaseDirectory());
         }
     }
 
@@ -227,14 +241,20 @@ public class CommandLineParser {
                 doDirectory(Paths.get(param));
                 break;
             case 'e':
-                doExisting();
+                useExisting = true;
                 break;
             case 'k':
-                doExistingCheck();
+                checkExisting = true;
                 break;
             case 'h':
                 doHelp();
                 break;
+            case 'H':
+                doHeadless();
+                break;
+            case 'j':
+                doRemoteCommand(param, RemoteCommand::join);
+                break;
             case 'l':
                 launcherVersion = Optional.ofNullable(param);
                 break;
@@ -244,6 +264,12 @@ public class CommandLineParser {
             case 'r':
                 disablereporting = true;
                 break;
+            case 'R':
+                doRemoteCommand(param, RemoteCommand::raw);
+                break;
+            case 't':
+                timeline = true;
+                break;
             case 'v':
                 doVersion();
                 break;
@@ -282,7 +308,9 @@ public class CommandLineParser {
     private void doConnect(final String address) {
         if (uriParser != null) {
             try {
-                addresses.add(uriParser.parseFromText(address));
+                final URI uri = uriParser.parseFromText(address);
+                addresses.add(uri);
+                remoteCommands.add(RemoteCommand.connect(uri));
             } catch (InvalidURIException ex) {
                 doUnknownArg("Invalid address specified: " + ex.getMessage());
             }
@@ -293,13 +321,41 @@ public class CommandLineParser {
     }
 
     /**
-     * Handles the --existing argument.
+     * Handles the --join and --raw arguments, which take a network or server and a value
+     * separated by a slash.
+     *
+     * @param param   The parameter the user supplied
+     * @param factory The function to create the command from the network and value
+     */
+    private void doRemoteCommand(final String param,
+            final BiFunction<String, String, RemoteCommand> factory) {
+        final int index = param.indexOf('/');
+        if (index < 1 || index == param.length() - 1) {
+            doUnknownArg("Invalid argument, expected network/value: " + param);
+        } else {
+            remoteCommands.add(factory.apply(param.substring(0, index),
+                    param.substring(index + 1)));
+        }
+    }
+
+    /**
+     * Handles the --existing argument, passing any commands to an existing instance and exiting
+     * if one is found.
      */
     private void doExisting() {
-        server = RemoteServer.getServer();
+        final RemoteInterface server = RemoteServer.getServer(getBaseDirectory());
 
         if (server == null) {
             System.err.println("Unable to connect to existing instance");
+            return;
+        }
+
+        try {
+            server.execute(remoteCommands);
+            System.exit(0);
+        } catch (IOException ex) {
+            System.err.println("Unable to execute remote commands: " + ex.getMessage());
+            ex.printStackTrace();
         }
     }
 
@@ -307,7 +363,7 @@ public class CommandLineParser {
      * Handles the --check argument.
      */
     private void doExistingCheck() {
-        if (RemoteServer.getServer() == null) {
+        if (RemoteServer.getServer(getBaseDirectory()) == null) {
             System.out.println("Existing instance not found.");
             System.exit(1);
         } else {
@@ -316,6 +372,15 @@ public class CommandLineParser {
         }
     }
 
+    /**
+     * Handles the --headless argument. AWT must be told it is headless before it is first used, so
+     * this is done as soon as the argument is seen.
+     */
+    private void doHeadless() {
+        headless = true;
+        System.setProperty("java.awt.headless", "true");
+    }
+
     /**
      * Sets the config directory to the one specified.
      *
@@ -337,6 +402,16 @@ public class CommandLineParser {
         }
     }
 
+    /**
+     * Gets the configuration directory, which is used to find other instances.
+     *
+     * @return The user-supplied config directory, or the default one if none was supplied.
+     */
+    private Path getBaseDirectory() {
+        return Paths.get(configDirectory == null
+                ? new BaseDirectoryLocator(systemInfo).getDefaultBaseDirectory() : configDirectory);
+    }
+
     /**
      * Prints out the client version and exits.
      */
@@ -408,6 +483,24 @@ public class CommandLineParser {
         return disablereporting;
     }
 
+    /**
+     * Indicates whether the user has requested the client run without a user interface.
+     *
+     * @return True if the client should run headless, false otherwise.
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Indicates whether the user has requested a timeline of startup tasks.
+     *
+     * @return True if the startup timeline should be printed, false otherwise.
+     */
+    public boolean isTimelineEnabled() {
+        return timeline;
+    }
+
     /**
      * Returns the provided launcher version, if any.
      *
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandline;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Sends commands to another instance of the client over a loopback socket.
+ */
+class RemoteClient implements RemoteInterface {
+
+    /** The time to wait for the other instance to accept or answer, in milliseconds. */
+    private static final int TIMEOUT = 5000;
+    /** The port the other instance is listening on. */
+    private final int port;
+    /** The token to authenticate with. */
+    private final String token;
+
+    /**
+     * Creates a new client for the instance listening on the given port.
+     *
+     * @param port  The loopback port the other instance is listening on.
+     * @param token The token read from the other instance's lock file.
+     */
+    RemoteClient(final int port, final String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    @Override
+    public void execute(final List<RemoteCommand> commands) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), TIMEOUT);
+            socket.setSoTimeout(TIMEOUT);
+            RemoteProtocol.writeRequest(socket.getOutputStream(), token, commands);
+
+            final int status = socket.getInputStream().read();
+            if (status != RemoteProtocol.STATUS_OK) {
+                throw new IOException("Existing instance rejected the commands (status "
+                        + status + ')');
+            }
+        }
+    }
+
+}
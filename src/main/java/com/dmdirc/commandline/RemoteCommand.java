@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandline;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A command sent from one instance of the client to another that is already running.
+ */
+public final class RemoteCommand {
+
+    /**
+     * The types of command that may be sent.
+     */
+    public enum Type {
+
+        /** Connects to a URI, or joins its channels if already connected. Takes the URI. */
+        CONNECT(1, 1),
+        /** Joins a channel. Takes the network or server address, and the channel. */
+        JOIN(2, 2),
+        /** Sends a raw line. Takes the network or server address, and the line. */
+        RAW(3, 2);
+
+        /** The code used to identify this type on the wire. */
+        private final byte code;
+        /** The number of arguments this type takes. */
+        private final int arguments;
+
+        Type(final int code, final int arguments) {
+            this.code = (byte) code;
+            this.arguments = arguments;
+        }
+
+        /**
+         * Gets the code used to identify this type on the wire.
+         *
+         * @return The code for this type.
+         */
+        byte getCode() {
+            return code;
+        }
+
+        /**
+         * Gets the number of arguments this type takes.
+         *
+         * @return The number of arguments commands of this type have.
+         */
+        int getArgumentCount() {
+            return arguments;
+        }
+
+        /**
+         * Finds the type with the given wire code.
+         *
+         * @param code The code to look up.
+         * @return The corresponding type, or empty if the code is unknown.
+         */
+        static Optional<Type> fromCode(final byte code) {
+            return Arrays.stream(values()).filter(t -> t.code == code).findFirst();
+        }
+
+    }
+
+    /** The type of command. */
+    private final Type type;
+    /** The command's arguments. */
+    private final List<String> arguments;
+
+    /**
+     * Creates a new command.
+     *
+     * @param type      The type of command.
+     * @param arguments The command's arguments.
+     * @throws IllegalArgumentException If the wrong number of arguments is given.
+     */
+    RemoteCommand(final Type type, final String... arguments) {
+        if (arguments.length != type.arguments) {
+            throw new IllegalArgumentException(type + " takes " + type.arguments + " arguments");
+        }
+        this.type = type;
+        this.arguments = Collections.unmodifiableList(Arrays.asList(arguments));
+    }
+
+    /**
+     * Creates a command to connect to the given address.
+     *
+     * @param address The address to connect to.
+     * @return A new connect command.
+     */
+    public static RemoteCommand connect(final URI address) {
+        return new RemoteCommand(Type.CONNECT, address.toString());
+    }
+
+    /**
+     * Creates a command to join a channel.
+     *
+     * @param target  The network name or server address of the connection to join on.
+     * @param channel The channel to join.
+     * @return A new join command.
+     */
+    public static RemoteCommand join(final String target, final String channel) {
+        return new RemoteCommand(Type.JOIN, target, channel);
+    }
+
+    /**
+     * Creates a command to send a raw line.
+     *
+     * @param target The network name or server address of the connection to send the line on.
+     * @param line   The line to send.
+     * @return A new raw command.
+     */
+    public static RemoteCommand raw(final String target, final String line) {
+        return new RemoteCommand(Type.RAW, target, line);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final RemoteCommand other = (RemoteCommand) obj;
+        return type == other.type && arguments.equals(other.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + arguments;
+    }
+
+}
@@ -17,24 +17,21 @@
 
 package com.dmdirc.commandline;
 
-import java.net.URI;
-import java.rmi.Remote;
-import java.rmi.RemoteException;
+import java.io.IOException;
 import java.util.List;
 
 /**
- * Defines the interface that is available using RMI.
+ * Defines the interface that other instances of the client use to control this one.
  */
-public interface RemoteInterface extends Remote {
+public interface RemoteInterface {
 
     /**
-     * Connects to the specified list of addresses.
+     * Executes the specified commands, in order.
      *
-     * @param addresses The addresses to connect to.
+     * @param commands The commands to execute.
      *
-     * @throws java.rmi.RemoteException on problems communicating
-     * @since 0.6.3
+     * @throws IOException on problems communicating
      */
-    void connect(List<URI> addresses) throws RemoteException;
+    void execute(List<RemoteCommand> commands) throws IOException;
 
 }
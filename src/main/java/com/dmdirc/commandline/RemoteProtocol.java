@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The framed protocol spoken between instances of the client over a loopback socket.
+ *
+ * <p>The sending instance writes a single request frame and waits for a one-byte status reply.
+ * A frame is a four-byte length followed by:
+ * <ul>
+ * <li>the protocol version, as a short;</li>
+ * <li>the token the running instance wrote to its lock file, in modified UTF-8;</li>
+ * <li>the number of commands, as a short; and</li>
+ * <li>for each command, its type code as a byte, then each of its arguments in modified UTF-8.</li>
+ * </ul>
+ */
+final class RemoteProtocol {
+
+    /** The version of the protocol. */
+    static final short VERSION = 1;
+    /** The largest frame that will be accepted. */
+    static final int MAX_FRAME = 64 * 1024;
+    /** Status sent when all commands have been executed. */
+    static final byte STATUS_OK = 0;
+    /** Status sent when the version or token didn't match. */
+    static final byte STATUS_DENIED = 1;
+    /** Status sent when the frame couldn't be understood. */
+    static final byte STATUS_MALFORMED = 2;
+    /** Status sent when a command failed to execute. */
+    static final byte STATUS_FAILED = 3;
+
+    private RemoteProtocol() {
+        // Shouldn't be instantiated
+    }
+
+    /**
+     * Writes a request frame.
+     *
+     * @param out      The stream to write to.
+     * @param token    The token to authenticate with.
+     * @param commands The commands to send.
+     * @throws IOException If the frame could not be written, or is too large.
+     */
+    static void writeRequest(final OutputStream out, final String token,
+            final List<RemoteCommand> commands) throws IOException {
+        final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(frame);
+        data.writeShort(VERSION);
+        data.writeUTF(token);
+        data.writeShort(commands.size());
+        for (RemoteCommand command : commands) {
+            data.writeByte(command.getType().getCode());
+            for (String argument : command.getArguments()) {
+                data.writeUTF(argument);
+            }
+        }
+
+        if (frame.size() > MAX_FRAME) {
+            throw new IOException("Too many commands to send to the existing instance");
+        }
+
+        final DataOutputStream stream = new DataOutputStream(out);
+        stream.writeInt(frame.size());
+        frame.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Reads a request frame.
+     *
+     * @param in    The stream to read from.
+     * @param token The token the request must include.
+     * @return The commands in the request.
+     * @throws IOException        If the frame could not be read or is malformed.
+     * @throws SecurityException If the request had the wrong version or token.
+     */
+    static List<RemoteCommand> readRequest(final InputStream in, final String token)
+            throws IOException {
+        final DataInputStream stream = new DataInputStream(in);
+        final int length = stream.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        final byte[] frame = new byte[length];
+        stream.readFully(frame);
+
+        final DataInputStream data = new DataInputStream(new ByteArrayInputStream(frame));
+        if (data.readShort() != VERSION || !token.equals(data.readUTF())) {
+            throw new SecurityException("Request has an unknown version or token");
+        }
+
+        final int count = data.readUnsignedShort();
+        final List<RemoteCommand> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte code = data.readByte();
+            final RemoteCommand.Type type = RemoteCommand.Type.fromCode(code)
+                    .orElseThrow(() -> new IOException("Unknown command type: " + code));
+            final String[] arguments = new String[type.getArgumentCount()];
+            for (int j = 0; j < arguments.length; j++) {
+                arguments[j] = data.readUTF();
+            }
+            commands.add(new RemoteCommand(type, arguments));
+        }
+        return commands;
+    }
+
+}
@@ -17,29 +17,93 @@
 
 package com.dmdirc.commandline;
 
+import com.dmdirc.interfaces.Connection;
 import com.dmdirc.interfaces.ConnectionManager;
+import com.dmdirc.parser.common.ChannelJoinRequest;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.URI;
-import java.rmi.NotBoundException;
-import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
 import javax.inject.Provider;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.APP_ERROR;
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
 /**
- * An RMI server that allows other clients to interact with DMDirc.
+ * A server that allows other instances of the client to pass commands to this one.
+ *
+ * <p>The running instance holds a lock on a file in its configuration directory and writes the
+ * loopback port it is listening on and a random token into it. Other instances check the lock
+ * to find out if an instance is running, and authenticate with the token. When no instance is
+ * running, finding that out costs a single file lookup. The lock file is only readable by its
+ * owner, so other users cannot learn the token.
  */
 public class RemoteServer implements RemoteInterface {
 
-    /** The minimum port to use for RMI binding. */
-    private static final int MINPORT = 3634;
-    /** The maximum port to use for RMI binding. */
-    private static final int MAXPORT = MINPORT + 5;
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteServer.class);
+    /** The name of the lock file in the configuration directory. */
+    static final String LOCK_FILE = "instance.lock";
+    /**
+     * The position of the locked byte. It is well beyond the file's contents, so that the contents
+     * may still be read on platforms where locks are mandatory.
+     */
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+    /** The time to wait for a connected instance to send its request, in milliseconds. */
+    private static final int TIMEOUT = 5000;
+    /** The maximum number of requests from other instances to handle at once. */
+    private static final int MAX_CLIENTS = 4;
+    /** The options used to open the lock file. */
+    private static final Set<OpenOption> LOCK_OPTIONS = ImmutableSet.of(
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    /** The permissions given to the lock file on POSIX file systems. */
+    private static final Set<PosixFilePermission> OWNER_ONLY =
+            PosixFilePermissions.fromString("rw-------");
     /** Provider for the server manager to use to connect. */
     private final Provider<ConnectionManager> serverManager;
+    /** Lock guarding {@link #lockChannel} and {@link #serverSocket}. */
+    private final Object lockChannelLock = new Object();
+    /** The lock file, which is locked while this server is bound. */
+    @Nullable private FileChannel lockChannel;
+    /** The socket accepting connections while this server is bound. */
+    @Nullable private ServerSocket serverSocket;
 
     /**
      * Crate a new RemoteServer.
@@ -51,57 +115,298 @@ public class RemoteServer implements RemoteInterface {
     }
 
     @Override
-    public void connect(final List<URI> addresses) throws RemoteException {
-        for (URI address : addresses) {
-            serverManager.get().connectToAddress(address);
+    public void execute(final List<RemoteCommand> commands) {
+        for (RemoteCommand command : commands) {
+            final List<String> arguments = command.getArguments();
+            switch (command.getType()) {
+                case CONNECT:
+                    try {
+                        serverManager.get().connectToAddress(new URI(arguments.get(0)));
+                    } catch (URISyntaxException ex) {
+                        LOG.warn(USER_ERROR, "Invalid address from another instance: {}",
+                                arguments.get(0), ex);
+                    }
+                    break;
+                case JOIN:
+                    getConnections(arguments.get(0)).forEach(c -> c.getGroupChatManager()
+                            .join(new ChannelJoinRequest(arguments.get(1))));
+                    break;
+                case RAW:
+                    getConnections(arguments.get(0)).forEach(c -> c.sendLine(arguments.get(1)));
+                    break;
+            }
         }
     }
 
     /**
-     * Binds to the RMI registry so that other clients may find this remote server.
+     * Finds the connections whose network name or server address matches the given target.
+     *
+     * @param target The network name or server address to look for.
+     * @return The matching connections.
      */
-    public void bind() {
-        final RemoteInterface stub;
+    private Stream<Connection> getConnections(final String target) {
+        return serverManager.get().getConnections().stream()
+                .filter(c -> target.equalsIgnoreCase(c.getNetwork())
+                        || target.equalsIgnoreCase(c.getAddress()));
+    }
 
+    /**
+     * Starts listening for other instances, and advertises this one in the given directory's lock
+     * file. If another instance already holds the lock, this does nothing. Only the lock is taken
+     * on the calling thread; the socket is opened in the background.
+     *
+     * @param directory The configuration directory to advertise this instance in.
+     */
+    public void bind(final Path directory) {
+        final FileChannel channel;
         try {
-            stub = (RemoteInterface) UnicastRemoteObject.exportObject(this, 0);
-        } catch (RemoteException ex) {
-            System.err.println("Unable to export the remote interface");
-            ex.printStackTrace();
+            Files.createDirectories(directory);
+            final Path file = directory.resolve(LOCK_FILE);
+            channel = isPosix(file)
+                    ? FileChannel.open(file, LOCK_OPTIONS,
+                            PosixFilePermissions.asFileAttribute(OWNER_ONLY))
+                    : FileChannel.open(file, LOCK_OPTIONS);
+            synchronized (lockChannelLock) {
+                lockChannel = channel;
+            }
+            if (channel.tryLock(LOCK_POSITION, 1, false) == null) {
+                LOG.info("Another instance is already using {}", directory);
+                unbind();
+                return;
+            }
+            // Clear any details left by an old instance until the socket is ready.
+            channel.truncate(0);
+            // The file may have been created by an old instance with wider permissions.
+            restrictToOwner(file);
+        } catch (IOException | OverlappingFileLockException ex) {
+            LOG.info("Unable to lock {}", directory, ex);
+            unbind();
             return;
         }
 
-        for (int port = MINPORT; port < MAXPORT; port++) {
+        final Thread thread = new Thread(() -> listen(channel), "Remote server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Determines whether the file system containing the given path supports POSIX permissions.
+     *
+     * @param path The path to check.
+     * @return True if POSIX permissions can be used, false otherwise.
+     */
+    private static boolean isPosix(final Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * Makes the given file readable and writable only by its owner. On file systems that support
+     * neither POSIX permissions nor ACLs, the file is left as it is.
+     *
+     * @param file The file to restrict access to.
+     * @throws IOException If the file's permissions could not be changed.
+     */
+    private static void restrictToOwner(final Path file) throws IOException {
+        final PosixFileAttributeView posix = Files.getFileAttributeView(file,
+                PosixFileAttributeView.class);
+        if (posix != null) {
+            posix.setPermissions(OWNER_ONLY);
+            return;
+        }
+
+        final AclFileAttributeView acl = Files.getFileAttributeView(file,
+                AclFileAttributeView.class);
+        if (acl != null) {
+            acl.setAcl(Collections.singletonList(AclEntry.newBuilder()
+                    .setType(AclEntryType.ALLOW)
+                    .setPrincipal(acl.getOwner())
+                    .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                    .build()));
+        }
+    }
+
+    /**
+     * Opens a loopback socket, advertises it in the lock file, and accepts connections from other
+     * instances until the socket is closed.
+     *
+     * @param channel The locked lock file.
+     */
+    private void listen(final FileChannel channel) {
+        final ServerSocket socket;
+        final String token;
+        try {
+            socket = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+            synchronized (lockChannelLock) {
+                if (lockChannel != channel) {
+                    // Unbound while we were starting up.
+                    socket.close();
+                    return;
+                }
+                serverSocket = socket;
+            }
+
+            final byte[] secret = new byte[16];
+            new SecureRandom().nextBytes(secret);
+            token = BaseEncoding.base16().lowerCase().encode(secret);
+
+            channel.write(ByteBuffer.wrap((socket.getLocalPort() + " " + token + '\n')
+                    .getBytes(StandardCharsets.UTF_8)), 0);
+            channel.force(false);
+        } catch (IOException ex) {
+            LOG.info("Unable to listen for other instances", ex);
+            unbind();
+            return;
+        }
+
+        acceptConnections(socket, token);
+    }
+
+    /**
+     * Stops listening for other instances and releases the lock file.
+     */
+    public void unbind() {
+        synchronized (lockChannelLock) {
             try {
-                final Registry registry = LocateRegistry.createRegistry(port);
-                registry.rebind("DMDirc", stub);
-                return;
-            } catch (RemoteException ex) {
+                if (serverSocket != null) {
+                    serverSocket.close();
+                }
+            } catch (IOException ex) {
+                LOG.info("Unable to stop listening for other instances", ex);
             }
+            try {
+                if (lockChannel != null) {
+                    // Closing the channel releases the lock.
+                    lockChannel.close();
+                }
+            } catch (IOException ex) {
+                LOG.info("Unable to release the lock file", ex);
+            }
+            serverSocket = null;
+            lockChannel = null;
         }
     }
 
     /**
-     * Retrieves a reference to an existing RemoteServer, if there is one. Note that this must be
-     * called before bind(), unless you want a reference to our own client for some reason.
+     * Accepts connections from other instances until the socket is closed. Each connection is
+     * handled on a worker thread, so a slow client does not hold up the others.
      *
-     * @return The RemoteServer instance, or null if none was available
+     * @param socket The socket to accept connections on.
+     * @param token  The token other instances must send.
      */
-    public static RemoteInterface getServer() {
-        for (int port = MINPORT; port < MAXPORT; port++) {
-            try {
-                final Registry registry = LocateRegistry.getRegistry("localhost", port);
-                final RemoteInterface iface = (RemoteInterface) registry.lookup("DMDirc");
+    private void acceptConnections(final ServerSocket socket, final String token) {
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(0, MAX_CLIENTS, 30,
+                TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactoryBuilder()
+                        .setNameFormat("Remote client-%d").setDaemon(true).build());
+        try {
+            while (!socket.isClosed()) {
+                final Socket client;
+                try {
+                    client = socket.accept();
+                } catch (IOException ex) {
+                    if (!socket.isClosed()) {
+                        LOG.info("Error accepting a connection from another instance", ex);
+                    }
+                    continue;
+                }
 
-                if (iface != null) {
-                    return iface;
+                try {
+                    workers.execute(() -> handleClient(client, token));
+                } catch (RejectedExecutionException ex) {
+                    LOG.info("Too many connections from other instances, dropping one");
+                    closeQuietly(client);
                 }
-            } catch (RemoteException | NotBoundException ex) {
             }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Handles a single connection from another instance, then closes it.
+     *
+     * @param client The socket connected to the other instance.
+     * @param token  The token the other instance must send.
+     */
+    private void handleClient(final Socket client, final String token) {
+        try (Socket socket = client) {
+            socket.setSoTimeout(TIMEOUT);
+            socket.getOutputStream().write(handleRequest(socket, token));
+        } catch (IOException ex) {
+            LOG.info("Error communicating with another instance", ex);
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOG.debug("Unable to close connection from another instance", ex);
         }
+    }
+
+    /**
+     * Reads and executes a single request from another instance.
+     *
+     * @param client The socket connected to the other instance.
+     * @param token  The token the other instance must send.
+     * @return The status to reply with.
+     */
+    private byte handleRequest(final Socket client, final String token) {
+        final List<RemoteCommand> commands;
+        try {
+            commands = RemoteProtocol.readRequest(client.getInputStream(), token);
+        } catch (SecurityException ex) {
+            LOG.info("Rejected request from another instance: {}", ex.getMessage());
+            return RemoteProtocol.STATUS_DENIED;
+        } catch (IOException ex) {
+            LOG.info("Malformed request from another instance", ex);
+            return RemoteProtocol.STATUS_MALFORMED;
+        }
+
+        try {
+            execute(commands);
+            return RemoteProtocol.STATUS_OK;
+        } catch (RuntimeException ex) {
+            LOG.warn(APP_ERROR, "Unable to execute commands from another instance", ex);
+            return RemoteProtocol.STATUS_FAILED;
+        }
+    }
 
-        // No RMI server found
-        return null;
+    /**
+     * Retrieves a reference to an instance already running with the given configuration directory,
+     * if there is one. Note that this must be called before bind(), unless you want a reference to
+     * our own client for some reason.
+     *
+     * @param directory The configuration directory to look in.
+     * @return The running instance, or null if none was available
+     */
+    @Nullable
+    public static RemoteInterface getServer(final Path directory) {
+        final Path file = directory.resolve(LOCK_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            try {
+                final FileLock lock = channel.tryLock(LOCK_POSITION, 1, false);
+                if (lock != null) {
+                    // Nothing holds the lock, so the file was left behind by an old instance.
+                    lock.release();
+                    return null;
+                }
+            } catch (OverlappingFileLockException ex) {
+                // The lock is held elsewhere in this JVM.
+            }
+
+            final String[] contents = new String(Files.readAllBytes(file),
+                    StandardCharsets.UTF_8).trim().split(" ");
+            return contents.length == 2
+                    ? new RemoteClient(Integer.parseInt(contents[0]), contents[1]) : null;
+        } catch (IOException | NumberFormatException ex) {
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,519 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandparser;
+
+import com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.WindowModel;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * A history of the commands entered in all windows, shared by every command parser.
+ *
+ * <p>Commands are recorded against a scope, normally identifying the window they were entered in.
+ * Each scope is indexed by recency, so repeating a command moves it to the end rather than storing
+ * it twice, and alphabetically, so commands starting with a prefix can be found without a scan.
+ * Only the most recent {@code general.commandhistory} commands are kept for each scope.
+ *
+ * <p>If {@code general.persistcommandhistory} is enabled, the history is persisted to an
+ * append-only file in the base directory. New entries are written in the background, and commands
+ * that may carry credentials (such as {@code /pass}, {@code /oper} or messages to services) are
+ * only ever kept in memory. Once the file holds more than twice as many records as there are live
+ * entries, it is rewritten with just the live entries.
+ */
+@Singleton
+public class CommandHistory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandHistory.class);
+    /** The name of the file the history is stored in. */
+    private static final String FILENAME = "commandhistory";
+    /** The number of records the file may hold before it is considered for compaction. */
+    private static final int MIN_COMPACTION_RECORDS = 64;
+    /** The number of compiled patterns to retain for {@link #getLastUsed}. */
+    private static final int MAX_CACHED_PATTERNS = 32;
+    /** Characters that give a pattern a meaning other than its literal text. */
+    private static final CharMatcher REGEX_CHARS = CharMatcher.anyOf("\\[](){}.*+?^$|");
+    /** Commands whose arguments may contain credentials. */
+    private static final Set<String> SENSITIVE_COMMANDS = ImmutableSet.of("pass", "oper",
+            "identify", "ghost", "auth", "login", "ns", "nickserv", "cs", "chanserv");
+    /** Commands that send their arguments to the server as a raw line. */
+    private static final Set<String> RAW_COMMANDS = ImmutableSet.of("raw", "quote");
+    /** Commands that send a message to the target named by their first argument. */
+    private static final Set<String> MESSAGE_COMMANDS = ImmutableSet.of("msg", "query", "notice",
+            "privmsg");
+    /** The maximum number of entries kept in each scope. */
+    private final int limit;
+    /** The file the history is persisted to, or null to keep it in memory only. */
+    @Nullable private final Path file;
+    /** The known scopes, keyed by name. */
+    private final Map<String, Scope> scopes = new HashMap<>();
+    /** Patterns recently passed to {@link #getLastUsed}, compiled case-insensitively. */
+    private final Cache<String, Pattern> patterns = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PATTERNS).build();
+    /** The executor that new entries are written to the file on. */
+    private final Executor writer;
+    /** Entries that are waiting to be written to the file. */
+    private final List<Entry> unwritten = new ArrayList<>();
+    /** Lock guarding the scopes and {@link #unwritten}. */
+    private final Object lock = new Object();
+    /** Lock guarding the file, taken before {@link #lock} if both are needed. */
+    private final Object fileLock = new Object();
+    /** The number of live entries in all scopes. */
+    private int size;
+    /** The number of records in the file. */
+    private int records;
+    /** The sequence number to give the next entry, used to order entries with the same time. */
+    private long sequence;
+
+    @Inject
+    public CommandHistory(@GlobalConfig final AggregateConfigProvider config,
+            @Directory(DirectoryType.BASE) final Path baseDirectory) {
+        this(config.getOptionInt("general", "commandhistory"),
+                config.getOptionBool("general", "persistcommandhistory")
+                        ? baseDirectory.resolve(FILENAME) : null,
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("command-history-writer-%d").setDaemon(true).build()));
+    }
+
+    /**
+     * Creates a new command history that writes new entries to its file on the calling thread.
+     *
+     * @param limit The maximum number of entries to keep in each scope.
+     * @param file  The file to persist the history to, or null to keep it in memory only.
+     */
+    public CommandHistory(final int limit, @Nullable final Path file) {
+        this(limit, file, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Creates a new command history.
+     *
+     * @param limit  The maximum number of entries to keep in each scope.
+     * @param file   The file to persist the history to, or null to keep it in memory only.
+     * @param writer The executor to write new entries to the file on.
+     */
+    public CommandHistory(final int limit, @Nullable final Path file, final Executor writer) {
+        this.limit = Math.max(limit, 1);
+        this.file = file;
+        this.writer = writer;
+        if (file != null) {
+            synchronized (fileLock) {
+                synchronized (lock) {
+                    load(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the scope that commands entered in the given window are recorded against.
+     *
+     * @param window The window to get a scope for.
+     * @return The window's scope, which remains the same when the window is reopened.
+     */
+    public static String getScope(final WindowModel window) {
+        final String network = window.getConnection().map(Connection::getNetwork)
+                .filter(n -> !n.isEmpty()).orElse("global");
+        return Ascii.toLowerCase(network + '/' + window.getName());
+    }
+
+    /**
+     * Records that a command has just been used.
+     *
+     * @param scope The scope to record the command against.
+     * @param line  The command name and arguments, without command or silence chars.
+     */
+    public void add(final String scope, final String line) {
+        final long time = System.currentTimeMillis();
+        final boolean schedule;
+        synchronized (lock) {
+            final Entry entry = put(scope, line, time);
+            if (file != null && !isSensitive(line)) {
+                unwritten.add(entry);
+                schedule = unwritten.size() == 1;
+            } else {
+                schedule = false;
+            }
+        }
+        if (schedule) {
+            writer.execute(this::write);
+        }
+    }
+
+    /**
+     * Determines whether the given command may contain credentials, and so must not be written
+     * to disk.
+     *
+     * @param line The command name and arguments, without command or silence chars.
+     * @return True if the command should only be kept in memory, false otherwise.
+     */
+    static boolean isSensitive(final String line) {
+        final String[] parts = line.trim().split("\\s+", 2);
+        final String command = Ascii.toLowerCase(parts[0]);
+        if (SENSITIVE_COMMANDS.contains(command)) {
+            return true;
+        }
+        if (parts.length < 2) {
+            return false;
+        }
+        if (RAW_COMMANDS.contains(command)) {
+            return isSensitive(parts[1]);
+        }
+        if (MESSAGE_COMMANDS.contains(command)) {
+            final String target = Ascii.toLowerCase(parts[1].split("[\\s,]", 2)[0]);
+            final String nickname = target.split("@", 2)[0];
+            return nickname.endsWith("serv") || ("q".equals(nickname) && target.contains("@"));
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the most recent time a command matching the given pattern was used.
+     *
+     * @param scope   The scope to search, or null to search all scopes.
+     * @param pattern A regular expression that must match the whole command, ignoring case.
+     * @return The timestamp that the command was last used, or 0 if it wasn't.
+     */
+    public long getLastUsed(@Nullable final String scope, final String pattern) {
+        long result = 0;
+        synchronized (lock) {
+            if (REGEX_CHARS.matchesNoneOf(pattern)) {
+                final String key = Ascii.toLowerCase(pattern);
+                for (Scope target : getScopes(scope)) {
+                    final Entry entry = target.folded.get(key);
+                    if (entry != null) {
+                        result = Math.max(result, entry.time);
+                    }
+                }
+            } else {
+                final Pattern compiled = getPattern(pattern);
+                for (Scope target : getScopes(scope)) {
+                    for (Entry entry : target.recent.values()) {
+                        if (compiled.matcher(entry.line).matches()) {
+                            result = Math.max(result, entry.time);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the commands that start with the given prefix.
+     *
+     * @param scope  The scope to search, or null to search all scopes.
+     * @param prefix The prefix to search for (case sensitive).
+     * @return The matching commands, most recently used first, without duplicates.
+     */
+    public List<String> search(@Nullable final String scope, final String prefix) {
+        final Map<String, Entry> matches = new HashMap<>();
+        synchronized (lock) {
+            for (Scope target : getScopes(scope)) {
+                for (String line : target.sorted.tailSet(prefix, true)) {
+                    if (!line.startsWith(prefix)) {
+                        break;
+                    }
+                    final Entry entry = target.recent.get(line);
+                    matches.merge(line, entry, (a, b) -> a.sequence >= b.sequence ? a : b);
+                }
+            }
+        }
+        return getLines(matches.values());
+    }
+
+    /**
+     * Retrieves all commands recorded against a scope.
+     *
+     * @param scope The scope to retrieve commands for.
+     * @return The scope's commands, least recently used first.
+     */
+    public List<String> getEntries(final String scope) {
+        synchronized (lock) {
+            final Scope target = scopes.get(scope);
+            if (target == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(target.recent.keySet());
+        }
+    }
+
+    private Collection<Scope> getScopes(@Nullable final String scope) {
+        if (scope == null) {
+            return scopes.values();
+        }
+        final Scope target = scopes.get(scope);
+        return target == null ? Collections.emptyList() : Collections.singletonList(target);
+    }
+
+    private Pattern getPattern(final String pattern) {
+        Pattern compiled = patterns.getIfPresent(pattern);
+        if (compiled == null) {
+            compiled = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+            patterns.put(pattern, compiled);
+        }
+        return compiled;
+    }
+
+    private Entry put(final String scope, final String line, final long time) {
+        final Scope target = scopes.computeIfAbsent(scope, k -> new Scope());
+        final Entry entry = new Entry(scope, line, time, sequence++);
+        if (target.recent.remove(line) == null) {
+            size++;
+        }
+        target.recent.put(line, entry);
+        target.sorted.add(line);
+        target.folded.put(Ascii.toLowerCase(line), entry);
+
+        if (target.recent.size() > limit) {
+            final Iterator<Entry> iterator = target.recent.values().iterator();
+            final Entry eldest = iterator.next();
+            iterator.remove();
+            target.sorted.remove(eldest.line);
+            // Any other entry differing only in case is newer, so would have replaced this one.
+            target.folded.remove(Ascii.toLowerCase(eldest.line), eldest);
+            size--;
+        }
+        return entry;
+    }
+
+    private void load(final Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try {
+            for (String record : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                records++;
+                final String[] parts = record.split("\t", 3);
+                if (parts.length < 3) {
+                    LOG.debug("Ignoring malformed command history record: {}", record);
+                    continue;
+                }
+                try {
+                    put(unescape(parts[1]), unescape(parts[2]), Long.parseLong(parts[0]));
+                } catch (NumberFormatException ex) {
+                    LOG.debug("Ignoring malformed command history record: {}", record);
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to read command history: {}", ex.getMessage(), ex);
+        }
+
+        compactIfNeeded(path);
+    }
+
+    /**
+     * Appends all entries that are waiting to be written to the file, and compacts it if needed.
+     */
+    private void write() {
+        final List<Entry> entries;
+        synchronized (lock) {
+            entries = new ArrayList<>(unwritten);
+            unwritten.clear();
+        }
+
+        synchronized (fileLock) {
+            try (BufferedWriter bufferedWriter = Files.newBufferedWriter(file,
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Entry entry : entries) {
+                    writeRecord(bufferedWriter, entry.scope, entry.line, entry.time);
+                    records++;
+                }
+            } catch (IOException ex) {
+                LOG.warn(USER_ERROR, "Unable to write command history: {}", ex.getMessage(), ex);
+            }
+
+            compactIfNeeded(file);
+        }
+    }
+
+    /**
+     * Rewrites the file with just the live entries if it has grown too large. Must be called
+     * while holding {@link #fileLock}.
+     *
+     * @param path The file to compact.
+     */
+    private void compactIfNeeded(final Path path) {
+        final List<Entry> entries = new ArrayList<>();
+        synchronized (lock) {
+            if (records <= MIN_COMPACTION_RECORDS || records <= size * 2) {
+                return;
+            }
+            scopes.values().forEach(s -> s.recent.values().stream()
+                    .filter(e -> !isSensitive(e.line)).forEach(entries::add));
+        }
+        entries.sort(Comparator.comparingLong(e -> e.sequence));
+
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Entry entry : entries) {
+                    writeRecord(writer, entry.scope, entry.line, entry.time);
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            records = entries.size();
+        } catch (IOException ex) {
+            LOG.warn(USER_ERROR, "Unable to compact command history: {}", ex.getMessage(), ex);
+        }
+    }
+
+    private static void writeRecord(final BufferedWriter writer, final String scope,
+            final String line, final long time) throws IOException {
+        writer.write(Long.toString(time));
+        writer.write('\t');
+        writer.write(escape(scope));
+        writer.write('\t');
+        writer.write(escape(line));
+        writer.write('\n');
+    }
+
+    private static List<String> getLines(final Collection<Entry> entries) {
+        final List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong((Entry e) -> e.sequence).reversed());
+        final List<String> lines = new ArrayList<>(sorted.size());
+        sorted.forEach(e -> lines.add(e.line));
+        return lines;
+    }
+
+    private static String escape(final String text) {
+        final StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String unescape(final String text) {
+        final StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                final char next = text.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The commands recorded against a single scope.
+     */
+    private static class Scope {
+
+        /** Entries keyed by their line, least recently used first. */
+        private final Map<String, Entry> recent = new LinkedHashMap<>();
+        /** The lines of all entries, in alphabetical order. */
+        private final NavigableSet<String> sorted = new TreeSet<>();
+        /** The most recent entry for each line, keyed by the line in lower case. */
+        private final Map<String, Entry> folded = new HashMap<>();
+
+    }
+
+    /**
+     * A single command in the history.
+     */
+    private static class Entry {
+
+        /** The scope the command was used in. */
+        private final String scope;
+        /** The command name and arguments. */
+        private final String line;
+        /** The time the command was last used. */
+        private final long time;
+        /** The order the entry was added in, relative to all others. */
+        private final long sequence;
+
+        Entry(final String scope, final String line, final long time, final long sequence) {
+            this.scope = scope;
+            this.line = line;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+    }
+
+}
@@ -17,62 +17,46 @@
 
 package com.dmdirc.commandparser;
 
-import com.dmdirc.GlobalWindow;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.parsers.CommandParser;
 import com.dmdirc.config.binding.ConfigBinding;
 import com.dmdirc.interfaces.CommandController;
-import com.dmdirc.interfaces.Connection;
-import com.dmdirc.interfaces.ConnectionManager;
-import com.dmdirc.interfaces.GroupChat;
-import com.dmdirc.interfaces.PrivateChat;
 import com.dmdirc.config.provider.AggregateConfigProvider;
-import com.dmdirc.ui.input.TabCompleter;
+import com.dmdirc.ui.input.TabCompletionSource;
 import com.dmdirc.ui.input.TabCompletionType;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import javax.inject.Provider;
-
 /**
  * The command manager creates and manages a single instance of all commands, and provides methods
  * to load each group of commands into a parser instance.
  */
 public class CommandManager implements CommandController {
 
-    /** A list of commands that have been instantiated. */
-    private final Map<CommandInfo, Command> commands = new HashMap<>();
+    /** The commands that have been instantiated, indexed by type and then by name. */
+    private final Map<CommandType, Map<String, Map.Entry<CommandInfo, Command>>> commands =
+            new EnumMap<>(CommandType.class);
+    /** Cached tab completion entries for each type of command, built on demand. */
+    private final Map<CommandType, List<String>> completionNames = new EnumMap<>(CommandType.class);
     /** A list of command parsers that have been instantiated. */
     private final Multimap<CommandType, CommandParser> parsers = ArrayListMultimap.create();
-    /** The manager to use to iterate servers. */
-    private final ConnectionManager connectionManager;
-    /** Provider to use to retrieve the global window. */
-    private final Provider<GlobalWindow> globalWindowProvider;
     /** The command char we're using. */
-    @ConfigBinding(domain = "general", key = "commandchar")
     private char commandChar;
     /** The silence char we're using. */
-    @ConfigBinding(domain = "general", key = "silencechar")
     private char silenceChar;
 
-    /**
-     * Creates a new instance of the Command Manager.
-     *
-     * @param connectionManager the manager to use to iterate servers.
-     * @param globalWindowProvider provider to use to retrieve the global window.
-     */
-    public CommandManager(final ConnectionManager connectionManager,
-            final Provider<GlobalWindow> globalWindowProvider) {
-        this.connectionManager = connectionManager;
-        this.globalWindowProvider = globalWindowProvider;
-    }
-
     @Override
     public char getCommandChar() {
         return commandChar;
@@ -83,6 +67,32 @@ public class CommandManager implements CommandController {
         return silenceChar;
     }
 
+    /**
+     * Sets the command char, and discards any completion entries that used the old one.
+     *
+     * @param commandChar The new command char.
+     */
+    @ConfigBinding(domain = "general", key = "commandchar")
+    void setCommandChar(final char commandChar) {
+        synchronized (commands) {
+            this.commandChar = commandChar;
+            completionNames.clear();
+        }
+    }
+
+    /**
+     * Sets the silence char, and discards any completion entries that used the old one.
+     *
+     * @param silenceChar The new silence char.
+     */
+    @ConfigBinding(domain = "general", key = "silencechar")
+    void setSilenceChar(final char silenceChar) {
+        synchronized (commands) {
+            this.silenceChar = silenceChar;
+            completionNames.clear();
+        }
+    }
+
     /**
      * Initialises the command manager.
      *
@@ -99,7 +109,8 @@ public class CommandManager implements CommandController {
 
     @Override
     public void unregisterCommand(final CommandInfo info) {
-        registerCommand(info, commands.get(info), false);
+        final Map.Entry<CommandInfo, Command> entry = getCommand(info.getType(), info.getName());
+        registerCommand(info, entry == null ? null : entry.getValue(), false);
     }
 
     /**
@@ -117,13 +128,21 @@ public class CommandManager implements CommandController {
             registerCommand(info, command, parsers.get(info.getType()), register);
         }
 
-        if (register) {
-            commands.put(info, command);
-        } else {
-            commands.remove(info);
-        }
+        synchronized (commands) {
+            if (register) {
+                commands.computeIfAbsent(info.getType(), t -> new HashMap<>())
+                        .put(info.getName(), new AbstractMap.SimpleImmutableEntry<>(info, command));
+            } else {
+                final Map<String, Map.Entry<CommandInfo, Command>> named = commands.get(info.getType());
+                if (named != null) {
+                    named.computeIfPresent(info.getName(),
+                            (name, entry) -> entry.getKey().equals(info) ? null : entry);
+                }
+            }
 
-        registerCommandName(info, register);
+            // Completers read names from this cache, so there is nothing to push to each window.
+            completionNames.remove(info.getType());
+        }
     }
 
     /**
@@ -147,77 +166,44 @@ public class CommandManager implements CommandController {
         }
     }
 
-    /**
-     * Registers or unregisters the specified command's name with the relevant tab completers.
-     *
-     * @param command  The command to be registered
-     * @param register True if the command should be registered, false if it should be unregistered.
-     *
-     * @since 0.6.3m1
-     */
-    private void registerCommandName(final CommandInfo command,
-            final boolean register) {
-        // Do tab completion
-        final String plainCommandName = getCommandChar() + command.getName();
-        final String silencedCommandName = getCommandChar() + getSilenceChar() + command.getName();
-
-        if (command.getType() == CommandType.TYPE_GLOBAL) {
-            registerCommandName(globalWindowProvider.get().getInputModel().get().getTabCompleter(),
-                    plainCommandName, register);
-            registerCommandName(globalWindowProvider.get().getInputModel().get().getTabCompleter(),
-                    silencedCommandName, register);
-        }
-
-        // TODO: This logic is probably in two places. Abstract it.
-        for (Connection server : connectionManager.getConnections()) {
-            if (command.getType() == CommandType.TYPE_SERVER
-                    || command.getType() == CommandType.TYPE_GLOBAL) {
-                registerCommandName(server.getWindowModel().getInputModel().get().getTabCompleter(),
-                        plainCommandName, register);
-                registerCommandName(server.getWindowModel().getInputModel().get().getTabCompleter(),
-                        silencedCommandName, register);
+    @Override
+    public TabCompletionSource getCompletionSource(final CommandType... types) {
+        final CommandType[] sourceTypes = types.clone();
+        return type -> {
+            if (type != TabCompletionType.COMMAND) {
+                return Collections.emptyList();
             }
 
-            if (command.getType() == CommandType.TYPE_CHANNEL
-                    || command.getType() == CommandType.TYPE_CHAT) {
-                for (GroupChat channel : server.getGroupChatManager().getChannels()) {
-                    registerCommandName(
-                            channel.getWindowModel().getInputModel().get().getTabCompleter(),
-                            plainCommandName, register);
-                    registerCommandName(
-                            channel.getWindowModel().getInputModel().get().getTabCompleter(),
-                            silencedCommandName, register);
-                }
+            if (sourceTypes.length == 1) {
+                return getCompletionNames(sourceTypes[0]);
             }
 
-            if (command.getType() == CommandType.TYPE_QUERY
-                    || command.getType() == CommandType.TYPE_CHAT) {
-                for (PrivateChat query : server.getQueries()) {
-                    registerCommandName(
-                            query.getWindowModel().getInputModel().get().getTabCompleter(),
-                            plainCommandName, register);
-                    registerCommandName(
-                            query.getWindowModel().getInputModel().get().getTabCompleter(),
-                            silencedCommandName, register);
-                }
+            final List<Iterable<String>> names = new ArrayList<>(sourceTypes.length);
+            for (CommandType commandType : sourceTypes) {
+                names.add(getCompletionNames(commandType));
             }
-        }
+            return Iterables.concat(names);
+        };
     }
 
     /**
-     * Registers or unregisters the specified command with the specified tab- completer.
+     * Gets the plain and silenced names of all commands of the specified type, building and caching
+     * them if required.
+     *
+     * @param type The type of command
      *
-     * @param completer The tab completer to be used
-     * @param name      The command name to be registered
-     * @param register  True if the command should be registered, false if it should be
-     *                  unregistered.
+     * @return An immutable list of command names, including the command char
      */
-    private void registerCommandName(final TabCompleter completer,
-            final String name, final boolean register) {
-        if (register) {
-            completer.addEntry(TabCompletionType.COMMAND, name);
-        } else {
-            completer.removeEntry(TabCompletionType.COMMAND, name);
+    private List<String> getCompletionNames(final CommandType type) {
+        synchronized (commands) {
+            return completionNames.computeIfAbsent(type, t -> {
+                final ImmutableList.Builder<String> names = ImmutableList.builder();
+                for (String name : commands.getOrDefault(t, Collections.emptyMap()).keySet()) {
+                    names.add(String.valueOf(commandChar) + name);
+                    names.add(String.valueOf(commandChar) + silenceChar + name);
+                }
+                return names.build();
+            });
         }
     }
 
@@ -243,9 +229,20 @@ public class CommandManager implements CommandController {
     @Override
     public Map.Entry<CommandInfo, Command> getCommand(final CommandType type,
             final String name) {
-        final Map<CommandInfo, Command> res = getCommands(type, name);
+        synchronized (commands) {
+            if (type != null) {
+                return commands.getOrDefault(type, Collections.emptyMap()).get(name);
+            }
+
+            for (Map<String, Map.Entry<CommandInfo, Command>> named : commands.values()) {
+                final Map.Entry<CommandInfo, Command> entry = named.get(name);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
 
-        return res.isEmpty() ? null : res.entrySet().iterator().next();
+        return null;
     }
 
     @Override
@@ -280,10 +277,13 @@ public class CommandManager implements CommandController {
             final String name) {
         final Map<CommandInfo, Command> res = new HashMap<>();
 
-        commands.entrySet().stream()
-                .filter(entry -> (type == null || type == entry.getKey().getType()) &&
-                        (name == null || name.equals(entry.getKey().getName())))
-                .forEach(entry -> res.put(entry.getKey(), entry.getValue()));
+        synchronized (commands) {
+            commands.entrySet().stream()
+                    .filter(entry -> type == null || type == entry.getKey())
+                    .flatMap(entry -> entry.getValue().values().stream())
+                    .filter(entry -> name == null || name.equals(entry.getKey().getName()))
+                    .forEach(entry -> res.put(entry.getKey(), entry.getValue()));
+        }
 
         return res;
     }
@@ -21,10 +21,13 @@ import com.dmdirc.commandparser.CommandArguments;
 import com.dmdirc.commandparser.commands.BaseCommand;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.commands.context.CommandContext;
+import com.dmdirc.commandparser.parsers.CommandParser;
 import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.interfaces.InputModel;
 import com.dmdirc.interfaces.WindowModel;
 
+import java.util.Optional;
+
 import javax.annotation.Nonnull;
 
 /**
@@ -32,71 +35,67 @@ import javax.annotation.Nonnull;
  */
 public class AliasCommandHandler extends BaseCommand {
 
+    /** The maximum depth to which aliases may invoke other aliases. */
+    static final int MAX_DEPTH = 16;
+    /** The current alias nesting depth of each thread. */
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
     private final Alias alias;
+    /** The compiled form of the alias's substitution. */
+    private final AliasProgram program;
 
     public AliasCommandHandler(final CommandController controller, final Alias alias) {
         super(controller);
         this.alias = alias;
+        this.program = AliasProgram.compile(alias.getSubstitution());
     }
 
     @Override
     public void execute(@Nonnull final WindowModel origin, final CommandArguments args,
             final CommandContext context) {
-        if (args.getArguments().length >= alias.getMinArguments()) {
-            for (String line : alias.getSubstitution().split("\n")) {
-                origin.getInputModel().map(InputModel::getCommandParser)
-                        .ifPresent(cp -> cp.parseCommand(origin,
-                                getSubstituteCommand(line, args)));
-            }
-        } else {
+        if (args.getArguments().length < alias.getMinArguments()) {
             showError(origin, args.isSilent(), alias.getName() + " requires at least "
                     + alias.getMinArguments() + " argument"
                     + (alias.getMinArguments() == 1 ? "" : "s") + '.');
+            return;
         }
-    }
-
-    /**
-     * Gets the command that should be executed, with the appropriate substitutions made.
-     * <p>
-     * The returned command will have arguments substituted (replacing "$1-", "$2", etc), and will
-     * be silenced if the given args are silent.
-     *
-     * @param line The line to substitute.
-     * @param args The arguments entered by the user.
-     *
-     * @return The substituted command to execute.
-     */
-    private String getSubstituteCommand(final String line, final CommandArguments args) {
-        final StringBuilder builder = new StringBuilder(line.trim());
 
-        final String[] arguments = args.getArguments();
-        for (int i = 0; i < arguments.length; i++) {
-            replaceAll(builder, "$" + (i + 1) + '-', args.getArgumentsAsString(i));
-            replaceAll(builder, "$" + (i + 1), arguments[i]);
+        final int[] depth = DEPTH.get();
+        if (depth[0] >= MAX_DEPTH) {
+            showError(origin, args.isSilent(), alias.getName()
+                    + ": aliases nested too deeply (possible recursion).");
+            return;
         }
 
-        if (args.isSilent()) {
-            builder.insert(0, getController().getSilenceChar());
+        final Optional<CommandParser> parser = origin.getInputModel()
+                .map(InputModel::getCommandParser);
+        if (!parser.isPresent()) {
+            return;
         }
-        builder.insert(0, getController().getCommandChar());
 
-        return builder.toString();
+        depth[0]++;
+        try {
+            parser.get().parseCommands(origin, program.expand(args, getPrefix(args)));
+        } finally {
+            depth[0]--;
+        }
     }
 
     /**
-     * Replaces all instances of the specified substring in the builder.
+     * Gets the prefix to apply to each substituted command. Commands will be silenced if the given
+     * args are silent.
      *
-     * @param builder     The builder to modify.
-     * @param substr      The substring to replace.
-     * @param replacement The string to use as a replacement.
+     * @param args The arguments entered by the user.
+     *
+     * @return The prefix to apply to substituted commands.
      */
-    private static void replaceAll(final StringBuilder builder,
-            final String substr, final String replacement) {
-        int index = builder.indexOf(substr);
-        while (index > -1) {
-            builder.replace(index, index + substr.length(), replacement);
-            index = builder.indexOf(substr);
+    private String getPrefix(final CommandArguments args) {
+        final StringBuilder builder = new StringBuilder(2);
+        builder.append(getController().getCommandChar());
+        if (args.isSilent()) {
+            builder.append(getController().getSilenceChar());
         }
+        return builder.toString();
     }
 
 }
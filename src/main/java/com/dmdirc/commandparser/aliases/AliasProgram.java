@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandparser.aliases;
+
+import com.dmdirc.commandparser.CommandArguments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A pre-compiled form of an alias's substitution.
+ * <p>
+ * Each line of the substitution is split once into a sequence of literal segments and argument
+ * references ({@code $n} and {@code $n-}), so that expanding the alias for a set of arguments is
+ * a single pass over the tokens rather than repeated searches and replacements.
+ * <p>
+ * References to arguments that were not supplied are left in the output verbatim, as are
+ * references to {@code $0}.
+ */
+public class AliasProgram {
+
+    /** The compiled lines of the substitution. */
+    private final List<Token[]> lines;
+    /** Estimated size of an expanded line, excluding arguments. */
+    private final int[] literalLengths;
+
+    private AliasProgram(final List<Token[]> lines) {
+        this.lines = lines;
+        this.literalLengths = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            for (Token token : lines.get(i)) {
+                if (token.literal != null) {
+                    literalLengths[i] += token.literal.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the given substitution into a program.
+     *
+     * @param substitution The substitution to compile, with lines separated by newlines.
+     *
+     * @return A compiled program for the substitution.
+     */
+    public static AliasProgram compile(final String substitution) {
+        final List<Token[]> lines = new ArrayList<>();
+        for (String line : substitution.split("\n")) {
+            lines.add(compileLine(line.trim()));
+        }
+        return new AliasProgram(Collections.unmodifiableList(lines));
+    }
+
+    /**
+     * Gets the number of lines this program will expand to.
+     *
+     * @return The number of lines in the program.
+     */
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Expands this program using the given arguments.
+     *
+     * @param args   The arguments entered by the user.
+     * @param prefix A prefix to add to each expanded line (such as command and silence characters).
+     *
+     * @return The expanded lines, in order.
+     */
+    public List<String> expand(final CommandArguments args, final String prefix) {
+        final String[] arguments = args.getArguments();
+        // Lazily computed "$n-" values, as building them requires regex matching.
+        final String[] remainders = new String[arguments.length];
+        final List<String> result = new ArrayList<>(lines.size());
+
+        for (int i = 0; i < lines.size(); i++) {
+            final StringBuilder builder = new StringBuilder(prefix.length() + literalLengths[i] + 16);
+            builder.append(prefix);
+            for (Token token : lines.get(i)) {
+                if (token.literal != null) {
+                    builder.append(token.literal);
+                } else if (token.argument > arguments.length) {
+                    builder.append('$').append(token.argument);
+                    if (token.rest) {
+                        builder.append('-');
+                    }
+                } else if (token.rest) {
+                    final int index = token.argument - 1;
+                    if (remainders[index] == null) {
+                        remainders[index] = args.getArgumentsAsString(index);
+                    }
+                    builder.append(remainders[index]);
+                } else {
+                    builder.append(arguments[token.argument - 1]);
+                }
+            }
+            result.add(builder.toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits a single line into literal and argument reference tokens.
+     *
+     * @param line The line to be compiled.
+     *
+     * @return The tokens making up the line.
+     */
+    private static Token[] compileLine(final String line) {
+        final List<Token> tokens = new ArrayList<>();
+        final int length = line.length();
+        int literalStart = 0;
+        int index = 0;
+
+        while (index < length) {
+            if (line.charAt(index) != '$') {
+                index++;
+                continue;
+            }
+
+            int end = index + 1;
+            int argument = 0;
+            while (end < length && Character.isDigit(line.charAt(end)) && argument < 10000) {
+                argument = argument * 10 + Character.digit(line.charAt(end), 10);
+                end++;
+            }
+
+            if (end == index + 1 || line.charAt(index + 1) == '0') {
+                // Not a reference (or a reference to $0); keep it as part of the literal.
+                index = end;
+                continue;
+            }
+
+            final boolean rest = end < length && line.charAt(end) == '-';
+            if (rest) {
+                end++;
+            }
+
+            if (literalStart < index) {
+                tokens.add(new Token(line.substring(literalStart, index), 0, false));
+            }
+            tokens.add(new Token(null, argument, rest));
+            index = end;
+            literalStart = end;
+        }
+
+        if (literalStart < length) {
+            tokens.add(new Token(line.substring(literalStart), 0, false));
+        }
+
+        return tokens.toArray(new Token[tokens.size()]);
+    }
+
+    /**
+     * A single token within a compiled line: either a literal string, or a reference to an
+     * argument.
+     */
+    private static class Token {
+
+        /** The literal text of this token, or {@code null} if it is an argument reference. */
+        private final String literal;
+        /** The one-based index of the referenced argument. */
+        private final int argument;
+        /** Whether the reference includes all subsequent arguments. */
+        private final boolean rest;
+
+        Token(final String literal, final int argument, final boolean rest) {
+            this.literal = literal;
+            this.argument = argument;
+            this.rest = rest;
+        }
+
+    }
+
+}
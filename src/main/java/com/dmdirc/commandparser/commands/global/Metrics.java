@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandparser.commands.global;
+
+import com.dmdirc.commandparser.BaseCommandInfo;
+import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandInfo;
+import com.dmdirc.commandparser.CommandType;
+import com.dmdirc.commandparser.commands.BaseCommand;
+import com.dmdirc.commandparser.commands.IntelligentCommand;
+import com.dmdirc.commandparser.commands.context.CommandContext;
+import com.dmdirc.interfaces.CommandController;
+import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.metrics.MetricsRegistry;
+import com.dmdirc.ui.input.AdditionalTabTargets;
+import com.dmdirc.ui.messages.IRCControlCodes;
+
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+
+/**
+ * Shows a snapshot of the client's metrics.
+ */
+public class Metrics extends BaseCommand implements IntelligentCommand {
+
+    /** A command info object for this command. */
+    public static final CommandInfo INFO = new BaseCommandInfo("metrics",
+            "metrics [prefix] - shows the client's metrics, optionally only those starting with "
+                    + "the given prefix",
+            CommandType.TYPE_GLOBAL);
+    /** The registry to read metrics from. */
+    private final MetricsRegistry registry;
+
+    /**
+     * Creates a new instance of this command.
+     *
+     * @param controller The controller to use for command information.
+     * @param registry   The registry to read metrics from.
+     */
+    @Inject
+    public Metrics(final CommandController controller, final MetricsRegistry registry) {
+        super(controller);
+        this.registry = registry;
+    }
+
+    @Override
+    public void execute(@Nonnull final WindowModel origin,
+            final CommandArguments args, final CommandContext context) {
+        final String prefix = args.getArgumentsAsString();
+        int shown = 0;
+
+        for (Map.Entry<String, Number> entry : registry.getSnapshot().entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                showOutput(origin, args.isSilent(), IRCControlCodes.FIXED + entry.getKey() + " = "
+                        + format(entry.getValue()));
+                shown++;
+            }
+        }
+
+        if (shown == 0) {
+            showError(origin, args.isSilent(), "No metrics found.");
+        }
+    }
+
+    private static String format(final Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format(Locale.ROOT, "%.2f", value.doubleValue());
+        }
+        return value.toString();
+    }
+
+    @Override
+    public AdditionalTabTargets getSuggestions(final int arg,
+            final IntelligentCommandContext context) {
+        return new AdditionalTabTargets().excludeAll();
+    }
+
+}
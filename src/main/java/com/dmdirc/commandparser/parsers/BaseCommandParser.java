@@ -18,15 +18,14 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandInfoPair;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.commands.CommandOptions;
 import com.dmdirc.commandparser.commands.ExternalCommand;
-import com.dmdirc.commandparser.commands.PreviousCommand;
 import com.dmdirc.commandparser.commands.context.CommandContext;
-import com.dmdirc.config.provider.ReadOnlyConfigProvider;
 import com.dmdirc.events.CommandErrorEvent;
 import com.dmdirc.events.UnknownCommandEvent;
 import com.dmdirc.events.eventbus.EventBus;
@@ -35,11 +34,12 @@ import com.dmdirc.interfaces.Connection;
 import com.dmdirc.interfaces.GroupChat;
 import com.dmdirc.interfaces.InputModel;
 import com.dmdirc.interfaces.WindowModel;
-import com.dmdirc.util.collections.RollingList;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -56,8 +56,10 @@ public abstract class BaseCommandParser implements Serializable, CommandParser {
     private static final long serialVersionUID = 1;
     /** Commands that are associated with this parser. */
     private final Map<String, CommandInfoPair> commands;
-    /** A history of commands that have been entered into this parser. */
-    private final RollingList<PreviousCommand> history;
+    /** The history to record commands that have been entered into this parser in. */
+    private final CommandHistory history;
+    /** The history scopes that commands entered into this parser have been recorded against. */
+    private final Set<String> scopes = ConcurrentHashMap.newKeySet();
     /** Command manager to use. */
     protected final CommandController commandManager;
     /** Event bus to post events to. */
@@ -66,17 +68,17 @@ public abstract class BaseCommandParser implements Serializable, CommandParser {
     /**
      * Creates a new instance of CommandParser.
      *
-     * @param configManager  Config manager to read settings
+     * @param history        The history to record commands in
      * @param commandManager Command manager to load plugins from
      * @param eventBus       The event bus to post events to.
      */
     protected BaseCommandParser(
-            final ReadOnlyConfigProvider configManager,
+            final CommandHistory history,
             final CommandController commandManager,
             final EventBus eventBus) {
         this.eventBus = eventBus;
         commands = new HashMap<>();
-        history = new RollingList<>(configManager.getOptionInt("general", "commandhistory"));
+        this.history = history;
         this.commandManager = commandManager;
         loadCommands();
     }
@@ -112,7 +114,9 @@ public abstract class BaseCommandParser implements Serializable, CommandParser {
 
             if (commands.containsKey(args.getCommandName().toLowerCase())) {
                 final CommandInfoPair pair = commands.get(args.getCommandName().toLowerCase());
-                addHistory(args.getStrippedLine());
+                final String scope = CommandHistory.getScope(origin);
+                scopes.add(scope);
+                history.add(scope, args.getStrippedLine());
                 executeCommand(origin, pair.getCommandInfo(), pair.getCommand(), args,
                         getCommandContext(origin, pair.getCommandInfo(), pair.getCommand(), args));
             } else {
@@ -194,38 +198,19 @@ public abstract class BaseCommandParser implements Serializable, CommandParser {
     }
 
     /**
-     * Adds a command to this parser's history.
-     *
-     * @param command The command name and arguments that were used
-     */
-    private void addHistory(final String command) {
-        synchronized (history) {
-            final PreviousCommand pc = new PreviousCommand(command);
-            history.remove(pc);
-            history.add(pc);
-        }
-    }
-
-    /**
-     * Retrieves the most recent time that the specified command was used. Commands should not
-     * include command or silence chars.
+     * Retrieves the most recent time that the specified command was entered into this parser.
+     * Commands should not include command or silence chars.
      *
      * @param command The command to search for
      *
      * @return The timestamp that the command was used, or 0 if it wasn't
      */
     public long getCommandTime(final String command) {
-        long res = 0;
-
-        synchronized (history) {
-            for (PreviousCommand pc : history.getList()) {
-                if (pc.getLine().matches("(?i)" + command)) {
-                    res = Math.max(res, pc.getTime());
-                }
-            }
+        long time = 0;
+        for (String scope : scopes) {
+            time = Math.max(time, history.getLastUsed(scope, command));
         }
-
-        return res;
+        return time;
     }
 
     @Override
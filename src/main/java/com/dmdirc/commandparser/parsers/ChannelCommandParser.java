@@ -18,6 +18,7 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
@@ -43,16 +44,16 @@ public class ChannelCommandParser extends ChatCommandParser {
     /**
      * Creates a new instance of ChannelCommandParser.
      *
-     * @param owner            The container this parser's query belongs to
+     * @param history           The history to record commands in
      * @param commandController The controller to load commands from.
      * @param eventBus          Event bus to post events on
      */
     public ChannelCommandParser(
-            final WindowModel owner,
+            final CommandHistory history,
             final CommandController commandController,
             final EventBus eventBus,
             final GroupChat groupChat) {
-        super(owner, commandController, eventBus, groupChat);
+        super(history, commandController, eventBus, groupChat);
 
         this.groupChat = groupChat;
     }
@@ -18,6 +18,7 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
@@ -45,16 +46,16 @@ public class ChatCommandParser extends ServerCommandParser {
     /**
      * Creates a new chat command parser that belongs to a child of the specified server.
      *
-     * @param owner             The container which owns this parser's container
+     * @param history           The history to record commands in
      * @param commandController The controller to load commands from.
      * @param eventBus          Event but to post events on
      */
     public ChatCommandParser(
-            final WindowModel owner,
+            final CommandHistory history,
             final CommandController commandController,
             final EventBus eventBus,
             final Chat chat) {
-        super(owner.getConfigManager(), commandController, eventBus, chat.getConnection().get());
+        super(history, commandController, eventBus, chat.getConnection().get());
         this.owner = chat;
     }
 
@@ -18,16 +18,15 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.commands.context.CommandContext;
-import com.dmdirc.config.GlobalConfig;
 import com.dmdirc.events.CommandErrorEvent;
 import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
-import com.dmdirc.config.provider.AggregateConfigProvider;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -49,16 +48,16 @@ public class GlobalCommandParser extends BaseCommandParser {
     /**
      * Creates a new command parser for global commands.
      *
-     * @param configManager  Config manager to read settings from
+     * @param history        The history to record commands in
      * @param commandManager Command manager to load commands from
      * @param eventBus       eventBus
      */
     @Inject
     public GlobalCommandParser(
-            @GlobalConfig final AggregateConfigProvider configManager,
+            final CommandHistory history,
             final CommandController commandManager,
             final EventBus eventBus) {
-        super(configManager, commandManager, eventBus);
+        super(history, commandManager, eventBus);
     }
 
     /** Loads the relevant commands into the parser. */
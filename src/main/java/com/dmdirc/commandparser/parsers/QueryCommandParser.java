@@ -18,6 +18,7 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
@@ -46,13 +47,14 @@ public class QueryCommandParser extends ChatCommandParser {
     /**
      * Creates a new instance of QueryCommandParser.
      *
-     * @param owner            The container this parser's query belongs to
+     * @param history           The history to record commands in
      * @param commandController The controller to load commands from.
      * @param eventBus          Event bus to post events on
      */
-    public QueryCommandParser(final WindowModel owner, final CommandController commandController,
-            final EventBus eventBus, final PrivateChat query) {
-        super(owner, commandController, eventBus, query);
+    public QueryCommandParser(final CommandHistory history,
+            final CommandController commandController, final EventBus eventBus,
+            final PrivateChat query) {
+        super(history, commandController, eventBus, query);
         this.query = query;
     }
 
@@ -19,6 +19,7 @@ package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.ServerState;
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.commandparser.commands.Command;
@@ -29,7 +30,6 @@ import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
-import com.dmdirc.config.provider.AggregateConfigProvider;
 
 import javax.annotation.Nonnull;
 
@@ -51,16 +51,16 @@ public class ServerCommandParser extends GlobalCommandParser {
     /**
      * Creates a new command parser for server commands.
      *
-     * @param configManager     Config manager to read settings from
+     * @param history           The history to record commands in
      * @param commandController The controller to load commands from.
      * @param eventBus          Event bus to post events on
      */
     public ServerCommandParser(
-            final AggregateConfigProvider configManager,
+            final CommandHistory history,
             final CommandController commandController,
             final EventBus eventBus,
             final Connection connection) {
-        super(configManager, commandController, eventBus);
+        super(history, commandController, eventBus);
         this.server = checkNotNull(connection);
     }
 
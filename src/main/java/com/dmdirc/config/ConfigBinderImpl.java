@@ -17,20 +17,29 @@
 
 package com.dmdirc.config;
 
+import com.dmdirc.config.ConfigValueRetriever.TypedGetter;
 import com.dmdirc.config.binding.ConfigBinder;
 import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.binding.Invocation;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
-import java.lang.reflect.Executable;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
@@ -43,56 +52,74 @@ import static com.dmdirc.util.LogUtils.APP_ERROR;
 /**
  * Facilitates automatically binding fields or methods annotated with a {@link ConfigBinding}
  * element to a configuration value.
+ *
+ * <p>The annotated members of each class are only inspected once: the resulting {@link BoundMember}s are cached for
+ * the lifetime of the class and shared between all binders and instances.
  */
 class ConfigBinderImpl implements ConfigBinder {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConfigBinder.class);
 
+    /** The type all setter handles are adapted to. */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** Shared invocation instances, one per invocation class. */
+    private static final ClassValue<Optional<Invocation>> INVOCATIONS = new ClassValue<Optional<Invocation>>() {
+        @Override
+        protected Optional<Invocation> computeValue(final Class<?> type) {
+            try {
+                return Optional.of((Invocation) type.newInstance());
+            } catch (ReflectiveOperationException ex) {
+                LOG.error(APP_ERROR, "Unable to create config binding invocation {}", type.getName(), ex);
+                return Optional.empty();
+            }
+        }
+    };
+
+    /** The bindable members of each class that has been bound. */
+    private static final ClassValue<List<BoundMember>> PLANS = new ClassValue<List<BoundMember>>() {
+        @Override
+        protected List<BoundMember> computeValue(final Class<?> type) {
+            return createPlan(type);
+        }
+    };
+
     /** A map of instances to created listeners. */
     private final Multimap<Object, ConfigChangeListener> listeners = ArrayListMultimap.create();
     /** The default domain to use. */
     private final Optional<String> defaultDomain;
     /** The configuration manager to use to retrieve settings. */
     private final AggregateConfigProvider manager;
-    /** Retriever to use to get typed config values. */
-    private final ConfigValueRetriever valueRetriever;
 
     ConfigBinderImpl(final AggregateConfigProvider manager) {
         this.manager = manager;
-        this.valueRetriever = new ConfigValueRetriever(manager);
         this.defaultDomain = Optional.empty();
     }
 
     ConfigBinderImpl(final AggregateConfigProvider manager, @Nonnull final String domain) {
         this.manager = manager;
-        this.valueRetriever = new ConfigValueRetriever(manager);
         this.defaultDomain = Optional.of(domain);
     }
 
     @Override
     public void bind(final Object instance, final Class<?> clazz) {
         final Collection<ConfigChangeListener> newListeners = new ArrayList<>();
-        final Collection<AccessibleObject> elements = new ArrayList<>();
 
-        elements.addAll(Arrays.asList(clazz.getDeclaredMethods()));
-        elements.addAll(Arrays.asList(clazz.getDeclaredFields()));
+        for (BoundMember member : PLANS.get(clazz)) {
+            final ConfigBinding binding = member.getBinding();
+            final String domain = getDomain(binding.domain());
+            final ConfigChangeListener listener = (d, k) -> updateBoundMember(instance, member, domain);
+            newListeners.add(listener);
 
-        for (AccessibleObject element : elements) {
-            final ConfigBinding binding = element.getAnnotation(ConfigBinding.class);
-            if (binding != null) {
-                final ConfigChangeListener listener = getListener(instance, element, binding);
-                newListeners.add(listener);
-
-                manager.addChangeListener(getDomain(binding.domain()), binding.key(), listener);
+            manager.addChangeListener(domain, binding.key(), listener);
 
-                for (int i = 0; i < binding.fallbacks().length - 1; i += 2) {
-                    manager.addChangeListener(getDomain(binding.fallbacks()[i]),
-                            binding.fallbacks()[i + 1], listener);
-                }
+            for (int i = 0; i < binding.fallbacks().length - 1; i += 2) {
+                manager.addChangeListener(getDomain(binding.fallbacks()[i]),
+                        binding.fallbacks()[i + 1], listener);
+            }
 
-                if (binding.applyInitially()) {
-                    updateBoundMember(instance, element, binding);
-                }
+            if (binding.applyInitially()) {
+                updateBoundMember(instance, member, domain);
             }
         }
 
@@ -107,66 +134,86 @@ class ConfigBinderImpl implements ConfigBinder {
     }
 
     /**
-     * Creates a new listener which will call
-     * {@link #updateBoundMember(Object, AccessibleObject, ConfigBinding)} with the given arguments.
-     *
-     * @param instance The instance to create a listener for
-     * @param element  The element to create a listener for
-     * @param binding  The binding annotation on the above element
+     * Updates the specified member of the given instance with the current value of the
+     * configuration key(s) specified by its binding.
      *
-     * @return An appropriate config change listener
+     * @param instance The instance to be updated
+     * @param member   The member to be updated
+     * @param domain   The resolved domain of the member's binding
      */
-    private ConfigChangeListener getListener(final Object instance,
-            final AccessibleObject element, final ConfigBinding binding) {
-        return (domain, key) -> updateBoundMember(instance, element, binding);
+    private void updateBoundMember(final Object instance, final BoundMember member, final String domain) {
+        final ConfigBinding binding = member.getBinding();
+        final Object value = member.getGetter().getValue(manager, domain, binding.key(),
+                binding.required(), binding.fallbacks());
+        member.getInvocation().invoke(member.getElement(), member.getSetter(), instance, value);
     }
 
     /**
-     * Updates the specified element of the given instance with the current value of the
-     * configuration key(s) specified by its binding.
+     * Creates the binding plan for the given class, resolving a setter, value getter and invocation
+     * for each annotated member.
      *
-     * @param instance The instance to be updated
-     * @param element  The element to be updated
-     * @param binding  The binding which defines the configuration properties
+     * @param clazz The class to inspect
+     *
+     * @return The bindable members of the class, methods first
      */
-    private void updateBoundMember(final Object instance,
-            final AccessibleObject element, final ConfigBinding binding) {
-        if (!element.isAccessible()) {
-            element.setAccessible(true);
-        }
+    private static List<BoundMember> createPlan(final Class<?> clazz) {
+        final ImmutableList.Builder<BoundMember> plan = ImmutableList.builder();
+        final Collection<AccessibleObject> elements = new ArrayList<>();
 
-        final Object value = valueRetriever.getValue(
-                getTargetClass(element),
-                getDomain(binding.domain()),
-                binding.key(),
-                binding.required(),
-                binding.fallbacks());
+        elements.addAll(Arrays.asList(clazz.getDeclaredMethods()));
+        elements.addAll(Arrays.asList(clazz.getDeclaredFields()));
 
-        try {
-            binding.invocation().newInstance().invoke(element, instance, value);
-        } catch (ReflectiveOperationException ex) {
-            LOG.error(APP_ERROR, "Exception when updating bound setting", ex);
+        for (AccessibleObject element : elements) {
+            final ConfigBinding binding = element.getAnnotation(ConfigBinding.class);
+            if (binding != null) {
+                final Optional<Invocation> invocation = INVOCATIONS.get(binding.invocation());
+                if (invocation.isPresent()) {
+                    createMember(element, binding, invocation.get()).ifPresent(plan::add);
+                }
+            }
         }
+
+        return plan.build();
     }
 
     /**
-     * Gets the type required for setting the given element.
+     * Creates a bound member for the given element.
      *
-     * @param element The element to determine a type for
+     * @param element    The annotated field or method
+     * @param binding    The binding annotation on the element
+     * @param invocation The invocation to use to update the element
      *
-     * @return If the given element is a field, then the type of that field; if the element is a
-     *         method then the type of the first parameter; otherwise, <code>String.class</code>.
+     * @return The bound member, or empty if a setter couldn't be created for the element
      */
-    private Class<?> getTargetClass(final AccessibleObject element) {
-        if (element instanceof Field) {
-            return ((Field) element).getType();
-        }
+    private static Optional<BoundMember> createMember(final AccessibleObject element,
+            final ConfigBinding binding, final Invocation invocation) {
+        element.setAccessible(true);
 
-        if (element instanceof Executable) {
-            return ((Executable) element).getParameterTypes()[0];
-        }
+        try {
+            final MethodHandle handle;
+            final Class<?> targetClass;
+            if (element instanceof Field) {
+                handle = MethodHandles.lookup().unreflectSetter((Field) element);
+                targetClass = ((Field) element).getType();
+            } else {
+                final Method method = (Method) element;
+                if (method.getParameterCount() != 1) {
+                    LOG.error(APP_ERROR, "Config binding on {} must take exactly one argument", method);
+                    return Optional.empty();
+                }
+                handle = MethodHandles.lookup().unreflect(method);
+                targetClass = method.getParameterTypes()[0];
+            }
 
-        return String.class;
+            final MethodHandle setter = Modifier.isStatic(((Member) element).getModifiers())
+                    ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+            return Optional.of(new BoundMember(element, binding, invocation,
+                    ConfigValueRetriever.getGetter(targetClass),
+                    setter.asType(SETTER_TYPE)));
+        } catch (ReflectiveOperationException ex) {
+            LOG.error(APP_ERROR, "Unable to create setter for bound setting", ex);
+            return Optional.empty();
+        }
     }
 
     /**
@@ -195,4 +242,51 @@ class ConfigBinderImpl implements ConfigBinder {
         return new ConfigBinderImpl(manager, domain);
     }
 
+    /**
+     * A field or method that has been resolved for binding.
+     */
+    private static final class BoundMember {
+
+        /** The annotated field or method. */
+        private final AccessibleObject element;
+        /** The binding annotation on the element. */
+        private final ConfigBinding binding;
+        /** The shared invocation used to update the element. */
+        private final Invocation invocation;
+        /** The getter used to retrieve values of the element's type. */
+        private final TypedGetter getter;
+        /** Handle that updates the element, of type {@code (Object, Object)void}. */
+        private final MethodHandle setter;
+
+        BoundMember(final AccessibleObject element, final ConfigBinding binding, final Invocation invocation,
+                final TypedGetter getter, final MethodHandle setter) {
+            this.element = element;
+            this.binding = binding;
+            this.invocation = invocation;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public AccessibleObject getElement() {
+            return element;
+        }
+
+        public ConfigBinding getBinding() {
+            return binding;
+        }
+
+        public Invocation getInvocation() {
+            return invocation;
+        }
+
+        public TypedGetter getGetter() {
+            return getter;
+        }
+
+        public MethodHandle getSetter() {
+            return setter;
+        }
+
+    }
+
 }
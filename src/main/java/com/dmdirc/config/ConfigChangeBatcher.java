@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import com.dmdirc.config.provider.ConfigChangeSet;
+
+import java.util.function.Consumer;
+
+/**
+ * Delivers config change sets to a dispatcher, holding them back and coalescing them while a batch
+ * is in progress.
+ *
+ * <p>Changes made by any thread while a batch is in progress are included in that batch. They are
+ * dispatched on the thread that completes the outermost batch, without any locks held.
+ */
+class ConfigChangeBatcher {
+
+    /** Lock guarding {@link #depth} and {@link #pending}. */
+    private final Object lock = new Object();
+    /** The consumer that delivers change sets to listeners. */
+    private final Consumer<ConfigChangeSet> dispatcher;
+    /** The number of batches currently in progress. */
+    private int depth;
+    /** The changes collected during the current batch. */
+    private ConfigChangeSet.Builder pending = ConfigChangeSet.builder();
+
+    ConfigChangeBatcher(final Consumer<ConfigChangeSet> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Runs the given changes as a batch. Any changes fired while they are running are dispatched
+     * as a single change set once the outermost batch has completed.
+     *
+     * @param changes The changes to run
+     */
+    void batch(final Runnable changes) {
+        synchronized (lock) {
+            depth++;
+        }
+
+        try {
+            changes.run();
+        } finally {
+            final ConfigChangeSet collected;
+            synchronized (lock) {
+                depth--;
+                if (depth > 0 || pending.isEmpty()) {
+                    collected = null;
+                } else {
+                    collected = pending.build();
+                    pending = ConfigChangeSet.builder();
+                }
+            }
+
+            if (collected != null) {
+                dispatcher.accept(collected);
+            }
+        }
+    }
+
+    /**
+     * Fires the given changes, either immediately or when the current batch completes.
+     *
+     * @param changes The settings that have changed
+     */
+    void fire(final ConfigChangeSet changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (depth > 0) {
+                pending.addAll(changes);
+                return;
+            }
+        }
+
+        dispatcher.accept(changes);
+    }
+
+}
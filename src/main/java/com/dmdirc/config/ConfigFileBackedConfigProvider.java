@@ -17,23 +17,31 @@
 
 package com.dmdirc.config;
 
+import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.util.io.ConfigFile;
 import com.dmdirc.util.io.InvalidConfigFileException;
 import com.dmdirc.util.validators.Validator;
 
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.Maps;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collection;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -52,6 +60,8 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
     private static final String DOMAIN = "identity";
     /** The domain used for profile settings. */
     private static final String PROFILE_DOMAIN = "profile";
+    /** The domain used for temporary settings, which are never persisted. */
+    private static final String TEMP_DOMAIN = "temp";
     /** The target for this identity. */
     protected final ConfigTarget myTarget;
     /** The identity manager to use for writable configs. */
@@ -59,13 +69,22 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
     private final IdentityManager identityManager;
     /** The configuration details for this identity. */
     protected final ConfigFile file;
-    /** The global config manager. */
-    protected ConfigManager globalConfig;
+    /** The path the configuration is stored at, if it is backed by a file. */
+    @Nullable
+    private final Path path;
     /** The config change listeners for this source. */
     protected final List<WeakReference<ConfigChangeListener>> listeners =
             new CopyOnWriteArrayList<>();
+    /** Batcher used to coalesce change notifications. */
+    private final ConfigChangeBatcher batcher = new ConfigChangeBatcher(this::fireSettingChanges);
     /** Whether this identity needs to be saved. */
     private boolean needSave;
+    /** The keys in each domain that have changed since the last save. */
+    private final Map<String, Set<String>> dirtyKeys = new HashMap<>();
+    /** Whether all keys need to be compared against the defaults on the next save. */
+    private boolean fullDiffNeeded = true;
+    /** The modification time and size of the file when it was last read or written. */
+    private Optional<String> fileStamp = Optional.empty();
 
     /**
      * Creates a new instance of Identity.
@@ -81,6 +100,7 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
             @Nullable final IdentityManager identityManager, final Path file,
             final boolean forceDefault) throws IOException, InvalidIdentityFileException {
         this.identityManager = identityManager;
+        this.path = file;
         this.file = new ConfigFile(file);
         this.file.setAutomake(true);
         initFile(forceDefault);
@@ -99,6 +119,7 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
     public ConfigFileBackedConfigProvider(final InputStream stream,
             final boolean forceDefault) throws IOException, InvalidIdentityFileException {
         this.identityManager = null;
+        this.path = null;
         this.file = new ConfigFile(stream);
         file.setAutomake(true);
         initFile(forceDefault);
@@ -115,6 +136,7 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
     public ConfigFileBackedConfigProvider(@Nullable final IdentityManager identityManager,
             final ConfigFile configFile, final ConfigTarget target) {
         this.identityManager = identityManager;
+        this.path = null;
         this.file = configFile;
         file.setAutomake(true);
         this.myTarget = target;
@@ -175,6 +197,7 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
             throws InvalidIdentityFileException, IOException {
         try {
             file.read();
+            fileStamp = getFileStamp();
         } catch (InvalidConfigFileException ex) {
             throw new InvalidIdentityFileException(ex);
         }
@@ -186,73 +209,117 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
 
     @Override
     public void reload() throws IOException, InvalidConfigFileException {
+        reload(false);
+    }
+
+    /**
+     * Reloads this identity from disk, unless the backing file's modification time and size are
+     * the same as when it was last read. This is intended for use by file watchers, which may be
+     * notified of changes the client made itself.
+     *
+     * @throws IOException                On I/O exception when reading the identity
+     * @throws InvalidConfigFileException if the config file is no longer valid
+     */
+    public void reloadIfChanged() throws IOException, InvalidConfigFileException {
+        reload(true);
+    }
+
+    /**
+     * Reloads this identity from disk, firing change events for any settings that differ.
+     *
+     * @param onlyIfChanged Whether to skip the reload if the file's stamp is unchanged
+     *
+     * @throws IOException                On I/O exception when reading the identity
+     * @throws InvalidConfigFileException if the config file is no longer valid
+     */
+    private void reload(final boolean onlyIfChanged)
+            throws IOException, InvalidConfigFileException {
         if (needSave) {
             return;
         }
 
-        final Collection<String[]> changes = new LinkedList<>();
+        final ConfigChangeSet.Builder changes = ConfigChangeSet.builder();
 
         synchronized (this) {
-            final Map<String, Map<String, String>> oldProps = new HashMap<>(file.getKeyDomains());
+            final Optional<String> stamp = getFileStamp();
+            if (onlyIfChanged && stamp.isPresent() && stamp.equals(fileStamp)) {
+                LOG.trace("{}: not reloading, file is unchanged", getName());
+                return;
+            }
+
+            final Map<String, Map<String, String>> oldProps = copyKeyDomains();
 
             file.read();
+            fileStamp = stamp;
 
-            for (Map.Entry<String, Map<String, String>> entry : file.getKeyDomains().entrySet()) {
-                final String domain = entry.getKey();
+            final Map<String, Map<String, String>> newProps = file.getKeyDomains();
+            final Set<String> domains = new HashSet<>(oldProps.keySet());
+            domains.addAll(newProps.keySet());
 
-                for (Map.Entry<String, String> subentry : entry.getValue().entrySet()) {
-                    final String key = subentry.getKey();
-                    final String value = subentry.getValue();
+            for (String domain : domains) {
+                final MapDifference<String, String> difference = Maps.difference(
+                        oldProps.getOrDefault(domain, Collections.emptyMap()),
+                        newProps.getOrDefault(domain, Collections.emptyMap()));
 
-                    if (!oldProps.containsKey(domain) || !oldProps.get(domain).containsKey(key)) {
-                        // Newly added (didn't exist in the old file)
-                        changes.add(new String[]{domain, key});
-                    } else if (!oldProps.get(domain).get(key).equals(value)) {
-                        // Modified in some way
-                        changes.add(new String[]{domain, key});
-                        oldProps.get(domain).remove(key);
-                    } else {
-                        // Not modified
-                        oldProps.get(domain).remove(key);
-                    }
+                if (difference.areEqual()) {
+                    continue;
                 }
 
-                // Anything left in the domain must have been moved
-                if (oldProps.containsKey(domain)) {
-                    for (String key : oldProps.get(domain).keySet()) {
-                        changes.add(new String[]{domain, key});
-                    }
-                }
-
-                oldProps.remove(domain);
+                difference.entriesOnlyOnLeft().keySet().forEach(key -> changes.add(domain, key));
+                difference.entriesOnlyOnRight().keySet().forEach(key -> changes.add(domain, key));
+                difference.entriesDiffering().keySet().forEach(key -> changes.add(domain, key));
             }
+        }
 
-            // Any domains left must have been removed
-            for (Map.Entry<String, Map<String, String>> entry : oldProps.entrySet()) {
-                for (String key : entry.getValue().keySet()) {
-                    changes.add(new String[]{entry.getKey(), key});
-                }
-            }
+        batcher.fire(changes.build());
+    }
+
+    /**
+     * Creates a deep copy of the file's key domains, so that they can be compared after the file
+     * is re-read.
+     *
+     * @return A copy of the current settings.
+     */
+    private Map<String, Map<String, String>> copyKeyDomains() {
+        final Map<String, Map<String, String>> copy = new HashMap<>();
+        file.getKeyDomains().forEach((domain, values) -> copy.put(domain, new HashMap<>(values)));
+        return copy;
+    }
+
+    /**
+     * Gets a stamp describing the current state of the backing file, if there is one. If the stamp
+     * is unchanged the file is assumed not to have been modified.
+     *
+     * @return The last modified time and size of the file, or empty if they are unknown.
+     */
+    private Optional<String> getFileStamp() {
+        if (path == null) {
+            return Optional.empty();
         }
 
-        for (String[] change : changes) {
-            fireSettingChange(change[0], change[1]);
+        try {
+            return Optional.of(Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path));
+        } catch (IOException ex) {
+            return Optional.empty();
         }
     }
 
     /**
-     * Fires the config changed listener for the specified option after this identity is reloaded.
+     * Fires the config changed listeners for the specified options after this identity is
+     * reloaded or a batch of changes has been applied.
      *
-     * @param domain The domain of the option that's changed
-     * @param key    The key of the option that's changed
-     *
-     * @since 0.6.3m1
+     * @param changes The options that have changed
      */
-    private void fireSettingChange(final String domain, final String key) {
+    private void fireSettingChanges(final ConfigChangeSet changes) {
         listeners.stream()
                 .map(WeakReference::get)
                 .filter(Objects::nonNull)
-                .forEach(l -> l.configChanged(domain, key));
+                .forEach(l -> l.configChanged(changes));
+    }
+
+    @Override
+    public void batch(final Runnable changes) {
+        batcher.batch(changes);
     }
 
     @Override
@@ -305,13 +372,8 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
                 // If we're the global config, don't set useless settings that are
                 // covered by global defaults.
 
-                if (globalConfig == null) {
-                    // TODO: This is horrible. Filtering of saves should be abstracted.
-                    globalConfig = (ConfigManager) identityManager
-                            .createAggregateConfig("", "", "", "");
-                }
-
-                globalConfig.removeIdentity(this);
+                // TODO: This is horrible. Filtering of saves should be abstracted.
+                final AggregateConfigProvider globalConfig = identityManager.getGlobalDefaults();
 
                 if (globalConfig.hasOptionString(domain, option)
                         && globalConfig.getOption(domain, option).equals(value)) {
@@ -323,7 +385,7 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
                         // There was an old value, so we need to unset it so
                         // that the default shows through.
                         file.getKeyDomain(domain).remove(option);
-                        needSave = true;
+                        markDirty(domain, option);
                         unset = true;
                     }
                 }
@@ -332,14 +394,14 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
             if (!unset && (oldValue == null && value != null
                     || oldValue != null && !oldValue.equals(value))) {
                 file.getKeyDomain(domain).put(option, value);
-                needSave = true;
+                markDirty(domain, option);
             }
         }
 
         // Fire any setting change listeners now we're no longer holding
         // a lock on this identity.
         if (unset || !Objects.equals(oldValue, value)) {
-            fireSettingChange(domain, option);
+            batcher.fire(ConfigChangeSet.of(domain, option));
         }
     }
 
@@ -374,10 +436,10 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
 
         synchronized (this) {
             file.getKeyDomain(domain).remove(option);
-            needSave = true;
+            markDirty(domain, option);
         }
 
-        fireSettingChange(domain, option);
+        batcher.fire(ConfigChangeSet.of(domain, option));
     }
 
     @Override
@@ -390,6 +452,27 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
         return new HashMap<>(file.getKeyDomain(domain));
     }
 
+    /**
+     * Records that the given option has changed, and schedules this identity to be saved.
+     *
+     * @param domain The domain of the option that's changed
+     * @param option The option that's changed
+     */
+    private void markDirty(final String domain, final String option) {
+        needSave = true;
+
+        if (TEMP_DOMAIN.equals(domain)) {
+            // Temporary settings are never written, so there's no need to schedule a save.
+            return;
+        }
+
+        dirtyKeys.computeIfAbsent(domain, k -> new HashSet<>()).add(option);
+
+        if (identityManager != null && path != null) {
+            identityManager.scheduleSave(this);
+        }
+    }
+
     @Override
     public synchronized void save() {
         LOG.info("{}: saving. Needsave = {}", new Object[]{getName(), needSave});
@@ -397,66 +480,112 @@ public class ConfigFileBackedConfigProvider implements ConfigProvider {
         if (needSave && file.isWritable()) {
             if (myTarget != null && myTarget.getType() == ConfigTarget.TYPE.GLOBAL) {
                 LOG.debug("{}: I'm a global config", getName());
+                removeSuperfluousSettings();
+            }
 
-                // This branch is executed if this identity is global. In this
-                // case, we build a global config (removing ourself and the
-                // versions identity) and compare our values to the values
-                // contained in that. Any values that are the same can be unset
-                // from this identity (as they will default to their current
-                // value).
-                //
-                // Note that the updater channel is included in the version
-                // identity, and this is excluded from the global config. This
-                // means that once you manually set the channel it will stay
-                // like that until you manually change it again, as opposed
-                // to being removed as soon as you use a build from that
-                // channel.
-                // TODO: This behaviour should be managed by something else.
-                if (globalConfig == null) {
-                    globalConfig = (ConfigManager) identityManager
-                            .createAggregateConfig("", "", "", "");
-                }
+            try {
+                writeFile();
 
-                globalConfig.removeIdentity(this);
-                globalConfig.removeIdentity(identityManager.getVersionSettings());
+                fileStamp = getFileStamp();
+                needSave = false;
+                dirtyKeys.clear();
+            } catch (IOException ex) {
+                LOG.warn("Unable to save identity file", ex);
+            }
+        }
+    }
 
-                if (LOG.isTraceEnabled()) {
-                    for (ConfigProvider source : globalConfig.getSources()) {
-                        LOG.trace("{}: source: {}",
-                                new Object[]{getName(), source.getName()});
-                    }
-                }
+    /**
+     * Removes any settings from this identity that are the same as the defaults they would
+     * otherwise inherit.
+     * <p>
+     * This is only applicable to the global identity. In this case, we use a view of the global
+     * config (excluding ourself and the versions identity) and compare our values to the values
+     * contained in that. Any values that are the same can be unset from this identity (as they
+     * will default to their current value). The first time this identity is saved every setting
+     * is checked; subsequently only those that have changed since the last save are.
+     * <p>
+     * Note that the updater channel is included in the version identity, and this is excluded
+     * from the global config. This means that once you manually set the channel it will stay like
+     * that until you manually change it again, as opposed to being removed as soon as you use a
+     * build from that channel.
+     */
+    // TODO: This behaviour should be managed by something else.
+    private void removeSuperfluousSettings() {
+        final AggregateConfigProvider globalConfig = identityManager.getGlobalDefaults();
 
-                for (Map.Entry<String, Map<String, String>> entry
-                        : file.getKeyDomains().entrySet()) {
-                    final String domain = entry.getKey();
-
-                    for (Map.Entry<String, String> subentry : new HashSet<>(entry.getValue().
-                            entrySet())) {
-                        final String key = subentry.getKey();
-                        final String value = subentry.getValue();
-
-                        if (globalConfig.hasOptionString(domain, key)
-                                && globalConfig.getOption(domain, key).equals(value)) {
-                            LOG.debug("{}: found superfluous setting: {}.{} (= {})", getName(),
-                                    domain, key, value);
-                            file.getKeyDomain(domain).remove(key);
-                        }
-                    }
+        if (LOG.isTraceEnabled()) {
+            for (ConfigProvider source : globalConfig.getSources()) {
+                LOG.trace("{}: source: {}", new Object[]{getName(), source.getName()});
+            }
+        }
+
+        final Map<String, Set<String>> candidates = new HashMap<>();
+        if (fullDiffNeeded) {
+            file.getKeyDomains().forEach((d, values) ->
+                    candidates.put(d, new HashSet<>(values.keySet())));
+        } else {
+            dirtyKeys.forEach((d, keys) -> candidates.put(d, new HashSet<>(keys)));
+        }
+
+        for (Map.Entry<String, Set<String>> entry : candidates.entrySet()) {
+            final String domain = entry.getKey();
+            if (!file.isKeyDomain(domain)) {
+                continue;
+            }
+
+            final Map<String, String> values = file.getKeyDomain(domain);
+            for (String key : entry.getValue()) {
+                final String value = values.get(key);
+
+                if (value != null && globalConfig.hasOptionString(domain, key)
+                        && globalConfig.getOption(domain, key).equals(value)) {
+                    LOG.debug("{}: found superfluous setting: {}.{} (= {})", getName(), domain,
+                            key, value);
+                    values.remove(key);
                 }
             }
+        }
+
+        fullDiffNeeded = false;
+    }
 
-            if (file.isKeyDomain("temp")) {
-                file.getKeyDomain("temp").clear();
+    /**
+     * Writes the contents of this identity to disk, excluding any temporary settings.
+     * <p>
+     * If this identity is backed by a file, the settings are written to a temporary file
+     * alongside it which is then moved over the original, so that a failure part-way through
+     * writing cannot leave a truncated file behind.
+     *
+     * @throws IOException If the file could not be written
+     */
+    private void writeFile() throws IOException {
+        if (path == null) {
+            if (file.isKeyDomain(TEMP_DOMAIN)) {
+                file.getKeyDomain(TEMP_DOMAIN).clear();
             }
+            file.write();
+            return;
+        }
 
-            try {
-                file.write();
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        final ConfigFile output = new ConfigFile(temp);
+        for (Map.Entry<String, Map<String, String>> entry : file.getKeyDomains().entrySet()) {
+            if (!TEMP_DOMAIN.equals(entry.getKey())) {
+                output.addDomain(entry.getKey(), new HashMap<>(entry.getValue()));
+            }
+        }
 
-                needSave = false;
-            } catch (IOException ex) {
-                LOG.warn("Unable to save identity file", ex);
+        try {
+            output.write();
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
             }
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
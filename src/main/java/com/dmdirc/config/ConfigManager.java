@@ -20,6 +20,7 @@ package com.dmdirc.config;
 import com.dmdirc.config.binding.ConfigBinder;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.config.provider.ConfigProviderMigrator;
 import com.dmdirc.util.validators.Validator;
@@ -29,10 +30,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,14 +49,18 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
         AggregateConfigProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConfigManager.class);
-    /** Temporary map for lookup stats. */
-    private static final Map<String, Integer> STATS = new TreeMap<>();
+    /** The number of lookups of each setting, keyed by domain and option. */
+    private static final ConcurrentMap<String, LongAdder> STATS = new ConcurrentHashMap<>();
+    /** The total number of lookups across all settings. */
+    private static final LongAdder LOOKUPS = new LongAdder();
     /** Magical domain to redirect to the version identity. */
     private static final String VERSION_DOMAIN = "version";
     /** A list of sources for this config manager. */
     private final List<ConfigFileBackedConfigProvider> sources = new ArrayList<>();
-    /** The listeners registered for this manager. */
-    private final Multimap<String, ConfigChangeListener> listeners = ArrayListMultimap.create();
+    /** The listeners registered for this manager, by domain. */
+    private final Map<String, DomainListeners> listeners = new HashMap<>();
+    /** Batcher used to coalesce change notifications. */
+    private final ConfigChangeBatcher batcher = new ConfigChangeBatcher(this::fireChanges);
     /** The config binder to use for this manager. */
     private final ConfigBinder binder;
     /** The manager to use to fetch global state. */
@@ -189,24 +199,31 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
             return;
         }
 
-        final Collection<String[]> changed = new ArrayList<>();
-
-        // Determine which settings will have changed
-        for (String domain : identity.getDomains()) {
-            identity.getOptions(domain).keySet().stream()
-                    .filter(option -> identity.equals(getScope(domain, option)))
-                    .forEach(option -> changed.add(new String[]{domain, option}));
-        }
+        final ConfigChangeSet changed = getScopedOptions(identity);
 
         synchronized (sources) {
             identity.removeListener(this);
             sources.remove(identity);
         }
 
-        // Fire change listeners
-        for (String[] setting : changed) {
-            configChanged(setting[0], setting[1]);
+        batcher.fire(changed);
+    }
+
+    /**
+     * Determines which of the given identity's settings are currently provided by it.
+     *
+     * @param identity The identity to check
+     *
+     * @return The settings for which the identity is the current scope
+     */
+    private ConfigChangeSet getScopedOptions(final ConfigProvider identity) {
+        final ConfigChangeSet.Builder options = ConfigChangeSet.builder();
+        for (String domain : identity.getDomains()) {
+            identity.getOptions(domain).keySet().stream()
+                    .filter(option -> identity.equals(getScope(domain, option)))
+                    .forEach(option -> options.add(domain, option));
         }
+        return options.build();
     }
 
     /**
@@ -241,57 +258,75 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
      * @return True if the identity applies, false otherwise
      */
     public boolean identityApplies(final ConfigFileBackedConfigProvider identity) {
-        final String comp;
+        final String comp = getTargetData(identity.getTarget().getType());
+        final boolean result = identityTargetMatches(identity.getTarget(), comp);
+
+        LOG.trace("Checking if identity {} applies. Comparison: {}, target: {}, result: {}",
+                identity, comp, identity.getTarget().getData(), result);
 
-        switch (identity.getTarget().getType()) {
+        return result;
+    }
+
+    /**
+     * Gets the value that identities with the given target type must match in order to apply to
+     * this manager.
+     *
+     * @param type The type of target.
+     *
+     * @return The value to match, or {@code null} if no identity of that type applies.
+     */
+    String getTargetData(final ConfigTarget.TYPE type) {
+        switch (type) {
             case PROTOCOL:
-                comp = protocol;
-                break;
+                return protocol;
             case IRCD:
-                comp = ircd;
-                break;
+                return ircd;
             case NETWORK:
-                comp = network;
-                break;
+                return network;
             case SERVER:
-                comp = server;
-                break;
+                return server;
             case CHANNEL:
-                comp = channel;
-                break;
+                return channel;
             case CUSTOM:
                 // We don't want custom identities
-                comp = null;
-                break;
+                return null;
             default:
-                comp = "";
-                break;
+                return "";
         }
-
-        final boolean result = comp != null
-                && identityTargetMatches(identity.getTarget().getData(), comp);
-
-        LOG.trace("Checking if identity {} applies. Comparison: {}, target: {}, result: {}",
-                identity, comp, identity.getTarget().getData(), result);
-
-        return result;
     }
 
     /**
-     * Determines whether the specified identity target matches the desired target. If the desired
-     * target is prefixed with "re:", it is treated as a regular expression; otherwise the strings
-     * are compared lexicographically to determine a match.
+     * Determines whether the specified identity target matches the desired target. If the target
+     * is prefixed with "re:", it is treated as a regular expression; otherwise the strings are
+     * compared lexicographically to determine a match.
      *
+     * @param target  The target supplied by the identity
      * @param desired The target string required by this config manager
-     * @param actual  The target string supplied by the identity
      *
      * @return True if the identity should be applied, false otherwise
      *
      * @since 0.6.3m2
      */
-    protected boolean identityTargetMatches(final String actual, final String desired) {
-        return actual.startsWith("re:") ? desired.matches(actual.substring(3))
-                : actual.equalsIgnoreCase(desired);
+    protected boolean identityTargetMatches(final ConfigTarget target, final String desired) {
+        return desired != null && target.matches(desired);
+    }
+
+    /**
+     * Adds the initial set of identities to a newly created manager. As nothing can be listening
+     * to the manager yet, no change events are fired.
+     *
+     * @param identities The identities that apply to this manager.
+     */
+    void addInitialIdentities(final Collection<ConfigFileBackedConfigProvider> identities) {
+        synchronized (sources) {
+            for (ConfigFileBackedConfigProvider identity : identities) {
+                if (!sources.contains(identity)) {
+                    sources.add(identity);
+                    identity.addListener(this);
+                }
+            }
+            sources.sort(new ConfigProviderTargetComparator());
+        }
     }
 
     /**
@@ -308,12 +343,7 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
                 sources.sort(new ConfigProviderTargetComparator());
             }
 
-            // Determine which settings will have changed
-            for (String domain : identity.getDomains()) {
-                identity.getOptions(domain).keySet().stream()
-                        .filter(option -> identity.equals(getScope(domain, option)))
-                        .forEach(option -> configChanged(domain, option));
-            }
+            batcher.fire(getScopedOptions(identity));
         }
     }
 
@@ -337,7 +367,8 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
 
     /**
      * Migrates this manager from its current configuration to the appropriate one for the specified
-     * new parameters, firing listeners where settings have changed.
+     * new parameters, firing listeners where settings have changed. Listeners are notified once,
+     * after all identities have been updated.
      *
      * <p>
      * This is package private - only callers with access to a {@link ConfigProviderMigrator}
@@ -361,17 +392,20 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
         this.server = server;
         this.channel = channel + '@' + network;
 
-        new ArrayList<>(sources).stream().filter(identity -> !identityApplies(identity))
-                .forEach(identity -> {
-                    LOG.debug("Removing identity that no longer applies: {}", identity);
-                    removeIdentity(identity);
-                });
-
-        final List<ConfigFileBackedConfigProvider> newSources = manager.getIdentitiesForManager(this);
-        for (ConfigFileBackedConfigProvider identity : newSources) {
-            LOG.trace("Testing new identity: {}", identity);
-            checkIdentity(identity);
-        }
+        batcher.batch(() -> {
+            new ArrayList<>(sources).stream().filter(identity -> !identityApplies(identity))
+                    .forEach(identity -> {
+                        LOG.debug("Removing identity that no longer applies: {}", identity);
+                        removeIdentity(identity);
+                    });
+
+            final List<ConfigFileBackedConfigProvider> newSources =
+                    manager.getIdentitiesForManager(this);
+            for (ConfigFileBackedConfigProvider identity : newSources) {
+                LOG.trace("Testing new identity: {}", identity);
+                checkIdentity(identity);
+            }
+        });
 
         LOG.debug("New identities: {}", sources);
     }
@@ -382,74 +416,100 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
      * @param domain The domain that is being looked up
      * @param option The option that is being looked up
      */
-    @SuppressWarnings("PMD.AvoidCatchingNPE")
     protected static void doStats(final String domain, final String option) {
-        final String key = domain + '.' + option;
-
-        try {
-            STATS.put(key, 1 + (STATS.containsKey(key) ? STATS.get(key) : 0));
-        } catch (NullPointerException ex) {
-            // JVM bugs ftl.
-        }
+        STATS.computeIfAbsent(domain + '.' + option, k -> new LongAdder()).increment();
+        LOOKUPS.increment();
     }
 
     /**
-     * Retrieves the statistic map.
+     * Retrieves a snapshot of the statistic map.
      *
-     * @return A map of config options to lookup counts
+     * @return A map of config options to lookup counts, sorted by option
      */
     public static Map<String, Integer> getStats() {
-        return STATS;
+        final Map<String, Integer> stats = new TreeMap<>();
+        STATS.forEach((key, count) -> stats.put(key, count.intValue()));
+        return stats;
+    }
+
+    /**
+     * Retrieves the total number of lookups made across all settings.
+     *
+     * @return The total number of lookups
+     */
+    public static long getLookupCount() {
+        return LOOKUPS.sum();
     }
 
     @Override
     public void addChangeListener(final String domain,
             final ConfigChangeListener listener) {
-        addListener(domain, listener);
+        synchronized (listeners) {
+            listeners.computeIfAbsent(domain, d -> new DomainListeners()).domainListeners.add(listener);
+        }
     }
 
     @Override
     public void addChangeListener(final String domain, final String key,
             final ConfigChangeListener listener) {
-        addListener(domain + '.' + key, listener);
+        synchronized (listeners) {
+            listeners.computeIfAbsent(domain, d -> new DomainListeners()).keyListeners.put(key, listener);
+        }
     }
 
     @Override
     public void removeListener(final ConfigChangeListener listener) {
         synchronized (listeners) {
-            final Iterable<String> keys = new HashSet<>(listeners.keySet());
-            keys.forEach(k -> listeners.remove(k, listener));
+            final Iterator<DomainListeners> iterator = listeners.values().iterator();
+            while (iterator.hasNext()) {
+                final DomainListeners domainListeners = iterator.next();
+                domainListeners.domainListeners.removeIf(listener::equals);
+                domainListeners.keyListeners.values().removeIf(listener::equals);
+                if (domainListeners.isEmpty()) {
+                    iterator.remove();
+                }
+            }
         }
     }
 
-    /**
-     * Adds the specified listener to the internal map/list.
-     *
-     * @param key      The key to use (domain or domain.key)
-     * @param listener The listener to register
-     */
-    private void addListener(final String key,
-            final ConfigChangeListener listener) {
-        synchronized (listeners) {
-            listeners.put(key, listener);
-        }
+    @Override
+    public void configChanged(final String domain, final String key) {
+        batcher.fire(ConfigChangeSet.of(domain, key));
     }
 
     @Override
-    public void configChanged(final String domain, final String key) {
-        final Collection<ConfigChangeListener> targets = new ArrayList<>();
+    public void configChanged(final ConfigChangeSet changes) {
+        batcher.fire(changes);
+    }
 
-        if (listeners.containsKey(domain)) {
-            targets.addAll(listeners.get(domain));
-        }
+    /**
+     * Notifies listeners of the given changes. Each listener is called at most once, with the
+     * subset of the changes that it is registered for.
+     *
+     * @param changes The settings that have changed
+     */
+    private void fireChanges(final ConfigChangeSet changes) {
+        final Map<ConfigChangeListener, ConfigChangeSet.Builder> targets = new LinkedHashMap<>();
 
-        if (listeners.containsKey(domain + '.' + key)) {
-            targets.addAll(listeners.get(domain + '.' + key));
-        }
+        synchronized (listeners) {
+            for (String domain : changes.getDomains()) {
+                final DomainListeners domainListeners = listeners.get(domain);
+                if (domainListeners == null) {
+                    continue;
+                }
 
-        for (ConfigChangeListener listener : targets) {
-            listener.configChanged(domain, key);
+                for (String key : changes.getKeys(domain)) {
+                    for (ConfigChangeListener listener : domainListeners.domainListeners) {
+                        targets.computeIfAbsent(listener, l -> ConfigChangeSet.builder()).add(domain, key);
+                    }
+                    for (ConfigChangeListener listener : domainListeners.keyListeners.get(key)) {
+                        targets.computeIfAbsent(listener, l -> ConfigChangeSet.builder()).add(domain, key);
+                    }
+                }
+            }
         }
+
+        targets.forEach((listener, listenerChanges) -> listener.configChanged(listenerChanges.build()));
     }
 
     @Override
@@ -462,4 +522,25 @@ class ConfigManager implements ConfigChangeListener, ConfigProviderListener,
         removeIdentity(configProvider);
     }
 
+    /**
+     * The listeners registered for a single domain.
+     */
+    private static class DomainListeners {
+
+        /** Listeners interested in every key in the domain. */
+        private final Collection<ConfigChangeListener> domainListeners = new ArrayList<>();
+        /** Listeners interested in specific keys, keyed on the key name. */
+        private final Multimap<String, ConfigChangeListener> keyListeners = ArrayListMultimap.create();
+
+        /**
+         * Determines whether any listeners are registered for the domain.
+         *
+         * @return True if there are no listeners, false otherwise
+         */
+        boolean isEmpty() {
+            return domainListeners.isEmpty() && keyListeners.isEmpty();
+        }
+
+    }
+
 }
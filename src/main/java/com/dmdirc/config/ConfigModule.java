@@ -23,7 +23,12 @@ import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.interfaces.config.IdentityController;
 import com.dmdirc.interfaces.config.IdentityFactory;
 import com.dmdirc.logger.ErrorManager;
+import com.dmdirc.metrics.MetricsRegistry;
+import com.dmdirc.startup.StartupTimeline;
 import com.dmdirc.ui.WarningDialog;
+import com.dmdirc.util.FileWatcher;
+import com.dmdirc.util.system.SystemLifecycleComponent;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dagger.Module;
 import dagger.Provides;
 import java.awt.GraphicsEnvironment;
@@ -31,7 +36,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import static com.dmdirc.commandline.CommandLineOptionsModule.Directory;
@@ -44,6 +54,9 @@ import static com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
 @Module(library = true, complete = false)
 public class ConfigModule {
 
+    /** The number of seconds to wait after a setting changes before writing it to disk. */
+    private static final int SAVE_DELAY = 5;
+
     @Provides
     @Singleton
     public IdentityManager getIdentityManager(
@@ -51,15 +64,27 @@ public class ConfigModule {
             @Directory(DirectoryType.IDENTITIES) final Path identitiesDirectory,
             @Directory(DirectoryType.ERRORS) final Path errorsDirectory,
             final CommandLineParser commandLineParser,
-            final ErrorManager errorManager) {
-        final IdentityManager identityManager = new IdentityManager(baseDirectory, identitiesDirectory);
+            final ErrorManager errorManager,
+            final MetricsRegistry metricsRegistry,
+            @Named("startup") final ExecutorService startupExecutor,
+            final StartupTimeline startupTimeline) {
+        metricsRegistry.registerGauge("config.lookups", ConfigManager::getLookupCount);
+        final ConfigPersistenceService persistenceService = new ConfigPersistenceService(
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("config-writer-%d").setDaemon(true).build()),
+                SAVE_DELAY, TimeUnit.SECONDS);
+        final IdentityManager identityManager = new IdentityManager(baseDirectory,
+                identitiesDirectory, persistenceService, startupExecutor);
         errorManager.initialise(identityManager.getGlobalConfiguration());
         identityManager.loadVersionIdentity();
+        final long start = System.nanoTime();
         try {
             identityManager.initialise();
         } catch (InvalidIdentityFileException ex) {
             handleInvalidConfigFile(identityManager, baseDirectory);
         }
+        startupTimeline.record("identities", Collections.emptyList(),
+                Thread.currentThread().getName(), start, System.nanoTime());
 
         if (commandLineParser.getDisableReporting()) {
             identityManager.getUserSettings().setOption("temp", "noerrorreporting", true);
@@ -96,6 +121,16 @@ public class ConfigModule {
         return identityManager;
     }
 
+    @Provides(type = Provides.Type.SET)
+    public SystemLifecycleComponent getFileWatcher(final FileWatcher fileWatcher) {
+        return fileWatcher;
+    }
+
+    @Provides(type = Provides.Type.SET)
+    public SystemLifecycleComponent getIdentityFileWatcher(final IdentityFileWatcher watcher) {
+        return watcher;
+    }
+
     /**
      * Called when the global config cannot be loaded due to an error. This method informs the user
      * of the problem and installs a new default config file, backing up the old one.
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.APP_ERROR;
+
+/**
+ * Write-behind persistence for {@link ConfigFileBackedConfigProvider}s.
+ * <p>
+ * Providers that have been modified are queued with {@link #schedule}. Queued providers are
+ * saved together on the executor once the configured delay has elapsed since the first pending
+ * change, so that a burst of changes results in a single write per file. {@link #flush()} saves
+ * everything that is pending immediately on the calling thread.
+ * <p>
+ * If no executor is supplied, providers are only saved when explicitly flushed.
+ * <p>
+ * The executor is expected to use daemon threads, so it never holds up exit. Anything still
+ * pending when the client quits is written by {@link IdentityManager#saveAll()}, which flushes
+ * this service.
+ */
+public class ConfigPersistenceService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigPersistenceService.class);
+    /** The executor to perform background saves on, if any. */
+    @Nullable
+    private final ScheduledExecutorService executor;
+    /** The delay between a provider being scheduled and it being saved. */
+    private final long delay;
+    /** The unit of {@link #delay}. */
+    private final TimeUnit unit;
+    /**
+     * Providers that are waiting to be saved. Providers' equality depends on their mutable name,
+     * so they are tracked by identity.
+     */
+    private final Set<ConfigFileBackedConfigProvider> pending =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Lock guarding {@link #pending}. */
+    private final Object pendingLock = new Object();
+    /** Whether a background flush is currently scheduled. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Creates a new persistence service that only saves providers when flushed.
+     */
+    public ConfigPersistenceService() {
+        this(null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new persistence service.
+     *
+     * @param executor The executor to perform background saves on.
+     * @param delay    The delay between a provider being scheduled and it being saved.
+     * @param unit     The unit of the delay.
+     */
+    public ConfigPersistenceService(@Nullable final ScheduledExecutorService executor,
+            final long delay, final TimeUnit unit) {
+        this.executor = executor;
+        this.delay = delay;
+        this.unit = unit;
+    }
+
+    /**
+     * Schedules the given provider to be saved. Multiple calls for the same provider before it is
+     * saved result in a single save.
+     *
+     * @param provider The provider that has changed.
+     */
+    public void schedule(final ConfigFileBackedConfigProvider provider) {
+        synchronized (pendingLock) {
+            pending.add(provider);
+        }
+
+        if (executor != null && scheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flush, delay, unit);
+        }
+    }
+
+    /**
+     * Immediately saves all providers that are waiting to be saved.
+     */
+    public void flush() {
+        scheduled.set(false);
+
+        final List<ConfigFileBackedConfigProvider> providers;
+        synchronized (pendingLock) {
+            providers = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        for (ConfigFileBackedConfigProvider provider : providers) {
+            try {
+                provider.save();
+            } catch (RuntimeException ex) {
+                LOG.warn(APP_ERROR, "Unable to save config {}", provider, ex);
+            }
+        }
+    }
+
+}
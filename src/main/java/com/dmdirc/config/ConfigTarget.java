@@ -18,9 +18,17 @@
 package com.dmdirc.config;
 
 import java.io.Serializable;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import javax.annotation.Nonnull;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
 /**
  * Represents the target of a particular config source.
  * <p>
@@ -51,14 +59,19 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
         CUSTOM,
 
     }
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigTarget.class);
     /** A version number for this class. */
     private static final long serialVersionUID = 2;
+    /** The prefix used for targets that are regular expressions. */
+    private static final String REGEX_PREFIX = "re:";
     /** The type of this target. */
     protected TYPE type = ConfigTarget.TYPE.GLOBAL;
     /** The data of this target. */
     protected String data;
     /** The user-defined ordering for this target. */
     protected int order = 50000;
+    /** The compiled form of a regular expression target, or {@code null} if not yet compiled. */
+    private transient volatile Optional<Pattern> pattern;
 
     /**
      * Sets the ordering value for this target. Lower means higher preference.
@@ -82,18 +95,21 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setGlobal() {
         type = TYPE.GLOBAL;
         data = "";
+        pattern = null;
     }
 
     /** Sets this target to be a global default source. */
     public void setGlobalDefault() {
         type = TYPE.GLOBALDEFAULT;
         data = "";
+        pattern = null;
     }
 
     /** Sets this target to be a theme source. */
     public void setTheme() {
         type = TYPE.THEME;
         data = "";
+        pattern = null;
     }
 
     /**
@@ -106,6 +122,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setCustom(final String customType) {
         type = TYPE.CUSTOM;
         data = customType;
+        pattern = null;
     }
 
     /**
@@ -129,6 +146,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setIrcd(final String ircd) {
         type = TYPE.IRCD;
         data = ircd;
+        pattern = null;
     }
 
     /**
@@ -139,6 +157,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setNetwork(final String network) {
         type = TYPE.NETWORK;
         data = network;
+        pattern = null;
     }
 
     /**
@@ -149,6 +168,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setServer(final String server) {
         type = TYPE.SERVER;
         data = server;
+        pattern = null;
     }
 
     /**
@@ -159,6 +179,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setChannel(final String channel) {
         type = TYPE.CHANNEL;
         data = channel;
+        pattern = null;
     }
 
     /**
@@ -171,6 +192,7 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
     public void setProtocol(final String protocol) {
         type = TYPE.PROTOCOL;
         data = protocol;
+        pattern = null;
     }
 
     /**
@@ -200,6 +222,56 @@ public class ConfigTarget implements Comparable<ConfigTarget>, Serializable {
         return data;
     }
 
+    /**
+     * Determines whether this target's data is a regular expression, rather than a literal value.
+     *
+     * @return True if the data should be treated as a regular expression.
+     */
+    public boolean isRegex() {
+        return data != null && data.startsWith(REGEX_PREFIX);
+    }
+
+    /**
+     * Retrieves the compiled regular expression for this target. The expression is compiled the
+     * first time it is requested.
+     *
+     * @return The compiled pattern, or empty if this target is not a regular expression or the
+     *         expression is invalid.
+     */
+    public Optional<Pattern> getPattern() {
+        Optional<Pattern> result = pattern;
+        if (result == null) {
+            result = Optional.empty();
+            if (isRegex()) {
+                try {
+                    result = Optional.of(Pattern.compile(data.substring(REGEX_PREFIX.length())));
+                } catch (PatternSyntaxException ex) {
+                    LOG.info(USER_ERROR, "Invalid regular expression in config target: {}", data,
+                            ex);
+                }
+            }
+            pattern = result;
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether this target matches the given value. If this target is a regular
+     * expression the whole value must match it; otherwise the strings are compared ignoring case.
+     *
+     * @param value The value to test.
+     *
+     * @return True if the target matches, false otherwise.
+     */
+    public boolean matches(final String value) {
+        if (value == null) {
+            return false;
+        }
+
+        return isRegex() ? getPattern().map(p -> p.matcher(value).matches()).orElse(false)
+                : data.equalsIgnoreCase(value);
+    }
+
     @Override
     public int hashCode() {
         return type.ordinal() + data.hashCode();
@@ -18,13 +18,35 @@
 package com.dmdirc.config;
 
 import com.dmdirc.config.provider.ReadOnlyConfigProvider;
+
+import com.google.common.collect.ImmutableMap;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides methods to retrieve a value of a certain type from a config provider.
  */
 public class ConfigValueRetriever {
 
+    /** Getter used for types that cannot be retrieved from a config provider. */
+    private static final TypedGetter UNSUPPORTED = (provider, domain, key, required, fallbacks) -> null;
+
+    /** Getters for each of the types supported by the retriever. */
+    private static final Map<Class<?>, TypedGetter> GETTERS = ImmutableMap.<Class<?>, TypedGetter>builder()
+            .put(String.class, (provider, domain, key, required, fallbacks) -> provider.getOptionString(
+                    domain, key, required, ReadOnlyConfigProvider.PERMISSIVE_VALIDATOR, fallbacks))
+            .put(Boolean.class, (provider, domain, key, required, fallbacks) -> provider.getOptionBool(domain, key))
+            .put(Boolean.TYPE, (provider, domain, key, required, fallbacks) -> provider.getOptionBool(domain, key))
+            .put(Character.class, (provider, domain, key, required, fallbacks) -> provider.getOptionChar(domain, key))
+            .put(Character.TYPE, (provider, domain, key, required, fallbacks) -> provider.getOptionChar(domain, key))
+            .put(Integer.class, (provider, domain, key, required, fallbacks) ->
+                    provider.getOptionInt(domain, key, fallbacks))
+            .put(Integer.TYPE, (provider, domain, key, required, fallbacks) ->
+                    provider.getOptionInt(domain, key, fallbacks))
+            .put(List.class, (provider, domain, key, required, fallbacks) -> provider.getOptionList(domain, key))
+            .build();
+
     private final ReadOnlyConfigProvider configProvider;
 
     public ConfigValueRetriever(final ReadOnlyConfigProvider configProvider) {
@@ -45,28 +67,7 @@ public class ConfigValueRetriever {
      */
     public Object getValue(final Class<?> targetClass, final String domain, final String key,
             final boolean required, final String ... fallbacks) {
-        if (targetClass.equals(String.class)) {
-            return configProvider.getOptionString(
-                    domain, key, required, ReadOnlyConfigProvider.PERMISSIVE_VALIDATOR, fallbacks);
-        }
-
-        if (targetClass.equals(Boolean.class) || targetClass.equals(Boolean.TYPE)) {
-            return configProvider.getOptionBool(domain, key);
-        }
-
-        if (targetClass.equals(Character.class) || targetClass.equals(Character.TYPE)) {
-            return configProvider.getOptionChar(domain, key);
-        }
-
-        if (targetClass.equals(Integer.class) || targetClass.equals(Integer.TYPE)) {
-            return configProvider.getOptionInt(domain, key, fallbacks);
-        }
-
-        if (targetClass.equals(List.class)) {
-            return configProvider.getOptionList(domain, key);
-        }
-
-        return null;
+        return getGetter(targetClass).getValue(configProvider, domain, key, required, fallbacks);
     }
 
     /**
@@ -83,4 +84,40 @@ public class ConfigValueRetriever {
         return getValue(targetClass, domain, key, true);
     }
 
+    /**
+     * Resolves the getter that will be used to retrieve values of the given class. Callers that
+     * repeatedly retrieve the same type can resolve this once and reuse it.
+     *
+     * @param targetClass The desired class.
+     *
+     * @return A getter for the given class. If the class is not supported, the getter will always
+     *         return null.
+     */
+    static TypedGetter getGetter(final Class<?> targetClass) {
+        return GETTERS.getOrDefault(targetClass, UNSUPPORTED);
+    }
+
+    /**
+     * Retrieves a value of a pre-determined type from a config provider.
+     */
+    @FunctionalInterface
+    interface TypedGetter {
+
+        /**
+         * Gets a value from the given config provider.
+         *
+         * @param provider The provider to read the value from.
+         * @param domain The domain of the option to retrieve.
+         * @param key The key of the option to retrieve.
+         * @param required Whether the option is required or not (only used for strings).
+         * @param fallbacks Ordered collection of domain/key pairs to try if the value is not set.
+         *
+         * @return The current value of the configuration key(s), or null if the type is not
+         *         supported.
+         */
+        Object getValue(ReadOnlyConfigProvider provider, String domain, String key, boolean required,
+                String ... fallbacks);
+
+    }
+
 }
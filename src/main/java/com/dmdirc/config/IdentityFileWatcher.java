@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.util.FileWatcher;
+import com.dmdirc.util.system.SystemLifecycleComponent;
+
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import static com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
+
+/**
+ * Watches the global config file and the identities directory, and applies changes made to them
+ * outside of the client.
+ */
+@Singleton
+public class IdentityFileWatcher implements SystemLifecycleComponent {
+
+    /** The suffix used for files that are being written by the client. */
+    private static final String TEMP_SUFFIX = ".tmp";
+    private final IdentityManager identityManager;
+    private final FileWatcher fileWatcher;
+    private final AggregateConfigProvider globalConfig;
+    private final Path baseDirectory;
+    private final Path identitiesDirectory;
+
+    @Inject
+    public IdentityFileWatcher(
+            final IdentityManager identityManager,
+            final FileWatcher fileWatcher,
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @Directory(DirectoryType.BASE) final Path baseDirectory,
+            @Directory(DirectoryType.IDENTITIES) final Path identitiesDirectory) {
+        this.identityManager = identityManager;
+        this.fileWatcher = fileWatcher;
+        this.globalConfig = globalConfig;
+        this.baseDirectory = baseDirectory;
+        this.identitiesDirectory = identitiesDirectory;
+    }
+
+    @Override
+    public void startUp() {
+        if (!globalConfig.getOptionBool("general", "watchconfigfiles")) {
+            return;
+        }
+
+        fileWatcher.watchFile(baseDirectory.resolve("dmdirc.config"),
+                identityManager::handleFileChanged);
+        fileWatcher.watch(identitiesDirectory, true,
+                path -> !path.getFileName().toString().endsWith(TEMP_SUFFIX),
+                identityManager::handleFileChanged);
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Indexes standard (non-custom) identities by their target, so that the identities applicable to
+ * a particular config manager can be found without testing every known identity.
+ * <p>
+ * Identities with literal targets are indexed by type and case-folded data. Identities whose
+ * targets are regular expressions are kept in a separate list per type and are tested against
+ * each request using their pre-compiled patterns.
+ * <p>
+ * This class is not thread safe; callers must synchronise access.
+ */
+class IdentityIndex {
+
+    /** Identities with literal targets, by type and then case-folded target data. */
+    private final Map<ConfigTarget.TYPE, Map<String, List<ConfigFileBackedConfigProvider>>> literal =
+            new EnumMap<>(ConfigTarget.TYPE.class);
+    /** Identities with regular expression targets, by type. */
+    private final Map<ConfigTarget.TYPE, List<ConfigFileBackedConfigProvider>> regex =
+            new EnumMap<>(ConfigTarget.TYPE.class);
+
+    /**
+     * Adds the given identity to the index. Custom identities are ignored.
+     *
+     * @param identity The identity to add.
+     */
+    public void add(final ConfigFileBackedConfigProvider identity) {
+        final ConfigTarget target = identity.getTarget();
+        if (target.getType() == ConfigTarget.TYPE.CUSTOM) {
+            return;
+        }
+
+        if (target.isRegex()) {
+            regex.computeIfAbsent(target.getType(), t -> new ArrayList<>()).add(identity);
+        } else {
+            literal.computeIfAbsent(target.getType(), t -> new HashMap<>())
+                    .computeIfAbsent(fold(target.getData()), d -> new ArrayList<>(1))
+                    .add(identity);
+        }
+    }
+
+    /**
+     * Removes the given identity from the index.
+     *
+     * @param identity The identity to remove.
+     */
+    public void remove(final ConfigFileBackedConfigProvider identity) {
+        final ConfigTarget target = identity.getTarget();
+
+        if (target.isRegex()) {
+            regex.getOrDefault(target.getType(), Collections.emptyList()).remove(identity);
+            return;
+        }
+
+        final Map<String, List<ConfigFileBackedConfigProvider>> byData =
+                literal.get(target.getType());
+        if (byData != null) {
+            final String key = fold(target.getData());
+            final List<ConfigFileBackedConfigProvider> matches = byData.get(key);
+            if (matches != null && matches.remove(identity) && matches.isEmpty()) {
+                byData.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all identities from the index.
+     */
+    public void clear() {
+        literal.clear();
+        regex.clear();
+    }
+
+    /**
+     * Finds an identity with a literal target of the given type and data.
+     *
+     * @param type The type of target to look for.
+     * @param data The target data, compared case-insensitively.
+     *
+     * @return The first matching identity, if any.
+     */
+    public Optional<ConfigFileBackedConfigProvider> find(final ConfigTarget.TYPE type,
+            final String data) {
+        final Map<String, List<ConfigFileBackedConfigProvider>> byData = literal.get(type);
+        if (byData == null) {
+            return Optional.empty();
+        }
+
+        final List<ConfigFileBackedConfigProvider> matches = byData.get(fold(data));
+        return matches == null || matches.isEmpty() ? Optional.empty()
+                : Optional.of(matches.get(0));
+    }
+
+    /**
+     * Finds all identities whose targets match the given values.
+     *
+     * @param values Function returning the value to match for each target type, or {@code null}
+     *               if no identities of that type should match.
+     *
+     * @return All identities which apply, in no particular order.
+     */
+    public List<ConfigFileBackedConfigProvider> getApplicable(
+            final Function<ConfigTarget.TYPE, String> values) {
+        final List<ConfigFileBackedConfigProvider> result = new ArrayList<>();
+
+        for (Map.Entry<ConfigTarget.TYPE, Map<String, List<ConfigFileBackedConfigProvider>>> entry
+                : literal.entrySet()) {
+            final String value = values.apply(entry.getKey());
+            if (value != null) {
+                addAll(result, entry.getValue().get(fold(value)));
+            }
+        }
+
+        for (Map.Entry<ConfigTarget.TYPE, List<ConfigFileBackedConfigProvider>> entry
+                : regex.entrySet()) {
+            final String value = values.apply(entry.getKey());
+            if (value != null) {
+                entry.getValue().stream()
+                        .filter(identity -> identity.getTarget().matches(value))
+                        .forEach(result::add);
+            }
+        }
+
+        return result;
+    }
+
+    private static void addAll(final List<ConfigFileBackedConfigProvider> target,
+            final Collection<ConfigFileBackedConfigProvider> source) {
+        if (source != null) {
+            target.addAll(source);
+        }
+    }
+
+    /**
+     * Case-folds the given target data for use as an index key.
+     *
+     * @param data The data to fold, may be {@code null}.
+     *
+     * @return The folded data.
+     */
+    private static String fold(final String data) {
+        return data == null ? "" : data.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -27,6 +27,7 @@ import com.dmdirc.util.io.FileUtils;
 import com.dmdirc.util.io.InvalidConfigFileException;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URISyntaxException;
@@ -37,11 +38,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +77,8 @@ public class IdentityManager implements IdentityFactory, IdentityController {
     private final Multimap<String, ConfigFileBackedConfigProvider> identities = ArrayListMultimap.create();
     /** Map of paths to corresponding config providers, to facilitate reloading. */
     private final Map<Path, ConfigFileBackedConfigProvider> configProvidersByPath = new ConcurrentHashMap<>();
+    /** Index of standard identities by target, guarded by {@link #identities}. */
+    private final IdentityIndex identityIndex = new IdentityIndex();
     /**
      * The {@link ConfigProviderListener}s that have registered with this manager.
      *
@@ -89,16 +95,51 @@ public class IdentityManager implements IdentityFactory, IdentityController {
     private ConfigFileBackedConfigProvider versionConfig;
     /** The config manager used for global settings. */
     private AggregateConfigProvider globalconfig;
+    /** The config manager used to view defaults, excluding the user's settings. */
+    private ConfigManager globalDefaults;
+    /** The service used to persist modified identities. */
+    private final ConfigPersistenceService persistenceService;
+    /** The executor used to parse new identity files. */
+    private final Executor parseExecutor;
 
     /**
-     * Creates a new instance of IdentityManager.
+     * Creates a new instance of IdentityManager. Identities will only be saved when
+     * {@link #saveAll()} is called.
      *
      * @param baseDirectory       The BASE config directory.
      * @param identitiesDirectory The directory to store identities in.
      */
     public IdentityManager(final Path baseDirectory, final Path identitiesDirectory) {
+        this(baseDirectory, identitiesDirectory, new ConfigPersistenceService());
+    }
+
+    /**
+     * Creates a new instance of IdentityManager.
+     *
+     * @param baseDirectory       The BASE config directory.
+     * @param identitiesDirectory The directory to store identities in.
+     * @param persistenceService  The service to use to persist modified identities.
+     */
+    public IdentityManager(final Path baseDirectory, final Path identitiesDirectory,
+            final ConfigPersistenceService persistenceService) {
+        this(baseDirectory, identitiesDirectory, persistenceService, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Creates a new instance of IdentityManager.
+     *
+     * @param baseDirectory       The BASE config directory.
+     * @param identitiesDirectory The directory to store identities in.
+     * @param persistenceService  The service to use to persist modified identities.
+     * @param parseExecutor       The executor to parse identity files on. When a directory is
+     *                            loaded, its files are parsed concurrently and then added in order.
+     */
+    public IdentityManager(final Path baseDirectory, final Path identitiesDirectory,
+            final ConfigPersistenceService persistenceService, final Executor parseExecutor) {
         this.configDirectory = baseDirectory;
         this.identitiesDirectory = identitiesDirectory;
+        this.persistenceService = persistenceService;
+        this.parseExecutor = parseExecutor;
     }
 
     /**
@@ -107,7 +148,10 @@ public class IdentityManager implements IdentityFactory, IdentityController {
      * @throws InvalidIdentityFileException If there is an error with the config file.
      */
     public void initialise() throws InvalidIdentityFileException {
-        identities.clear();
+        synchronized (identities) {
+            identities.clear();
+            identityIndex.clear();
+        }
 
         loadVersionIdentity();
         loadDefaults();
@@ -132,9 +176,9 @@ public class IdentityManager implements IdentityFactory, IdentityController {
     private void loadDefaults() {
         try {
             loadIdentity(FileUtils.getPathForResource(getClass().getResource(
-                    "defaults/default/defaults")));
+                    "defaults/default/defaults")), false);
             loadIdentity(FileUtils.getPathForResource(getClass().getResource(
-                    "defaults/default/formatter")));
+                    "defaults/default/formatter")), false);
         } catch (URISyntaxException ex) {
             LOG.error(FATAL_APP_ERROR, "Unable to load settings", ex);
         }
@@ -159,7 +203,7 @@ public class IdentityManager implements IdentityFactory, IdentityController {
             return;
         }
 
-        loadUser(file);
+        loadUser(file, false);
     }
 
     /**
@@ -186,24 +230,49 @@ public class IdentityManager implements IdentityFactory, IdentityController {
             }
         }
 
-        loadUser(identitiesDirectory);
+        loadUser(identitiesDirectory, false);
     }
 
     /**
-     * Recursively loads files from the specified directory.
+     * Recursively loads files from the specified directory. Files that aren't already known are
+     * parsed concurrently on the {@link #parseExecutor}, then added in the order they were found.
      *
-     * @param dir The directory to be loaded
+     * @param dir           The directory to be loaded
+     * @param onlyIfChanged Whether known files should only be reloaded if they have changed
      */
-    private void loadUser(final Path dir) {
+    private void loadUser(final Path dir, final boolean onlyIfChanged) {
         checkNotNull(dir);
         checkArgument(Files.isDirectory(dir));
 
+        final List<Path> files = new ArrayList<>();
+        findFiles(dir, files);
+
+        final Map<Path, CompletableFuture<Optional<ConfigFileBackedConfigProvider>>> parsed =
+                new LinkedHashMap<>();
+        for (Path file : files) {
+            if (!reloadIdentity(file, onlyIfChanged)) {
+                parsed.put(file, CompletableFuture.supplyAsync(() -> parseIdentity(file),
+                        parseExecutor));
+            }
+        }
+
+        parsed.forEach((file, provider) -> provider.join()
+                .ifPresent(p -> addIdentity(file, p)));
+    }
+
+    /**
+     * Recursively finds all files within the specified directory.
+     *
+     * @param dir   The directory to search
+     * @param files The list to add found files to
+     */
+    private void findFiles(final Path dir, final List<Path> files) {
         try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dir)) {
             for (Path child : directoryStream) {
                 if (Files.isDirectory(child)) {
-                    loadUser(child);
+                    findFiles(child, files);
                 } else {
-                    loadIdentity(child);
+                    files.add(child);
                 }
             }
         } catch (IOException ex) {
@@ -215,31 +284,97 @@ public class IdentityManager implements IdentityFactory, IdentityController {
      * Loads an identity from the specified file. If the identity already exists, it is told to
      * reload instead.
      *
-     * @param file The file to load the identity from.
+     * @param file          The file to load the identity from.
+     * @param onlyIfChanged Whether a known identity should only be reloaded if its file changed
      */
-    private void loadIdentity(final Path file) {
+    private void loadIdentity(final Path file, final boolean onlyIfChanged) {
+        if (!reloadIdentity(file, onlyIfChanged)) {
+            parseIdentity(file).ifPresent(provider -> addIdentity(file, provider));
+        }
+    }
+
+    /**
+     * Reloads the identity for the specified file, if one has already been loaded.
+     *
+     * @param file          The file to reload the identity from.
+     * @param onlyIfChanged Whether to skip the reload if the file appears unchanged
+     * @return True if the file was already known, false if it needs to be loaded.
+     */
+    private boolean reloadIdentity(final Path file, final boolean onlyIfChanged) {
         synchronized (identities) {
             if (configProvidersByPath.containsKey(file)) {
                 try {
-                    configProvidersByPath.get(file).reload();
+                    final ConfigFileBackedConfigProvider provider =
+                            configProvidersByPath.get(file);
+                    if (onlyIfChanged) {
+                        provider.reloadIfChanged();
+                    } else {
+                        provider.reload();
+                    }
                 } catch (IOException ex) {
                     LOG.warn(USER_ERROR, "I/O error when reloading identity file: {} ({})",
                             file, ex.getMessage(), ex);
                 } catch (InvalidConfigFileException ex) {
-                    // Do nothing
+                    LOG.info(USER_ERROR, "Invalid identity file: {} ({})", file, ex.getMessage(),
+                            ex);
                 }
+                return true;
             }
         }
+        return false;
+    }
 
+    /**
+     * Parses a new identity from the specified file. This may be called from any thread.
+     *
+     * @param file The file to parse the identity from.
+     * @return The parsed identity, or empty if the file could not be read or is not an identity.
+     */
+    private Optional<ConfigFileBackedConfigProvider> parseIdentity(final Path file) {
         try {
-            final ConfigFileBackedConfigProvider provider = new ConfigFileBackedConfigProvider(this, file, false);
-            addConfigProvider(provider);
-            configProvidersByPath.put(file, provider);
+            return Optional.of(new ConfigFileBackedConfigProvider(this, file, false));
         } catch (InvalidIdentityFileException ex) {
             LOG.warn(USER_ERROR, "Invalid identity file: {} ({})", file, ex.getMessage(), ex);
         } catch (IOException ex) {
             LOG.warn(USER_ERROR, "I/O error when reading identity file: {}", file, ex);
         }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds a newly parsed identity.
+     *
+     * @param file     The file the identity was loaded from.
+     * @param provider The identity to add.
+     */
+    private void addIdentity(final Path file, final ConfigFileBackedConfigProvider provider) {
+        addConfigProvider(provider);
+        configProvidersByPath.put(file, provider);
+    }
+
+    /**
+     * Handles a change made to the given path outside of the client. New files are loaded as
+     * identities, known identities are reloaded, and identities whose files have been deleted are
+     * removed. If the path is a directory, all identities within it are (re)loaded.
+     *
+     * @param path The path that has changed.
+     */
+    public void handleFileChanged(final Path path) {
+        if (Files.isDirectory(path)) {
+            loadUser(path, true);
+        } else if (Files.exists(path)) {
+            loadIdentity(path, true);
+        } else {
+            final ConfigFileBackedConfigProvider provider = configProvidersByPath.get(path);
+            if (provider != null && provider != config) {
+                LOG.info("Identity file {} has been deleted, removing identity", path);
+                synchronized (identities) {
+                    if (identities.containsEntry(getGroup(provider), provider)) {
+                        removeConfigProvider(provider);
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -318,6 +453,8 @@ public class IdentityManager implements IdentityFactory, IdentityController {
 
     @Override
     public void saveAll() {
+        persistenceService.flush();
+
         synchronized (identities) {
             for (ConfigProvider identity : getAllIdentities()) {
                 identity.save();
@@ -337,6 +474,9 @@ public class IdentityManager implements IdentityFactory, IdentityController {
 
         synchronized (identities) {
             identities.put(target, identity);
+            if (target == null) {
+                identityIndex.add(identity);
+            }
         }
 
         LOG.debug("Adding identity: {} (group: {})", new Object[]{identity, target});
@@ -370,6 +510,9 @@ public class IdentityManager implements IdentityFactory, IdentityController {
 
         synchronized (identities) {
             identities.remove(group, identity);
+            if (group == null) {
+                identityIndex.remove(identity);
+            }
         }
 
         synchronized (listeners) {
@@ -419,9 +562,7 @@ public class IdentityManager implements IdentityFactory, IdentityController {
         final List<ConfigFileBackedConfigProvider> sources = new ArrayList<>();
 
         synchronized (identities) {
-            sources.addAll(identities.get(null).stream()
-                    .filter(manager::identityApplies)
-                    .collect(Collectors.toList()));
+            sources.addAll(identityIndex.getApplicable(manager::getTargetData));
         }
 
         sources.sort(new ConfigProviderTargetComparator());
@@ -440,6 +581,33 @@ public class IdentityManager implements IdentityFactory, IdentityController {
         return globalconfig;
     }
 
+    /**
+     * Retrieves a view of the global configuration that excludes the user's own settings and the
+     * version identity. This is used to determine which user settings are redundant.
+     *
+     * @return A cached config manager containing only default settings.
+     */
+    synchronized AggregateConfigProvider getGlobalDefaults() {
+        if (globalDefaults == null) {
+            globalDefaults = (ConfigManager) createAggregateConfig("", "", "", "");
+        }
+
+        // The user config may have been (re-)added since we were created.
+        globalDefaults.removeIdentity(config);
+        globalDefaults.removeIdentity(versionConfig);
+
+        return globalDefaults;
+    }
+
+    /**
+     * Schedules the given provider to be persisted by the write-behind service.
+     *
+     * @param provider The provider that has been modified.
+     */
+    void scheduleSave(final ConfigFileBackedConfigProvider provider) {
+        persistenceService.schedule(provider);
+    }
+
     @Override
     public ConfigProvider createChannelConfig(final String network, final String channel) {
         if (network == null || network.isEmpty()) {
@@ -455,11 +623,10 @@ public class IdentityManager implements IdentityFactory, IdentityController {
         final String myTarget = (channel + '@' + network).toLowerCase();
 
         synchronized (identities) {
-            for (ConfigFileBackedConfigProvider identity : identities.get(null)) {
-                if (identity.getTarget().getType() == ConfigTarget.TYPE.CHANNEL
-                        && identity.getTarget().getData().equalsIgnoreCase(myTarget)) {
-                    return identity;
-                }
+            final Optional<ConfigFileBackedConfigProvider> identity =
+                    identityIndex.find(ConfigTarget.TYPE.CHANNEL, myTarget);
+            if (identity.isPresent()) {
+                return identity.get();
             }
         }
 
@@ -480,11 +647,10 @@ public class IdentityManager implements IdentityFactory, IdentityController {
         final String myTarget = network.toLowerCase();
 
         synchronized (identities) {
-            for (ConfigFileBackedConfigProvider identity : identities.get(null)) {
-                if (identity.getTarget().getType() == ConfigTarget.TYPE.NETWORK
-                        && identity.getTarget().getData().equalsIgnoreCase(myTarget)) {
-                    return identity;
-                }
+            final Optional<ConfigFileBackedConfigProvider> identity =
+                    identityIndex.find(ConfigTarget.TYPE.NETWORK, myTarget);
+            if (identity.isPresent()) {
+                return identity.get();
             }
         }
 
@@ -505,11 +671,10 @@ public class IdentityManager implements IdentityFactory, IdentityController {
         final String myTarget = server.toLowerCase();
 
         synchronized (identities) {
-            for (ConfigFileBackedConfigProvider identity : identities.get(null)) {
-                if (identity.getTarget().getType() == ConfigTarget.TYPE.SERVER
-                        && identity.getTarget().getData().equalsIgnoreCase(myTarget)) {
-                    return identity;
-                }
+            final Optional<ConfigFileBackedConfigProvider> identity =
+                    identityIndex.find(ConfigTarget.TYPE.SERVER, myTarget);
+            if (identity.isPresent()) {
+                return identity.get();
             }
         }
 
@@ -622,13 +787,7 @@ public class IdentityManager implements IdentityFactory, IdentityController {
      * @param configManager The manager to be initialised.
      */
     private void setUpConfigManager(final ConfigManager configManager) {
-        final List<ConfigFileBackedConfigProvider> sources = getIdentitiesForManager(configManager);
-
-        for (ConfigFileBackedConfigProvider identity : sources) {
-            LOG.trace("Found {}", identity);
-            configManager.checkIdentity(identity);
-        }
-
+        configManager.addInitialIdentities(getIdentitiesForManager(configManager));
         registerIdentityListener(configManager);
     }
 
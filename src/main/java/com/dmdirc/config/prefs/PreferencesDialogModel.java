@@ -184,6 +184,10 @@ public class PreferencesDialogModel {
                 "channel", "showmodeprefix", "Show mode prefix",
                 "Prefix users' names with their mode (e.g. @) in channels",
                 configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                "channel", "batchquits", "Summarise mass quits",
+                "Show netsplits and mass quits as a single line in each channel",
+                configManager, identity));
         category.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
                 "ui", "awayindicator", "Away indicator",
                 "Show an indicator in windows when you are marked as away",
@@ -441,6 +445,10 @@ public class PreferencesDialogModel {
                 "general", "logerrors", "Log errors to disk",
                 "Save copies of all client errors to disk",
                 configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                "general", "watchconfigfiles", "Watch config files",
+                "Apply changes made to identity and format files outside of the client",
+                configManager, identity).setRestartNeeded());
         category.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
                 "ui", "quickCopy", "Quick copy", "Automatically copy"
                 + " text that's selected when the mouse button is released",
@@ -453,6 +461,22 @@ public class PreferencesDialogModel {
                 "general", "showglobalwindow", "Show global window",
                 "Show a global window which can be used to enter commands",
                 configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.BOOLEAN,
+                "scrollback", "journal", "Keep scrollback on disk",
+                "Record each window's history on disk and restore it when the window is reopened",
+                configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                "scrollback", "restorelines", "Restored scrollback lines",
+                "Number of lines of history to restore when a window is reopened",
+                configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.INTEGER,
+                "scrollback", "budget", "Scrollback memory budget",
+                "Approximate number of bytes of history to keep in memory across all windows"
+                + " (0 for no limit)", configManager, identity));
+        category.addSetting(new PreferencesSetting(PreferencesType.DURATION,
+                "scrollback", "hibernatedelay", "Compress idle scrollback after",
+                "How long a window must go unviewed before its history is compressed",
+                configManager, identity));
 
         addCategory(category);
     }
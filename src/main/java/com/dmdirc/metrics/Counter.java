@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total, such as the number of lines received. Counters are backed by a
+ * {@link LongAdder}, so may be updated from many threads without contention.
+ *
+ * <p>Snapshots include the total and the average rate per second since the counter was created.
+ */
+public class Counter implements Metric {
+
+    /** The running total. */
+    private final LongAdder count = new LongAdder();
+    /** The time this counter was created, in nanoseconds. */
+    private final long created = System.nanoTime();
+
+    /**
+     * Adds one to this counter.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds the given amount to this counter.
+     *
+     * @param amount The amount to add, which may be negative.
+     */
+    public void add(final long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * Gets the current total.
+     *
+     * @return The sum of all amounts added to this counter.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void snapshot(final String name, final Map<String, Number> snapshot) {
+        final long total = count.sum();
+        final long elapsed = Math.max(System.nanoTime() - created, 1);
+        snapshot.put(name, total);
+        snapshot.put(name + ".rate", total * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+    }
+
+}
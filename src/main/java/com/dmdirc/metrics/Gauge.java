@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.metrics;
+
+import java.util.Map;
+
+/**
+ * A metric whose value is read on demand, such as the size of a collection.
+ *
+ * <p>Gauges are evaluated whenever a snapshot is taken, possibly from a thread other than the one
+ * that owns the measured state, so they should be cheap and must be safe to call concurrently.
+ */
+@FunctionalInterface
+public interface Gauge extends Metric {
+
+    /**
+     * Reads the current value of this gauge.
+     *
+     * @return The current value.
+     */
+    long getValue();
+
+    @Override
+    default void snapshot(final String name, final Map<String, Number> snapshot) {
+        snapshot.put(name, getValue());
+    }
+
+}
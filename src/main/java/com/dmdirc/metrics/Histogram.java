@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Records the distribution of a value, such as the time taken to handle an event.
+ *
+ * <p>Values are counted in buckets whose bounds are powers of two, each backed by a
+ * {@link LongAdder}, so recording never blocks. Percentiles are therefore approximate: each is
+ * reported as the upper bound of the bucket it falls in, capped at the largest recorded value.
+ * Negative values are recorded as zero.
+ */
+public class Histogram implements Metric {
+
+    /** The percentiles included in snapshots. */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    /** Suffixes used for {@link #PERCENTILES} in snapshots. */
+    private static final String[] PERCENTILE_NAMES = {".p50", ".p90", ".p99"};
+    /** Bucket {@code i} counts values below {@code 2^i}, and at least {@code 2^(i-1)}. */
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+    /** The number of recorded values. */
+    private final LongAdder count = new LongAdder();
+    /** The sum of all recorded values. */
+    private final LongAdder sum = new LongAdder();
+    /** The largest recorded value. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value The value to record.
+     */
+    public void record(final long value) {
+        final long clamped = Math.max(value, 0);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(clamped)].increment();
+        count.increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Estimates the value below which the given proportion of recorded values fall.
+     *
+     * @param quantile The proportion of values, between 0 and 1.
+     * @return The estimated value, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(final double quantile) {
+        return getPercentile(getCounts(), quantile);
+    }
+
+    @Override
+    public void snapshot(final String name, final Map<String, Number> snapshot) {
+        final long[] counts = getCounts();
+        final long total = LongStream.of(counts).sum();
+
+        snapshot.put(name + ".count", total);
+        snapshot.put(name + ".mean", total == 0 ? 0 : sum.sum() / (double) total);
+        snapshot.put(name + ".max", max.get());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            snapshot.put(name + PERCENTILE_NAMES[i], getPercentile(counts, PERCENTILES[i]));
+        }
+    }
+
+    /**
+     * Reads the current count of each bucket. Values recorded while reading may or may not be
+     * included, so the counts are only consistent once recording has stopped.
+     *
+     * @return The counts of each bucket.
+     */
+    private long[] getCounts() {
+        final long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    private long getPercentile(final long[] counts, final double quantile) {
+        final long target = (long) Math.ceil(LongStream.of(counts).sum() * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                final long upper = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upper, max.get());
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.APP_ERROR;
+
+/**
+ * Holds the metrics recorded by the client, keyed by dotted names such as
+ * {@code connection.1.lines.in}.
+ *
+ * <p>Looking up a metric is a concurrent hash map lookup, and updating one never locks, so
+ * components should look up their metrics once and keep them. Metrics that belong to something
+ * with a limited lifetime, such as a connection, should be removed when it goes away.
+ */
+public class MetricsRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+    /** The name the registry is published under by {@link #publish(MBeanServer)}. */
+    public static final String OBJECT_NAME = "com.dmdirc:type=Metrics";
+    /** The registered metrics, keyed by name. */
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the counter with the given name, creating it if necessary.
+     *
+     * @param name The name of the counter.
+     * @return The counter with that name.
+     * @throws IllegalArgumentException If a different type of metric has that name.
+     */
+    public Counter getCounter(final String name) {
+        return getMetric(name, Counter.class, Counter::new);
+    }
+
+    /**
+     * Gets the histogram with the given name, creating it if necessary.
+     *
+     * @param name The name of the histogram.
+     * @return The histogram with that name.
+     * @throws IllegalArgumentException If a different type of metric has that name.
+     */
+    public Histogram getHistogram(final String name) {
+        return getMetric(name, Histogram.class, Histogram::new);
+    }
+
+    /**
+     * Registers a gauge, replacing any metric previously registered with the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param gauge The gauge to register.
+     */
+    public void registerGauge(final String name, final Gauge gauge) {
+        metrics.put(name, gauge);
+    }
+
+    /**
+     * Removes all metrics with the given name, or whose names start with the given name followed
+     * by a dot.
+     *
+     * @param name The name of the metrics to remove.
+     */
+    public void removeAll(final String name) {
+        final String prefix = name + '.';
+        metrics.keySet().removeIf(key -> key.equals(name) || key.startsWith(prefix));
+    }
+
+    /**
+     * Takes a snapshot of the current values of all metrics.
+     *
+     * @return A map of value names to their current values, sorted by name.
+     */
+    public SortedMap<String, Number> getSnapshot() {
+        final SortedMap<String, Number> snapshot = new TreeMap<>();
+        metrics.forEach((name, metric) -> metric.snapshot(name, snapshot));
+        return snapshot;
+    }
+
+    /**
+     * Publishes this registry as an MBean with the name {@link #OBJECT_NAME}, so its values can be
+     * read with standard JMX tools.
+     *
+     * @param server The MBean server to publish to.
+     */
+    public void publish(final MBeanServer server) {
+        try {
+            server.registerMBean(new MetricsMBean(this), new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            LOG.warn(APP_ERROR, "Unable to publish metrics: {}", ex.getMessage(), ex);
+        }
+    }
+
+    private <T extends Metric> T getMetric(final String name, final Class<T> type,
+            final Supplier<T> factory) {
+        final Metric metric = metrics.computeIfAbsent(name, k -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a "
+                    + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.plugins;
+
+import com.dmdirc.commandparser.BaseCommandInfo;
+import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandInfo;
+import com.dmdirc.commandparser.CommandType;
+import com.dmdirc.commandparser.commands.Command;
+import com.dmdirc.commandparser.commands.context.CommandContext;
+import com.dmdirc.events.CommandErrorEvent;
+import com.dmdirc.events.PluginLoadedEvent;
+import com.dmdirc.events.eventbus.BaseEvent;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.CommandController;
+import com.dmdirc.interfaces.WindowModel;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+
+import net.engio.mbassy.listener.Handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Defers loading plugins until they are first used.
+ *
+ * <p>For each deferred plugin, a lightweight stand-in command is registered for each of its
+ * command triggers, and its event triggers are watched for on the event bus. When a trigger first
+ * fires, all of the plugin's triggers are removed and the plugin is loaded. Services provided by
+ * deferred plugins are already registered by their {@link PluginInfo}, so requesting one of them
+ * loads the plugin without any help from this class.
+ *
+ * @see PluginMetaData#readActivation(java.util.Collection)
+ */
+class PluginActivator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginActivator.class);
+    /** The controller to register stand-in commands with. */
+    private final CommandController commandController;
+    /** The event bus to watch for event triggers on. */
+    private final EventBus eventBus;
+    /** The triggers registered for each deferred plugin. */
+    private final Map<PluginInfo, Triggers> deferred = new HashMap<>();
+    /** Whether we're subscribed to the event bus to watch for triggers and plugin loads. */
+    private boolean subscribed;
+    /** Lock guarding {@link #deferred} and {@link #subscribed}. */
+    private final Object lock = new Object();
+    /**
+     * The event classes that any deferred plugin is waiting for, so that events can be checked
+     * without taking {@link #lock}. Replaced whenever {@link #deferred} changes.
+     */
+    private volatile Set<Class<? extends BaseEvent>> watchedEvents = ImmutableSet.of();
+    /** Locks used to make sure each plugin is only activated by one thread at a time. */
+    private final ConcurrentMap<PluginInfo, Object> activationLocks = new ConcurrentHashMap<>();
+
+    PluginActivator(final CommandController commandController, final EventBus eventBus) {
+        this.commandController = commandController;
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Registers the activation triggers for the given plugin, instead of loading it.
+     *
+     * @param plugin The plugin to defer
+     *
+     * @return True if at least one trigger was registered and the plugin shouldn't be loaded now,
+     *         false if the plugin has no usable triggers and should be loaded as normal.
+     */
+    boolean defer(final PluginInfo plugin) {
+        final Triggers triggers = new Triggers();
+        for (String trigger : plugin.getMetaData().getActivationTriggers()) {
+            final String[] parts = trigger.trim().split("\\s+");
+            if (parts.length >= 2 && "command".equalsIgnoreCase(parts[0])) {
+                final CommandType type = parts.length > 2 ? getCommandType(parts[2])
+                        : CommandType.TYPE_GLOBAL;
+                if (type == null) {
+                    LOG.warn(USER_ERROR, "Invalid command type in activation trigger '{}' for "
+                            + "plugin {}", trigger, plugin.getMetaData().getName());
+                } else {
+                    triggers.commands.add(new StubCommand(plugin, new BaseCommandInfo(parts[1],
+                            parts[1] + " - loads the " + plugin.getMetaData().getFriendlyName()
+                                    + " plugin and runs its command", type)));
+                }
+            } else if (parts.length == 2 && "event".equalsIgnoreCase(parts[0])) {
+                final Class<? extends BaseEvent> eventClass = getEventClass(parts[1]);
+                if (eventClass == null) {
+                    LOG.warn(USER_ERROR, "Unknown event class in activation trigger '{}' for "
+                            + "plugin {}", trigger, plugin.getMetaData().getName());
+                } else {
+                    triggers.events.add(eventClass);
+                }
+            } else {
+                LOG.warn(USER_ERROR, "Invalid activation trigger '{}' for plugin {}",
+                        trigger, plugin.getMetaData().getName());
+            }
+        }
+
+        if (triggers.commands.isEmpty() && triggers.events.isEmpty()) {
+            return false;
+        }
+
+        synchronized (lock) {
+            deferred.put(plugin, triggers);
+            triggers.commands.forEach(stub -> commandController.registerCommand(stub, stub.info));
+            updateSubscription();
+        }
+        LOG.debug("Deferred loading plugin {} until first use", plugin.getMetaData().getName());
+        return true;
+    }
+
+    /**
+     * Removes the given plugin's triggers, if any, and loads it if it isn't already loaded.
+     *
+     * @param plugin The plugin to activate
+     */
+    void activate(final PluginInfo plugin) {
+        release(plugin);
+        // Other threads activating the plugin at the same time wait for it to finish loading,
+        // rather than seeing it half-loaded and trying to load it again.
+        synchronized (activationLocks.computeIfAbsent(plugin, p -> new Object())) {
+            if (!plugin.isLoaded()) {
+                LOG.info("Activating plugin {} on first use", plugin.getMetaData().getName());
+                plugin.loadPlugin();
+            }
+        }
+    }
+
+    /**
+     * Removes the given plugin's triggers, if any, without loading it.
+     *
+     * @param plugin The plugin whose triggers should be removed
+     */
+    private void release(final PluginInfo plugin) {
+        synchronized (lock) {
+            final Triggers triggers = deferred.remove(plugin);
+            if (triggers == null) {
+                return;
+            }
+
+            for (StubCommand stub : triggers.commands) {
+                // Only remove our stand-in if the plugin hasn't already replaced it.
+                final Map.Entry<CommandInfo, Command> current =
+                        commandController.getCommand(stub.info.getType(), stub.info.getName());
+                if (current != null && current.getValue() == stub) {
+                    commandController.unregisterCommand(stub.info);
+                }
+            }
+            updateSubscription();
+        }
+    }
+
+    /**
+     * Subscribes to or unsubscribes from the event bus, depending on whether there are any deferred
+     * plugins left, and updates the set of watched events. Must be called while holding
+     * {@link #lock}.
+     */
+    private void updateSubscription() {
+        final ImmutableSet.Builder<Class<? extends BaseEvent>> events = ImmutableSet.builder();
+        deferred.values().forEach(triggers -> events.addAll(triggers.events));
+        watchedEvents = events.build();
+
+        final boolean needed = !deferred.isEmpty();
+        if (needed && !subscribed) {
+            eventBus.subscribe(this);
+        } else if (!needed && subscribed) {
+            eventBus.unsubscribe(this);
+        }
+        subscribed = needed;
+    }
+
+    @Handler
+    void handleEvent(final BaseEvent event) {
+        if (event instanceof PluginLoadedEvent) {
+            // Plugins may be loaded some other way, such as by a service request.
+            release(((PluginLoadedEvent) event).getPlugin());
+            return;
+        }
+
+        if (watchedEvents.stream().noneMatch(c -> c.isInstance(event))) {
+            return;
+        }
+
+        final List<PluginInfo> triggered = new ArrayList<>();
+        synchronized (lock) {
+            deferred.forEach((plugin, triggers) -> {
+                if (triggers.events.stream().anyMatch(c -> c.isInstance(event))) {
+                    triggered.add(plugin);
+                }
+            });
+        }
+        triggered.forEach(this::activate);
+    }
+
+    private static CommandType getCommandType(final String name) {
+        for (CommandType type : CommandType.values()) {
+            if (type.name().equals("TYPE_" + name.toUpperCase(Locale.ROOT))) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static Class<? extends BaseEvent> getEventClass(final String name) {
+        try {
+            final Class<?> clazz = Class.forName(name, false,
+                    PluginActivator.class.getClassLoader());
+            return BaseEvent.class.isAssignableFrom(clazz) ? clazz.asSubclass(BaseEvent.class)
+                    : null;
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The triggers registered for a deferred plugin.
+     */
+    private static class Triggers {
+
+        private final List<StubCommand> commands = new ArrayList<>();
+        private final List<Class<? extends BaseEvent>> events = new ArrayList<>();
+
+    }
+
+    /**
+     * Stands in for a deferred plugin's command. When executed it loads the plugin, then passes the
+     * command on to the plugin's own implementation.
+     */
+    private class StubCommand implements Command {
+
+        private final PluginInfo plugin;
+        private final CommandInfo info;
+
+        StubCommand(final PluginInfo plugin, final CommandInfo info) {
+            this.plugin = plugin;
+            this.info = info;
+        }
+
+        @Override
+        public void execute(@Nonnull final WindowModel origin, final CommandArguments args,
+                final CommandContext context) {
+            activate(plugin);
+
+            final Map.Entry<CommandInfo, Command> command =
+                    commandController.getCommand(info.getType(), info.getName());
+            if (!plugin.isLoaded()) {
+                showError(origin, args, "Unable to load plugin " + plugin.getMetaData().getName()
+                        + ": " + plugin.getLastError());
+            } else if (command == null || command.getValue() == this) {
+                showError(origin, args, "Plugin " + plugin.getMetaData().getName()
+                        + " did not provide the command " + info.getName());
+            } else {
+                command.getValue().execute(origin, args, context);
+            }
+        }
+
+        private void showError(final WindowModel origin, final CommandArguments args,
+                final String message) {
+            if (!args.isSilent()) {
+                origin.getEventBus().publishAsync(new CommandErrorEvent(origin, message));
+            }
+        }
+
+    }
+
+}
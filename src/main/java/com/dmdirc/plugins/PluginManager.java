@@ -19,6 +19,7 @@ package com.dmdirc.plugins;
 
 import com.dmdirc.events.PluginRefreshEvent;
 import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.interfaces.config.IdentityController;
 import com.dmdirc.updater.components.PluginComponent;
 import com.dmdirc.updater.manager.UpdateManager;
@@ -69,11 +70,14 @@ public class PluginManager {
     private final EventBus eventBus;
     /** The service manager to use. */
     private final ServiceManager serviceManager;
+    /** The activator to use to defer loading plugins until they're used. */
+    private final PluginActivator activator;
 
     /**
      * Creates a new instance of PluginManager.
      *
      * @param eventBus            The event bus to subscribe to events on
+     * @param commandController   The controller to register deferred plugins' commands with.
      * @param identityController  The identity controller to use for configuration options.
      * @param updateManager       The update manager to inform about plugins.
      * @param objectGraph         The graph to pass to plugins for DI purposes.
@@ -82,6 +86,7 @@ public class PluginManager {
     public PluginManager(
             final EventBus eventBus,
             final ServiceManager serviceManager,
+            final CommandController commandController,
             final IdentityController identityController,
             final UpdateManager updateManager,
             final ObjectGraph objectGraph,
@@ -95,6 +100,7 @@ public class PluginManager {
         this.globalClassLoader = new GlobalClassLoader(this);
         this.objectGraph = objectGraph;
         this.eventBus = eventBus;
+        this.activator = new PluginActivator(commandController, eventBus);
     }
 
     /**
@@ -110,15 +116,58 @@ public class PluginManager {
      * Autoloads plugins.
      */
     public void doAutoLoad() {
+        doAutoLoad(false);
+    }
+
+    /**
+     * Autoloads plugins, optionally skipping any that need a user interface. If the
+     * {@code general.lazyplugins} setting is enabled, plugins that declare activation triggers are
+     * not loaded until they are first used.
+     *
+     * @param headless True to skip plugins which provide or depend on a UI, false to load all
+     *                 autoloaded plugins.
+     */
+    public void doAutoLoad(final boolean headless) {
+        final boolean lazy = identityController.getGlobalConfiguration()
+                .getOptionBool("general", "lazyplugins");
         for (String plugin : identityController.getGlobalConfiguration().getOptionList("plugins",
                 "autoload")) {
             plugin = plugin.trim();
             if (!plugin.isEmpty() && plugin.charAt(0) != '#' && getPluginInfo(plugin) != null) {
-                getPluginInfo(plugin).loadPlugin();
+                final PluginInfo info = getPluginInfo(plugin);
+                if (headless && needsUI(info.getMetaData())) {
+                    LOG.info("Not loading plugin {} as it needs a user interface", plugin);
+                } else if (!lazy || !activator.defer(info)) {
+                    info.loadPlugin();
+                }
             }
         }
     }
 
+    /**
+     * Determines whether the specified plugin provides or depends on a UI, either directly or
+     * through its parent plugin.
+     *
+     * @param metaData The metadata of the plugin to check
+     *
+     * @return True if the plugin can't be loaded without a UI, false otherwise.
+     */
+    private boolean needsUI(final PluginMetaData metaData) {
+        if (metaData.getServices().stream().anyMatch(PluginManager::isUIService)
+                || metaData.getRequiredServices().stream().anyMatch(PluginManager::isUIService)) {
+            return true;
+        }
+
+        final PluginInfo parent = metaData.getParent() == null ? null
+                : getPluginInfoByName(metaData.getParent());
+        return parent != null && parent.getMetaData() != metaData && needsUI(parent.getMetaData());
+    }
+
+    private static boolean isUIService(final String service) {
+        final String[] parts = service.split(" ", 2);
+        return parts.length > 1 && "ui".equals(parts[1]);
+    }
+
     /**
      * Tests and adds the specified plugin to the known plugins list. Plugins will only be added if:
      * <ul><li>The file exists,<li>No other plugin with the same name is known,<li>All requirements
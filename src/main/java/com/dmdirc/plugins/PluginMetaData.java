@@ -55,6 +55,8 @@ import java.util.Objects;
  * {@link #readExports(Collection)}.
  * <li><code>persistent</code> - optional list of persistent classes within the plugin. See
  * {@link #readPersistent(Collection)}.
+ * <li><code>activation</code> - optional list of triggers that activate the plugin on first use.
+ * See {@link #readActivation(Collection)}.
  * </ul>
  * A collection of errors that occurred when attempting to read the metadata is available via the
  * {@link #getErrors()} method.
@@ -81,6 +83,8 @@ public class PluginMetaData {
     private final Collection<String> exports = new ArrayList<>();
     /** Persistent classes in this plugin. */
     private final Collection<String> persistentClasses = new ArrayList<>();
+    /** Triggers that activate this plugin on first use. */
+    private final Collection<String> activationTriggers = new ArrayList<>();
     /** The name of the parent plugin, if any. */
     private String parent;
     /** The name of the main class, if any. */
@@ -136,6 +140,7 @@ public class PluginMetaData {
             readProvides(configFile.getFlatDomain("provides"));
             readPersistent(configFile.getFlatDomain("persistent"));
             readExports(configFile.getFlatDomain("exports"));
+            readActivation(configFile.getFlatDomain("activation"));
         } catch (IOException | InvalidConfigFileException ex) {
             errors.add("Unable to read config file: " + ex.getMessage());
         }
@@ -336,6 +341,30 @@ public class PluginMetaData {
         }
     }
 
+    /**
+     * Reads the activation section of the config file. This is a flat domain listing events that
+     * should cause the plugin to be loaded, if it is set to autoload. Plugins with activation
+     * triggers are not loaded at startup, but when one of the triggers first fires or when one of
+     * their services is requested. The following triggers are supported:
+     * <ul>
+     * <li><code>command &lt;name&gt; [type]</code> - the plugin's command of the given name and
+     * type ('global', 'server', 'chat', 'channel' or 'query'; defaults to 'global') is executed,
+     * e.g. 'command ignore server'.
+     * <li><code>event &lt;class&gt;</code> - an event of the given class is published, e.g.
+     * 'event com.dmdirc.events.ServerConnectedEvent'. The triggering event itself is not passed to
+     * the plugin.
+     * </ul>
+     *
+     * @param triggers The activation triggers for this plugin
+     */
+    protected void readActivation(final Collection<String> triggers) {
+        activationTriggers.clear();
+
+        if (triggers != null) {
+            activationTriggers.addAll(triggers);
+        }
+    }
+
     // </editor-fold>
     /**
      * Calculates the relative path of this plugin in relation to the main plugin directory.
@@ -543,5 +572,15 @@ public class PluginMetaData {
         return Collections.unmodifiableCollection(persistentClasses);
     }
 
+    /**
+     * Retrieves the triggers that activate this plugin on first use.
+     *
+     * @see #readActivation(Collection)
+     * @return The plugin's activation triggers
+     */
+    public Collection<String> getActivationTriggers() {
+        return Collections.unmodifiableCollection(activationTriggers);
+    }
+
     // </editor-fold>
 }
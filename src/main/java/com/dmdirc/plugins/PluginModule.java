@@ -18,6 +18,7 @@
 package com.dmdirc.plugins;
 
 import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.util.system.SystemLifecycleComponent;
 import com.dmdirc.interfaces.config.IdentityController;
 import com.dmdirc.updater.manager.UpdateManager;
@@ -42,6 +43,7 @@ public class PluginModule {
     @Singleton
     public PluginManager getPluginManager(
             final EventBus eventBus,
+            final CommandController commandController,
             final IdentityController identityController,
             final UpdateManager updateManager,
             final ObjectGraph objectGraph,
@@ -50,7 +52,7 @@ public class PluginModule {
             final PluginFileHandler fileHandler,
             @Directory(DirectoryType.PLUGINS) final String directory) {
         final PluginManager manager = new PluginManager(eventBus, serviceManager,
-                identityController, updateManager, objectGraph, fileHandler, directory);
+                commandController, identityController, updateManager, objectGraph, fileHandler, directory);
         manager.refreshPlugins();
 
         final CorePluginExtractor extractor = new CorePluginExtractor(manager, directory);
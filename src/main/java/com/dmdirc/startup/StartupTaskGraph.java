@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.startup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A set of startup tasks and the tasks each depends on. When run, every task is started as soon as
+ * all of its dependencies have finished, so independent tasks run concurrently on the supplied
+ * executor. Each task's timing is recorded in a {@link StartupTimeline}.
+ *
+ * <p>Dependencies must be added before the tasks that depend on them, so the graph can never
+ * contain a cycle. If a task fails, the tasks that depend on it are not run, and the failure is
+ * rethrown by {@link #run(Executor)} once all other tasks have finished.
+ */
+public class StartupTaskGraph {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupTaskGraph.class);
+    /** The timeline to record tasks in. */
+    private final StartupTimeline timeline;
+    /** The tasks to run, keyed on name, in the order they were added. */
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+
+    /**
+     * Creates a new, empty task graph.
+     *
+     * @param timeline The timeline to record tasks in.
+     */
+    public StartupTaskGraph(final StartupTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * Adds a task to the graph.
+     *
+     * @param name         The unique name of the task.
+     * @param runnable     The work to perform.
+     * @param dependencies The names of tasks that must finish before this one starts. Each must
+     *                     already have been added.
+     * @return This graph, for chaining.
+     * @throws IllegalArgumentException If the name is already used or a dependency is unknown.
+     */
+    public StartupTaskGraph addTask(final String name, final Runnable runnable,
+            final String... dependencies) {
+        return addTask(name, runnable, Arrays.asList(dependencies));
+    }
+
+    /**
+     * Adds a task to the graph.
+     *
+     * @param name         The unique name of the task.
+     * @param runnable     The work to perform.
+     * @param dependencies The names of tasks that must finish before this one starts. Each must
+     *                     already have been added.
+     * @return This graph, for chaining.
+     * @throws IllegalArgumentException If the name is already used or a dependency is unknown.
+     */
+    public StartupTaskGraph addTask(final String name, final Runnable runnable,
+            final Collection<String> dependencies) {
+        checkArgument(!tasks.containsKey(name), "Duplicate startup task: %s", name);
+        for (String dependency : dependencies) {
+            checkArgument(tasks.containsKey(dependency), "Unknown dependency %s for startup task %s",
+                    dependency, name);
+        }
+        tasks.put(name, new Task(name, runnable, dependencies.toArray(new String[0])));
+        return this;
+    }
+
+    /**
+     * Runs all tasks, blocking until they have finished.
+     *
+     * @param executor The executor to run tasks on.
+     * @throws RuntimeException If any task failed. Unchecked failures are rethrown unwrapped.
+     */
+    public void run(final Executor executor) {
+        final Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (Task task : tasks.values()) {
+            final CompletableFuture<?>[] dependencies = Arrays.stream(task.dependencies)
+                    .map(futures::get).toArray(CompletableFuture<?>[]::new);
+            futures.put(task.name, CompletableFuture.allOf(dependencies)
+                    .thenRunAsync(() -> runTask(task), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException ex) {
+            final Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Startup task failed", cause);
+        }
+    }
+
+    /**
+     * Runs a single task and records it in the timeline.
+     *
+     * @param task The task to run.
+     */
+    private void runTask(final Task task) {
+        final String thread = Thread.currentThread().getName();
+        final long start = System.nanoTime();
+        LOG.debug("Starting startup task {} on {}", task.name, thread);
+        try {
+            task.runnable.run();
+        } finally {
+            timeline.record(task.name, Arrays.asList(task.dependencies), thread, start,
+                    System.nanoTime());
+        }
+    }
+
+    /**
+     * A named unit of startup work.
+     */
+    private static class Task {
+
+        /** The unique name of the task. */
+        private final String name;
+        /** The work to perform. */
+        private final Runnable runnable;
+        /** The names of the tasks that must finish first. */
+        private final String[] dependencies;
+
+        Task(final String name, final Runnable runnable, final String... dependencies) {
+            this.name = name;
+            this.runnable = runnable;
+            this.dependencies = dependencies;
+        }
+
+    }
+
+}
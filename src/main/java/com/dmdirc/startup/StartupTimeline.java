@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.startup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Records when each startup task ran, and which tasks it waited for.
+ *
+ * <p>The report lists every task with its start time (relative to the creation of the timeline) and
+ * duration, followed by the critical path: the chain of tasks, ending with the last to finish, in
+ * which each task is the dependency that finished latest. Shortening any other task does not make
+ * startup quicker.
+ */
+@Singleton
+public class StartupTimeline {
+
+    /** Lock guarding {@link #entries}. */
+    private final Object entriesLock = new Object();
+    /** The recorded tasks, in the order they finished. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    /** The time this timeline was created, in nanoseconds. */
+    private final long origin;
+
+    /**
+     * Creates a new timeline, with start times reported relative to now.
+     */
+    @Inject
+    public StartupTimeline() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * Creates a new timeline with the given origin.
+     *
+     * @param origin The time, in nanoseconds, that start times are reported relative to.
+     */
+    public StartupTimeline(final long origin) {
+        this.origin = origin;
+    }
+
+    /**
+     * Records a task that has finished.
+     *
+     * @param name         The unique name of the task.
+     * @param dependencies The names of the tasks that had to finish before this one started.
+     * @param thread       The name of the thread the task ran on.
+     * @param start        The time the task started, in nanoseconds.
+     * @param end          The time the task finished, in nanoseconds.
+     */
+    public void record(final String name, final Collection<String> dependencies,
+            final String thread, final long start, final long end) {
+        synchronized (entriesLock) {
+            entries.put(name, new Entry(name, new ArrayList<>(dependencies), thread, start, end));
+        }
+    }
+
+    /**
+     * Gets the names of the tasks on the critical path, in the order they ran.
+     *
+     * @return The tasks on the critical path, or an empty list if nothing has been recorded.
+     */
+    public List<String> getCriticalPath() {
+        synchronized (entriesLock) {
+            final List<String> path = new ArrayList<>();
+            Entry entry = entries.values().stream()
+                    .max(Comparator.comparingLong(e -> e.end)).orElse(null);
+            while (entry != null) {
+                path.add(entry.name);
+                entry = entry.dependencies.stream()
+                        .map(entries::get)
+                        .filter(Objects::nonNull)
+                        .max(Comparator.comparingLong(e -> e.end)).orElse(null);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+
+    /**
+     * Gets the time from the creation of this timeline until the last task finished.
+     *
+     * @param unit The unit to return the time in.
+     * @return The total elapsed startup time.
+     */
+    public long getElapsed(final TimeUnit unit) {
+        synchronized (entriesLock) {
+            return unit.convert(entries.values().stream().mapToLong(e -> e.end - origin).max()
+                    .orElse(0), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Produces a human-readable report of all recorded tasks and the critical path.
+     *
+     * @return A multi-line report of the startup timeline.
+     */
+    public String getReport() {
+        final List<String> criticalPath = getCriticalPath();
+        final StringBuilder report = new StringBuilder();
+        synchronized (entriesLock) {
+            final int width = entries.keySet().stream().mapToInt(String::length).max().orElse(4);
+            long busy = 0;
+            report.append(String.format("Startup timeline (%d ms elapsed):%n",
+                    getElapsed(TimeUnit.MILLISECONDS)));
+            report.append(String.format("  %7s %7s  %-" + width + "s  %s%n",
+                    "start", "took", "task", "thread"));
+            for (Entry entry : entries.values()) {
+                busy += entry.end - entry.start;
+                report.append(String.format("  %7d %7d %s%-" + width + "s  %s%n",
+                        TimeUnit.NANOSECONDS.toMillis(entry.start - origin),
+                        TimeUnit.NANOSECONDS.toMillis(entry.end - entry.start),
+                        criticalPath.contains(entry.name) ? '*' : ' ',
+                        entry.name, entry.thread));
+            }
+            report.append(String.format("Total task time: %d ms%n",
+                    TimeUnit.NANOSECONDS.toMillis(busy)));
+        }
+        report.append("Critical path (*): ").append(String.join(" -> ", criticalPath));
+        return report.toString();
+    }
+
+    /**
+     * A single recorded task.
+     */
+    private static class Entry {
+
+        /** The name of the task. */
+        private final String name;
+        /** The names of the tasks this one waited for. */
+        private final List<String> dependencies;
+        /** The thread the task ran on. */
+        private final String thread;
+        /** The time the task started, in nanoseconds. */
+        private final long start;
+        /** The time the task finished, in nanoseconds. */
+        private final long end;
+
+        Entry(final String name, final List<String> dependencies, final String thread,
+                final long start, final long end) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.thread = thread;
+            this.start = start;
+            this.end = end;
+        }
+
+    }
+
+}
@@ -26,11 +26,13 @@ import com.dmdirc.ui.StatusMessage;
 import com.dmdirc.util.CommandUtils;
 
 import java.awt.Desktop;
+import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Date;
+import java.util.Optional;
 
 import javax.inject.Inject;
 
@@ -51,8 +53,12 @@ public class URLHandler {
     private final AggregateConfigProvider config;
     /** Server manager to use to connect to servers. */
     private final ConnectionManager connectionManager;
-    /** Desktop handler. */
-    private final Desktop desktop;
+    /** Desktop handler, looked up when first needed so headless clients never initialise AWT. */
+    private Optional<Desktop> desktop = Optional.empty();
+    /** Whether {@link #desktop} has been looked up yet. */
+    private boolean desktopChecked;
+    /** Lock guarding the lookup of {@link #desktop}. */
+    private final Object desktopLock = new Object();
 
     /**
      * Instantiates a new URL Handler.
@@ -69,7 +75,23 @@ public class URLHandler {
         this.eventBus = eventBus;
         this.config = globalConfig;
         this.connectionManager = connectionManager;
-        this.desktop = Desktop.isDesktopSupported() ? Desktop.getDesktop() : null;
+    }
+
+    /**
+     * Gets the desktop handler, if the platform supports one.
+     *
+     * @return The desktop handler, or an empty optional if there is none.
+     */
+    private Optional<Desktop> getDesktop() {
+        synchronized (desktopLock) {
+            if (!desktopChecked) {
+                if (!GraphicsEnvironment.isHeadless() && Desktop.isDesktopSupported()) {
+                    desktop = Optional.of(Desktop.getDesktop());
+                }
+                desktopChecked = true;
+            }
+            return desktop;
+        }
     }
 
     /**
@@ -270,9 +292,10 @@ public class URLHandler {
      * @param url URL to open
      */
     private void execBrowser(final URI url) {
-        if (desktop != null && desktop.isSupported(Desktop.Action.BROWSE)) {
+        final Optional<Desktop> handler = getDesktop();
+        if (handler.isPresent() && handler.get().isSupported(Desktop.Action.BROWSE)) {
             try {
-                desktop.browse(url);
+                handler.get().browse(url);
             } catch (IOException ex) {
                 LOG.info(USER_ERROR, "Unable to open URL: {}", ex.getMessage(), ex);
             }
@@ -289,9 +312,10 @@ public class URLHandler {
      * @param url URL to open
      */
     private void execMail(final URI url) {
-        if (desktop != null && desktop.isSupported(Desktop.Action.MAIL)) {
+        final Optional<Desktop> handler = getDesktop();
+        if (handler.isPresent() && handler.get().isSupported(Desktop.Action.MAIL)) {
             try {
-                desktop.mail(url);
+                handler.get().mail(url);
             } catch (IOException ex) {
                 LOG.info(USER_ERROR, "Unable to open URL: {}", ex.getMessage(), ex);
             }
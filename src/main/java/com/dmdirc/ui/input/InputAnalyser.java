@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.input;
+
+import com.dmdirc.ui.messages.IRCControlCodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of the structure of the text in an input field as it is edited, so that each
+ * keystroke only needs to examine the part of the text that actually changed.
+ *
+ * <p>The text is held as a list of segments, one per line as {@link com.dmdirc.interfaces.InputModel}
+ * would split it, each knowing its own length and UTF-8 encoded size. When the text changes, only
+ * the segments touched by the edit are rescanned.
+ *
+ * <p>This class is not thread safe; it is expected to be used only from the thread handling input.
+ */
+class InputAnalyser {
+
+    /** The number of characters in a hex colour code. */
+    private static final int HEX_COLOUR_LENGTH = 6;
+    /** The maximum number of digits in an IRC colour code. */
+    private static final int COLOUR_LENGTH = 2;
+    /** The segments that make up the current text, in order. Never empty. */
+    private final List<Segment> segments = new ArrayList<>();
+    /** The text last analysed. */
+    private String text = "";
+    /** The total number of bytes in all segments, excluding line terminators. */
+    private int byteCount;
+
+    /**
+     * Creates a new analyser for an empty input field.
+     */
+    InputAnalyser() {
+        segments.add(new Segment(0, 0));
+    }
+
+    /**
+     * Updates the analyser with the current text of the input field. Only the region that differs
+     * from the previously seen text is rescanned.
+     *
+     * @param newText The new text of the input field
+     */
+    void update(final String newText) {
+        final int oldLength = text.length();
+        final int newLength = newText.length();
+        final int shortest = Math.min(oldLength, newLength);
+
+        int prefix = 0;
+        while (prefix < shortest && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+
+        if (prefix == oldLength && prefix == newLength) {
+            return;
+        }
+
+        int suffix = 0;
+        while (suffix < shortest - prefix
+                && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+
+        replace(newText, prefix, oldLength - suffix, newLength - suffix);
+    }
+
+    /**
+     * Gets the text that was last analysed.
+     *
+     * @return The current text
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the number of bytes the current text would occupy when encoded as UTF-8, excluding
+     * line terminators.
+     *
+     * @return The encoded size of the text
+     */
+    int getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of lines that the current text would be sent as. This matches
+     * {@link com.dmdirc.interfaces.InputModel#getNumLines(String)}.
+     *
+     * @param maxLineLength The maximum number of bytes in a line, or a non-positive number if
+     *                      lines are not limited
+     *
+     * @return The number of lines required to send the current text
+     */
+    int getNumLines(final int maxLineLength) {
+        if (maxLineLength <= 0) {
+            return segments.size();
+        }
+
+        int lines = 0;
+        for (Segment segment : segments) {
+            lines += (segment.bytes + maxLineLength - 1) / maxLineLength;
+        }
+        return lines;
+    }
+
+    /**
+     * Determines whether the text before the given position is an IRC colour code followed by
+     * at most two digits.
+     *
+     * @param position The position to examine the text before
+     *
+     * @return True if the position directly follows a (partial) IRC colour code
+     */
+    boolean isAfterColourCode(final int position) {
+        final int end = Math.min(position, text.length());
+        int index = end - 1;
+
+        while (index >= 0 && end - index <= COLOUR_LENGTH && isDigit(text.charAt(index))) {
+            index--;
+        }
+
+        return index >= 0 && text.charAt(index) == IRCControlCodes.COLOUR;
+    }
+
+    /**
+     * Determines whether the text before the given position is a complete hex colour code.
+     *
+     * @param position The position to examine the text before
+     *
+     * @return True if the position directly follows a hex colour code
+     */
+    boolean isAfterHexColourCode(final int position) {
+        final int end = Math.min(position, text.length());
+        final int start = end - HEX_COLOUR_LENGTH - 1;
+
+        if (start < 0 || text.charAt(start) != IRCControlCodes.COLOUR_HEX) {
+            return false;
+        }
+
+        for (int i = start + 1; i < end; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c) && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the given character is an ASCII digit.
+     *
+     * @param c The character to test
+     *
+     * @return True if the character is between '0' and '9' inclusive
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Replaces the segments affected by an edit with ones scanned from the new text.
+     *
+     * @param newText The new text
+     * @param start   The offset of the first changed character, in both texts
+     * @param oldEnd  The end of the changed region in the old text
+     * @param newEnd  The end of the changed region in the new text
+     */
+    private void replace(final String newText, final int start, final int oldEnd,
+            final int newEnd) {
+        final int target = Math.max(start - 1, 0);
+        int first = 0;
+        int regionStart = 0;
+        while (first < segments.size() - 1 && regionStart + segments.get(first).length <= target) {
+            regionStart += segments.get(first).length;
+            first++;
+        }
+
+        // If neither the edit nor the characters either side of it involve a line terminator,
+        // the edit is contained within one line and only its size needs adjusting. Including
+        // the neighbouring characters also accounts for surrogate pairs split by the edit.
+        final int oldTo = Math.min(oldEnd + 1, text.length());
+        final int newTo = oldTo + newEnd - oldEnd;
+        if (!containsTerminator(text, target, oldTo) && !containsTerminator(newText, target, newTo)) {
+            final Segment segment = segments.get(first);
+            final int change = getEncodedLength(newText, target, newTo)
+                    - getEncodedLength(text, target, oldTo);
+            segments.set(first, new Segment(segment.length + newEnd - oldEnd, segment.bytes + change));
+            byteCount += change;
+            text = newText;
+            return;
+        }
+
+        // Otherwise the change may join or split line terminators either side of it, so rescan
+        // from the segment before the edit to the segment after it.
+
+        int last = first;
+        int regionEnd = regionStart + segments.get(last).length;
+        while (last < segments.size() - 1 && regionEnd <= oldEnd) {
+            last++;
+            regionEnd += segments.get(last).length;
+        }
+        if (last < segments.size() - 1) {
+            last++;
+            regionEnd += segments.get(last).length;
+        }
+
+        final boolean atEnd = last == segments.size() - 1;
+        final List<Segment> removed = segments.subList(first, last + 1);
+        for (Segment segment : removed) {
+            byteCount -= segment.bytes;
+        }
+        removed.clear();
+
+        final List<Segment> scanned = scan(newText, regionStart, regionEnd + newEnd - oldEnd, atEnd);
+        for (Segment segment : scanned) {
+            byteCount += segment.bytes;
+        }
+        segments.addAll(first, scanned);
+        text = newText;
+    }
+
+    /**
+     * Splits a region of text into segments.
+     *
+     * @param text  The text to scan
+     * @param from  The offset to start scanning at, which must be the start of a line
+     * @param to    The offset to stop scanning at, which must be the end of a line
+     * @param atEnd Whether the region extends to the end of the text
+     *
+     * @return The segments found in the region
+     */
+    private static List<Segment> scan(final String text, final int from, final int to,
+            final boolean atEnd) {
+        final List<Segment> result = new ArrayList<>();
+        int segmentStart = from;
+
+        for (int i = from; i < to; i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                final int bytes = getEncodedLength(text, segmentStart, i);
+                if (c == '\r' && i + 1 < to && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                result.add(new Segment(i + 1 - segmentStart, bytes));
+                segmentStart = i + 1;
+            }
+        }
+
+        if (atEnd || segmentStart < to) {
+            result.add(new Segment(to - segmentStart, getEncodedLength(text, segmentStart, to)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Determines whether a region of text contains a line terminator.
+     *
+     * @param text The text to examine
+     * @param from The offset to start examining at
+     * @param to   The offset to stop examining at
+     *
+     * @return True if the region contains a carriage return or new line
+     */
+    private static boolean containsTerminator(final String text, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calculates the number of bytes needed to encode a region of text as UTF-8.
+     *
+     * @param text The text to measure
+     * @param from The offset to start measuring at
+     * @param to   The offset to stop measuring at
+     *
+     * @return The encoded size of the region
+     */
+    private static int getEncodedLength(final String text, final int from, final int to) {
+        int bytes = 0;
+        for (int i = from; i < to; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced with a single '?' when encoded.
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A single line of the input text.
+     */
+    private static class Segment {
+
+        /** The number of characters in the line, including its terminator. */
+        private final int length;
+        /** The number of bytes in the line when encoded, excluding its terminator. */
+        private final int bytes;
+
+        Segment(final int length, final int bytes) {
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -117,6 +117,8 @@ public abstract class InputHandler implements ConfigChangeListener {
     private final EventBus eventBus;
     /** Executor service. */
     private final ScheduledExecutorService executorService;
+    /** Analyser tracking the structure of the text in the target. */
+    private final InputAnalyser analyser = new InputAnalyser();
 
     /**
      * Creates a new instance of InputHandler. Adds listeners to the target that we need to operate.
@@ -243,11 +245,11 @@ public abstract class InputHandler implements ConfigChangeListener {
         if (keyCode == KeyEvent.VK_COMMA && caretPosition > 1) {
             // Reshow the colour picker dialog if the user follows a colour
             // or control code with a comma (so they can pick a background)
-            final String partialLine = line.substring(0, caretPosition - 1);
+            analyser.update(line);
 
-            if (partialLine.matches("^.*" + IRCControlCodes.COLOUR + "[0-9]{0,2}$")) {
+            if (analyser.isAfterColourCode(caretPosition - 1)) {
                 target.showColourPicker(true, false);
-            } else if (partialLine.matches("^.*" + IRCControlCodes.COLOUR_HEX + "[0-9A-Z]{6}?$")) {
+            } else if (analyser.isAfterHexColourCode(caretPosition - 1)) {
                 target.showColourPicker(false, true);
             }
         }
@@ -293,8 +295,9 @@ public abstract class InputHandler implements ConfigChangeListener {
                 fireLineWrap(count);
             }
         } else {
-            final int lines = parentWindow.getInputModel().get().getNumLines(text);
-            fireLineWrap(lines);
+            analyser.update(text);
+            fireLineWrap(analyser.getNumLines(
+                    parentWindow.getInputModel().get().getMaxLineLength()));
         }
     }
 
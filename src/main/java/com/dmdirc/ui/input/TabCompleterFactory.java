@@ -21,6 +21,11 @@ import com.dmdirc.commandparser.CommandType;
 import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -34,6 +39,8 @@ public class TabCompleterFactory {
 
     /** The command controller to use to find commands. */
     private final Provider<CommandController> commandController;
+    /** Command completion sources, shared between all completers for the same command types. */
+    private final Map<List<CommandType>, TabCompletionSource> commandSources = new ConcurrentHashMap<>();
 
     /**
      * Creates a new instance of {@link TabCompleterFactory}.
@@ -57,9 +64,7 @@ public class TabCompleterFactory {
     public TabCompleter getTabCompleter(
             final AggregateConfigProvider configProvider,
             final CommandType... commandTypes) {
-        final TabCompleter tabCompleter = new TabCompleterImpl(configProvider);
-        addCommands(tabCompleter, commandTypes);
-        return tabCompleter;
+        return new TabCompleterImpl(configProvider, null, getCommandSource(commandTypes));
     }
 
     /**
@@ -76,22 +81,19 @@ public class TabCompleterFactory {
             final TabCompleter parent,
             final AggregateConfigProvider configProvider,
             final CommandType... commandTypes) {
-        final TabCompleter tabCompleter = new TabCompleterImpl(configProvider, parent);
-        addCommands(tabCompleter, commandTypes);
-        return tabCompleter;
+        return new TabCompleterImpl(configProvider, parent, getCommandSource(commandTypes));
     }
 
     /**
-     * Adds all commands of the specified type to the given completer.
+     * Gets the shared completion source for commands of the specified types.
+     *
+     * @param commandTypes The types of command that should be completed.
      *
-     * @param tabCompleter The completer to add commands to.
-     * @param commandTypes The types of command that should be added to the completer.
+     * @return A completion source shared by all completers for the same types.
      */
-    private void addCommands(final TabCompleter tabCompleter, final CommandType... commandTypes) {
-        for (CommandType commandType : commandTypes) {
-            tabCompleter.addEntries(TabCompletionType.COMMAND,
-                    commandController.get().getCommandNames(commandType));
-        }
+    private TabCompletionSource getCommandSource(final CommandType... commandTypes) {
+        return commandSources.computeIfAbsent(Arrays.asList(commandTypes),
+                types -> commandController.get().getCompletionSource(commandTypes));
     }
 
 }
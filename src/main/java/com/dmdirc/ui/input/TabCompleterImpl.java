@@ -20,10 +20,14 @@ package com.dmdirc.ui.input;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The tab completer handles a user's request to tab complete some word.
@@ -39,6 +43,10 @@ public class TabCompleterImpl implements TabCompleter {
     private final AggregateConfigProvider configManager;
     /** The entries in this completer. */
     private final Multimap<TabCompletionType, String> entries = ArrayListMultimap.create();
+    /** Shared source of additional entries, consulted on each completion. */
+    private final TabCompletionSource source;
+    /** The types of entry still taken from {@link #source}; clearing a type stops using it. */
+    private final Set<TabCompletionType> sourceTypes = EnumSet.allOf(TabCompletionType.class);
 
     /**
      * Creates a new instance of {@link TabCompleterImpl}.
@@ -46,8 +54,7 @@ public class TabCompleterImpl implements TabCompleter {
      * @param configManager     The manager to read config settings from.
      */
     public TabCompleterImpl(final AggregateConfigProvider configManager) {
-        this.parent = null;
-        this.configManager = configManager;
+        this(configManager, null);
     }
 
     /**
@@ -59,8 +66,24 @@ public class TabCompleterImpl implements TabCompleter {
     public TabCompleterImpl(
             final AggregateConfigProvider configManager,
             @Nullable final TabCompleter parent) {
+        this(configManager, parent, type -> Collections.emptyList());
+    }
+
+    /**
+     * Creates a new instance of {@link TabCompleterImpl}.
+     *
+     * @param configManager     The manager to read config settings from.
+     * @param parent            The parent tab completer to inherit completions from.
+     * @param source            A shared source of entries to complete in addition to this
+     *                          completer's own entries.
+     */
+    public TabCompleterImpl(
+            final AggregateConfigProvider configManager,
+            @Nullable final TabCompleter parent,
+            final TabCompletionSource source) {
         this.parent = parent;
         this.configManager = configManager;
+        this.source = source;
     }
 
     @Override
@@ -75,11 +98,14 @@ public class TabCompleterImpl implements TabCompleter {
         }
 
         final Multimap<TabCompletionType, String> targets = ArrayListMultimap.create(entries);
+        for (TabCompletionType type : sourceTypes) {
+            targets.putAll(type, source.getEntries(type));
+        }
         if (additionals != null) {
             targets.putAll(TabCompletionType.ADDITIONAL, additionals);
         }
 
-        targets.keys().stream()
+        targets.keySet().stream()
                 // Filter out keys that aren't allowed by the additional argument (if present)
                 .filter(k -> additionals == null || additionals.shouldInclude(k))
                 // Select all values for the valid keys
@@ -127,14 +153,22 @@ public class TabCompleterImpl implements TabCompleter {
         entries.remove(type, entry);
     }
 
+    @Override
+    public void removeEntries(final TabCompletionType type, final Iterable<String> removed) {
+        // Remove all entries in a single pass, rather than scanning the list once per entry.
+        entries.get(type).removeAll(Sets.newHashSet(removed));
+    }
+
     @Override
     public void clear() {
         entries.clear();
+        sourceTypes.clear();
     }
 
     @Override
     public void clear(final TabCompletionType type) {
         entries.removeAll(type);
+        sourceTypes.remove(type);
     }
 
 }
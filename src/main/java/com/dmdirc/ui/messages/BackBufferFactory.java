@@ -14,33 +14,270 @@
  * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
  * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
-
 package com.dmdirc.ui.messages;
 
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
+import com.dmdirc.interfaces.Connection;
 import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.metrics.MetricsRegistry;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /**
  * Factory for {@link BackBuffer}s.
+ *
+ * <p>Windows on the same connection whose styling and colour settings resolve to the same values
+ * share a single {@link Styliser} and {@link ColourManager}. Shared stylisers never change and
+ * hold no config listeners. Instead, the factory registers one listener with each window's config
+ * and moves the window to a different styliser when its settings change. Stylisers are released
+ * once the last window using them has closed. Windows with scrollback journalling enabled also
+ * have their lines recorded in a {@link ScrollbackJournal}, and all documents are accounted for by
+ * the {@link ScrollbackBudget}.
  */
 @Singleton
 public class BackBufferFactory {
 
     private final ColourManagerFactory colourManagerFactory;
     private final EventFormatter formatter;
+    private final ScrollbackJournalManager journalManager;
+    private final ScrollbackBudget budget;
+    /** The metrics shared by all documents created by this factory. */
+    private final DocumentMetrics metrics;
+    /** Stylisers shared between windows, keyed on their connection and settings. */
+    private final Map<StyliserKey, SharedStyliser> stylisers = new HashMap<>();
+    /** The styling state of each back buffer created by this factory that is still in use. */
+    private final Map<BackBufferImpl, WindowStyle> windows = new IdentityHashMap<>();
+    /** Lock guarding access to {@link #stylisers} and {@link #windows}. */
+    private final Object lock = new Object();
 
     @Inject
     public BackBufferFactory(
             final ColourManagerFactory colourManagerFactory,
-            final EventFormatter formatter) {
+            final EventFormatter formatter,
+            final ScrollbackJournalManager journalManager,
+            final ScrollbackBudget budget,
+            final MetricsRegistry metricsRegistry) {
         this.colourManagerFactory = colourManagerFactory;
         this.formatter = formatter;
+        this.journalManager = journalManager;
+        this.budget = budget;
+        this.metrics = new DocumentMetrics(metricsRegistry);
+        metricsRegistry.registerGauge("documents.count", () -> budget.getUsage().size());
+        metricsRegistry.registerGauge("documents.retained", budget::getTotalUsage);
     }
 
     public BackBufferImpl getBackBuffer(final WindowModel owner) {
-        return new BackBufferImpl(owner, colourManagerFactory, formatter);
+        final Connection connection = owner.getConnection().orElse(null);
+        final AggregateConfigProvider config = owner.getConfigManager();
+        final StyliserKey key = StyliserKey.resolve(connection, config);
+        final Styliser styliser;
+        synchronized (lock) {
+            styliser = acquireStyliser(key);
+        }
+
+        final BackBufferImpl backBuffer = new BackBufferImpl(owner, styliser, formatter,
+                journalManager.getJournal(owner).orElse(null), budget, metrics);
+        budget.register(owner, backBuffer.getIRCDocument());
+
+        final WindowStyle window = new WindowStyle(backBuffer, connection, config, key);
+        synchronized (lock) {
+            windows.put(backBuffer, window);
+        }
+        config.addChangeListener("colour", window);
+        config.addChangeListener("icon", window);
+        for (String setting : Styliser.UI_SETTINGS) {
+            config.addChangeListener("ui", setting, window);
+        }
+        // Pick up anything that changed while the buffer was being created.
+        window.restyle();
+        return backBuffer;
+    }
+
+    /**
+     * Releases the resources held by a back buffer previously created by this factory. The buffer
+     * should not be used afterwards.
+     *
+     * @param backBuffer The back buffer to release.
+     */
+    public void releaseBackBuffer(final BackBufferImpl backBuffer) {
+        backBuffer.dispose();
+        budget.unregister(backBuffer.getIRCDocument());
+        backBuffer.getJournal().ifPresent(journalManager::releaseJournal);
+
+        final WindowStyle window;
+        synchronized (lock) {
+            window = windows.remove(backBuffer);
+            if (window != null) {
+                releaseStyliser(window.key);
+            }
+        }
+
+        if (window != null) {
+            window.config.removeListener(window);
+        }
+    }
+
+    /**
+     * Gets the shared colour manager for the colour settings currently in effect in the given
+     * config. The manager does not follow later changes to the settings.
+     *
+     * @param config The config to read colour settings from.
+     * @return A shared colour manager.
+     * @see ColourManagerFactory#getColourManager(AggregateConfigProvider)
+     */
+    public ColourManager getColourManager(final AggregateConfigProvider config) {
+        return colourManagerFactory.getColourManager(config);
+    }
+
+    /**
+     * Gets the shared styliser for the given key, creating it if no window is using one. Each call
+     * must be balanced by a call to {@link #releaseStyliser(StyliserKey)}. Callers must hold
+     * {@link #lock}.
+     *
+     * @param key The connection and settings the styliser is needed for.
+     * @return A shared styliser.
+     */
+    private Styliser acquireStyliser(final StyliserKey key) {
+        final SharedStyliser shared = stylisers.computeIfAbsent(key,
+                k -> new SharedStyliser(new Styliser(k.connection, k.settings,
+                        colourManagerFactory.getColourManager(k.colours))));
+        shared.references++;
+        return shared.styliser;
+    }
+
+    /**
+     * Releases a styliser obtained from {@link #acquireStyliser(StyliserKey)}, discarding it if no
+     * other window is using it. Callers must hold {@link #lock}.
+     *
+     * @param key The key the styliser was acquired with.
+     */
+    private void releaseStyliser(final StyliserKey key) {
+        final SharedStyliser shared = stylisers.get(key);
+        if (shared != null && --shared.references <= 0) {
+            stylisers.remove(key);
+        }
+    }
+
+    /**
+     * Identifies the connection and resolved settings a styliser is created for. Keys read from
+     * different configs are equal if the settings resolve to the same values.
+     */
+    private static class StyliserKey {
+
+        @Nullable private final Connection connection;
+        private final Styliser.Settings settings;
+        private final List<String> colours;
+
+        StyliserKey(@Nullable final Connection connection, final Styliser.Settings settings,
+                final List<String> colours) {
+            this.connection = connection;
+            this.settings = settings;
+            this.colours = colours;
+        }
+
+        /**
+         * Reads the settings currently in effect in the given config.
+         *
+         * @param connection The connection the window belongs to, if any.
+         * @param config     The window's config.
+         * @return A key describing the styliser the window needs.
+         */
+        static StyliserKey resolve(@Nullable final Connection connection,
+                final AggregateConfigProvider config) {
+            return new StyliserKey(connection, Styliser.Settings.read(config),
+                    ColourManagerImpl.readSettings(config));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof StyliserKey)) {
+                return false;
+            }
+            final StyliserKey other = (StyliserKey) obj;
+            return connection == other.connection && settings.equals(other.settings)
+                    && colours.equals(other.colours);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(connection), settings, colours);
+        }
+
+    }
+
+    /**
+     * A styliser and the number of windows using it.
+     */
+    private static class SharedStyliser {
+
+        private final Styliser styliser;
+        private int references;
+
+        SharedStyliser(final Styliser styliser) {
+            this.styliser = styliser;
+        }
+
+    }
+
+    /**
+     * Tracks the styliser used by a single back buffer, and switches it when the settings in the
+     * window's config change.
+     */
+    private class WindowStyle implements ConfigChangeListener {
+
+        private final BackBufferImpl backBuffer;
+        @Nullable private final Connection connection;
+        private final AggregateConfigProvider config;
+        /** The key of the styliser currently in use. Guarded by {@link #lock}. */
+        private StyliserKey key;
+
+        WindowStyle(final BackBufferImpl backBuffer, @Nullable final Connection connection,
+                final AggregateConfigProvider config, final StyliserKey key) {
+            this.backBuffer = backBuffer;
+            this.connection = connection;
+            this.config = config;
+            this.key = key;
+        }
+
+        @Override
+        public void configChanged(final ConfigChangeSet changes) {
+            // The whole key is re-read regardless of what changed, so only do it once per set.
+            restyle();
+        }
+
+        @Override
+        public void configChanged(final String domain, final String key) {
+            restyle();
+        }
+
+        /**
+         * Re-reads the window's settings and, if they no longer match its styliser, switches it
+         * to the styliser for the new settings.
+         */
+        synchronized void restyle() {
+            final StyliserKey newKey = StyliserKey.resolve(connection, config);
+            final Styliser styliser;
+            synchronized (lock) {
+                if (windows.get(backBuffer) != this || newKey.equals(key)) {
+                    return;
+                }
+                styliser = acquireStyliser(newKey);
+                releaseStyliser(key);
+                key = newKey;
+            }
+            backBuffer.setStyliser(styliser);
+        }
+
     }
 
 }
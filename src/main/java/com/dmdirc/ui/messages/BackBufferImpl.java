@@ -17,36 +17,48 @@
 
 package com.dmdirc.ui.messages;
 
-import com.dmdirc.events.DisplayLocation;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.events.DisplayableEvent;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
 import com.dmdirc.util.EventUtils;
-import java.util.Arrays;
 import net.engio.mbassy.listener.Handler;
 
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
 /**
  * Models the history of a window in the client.
  */
 public class BackBufferImpl implements BackBuffer {
 
-    private final Document document;
-    private final Styliser styliser;
+    private final IRCDocument document;
+    private volatile Styliser styliser;
     private final EventBus eventBus;
     private final EventFormatter formatter;
     private final WindowModel owner;
+    @Nullable private final ScrollbackJournal journal;
 
     public BackBufferImpl(
             final WindowModel owner,
-            final ColourManagerFactory colourManagerFactory,
+            final Styliser styliser,
             final EventFormatter formatter) {
+        this(owner, styliser, formatter, null, null, DocumentMetrics.NONE);
+    }
+
+    BackBufferImpl(
+            final WindowModel owner,
+            final Styliser styliser,
+            final EventFormatter formatter,
+            @Nullable final ScrollbackJournal journal,
+            @Nullable final ScrollbackBudget budget,
+            final DocumentMetrics metrics) {
         this.owner = owner;
-        this.styliser = new Styliser(
-                owner.getConnection().orElse(null),
-                owner.getConfigManager(),
-                colourManagerFactory.getColourManager(owner.getConfigManager()));
-        this.document = new IRCDocument(owner.getConfigManager(), styliser);
+        this.styliser = styliser;
+        this.journal = journal;
+        this.document = new IRCDocument(owner.getConfigManager(), styliser, journal, budget,
+                metrics);
         this.eventBus = owner.getEventBus();
         this.formatter = formatter;
     }
@@ -66,31 +78,55 @@ public class BackBufferImpl implements BackBuffer {
     }
 
     /**
-     * Handles a displayable event received on the event bus.
+     * Releases any config listeners held by this buffer's document.
+     */
+    void dispose() {
+        document.dispose();
+    }
+
+    /**
+     * Changes the styliser used for this buffer's lines, for example because the settings it was
+     * created from have changed.
      *
-     * @param event The event to be displayed.
+     * @param styliser The new styliser.
      */
-    @Handler(priority = EventUtils.PRIORITY_DISPLAYABLE_EVENT_HANDLER)
-    private void handleDisplayableEvent(final DisplayableEvent event) {
-        if (shouldDisplay(event)) {
-            formatter.format(event).map(s -> s.split("\n")).map(Arrays::stream).ifPresent(
-                    t -> t.forEach(line -> document.addText(
-                            event.getTimestamp(), event.getDisplayProperties(), line)));
-        }
+    void setStyliser(final Styliser styliser) {
+        this.styliser = styliser;
+        document.setStyliser(styliser);
+    }
+
+    /**
+     * Gets the journal this buffer's lines are recorded in, if any.
+     *
+     * @return This buffer's scrollback journal.
+     */
+    Optional<ScrollbackJournal> getJournal() {
+        return Optional.ofNullable(journal);
     }
 
     /**
-     * Determines if the specified event should be displayed in this backbuffer.
+     * Gets this buffer's document.
      *
-     * @param event The event to check
-     * @return True if the event should be displayed, false otherwise.
+     * @return This buffer's document.
      */
-    private boolean shouldDisplay(final DisplayableEvent event) {
-        return (formatter.getEventFormatProvider().getFormat(event.getClass()).isPresent() ?
-                formatter.getEventFormatProvider().getFormat(event.getClass()).get().getDisplayProperties()
-                    .get(DisplayProperty.DISPLAY_LOCATION).orElse(DisplayLocation.SOURCE).shouldDisplay(owner, event)
-                        : DisplayLocation.SOURCE.shouldDisplay(owner, event))
-                && !event.hasDisplayProperty(DisplayProperty.DO_NOT_DISPLAY);
+    IRCDocument getIRCDocument() {
+        return document;
+    }
+
+    /**
+     * Handles a displayable event received on the event bus.
+     *
+     * @param event The event to be displayed.
+     */
+    @Handler(priority = EventUtils.PRIORITY_DISPLAYABLE_EVENT_HANDLER)
+    private void handleDisplayableEvent(final DisplayableEvent event) {
+        // The event is only formatted once, and the result is shared between all back buffers.
+        final FormattedEvent formatted = formatter.getFormattedEvent(event);
+        if (!event.hasDisplayProperty(DisplayProperty.DO_NOT_DISPLAY)
+                && formatted.getDisplayLocation().shouldDisplay(owner, event)) {
+            formatted.getLines().forEach(line -> document.addText(
+                    event.getTimestamp(), event.getDisplayProperties(), line));
+        }
     }
 
     @Override
@@ -20,6 +20,8 @@ package com.dmdirc.ui.messages;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.util.collections.RollingList;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Wraps an {@link IRCDocument} and caches recent lines.
  */
@@ -33,6 +35,8 @@ public class CachingDocument<T> {
     private final RollingList<Line> cachedLines;
     /** Cached attributed strings. */
     private final RollingList<T> cachedStrings;
+    /** The metrics to record cache hits and misses in. */
+    private final DocumentMetrics metrics;
 
     public CachingDocument(final Document document, final StyledMessageMaker<T> maker) {
         this.document = document;
@@ -40,6 +44,8 @@ public class CachingDocument<T> {
 
         cachedLines = new RollingList<>(50);
         cachedStrings = new RollingList<>(50);
+        metrics = document instanceof IRCDocument ? ((IRCDocument) document).getMetrics()
+                : DocumentMetrics.NONE;
     }
 
     /**
@@ -59,6 +65,7 @@ public class CachingDocument<T> {
         }
 
         if (styledLine == null) {
+            final long start = System.nanoTime();
             line.getDisplayableProperty(DisplayProperty.FOREGROUND_COLOUR)
                     .ifPresent(maker::setDefaultForeground);
             line.getDisplayableProperty(DisplayProperty.BACKGROUND_COLOUR)
@@ -67,6 +74,10 @@ public class CachingDocument<T> {
             styledLine = line.getStyled(maker);
             cachedLines.add(line);
             cachedStrings.add(styledLine);
+            metrics.cacheMisses.increment();
+            metrics.styleTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        } else {
+            metrics.cacheHits.increment();
         }
 
         return styledLine;
@@ -14,26 +14,60 @@
  * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
  * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
-
 package com.dmdirc.ui.messages;
 
 import com.dmdirc.config.provider.AggregateConfigProvider;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /**
  * Factory to create {@link ColourManager}s.
+ *
+ * <p>Colour managers handed out by this factory are shared between every window whose colour
+ * settings resolve to the same values, however many config providers they come from. Shared
+ * managers never change and hold no config listeners; once nothing refers to one any more it is
+ * garbage collected.
  */
 @Singleton
 public class ColourManagerFactory {
 
+    /** Managers in use, keyed on the colour settings they were resolved from. */
+    private final Cache<List<String>, ColourManagerImpl> managers = CacheBuilder.newBuilder()
+            .weakValues().build();
+
     @Inject
     public ColourManagerFactory() {
     }
 
+    /**
+     * Gets the shared colour manager for the colour settings currently in effect in the given
+     * config provider. The manager does not follow later changes to those settings; callers that
+     * hold on to it should get a new one when the "colour" domain changes.
+     *
+     * @param configManager The config provider to read colour settings from.
+     * @return A colour manager for the provider's current colour settings.
+     */
     public ColourManager getColourManager(final AggregateConfigProvider configManager) {
-        return new ColourManagerImpl(configManager);
+        return getColourManager(ColourManagerImpl.readSettings(configManager));
+    }
+
+    /**
+     * Gets the shared colour manager for the given colour settings, creating it if no one is using
+     * one.
+     *
+     * @param settings The resolved setting for each IRC colour, as returned by
+     * {@link ColourManagerImpl#readSettings(AggregateConfigProvider)}.
+     * @return A colour manager for the settings.
+     */
+    ColourManager getColourManager(final List<String> settings) {
+        return managers.asMap().computeIfAbsent(settings,
+                s -> new ColourManagerImpl(new ColourPalette(s)));
     }
 
 }
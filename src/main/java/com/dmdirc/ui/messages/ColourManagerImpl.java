@@ -18,12 +18,16 @@
 package com.dmdirc.ui.messages;
 
 import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
 import com.dmdirc.util.colours.Colour;
 import com.dmdirc.util.validators.ColourValidator;
 import com.dmdirc.util.validators.Validator;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,53 +41,86 @@ import static com.dmdirc.util.LogUtils.USER_ERROR;
 public class ColourManagerImpl implements ColourManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(ColourManagerImpl.class);
-    /** Default colours used for the standard 16 IRC colours. */
-    private static final Colour[] DEFAULT_COLOURS = {
-        Colour.WHITE, Colour.BLACK, new Colour(0, 0, 127), new Colour(0, 141, 0),
-        Colour.RED, new Colour(127, 0, 0), new Colour(160, 15, 160), new Colour(252, 127, 0),
-        Colour.YELLOW, new Colour(0, 252, 0), new Colour(0, 128, 128), new Colour(0, 255, 255),
-        Colour.BLUE, new Colour(255, 0, 255), Colour.GRAY, Colour.LIGHT_GRAY,};
-    /** Colour cache. */
-    private final Map<String, Colour> colourCache = new HashMap<>();
-    /** Config manager to read settings from. */
-    private final AggregateConfigProvider configManager;
-    /** Actual colours we're using for the 16 IRC colours. */
-    private final Colour[] ircColours = DEFAULT_COLOURS.clone();
+    /** Config manager to read settings from, or null if this manager's colours are fixed. */
+    @Nullable private final AggregateConfigProvider configManager;
+    /** Listener registered to re-read the IRC colours. */
+    private final ConfigChangeListener listener = (domain, key) -> initColours();
+    /** The palette for the current colour settings. */
+    private volatile ColourPalette palette;
 
     /**
-     * Creates a new instance of {@link ColourManagerImpl}.
+     * Creates a new instance of {@link ColourManagerImpl} that follows changes to the colour
+     * settings in the given config.
      *
      * @param configManager The manager to read config settings from.
      */
     public ColourManagerImpl(final AggregateConfigProvider configManager) {
         this.configManager = configManager;
 
-        configManager.addChangeListener("colour", (domain, key) -> initColours());
+        configManager.addChangeListener("colour", listener);
 
         initColours();
     }
 
     /**
-     * Initialises the IRC_COLOURS array.
+     * Creates a new instance of {@link ColourManagerImpl} that always uses the given palette and
+     * does not listen for changes, so that it can be shared by every user of the same colours.
+     *
+     * @param palette The palette to use.
+     */
+    ColourManagerImpl(final ColourPalette palette) {
+        this.configManager = null;
+        this.palette = palette;
+    }
+
+    /**
+     * Stops listening for changes to the colour settings. The manager should not be used after
+     * this has been called.
+     */
+    public void dispose() {
+        if (configManager != null) {
+            configManager.removeListener(listener);
+        }
+    }
+
+    /**
+     * Reads the IRC colour settings and switches to a palette for them.
      */
     private void initColours() {
+        if (configManager != null) {
+            palette = new ColourPalette(readSettings(configManager));
+        }
+    }
+
+    /**
+     * Reads the setting for each of the 16 IRC colours from the given config.
+     *
+     * @param configManager The config to read settings from.
+     * @return The lower-cased hex value configured for each IRC colour, or null for colours that
+     * are not set to a valid colour.
+     */
+    static List<String> readSettings(final AggregateConfigProvider configManager) {
         final Validator<String> validator = new ColourValidator();
+        final List<String> settings = new ArrayList<>(16);
         for (int i = 0; i < 16; i++) {
             if (configManager.hasOptionString("colour", String.valueOf(i), validator)) {
-                ircColours[i] = getColourFromHex(
-                        configManager.getOptionString("colour", String.valueOf(i)));
-                colourCache.remove(String.valueOf(i));
-            } else if (!ircColours[i].equals(DEFAULT_COLOURS[i])) {
-                ircColours[i] = DEFAULT_COLOURS[i];
-                colourCache.remove(String.valueOf(i));
+                settings.add(configManager.getOptionString("colour", String.valueOf(i))
+                        .toLowerCase());
+            } else {
+                settings.add(null);
             }
         }
+        return Collections.unmodifiableList(settings);
     }
 
     @Override
     public Colour getColourFromString(final String spec, final Colour fallback) {
-        if (colourCache.containsKey(spec)) {
-            return colourCache.get(spec);
+        final ColourPalette current = palette;
+        if (spec != null) {
+            final Colour cached = current.getCache().getIfPresent(spec);
+            if (cached != null) {
+                return cached;
+            }
         }
 
         Colour res = null;
@@ -99,10 +136,10 @@ public class ColourManagerImpl implements ColourManager {
                 }
 
                 if (num >= 0 && num <= 15) {
-                    res = getColourFromIrcCode(num);
+                    res = current.getIrcColour(num);
                 }
             } else if (spec.length() == 6) {
-                res = getColourFromHex(spec);
+                res = getColourFromHex(current, spec);
             }
         }
 
@@ -110,7 +147,7 @@ public class ColourManagerImpl implements ColourManager {
             LOG.warn(USER_ERROR, "Invalid colour format: {}", spec);
             res = fallback;
         } else {
-            colourCache.put(spec, res);
+            current.getCache().put(spec, res);
         }
 
         return res;
@@ -118,34 +155,29 @@ public class ColourManagerImpl implements ColourManager {
 
     @Override
     public Colour getColourFromHex(final String hex) {
-        if (colourCache.containsKey(hex)) {
-            return colourCache.get(hex);
-        }
+        return getColourFromHex(palette, hex);
+    }
 
-        if (hex.length() < 6) {
-            LOG.warn(USER_ERROR, "Invalid colour: #{}", hex);
-            return Colour.WHITE;
+    private Colour getColourFromHex(final ColourPalette current, final String hex) {
+        final Colour cached = current.getCache().getIfPresent(hex);
+        if (cached != null) {
+            return cached;
         }
 
-        final Colour colour;
-        try {
-            colour = new Colour(
-                    Integer.parseInt(hex.substring(0, 2), 16),
-                    Integer.parseInt(hex.substring(2, 4), 16),
-                    Integer.parseInt(hex.substring(4, 6), 16));
-        } catch (NumberFormatException ex) {
+        final Colour colour = ColourPalette.parseHex(hex);
+        if (colour == null) {
             LOG.warn(USER_ERROR, "Invalid colour: #{}", hex);
             return Colour.WHITE;
         }
 
-        colourCache.put(hex, colour);
+        current.getCache().put(hex, colour);
         return colour;
     }
 
     @Override
     public Colour getColourFromIrcCode(final int number) {
         if (number >= 0 && number <= 15) {
-            return ircColours[number];
+            return palette.getIrcColour(number);
         } else {
             LOG.warn(USER_ERROR, "Invalid colour: {}", number);
             return Colour.WHITE;
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.util.colours.Colour;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The 16 IRC colours resolved from a particular set of colour settings, along with a cache of
+ * colours parsed under them. Palettes are immutable apart from their cache, so one palette can
+ * serve every window whose colour settings resolve to the same values.
+ */
+class ColourPalette {
+
+    /** Default colours used for the standard 16 IRC colours. */
+    private static final Colour[] DEFAULT_COLOURS = {
+        Colour.WHITE, Colour.BLACK, new Colour(0, 0, 127), new Colour(0, 141, 0),
+        Colour.RED, new Colour(127, 0, 0), new Colour(160, 15, 160), new Colour(252, 127, 0),
+        Colour.YELLOW, new Colour(0, 252, 0), new Colour(0, 128, 128), new Colour(0, 255, 255),
+        Colour.BLUE, new Colour(255, 0, 255), Colour.GRAY, Colour.LIGHT_GRAY,};
+    /** Maximum number of colour specs to cache. */
+    private static final int MAX_CACHE_SIZE = 512;
+    /** Colour cache, bounded as specs may come from arbitrary user input. */
+    private final Cache<String, Colour> colourCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE).build();
+    /** The colours used for the 16 IRC colours. */
+    private final Colour[] ircColours;
+
+    /**
+     * Creates a new palette.
+     *
+     * @param settings The hex value configured for each of the 16 IRC colours, or null for
+     *                 colours that use the default. Values must already have been validated.
+     */
+    ColourPalette(final List<String> settings) {
+        ircColours = DEFAULT_COLOURS.clone();
+        for (int i = 0; i < ircColours.length && i < settings.size(); i++) {
+            final Colour colour = settings.get(i) == null ? null : parseHex(settings.get(i));
+            if (colour != null) {
+                ircColours[i] = colour;
+            }
+        }
+    }
+
+    /**
+     * Gets the colour used for the given IRC colour code.
+     *
+     * @param number The colour code, between 0 and 15 inclusive.
+     * @return The corresponding colour.
+     */
+    Colour getIrcColour(final int number) {
+        return ircColours[number];
+    }
+
+    /**
+     * Gets the cache of parsed colour specs.
+     *
+     * @return This palette's colour cache.
+     */
+    Cache<String, Colour> getCache() {
+        return colourCache;
+    }
+
+    /**
+     * Parses a six digit hex colour.
+     *
+     * @param hex The hex string to parse.
+     * @return The corresponding colour, or null if the string is not a valid colour.
+     */
+    @Nullable
+    static Colour parseHex(final String hex) {
+        if (hex.length() < 6) {
+            return null;
+        }
+
+        try {
+            return new Colour(
+                    Integer.parseInt(hex.substring(0, 2), 16),
+                    Integer.parseInt(hex.substring(2, 4), 16),
+                    Integer.parseInt(hex.substring(4, 6), 16));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayProperty;
+import com.dmdirc.events.DisplayPropertyMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+/**
+ * A run of consecutive lines from a document, stored as a single deflated block of raw text.
+ *
+ * <p>Blocks are used to hold the scrollback of windows that have not been viewed recently, and
+ * are inflated back into {@link IRCLine}s when they are next needed. Display properties that can
+ * not be encoded compactly (such as linked users) are kept uncompressed alongside the block.
+ */
+final class CompressedLineBlock {
+
+    /** Approximate fixed number of bytes retained by a block, excluding its data. */
+    private static final int BLOCK_OVERHEAD = 64;
+    /** Approximate number of bytes retained by each uncompressed property map. */
+    private static final int PROPERTIES_OVERHEAD = 96;
+
+    /** The deflated line data. */
+    private final byte[] data;
+    /** The length of the line data before it was deflated. */
+    private final int uncompressedLength;
+    /** The number of lines in this block. */
+    private final int lineCount;
+    /** Properties of lines that could not be encoded, keyed by their index in the block. */
+    @Nullable private final Map<Integer, DisplayPropertyMap> properties;
+
+    private CompressedLineBlock(final byte[] data, final int uncompressedLength,
+            final int lineCount, @Nullable final Map<Integer, DisplayPropertyMap> properties) {
+        this.data = data;
+        this.uncompressedLength = uncompressedLength;
+        this.lineCount = lineCount;
+        this.properties = properties;
+    }
+
+    /**
+     * Compresses the given lines into a new block.
+     *
+     * @param lines The lines to compress.
+     * @return A block containing the lines.
+     */
+    static CompressedLineBlock compress(final List<IRCLine> lines) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(lines.size() * 64);
+        final Map<Integer, DisplayPropertyMap> properties = new HashMap<>();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int i = 0; i < lines.size(); i++) {
+                final IRCLine line = lines.get(i);
+                final DisplayPropertyMap map = line.getDisplayProperties();
+                out.writeLong(line.getJournalPosition());
+                out.writeInt(StoredDisplayProperties.getFlags(map));
+                out.writeInt(StoredDisplayProperties.getForeground(map));
+                out.writeInt(StoredDisplayProperties.getBackground(map));
+                writeString(out, line.getTimestamp());
+                writeString(out, line.getRawText());
+                if (map.contains(DisplayProperty.LINK_USER)) {
+                    properties.put(i, map);
+                }
+            }
+        } catch (IOException ex) {
+            // ByteArrayOutputStream does not throw IOExceptions.
+            throw new IllegalStateException(ex);
+        }
+
+        final byte[] raw = bytes.toByteArray();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length / 4)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return new CompressedLineBlock(Arrays.copyOf(buffer, length), raw.length,
+                    lines.size(), properties.isEmpty() ? null : properties);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflates this block back into lines.
+     *
+     * @param styliser The styliser to use for the lines.
+     * @param fontSize The font size to use for the lines.
+     * @param fontName The font name to use for the lines.
+     * @return The lines contained in this block.
+     */
+    List<IRCLine> inflate(final StyleApplier styliser, final int fontSize, final String fontName) {
+        final byte[] raw = new byte[uncompressedLength];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt scrollback block", ex);
+        } finally {
+            inflater.end();
+        }
+
+        final List<IRCLine> lines = new ArrayList<>(lineCount);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < lineCount; i++) {
+                final long position = in.readLong();
+                final int flags = in.readInt();
+                final int foreground = in.readInt();
+                final int background = in.readInt();
+                final String timestamp = readString(in);
+                final String text = readString(in);
+                final DisplayPropertyMap map = properties != null && properties.containsKey(i)
+                        ? properties.get(i)
+                        : StoredDisplayProperties.create(flags, foreground, background);
+                lines.add(new IRCLine(styliser, timestamp, text, map, fontSize, fontName, position));
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Corrupt scrollback block", ex);
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the number of lines in this block.
+     *
+     * @return The number of lines in the block.
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the approximate number of bytes retained by this block.
+     *
+     * @return The retained size of the block, in bytes.
+     */
+    long getRetainedSize() {
+        return BLOCK_OVERHEAD + data.length
+                + (properties == null ? 0 : (long) properties.size() * PROPERTIES_OVERHEAD);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value)
+            throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.metrics.Counter;
+import com.dmdirc.metrics.Histogram;
+import com.dmdirc.metrics.MetricsRegistry;
+
+/**
+ * The metrics shared by all documents created by a {@link BackBufferFactory}.
+ */
+final class DocumentMetrics {
+
+    /** Metrics for documents that aren't being measured, which are never published. */
+    static final DocumentMetrics NONE = new DocumentMetrics(new MetricsRegistry());
+
+    /** The number of lines added to documents. */
+    final Counter linesAdded;
+    /** The number of lines trimmed from documents. */
+    final Counter linesTrimmed;
+    /** The number of styled lines served from a {@link CachingDocument}'s cache. */
+    final Counter cacheHits;
+    /** The number of lines a {@link CachingDocument} had to style. */
+    final Counter cacheMisses;
+    /** The time taken to style lines that weren't cached, in microseconds. */
+    final Histogram styleTime;
+
+    /**
+     * Creates a new set of document metrics in the given registry.
+     *
+     * @param registry The registry to create the metrics in.
+     */
+    DocumentMetrics(final MetricsRegistry registry) {
+        linesAdded = registry.getCounter("documents.lines.added");
+        linesTrimmed = registry.getCounter("documents.lines.trimmed");
+        cacheHits = registry.getCounter("documents.styled.hits");
+        cacheMisses = registry.getCounter("documents.styled.misses");
+        styleTime = registry.getHistogram("documents.styled.time");
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.util.FileWatcher;
+import com.dmdirc.util.system.SystemLifecycleComponent;
+
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import static com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
+
+/**
+ * Watches the user's event format file, and reloads formats when it is changed outside of the
+ * client.
+ */
+@Singleton
+public class EventFormatFileWatcher implements SystemLifecycleComponent {
+
+    private final EventFormatProvider formatProvider;
+    private final FileWatcher fileWatcher;
+    private final AggregateConfigProvider globalConfig;
+    private final Path baseDirectory;
+
+    @Inject
+    public EventFormatFileWatcher(
+            final EventFormatProvider formatProvider,
+            final FileWatcher fileWatcher,
+            @GlobalConfig final AggregateConfigProvider globalConfig,
+            @Directory(DirectoryType.BASE) final Path baseDirectory) {
+        this.formatProvider = formatProvider;
+        this.fileWatcher = fileWatcher;
+        this.globalConfig = globalConfig;
+        this.baseDirectory = baseDirectory;
+    }
+
+    @Override
+    public void startUp() {
+        if (globalConfig.getOptionBool("general", "watchconfigfiles")) {
+            fileWatcher.watchFile(baseDirectory.resolve("format.yml"),
+                    path -> formatProvider.reloadIfChanged());
+        }
+    }
+
+}
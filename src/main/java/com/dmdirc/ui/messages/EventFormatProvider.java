@@ -38,4 +38,12 @@ public interface EventFormatProvider {
      * Reload the formats for this provider.
      */
     void reload();
+
+    /**
+     * Reloads the formats for this provider if their source has changed since they were last
+     * read. Providers that cannot tell whether their source has changed reload unconditionally.
+     */
+    default void reloadIfChanged() {
+        reload();
+    }
 }
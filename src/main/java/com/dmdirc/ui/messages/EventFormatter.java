@@ -17,12 +17,18 @@
 
 package com.dmdirc.ui.messages;
 
+import com.dmdirc.events.DisplayLocation;
 import com.dmdirc.events.DisplayProperty;
 import com.dmdirc.events.DisplayPropertyMap;
 import com.dmdirc.events.DisplayableEvent;
 
 import com.dmdirc.interfaces.Displayable;
 import com.dmdirc.util.colours.ColourUtils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -39,14 +45,23 @@ import javax.inject.Singleton;
  * e.g. <code>{{user.hostname|uppercase}}</code>.
  *
  * <p>Properties and functions are case-insensitive.
+ *
+ * <p>Each event is only formatted once, regardless of how many windows display it; the result is
+ * memoised against the event instance and shared between callers.
  */
 @Singleton
 public class EventFormatter {
 
     private static final String ERROR_STRING = "<FormatError>";
+    /** Maximum number of formatted events to remember. */
+    private static final int MAX_CACHED_EVENTS = 256;
 
     private final EventPropertyManager propertyManager;
     private final EventFormatProvider formatProvider;
+    /** Formatted events, keyed on the identity of the event. */
+    private final LoadingCache<DisplayableEvent, FormattedEvent> formattedEvents = CacheBuilder
+            .newBuilder().weakKeys().maximumSize(MAX_CACHED_EVENTS)
+            .build(CacheLoader.from(this::formatEvent));
 
     @Inject
     public EventFormatter(final EventPropertyManager propertyManager,
@@ -56,10 +71,30 @@ public class EventFormatter {
     }
 
     public Optional<String> format(final DisplayableEvent event) {
+        return getFormattedEvent(event).getText();
+    }
+
+    /**
+     * Gets the formatted version of the given event. The event is formatted the first time this is
+     * called, and subsequent calls for the same event return the same result.
+     *
+     * @param event The event to be formatted.
+     * @return The formatted event.
+     */
+    public FormattedEvent getFormattedEvent(final DisplayableEvent event) {
+        return formattedEvents.getUnchecked(event);
+    }
+
+    private FormattedEvent formatEvent(final DisplayableEvent event) {
         final Optional<EventFormat> format = formatProvider.getFormat(event.getClass());
-        format.map(EventFormat::getDisplayProperties)
-                .ifPresent(event.getDisplayProperties()::putAll);
-        return format.map(f -> format(f, event));
+        if (!format.isPresent()) {
+            return FormattedEvent.UNFORMATTED;
+        }
+
+        final DisplayPropertyMap properties = format.get().getDisplayProperties();
+        event.getDisplayProperties().putAll(properties);
+        return new FormattedEvent(Optional.of(format(format.get(), event)),
+                properties.getOrDefault(DisplayProperty.DISPLAY_LOCATION, DisplayLocation.SOURCE));
     }
 
     private String format(final EventFormat format, final DisplayableEvent event) {
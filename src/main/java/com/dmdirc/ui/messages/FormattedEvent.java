@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayLocation;
+import com.dmdirc.events.DisplayProperty;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The result of formatting a single displayable event. Instances are immutable, and are shared
+ * between every window that displays the event.
+ */
+public class FormattedEvent {
+
+    /** Result used for events that have no format. */
+    static final FormattedEvent UNFORMATTED = new FormattedEvent(Optional.empty(),
+            DisplayLocation.SOURCE);
+
+    /** The formatted text, if the event had a format. */
+    private final Optional<String> text;
+    /** The individual lines of the formatted text. */
+    private final List<String> lines;
+    /** Where the event should be displayed. */
+    private final DisplayLocation displayLocation;
+
+    FormattedEvent(final Optional<String> text, final DisplayLocation displayLocation) {
+        this.text = text;
+        this.lines = text.map(t -> Collections.unmodifiableList(Arrays.asList(t.split("\n"))))
+                .orElse(Collections.emptyList());
+        this.displayLocation = displayLocation;
+    }
+
+    /**
+     * Gets the formatted text for the event.
+     *
+     * @return The formatted text, or an empty optional if the event has no format.
+     */
+    public Optional<String> getText() {
+        return text;
+    }
+
+    /**
+     * Gets the formatted text for the event, split into lines.
+     *
+     * @return The lines of the formatted text. Empty if the event has no format.
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Gets the location the event should be displayed in, as specified by the event's format's
+     * {@link DisplayProperty#DISPLAY_LOCATION} property.
+     *
+     * @return The display location for the event.
+     */
+    public DisplayLocation getDisplayLocation() {
+        return displayLocation;
+    }
+
+}
@@ -21,21 +21,51 @@ import com.dmdirc.Precondition;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.util.DateUtils;
 
-import java.util.HashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.IllegalFormatConversionException;
-import java.util.Map;
+import java.util.Locale;
 import java.util.MissingFormatArgumentException;
+import java.util.Optional;
 import java.util.UnknownFormatConversionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
 
 /**
  * The Formatter provides a standard way to format messages for display.
+ *
+ * <p>Format strings are compiled once and cached, along with the types of their arguments. Formats
+ * that only contain date and time conversions of a single argument (such as timestamps) are
+ * compiled into a {@link DateTimeFormatter}, avoiding {@link String#format} entirely.
  */
 public final class Formatter {
 
+    /** The maximum number of compiled formats to cache. */
+    private static final int MAX_CACHE_SIZE = 256;
+
+    /**
+     * A cache of compiled formats, keyed by the format string read from config.
+     */
+    private static final Cache<String, CompiledFormat> FORMAT_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE)
+            .build();
+
     /**
-     * A cache of types needed by the various formatters.
+     * The format strings read from each config provider, keyed by message type. Each map is
+     * cleared when the provider's formatter domain changes.
      */
-    private static final Map<String, Character[]> TYPE_CACHE = new HashMap<>();
+    private static final Cache<AggregateConfigProvider, ConcurrentMap<String, Optional<String>>>
+            CONFIG_CACHE = CacheBuilder.newBuilder().weakKeys().build();
 
     /**
      * Creates a new instance of Formatter.
@@ -59,16 +89,15 @@ public final class Formatter {
             final Object... arguments) {
         assert messageType != null;
 
-        final String res = config.hasOptionString("formatter", messageType)
-                ? config.getOption("formatter", messageType).replace("%-1$", "%"
-                        + arguments.length + '$') : null;
+        final Optional<String> res = getFormats(config).computeIfAbsent(messageType,
+                type -> config.hasOptionString("formatter", type)
+                        ? Optional.of(config.getOption("formatter", type)) : Optional.empty());
 
-        if (res == null) {
+        if (!res.isPresent()) {
             return "<No format string for message type " + messageType + '>';
         } else {
             try {
-                final Object[] newArgs = castArguments(res, arguments);
-                return String.format(res.replaceAll("(%[0-9]+\\$)u", "$1s"), newArgs);
+                return getCompiledFormat(res.get(), arguments.length).format(arguments);
             } catch (IllegalFormatConversionException ex) {
                 return "<Invalid format string for message type " + messageType
                         + "; Error: Illegal format conversion: " + ex.getMessage() + '>';
@@ -86,96 +115,163 @@ public final class Formatter {
     }
 
     /**
-     * Casts the specified arguments to the relevant classes, based on the format type cache.
+     * Gets the cached format strings for the given config provider, registering a listener to
+     * clear them if this is the first time the provider has been seen.
      *
-     * @param format The format to be used
-     * @param args   The arguments to be casted
+     * @param config The config provider to get formats for
      *
-     * @return A new set of arguments of appropriate types
+     * @return A map of message types to format strings
      */
-    @Precondition("The specified format is not null")
-    private static Object[] castArguments(final String format, final Object[] args) {
-        assert format != null;
+    private static ConcurrentMap<String, Optional<String>> getFormats(
+            final AggregateConfigProvider config) {
+        try {
+            return CONFIG_CACHE.get(config, () -> {
+                final ConcurrentMap<String, Optional<String>> formats = new ConcurrentHashMap<>();
+                config.addChangeListener("formatter", (domain, key) -> formats.clear());
+                return formats;
+            });
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Unable to read formats", ex.getCause());
+        }
+    }
 
-        if (!TYPE_CACHE.containsKey(format)) {
-            analyseFormat(format, args);
+    /**
+     * Gets the compiled form of the given format, compiling it if needed.
+     *
+     * @param format        The format string read from config
+     * @param argumentCount The number of arguments that will be formatted
+     *
+     * @return The compiled format
+     */
+    private static CompiledFormat getCompiledFormat(final String format, final int argumentCount) {
+        final CompiledFormat cached = FORMAT_CACHE.getIfPresent(format);
+        if (cached != null && cached.argumentCount == argumentCount) {
+            return cached;
         }
 
-        final Object[] res = new Object[args.length];
+        // The argument count affects how the format is compiled; callers almost always use the
+        // same count for a given format, so only the most recent is kept.
+        final CompiledFormat compiled = new CompiledFormat(format, argumentCount);
+        FORMAT_CACHE.put(format, compiled);
+        return compiled;
+    }
 
-        int i = 0;
-        for (Character chr : TYPE_CACHE.get(format)) {
-            if (i >= args.length) {
-                break;
+    /**
+     * A format string that has been prepared for use with a specific number of arguments.
+     */
+    private static final class CompiledFormat {
+
+        /** The number of arguments this format was compiled for. */
+        private final int argumentCount;
+        /** The format string to pass to {@link String#format}. */
+        private final String format;
+        /** The conversion type used for each argument. */
+        private final char[] types;
+        /** A formatter to use for temporal arguments instead of {@link String#format}, if any. */
+        @Nullable private final DateTimeFormatter temporalFormatter;
+
+        CompiledFormat(final String rawFormat, final int argumentCount) {
+            this.argumentCount = argumentCount;
+            final String expanded = rawFormat.replace("%-1$", "%" + argumentCount + '$');
+            this.types = analyseFormat(expanded, argumentCount);
+            this.format = expanded.replaceAll("(%[0-9]+\\$)u", "$1s");
+            this.temporalFormatter = argumentCount == 1 ? compileTemporalFormat(expanded) : null;
+        }
+
+        String format(final Object... arguments) {
+            if (temporalFormatter != null && arguments[0] instanceof TemporalAccessor) {
+                return temporalFormatter.format((TemporalAccessor) arguments[0]);
             }
+            return String.format(format, castArguments(arguments));
+        }
 
-            switch (chr) {
-                case 'b':
-                case 'B':
-                case 'h':
-                case 'H':
-                case 's':
-                case 'S':
-                    // General (strings)
-                    res[i] = String.valueOf(args[i]);
-                    break;
-                case 'c':
-                case 'C':
-                    // Character
-                    res[i] = String.valueOf(args[i]).charAt(0);
-                    break;
-                case 'd':
-                case 'o':
-                case 'x':
-                case 'X':
-                    // Integers
-                    res[i] = Integer.valueOf((String) args[i]);
-                    break;
-                case 'e':
-                case 'E':
-                case 'f':
-                case 'g':
-                case 'G':
-                case 'a':
-                case 'A':
-                    // Floating point
-                    res[i] = Float.valueOf((String) args[i]);
+        /**
+         * Casts the specified arguments to the relevant classes, based on the analysed types.
+         *
+         * @param args The arguments to be casted
+         *
+         * @return A new set of arguments of appropriate types
+         */
+        private Object[] castArguments(final Object... args) {
+            final Object[] res = new Object[args.length];
+
+            int i = 0;
+            for (char chr : types) {
+                if (i >= args.length) {
                     break;
-                case 't':
-                case 'T':
-                    // Date
-                    if (args[i] instanceof String) {
-                        // Assume it's a timestamp(?)
-                        res[i] = 1000 * Long.valueOf((String) args[i]);
-                    } else {
+                }
+
+                switch (chr) {
+                    case 'b':
+                    case 'B':
+                    case 'h':
+                    case 'H':
+                    case 's':
+                    case 'S':
+                        // General (strings)
+                        res[i] = String.valueOf(args[i]);
+                        break;
+                    case 'c':
+                    case 'C':
+                        // Character
+                        res[i] = String.valueOf(args[i]).charAt(0);
+                        break;
+                    case 'd':
+                    case 'o':
+                    case 'x':
+                    case 'X':
+                        // Integers
+                        res[i] = Integer.valueOf((String) args[i]);
+                        break;
+                    case 'e':
+                    case 'E':
+                    case 'f':
+                    case 'g':
+                    case 'G':
+                    case 'a':
+                    case 'A':
+                        // Floating point
+                        res[i] = Float.valueOf((String) args[i]);
+                        break;
+                    case 't':
+                    case 'T':
+                        // Date
+                        if (args[i] instanceof String) {
+                            // Assume it's a timestamp(?)
+                            res[i] = 1000 * Long.valueOf((String) args[i]);
+                        } else {
+                            res[i] = args[i];
+                        }
+                        break;
+                    case 'u':
+                        // Duration hacks
+                        res[i] = DateUtils.formatDuration(Integer.valueOf(
+                                String.valueOf(args[i].toString())));
+                        break;
+                    default:
                         res[i] = args[i];
-                    }
-                    break;
-                case 'u':
-                    // Duration hacks
-                    res[i] = DateUtils.formatDuration(Integer.valueOf(
-                            String.valueOf(args[i].toString())));
-                    break;
-                default:
-                    res[i] = args[i];
+                }
+
+                i++;
             }
 
-            i++;
+            return res;
         }
 
-        return res;
     }
 
     /**
-     * Analyses the specified format string and fills in the format type cache.
+     * Analyses the specified format string to determine the type of each argument.
+     *
+     * @param format        The format to analyse
+     * @param argumentCount The number of arguments
      *
-     * @param format The format to analyse
-     * @param args   The raw arguments
+     * @return The conversion type of each argument
      */
-    private static void analyseFormat(final String format, final Object[] args) {
-        final Character[] types = new Character[args.length];
+    private static char[] analyseFormat(final String format, final int argumentCount) {
+        final char[] types = new char[argumentCount];
 
-        for (int i = 0; i < args.length; i++) {
+        for (int i = 0; i < argumentCount; i++) {
             final int index = format.indexOf("%" + (i + 1) + '$');
 
             if (index > -1) {
@@ -185,7 +281,116 @@ public final class Formatter {
             }
         }
 
-        TYPE_CACHE.put(format, types);
+        return types;
+    }
+
+    /**
+     * Attempts to compile a format that only uses date and time conversions of its first
+     * argument into an equivalent {@link DateTimeFormatter}.
+     *
+     * @param format The format to compile
+     *
+     * @return An equivalent formatter, or {@code null} if the format uses any other conversions
+     */
+    @Nullable
+    private static DateTimeFormatter compileTemporalFormat(final String format) {
+        final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+        int i = 0;
+        while (i < format.length()) {
+            final char chr = format.charAt(i);
+            if (chr != '%') {
+                builder.appendLiteral(chr);
+                i++;
+            } else if (format.startsWith("%%", i)) {
+                builder.appendLiteral('%');
+                i += 2;
+            } else if (format.startsWith("%n", i)) {
+                builder.appendLiteral(System.lineSeparator());
+                i += 2;
+            } else if (format.startsWith("%1$t", i) && i + 4 < format.length()
+                    && appendTemporalConversion(builder, format.charAt(i + 4))) {
+                i += 5;
+            } else {
+                return null;
+            }
+        }
+        return builder.toFormatter(Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    /**
+     * Appends the equivalent of a {@code %t} conversion to the given builder.
+     *
+     * @param builder    The builder to append to
+     * @param conversion The conversion character following {@code %t}
+     *
+     * @return True if the conversion was appended, false if it is not supported
+     */
+    private static boolean appendTemporalConversion(final DateTimeFormatterBuilder builder,
+            final char conversion) {
+        switch (conversion) {
+            case 'H':
+                builder.appendValue(ChronoField.HOUR_OF_DAY, 2);
+                return true;
+            case 'k':
+                builder.appendValue(ChronoField.HOUR_OF_DAY);
+                return true;
+            case 'I':
+                builder.appendValue(ChronoField.CLOCK_HOUR_OF_AMPM, 2);
+                return true;
+            case 'l':
+                builder.appendValue(ChronoField.CLOCK_HOUR_OF_AMPM);
+                return true;
+            case 'M':
+                builder.appendValue(ChronoField.MINUTE_OF_HOUR, 2);
+                return true;
+            case 'S':
+                builder.appendValue(ChronoField.SECOND_OF_MINUTE, 2);
+                return true;
+            case 'L':
+                builder.appendValue(ChronoField.MILLI_OF_SECOND, 3);
+                return true;
+            case 'd':
+                builder.appendValue(ChronoField.DAY_OF_MONTH, 2);
+                return true;
+            case 'e':
+                builder.appendValue(ChronoField.DAY_OF_MONTH);
+                return true;
+            case 'm':
+                builder.appendValue(ChronoField.MONTH_OF_YEAR, 2);
+                return true;
+            case 'y':
+                builder.appendValueReduced(ChronoField.YEAR, 2, 2, 2000);
+                return true;
+            case 'Y':
+                builder.appendValue(ChronoField.YEAR, 4, 10, SignStyle.NORMAL);
+                return true;
+            case 'A':
+                builder.appendText(ChronoField.DAY_OF_WEEK, TextStyle.FULL);
+                return true;
+            case 'a':
+                builder.appendText(ChronoField.DAY_OF_WEEK, TextStyle.SHORT);
+                return true;
+            case 'B':
+                builder.appendText(ChronoField.MONTH_OF_YEAR, TextStyle.FULL);
+                return true;
+            case 'b':
+            case 'h':
+                builder.appendText(ChronoField.MONTH_OF_YEAR, TextStyle.SHORT);
+                return true;
+            case 'R':
+                return appendTemporalConversion(builder, 'H') && appendLiteral(builder, ':')
+                        && appendTemporalConversion(builder, 'M');
+            case 'T':
+                return appendTemporalConversion(builder, 'R') && appendLiteral(builder, ':')
+                        && appendTemporalConversion(builder, 'S');
+            default:
+                return false;
+        }
+    }
+
+    private static boolean appendLiteral(final DateTimeFormatterBuilder builder, final char chr) {
+        builder.appendLiteral(chr);
+        return true;
     }
 
 }
@@ -20,14 +20,19 @@ package com.dmdirc.ui.messages;
 import com.dmdirc.events.DisplayPropertyMap;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.util.collections.ListenerList;
 
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.swing.UIManager;
 
 /**
@@ -37,14 +42,38 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
 
     /** A version number for this class. */
     private static final long serialVersionUID = 4;
-    /** List of lines of text. */
+    /** Approximate fixed number of bytes retained by each line, excluding its text. */
+    private static final int LINE_OVERHEAD = 128;
+    /** Number of lines compressed into each block when hibernating. */
+    private static final int BLOCK_SIZE = 256;
+    /** The font name used for lines when running headless, matching Swing's usual default. */
+    private static final String DEFAULT_FONT_NAME = "Dialog";
+    /** The font size used for lines when running headless, matching Swing's usual default. */
+    private static final int DEFAULT_FONT_SIZE = 12;
+    /** List of lines of text, following any hibernated lines. */
     private final List<Line> lines;
+    /** Compressed blocks holding the oldest lines of a hibernated document, oldest first. */
+    private final Deque<CompressedLineBlock> coldBlocks = new ArrayDeque<>();
+    /** Number of lines held in {@link #coldBlocks}. */
+    private int coldLines;
+    /** Number of lines paged in from the journal by {@link #loadOlderLines(int)}, which are not trimmed. */
+    private int pagedLines;
     /** Listener list. */
     private final ListenerList listeners;
     /** Config Manager for getting settings. */
     private final AggregateConfigProvider configManager;
-    /** This document's styliser. */
-    private final Styliser styliser;
+    /** This document's styliser, which may be replaced if the window's settings change. */
+    private volatile Styliser styliser;
+    /** Styles lines using whichever styliser this document currently has. */
+    private final transient StyleApplier lineStyliser = new CurrentStyliser();
+    /** The journal to record lines in, if any. */
+    @Nullable private final transient ScrollbackJournal journal;
+    /** The budget to report this document's size to, if any. */
+    @Nullable private final transient ScrollbackBudget budget;
+    /** The metrics to record additions and trims in. */
+    private final transient DocumentMetrics metrics;
+    /** Approximate number of bytes retained by the lines in this document. */
+    private long retainedSize;
     /** Font size. */
     private int fontSize;
     /** Font name. */
@@ -53,8 +82,40 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
     private Integer frameBufferSize;
 
     public IRCDocument(final AggregateConfigProvider configManager, final Styliser styliser) {
+        this(configManager, styliser, null);
+    }
+
+    /**
+     * Creates a new document that records its lines in the given journal. The most recent lines
+     * in the journal are restored into the document.
+     *
+     * @param configManager The config to read settings from.
+     * @param styliser The styliser to use for lines.
+     * @param journal The journal to record lines in, or {@code null} to not journal lines.
+     */
+    public IRCDocument(final AggregateConfigProvider configManager, final Styliser styliser,
+            @Nullable final ScrollbackJournal journal) {
+        this(configManager, styliser, journal, null, DocumentMetrics.NONE);
+    }
+
+    /**
+     * Creates a new document that records its lines in the given journal, and reports its size to
+     * the given budget.
+     *
+     * @param configManager The config to read settings from.
+     * @param styliser The styliser to use for lines.
+     * @param journal The journal to record lines in, or {@code null} to not journal lines.
+     * @param budget The budget to report size changes to, or {@code null} to not report them.
+     * @param metrics The metrics to record changes to the document in.
+     */
+    IRCDocument(final AggregateConfigProvider configManager, final Styliser styliser,
+            @Nullable final ScrollbackJournal journal, @Nullable final ScrollbackBudget budget,
+            final DocumentMetrics metrics) {
         this.configManager = configManager;
         this.styliser = styliser;
+        this.journal = journal;
+        this.budget = budget;
+        this.metrics = metrics;
 
         lines = new ArrayList<>();
         listeners = new ListenerList();
@@ -66,56 +127,335 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
         configManager.addChangeListener("ui", "frameBufferSize", this);
 
         setCachedSettings();
+
+        if (journal != null) {
+            restore(configManager.getOptionInt("scrollback", "restorelines"));
+        }
+    }
+
+    /**
+     * Gets the metrics this document records changes in.
+     *
+     * @return This document's metrics.
+     */
+    DocumentMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops listening for changes to the document's settings. Called when the owning window is
+     * closed.
+     */
+    public void dispose() {
+        configManager.removeListener(this);
+    }
+
+    /**
+     * Changes the styliser used for this document's lines, including those already added.
+     *
+     * @param styliser The new styliser.
+     */
+    void setStyliser(final Styliser styliser) {
+        this.styliser = styliser;
+        fireRepaintNeeded();
     }
 
     @Override
     public int getNumLines() {
         synchronized (lines) {
-            return lines.size();
+            return coldLines + lines.size();
         }
     }
 
     @Override
     public Line getLine(final int lineNumber) {
+        final Line line;
+        final long inflated;
         synchronized (lines) {
-            return lines.get(lineNumber);
+            inflated = lineNumber < coldLines ? inflateFrom(lineNumber) : 0;
+            line = lines.get(lineNumber - coldLines);
         }
+        reportSizeChange(inflated);
+        return line;
     }
 
     @Override
     public void addText(final LocalDateTime timestamp, final DisplayPropertyMap displayPropertyMap,
         final String text) {
         final int start;
+        final long size;
         synchronized (lines) {
-            start = lines.size();
-            lines.add(new IRCLine(styliser, formatTimestamp(timestamp), text, displayPropertyMap,
-                    fontSize, fontName));
+            start = coldLines + lines.size();
+            final long position = journal == null ? ScrollbackJournal.NO_POSITION
+                    : journal.append(timestamp, displayPropertyMap, text);
+            // Lines keep an immutable snapshot, sharing the event's values without copying them.
+            final Line line = new IRCLine(lineStyliser, formatTimestamp(timestamp), text,
+                    displayPropertyMap.snapshot(), fontSize, fontName, position);
+            lines.add(line);
+            size = getRetainedSize(line);
+            retainedSize += size;
         }
+        reportSizeChange(size);
+        metrics.linesAdded.increment();
         fireLinesAdded(start, 1);
     }
 
+    @Override
+    public int loadOlderLines(final int count) {
+        if (journal == null) {
+            return 0;
+        }
+
+        final int loaded;
+        final int size;
+        final long added;
+        synchronized (lines) {
+            final long inflated = inflateFrom(0);
+            final long oldest = getFirstJournalPosition();
+            final List<Line> older = oldest == ScrollbackJournal.NO_POSITION
+                    ? new ArrayList<>() : createLines(journal.readBefore(oldest, count));
+            lines.addAll(0, older);
+            loaded = older.size();
+            pagedLines += loaded;
+            size = lines.size();
+            final long olderSize = getRetainedSize(older);
+            retainedSize += olderSize;
+            added = inflated + olderSize;
+        }
+
+        reportSizeChange(added);
+        if (loaded > 0) {
+            fireLinesPrepended(loaded, size);
+        }
+        return loaded;
+    }
+
+    /**
+     * Restores the most recent lines from this document's journal.
+     *
+     * @param count The maximum number of lines to restore.
+     */
+    private void restore(final int count) {
+        final int limit = frameBufferSize != null && frameBufferSize > 0
+                ? Math.min(count, frameBufferSize) : count;
+        synchronized (lines) {
+            final List<Line> restored = createLines(journal.readTail(limit));
+            lines.addAll(restored);
+            retainedSize += getRetainedSize(restored);
+        }
+    }
+
+    /**
+     * Gets the approximate number of bytes retained by the lines in this document.
+     *
+     * @return The retained size of this document, in bytes.
+     */
+    long getRetainedSize() {
+        synchronized (lines) {
+            return retainedSize;
+        }
+    }
+
+    /**
+     * Removes the oldest lines from this document to free memory.
+     *
+     * @param bytes The approximate number of bytes to free.
+     * @param minimumLines The number of lines that must be left in the document.
+     * @return The approximate number of bytes that were freed.
+     */
+    long evict(final long bytes, final int minimumLines) {
+        int removed = 0;
+        final int size;
+        long freed = 0;
+        synchronized (lines) {
+            while (freed < bytes && !coldBlocks.isEmpty()
+                    && coldLines + lines.size() - coldBlocks.peekFirst().getLineCount() >= minimumLines) {
+                final CompressedLineBlock block = coldBlocks.removeFirst();
+                coldLines -= block.getLineCount();
+                removed += block.getLineCount();
+                freed += block.getRetainedSize();
+            }
+            if (coldBlocks.isEmpty()) {
+                int count = 0;
+                long hotFreed = 0;
+                while (freed + hotFreed < bytes && lines.size() - count > minimumLines) {
+                    hotFreed += getRetainedSize(lines.get(count++));
+                }
+                lines.subList(0, count).clear();
+                removed += count;
+                freed += hotFreed;
+            }
+            if (removed == 0) {
+                return 0;
+            }
+            pagedLines = Math.max(0, pagedLines - removed);
+            retainedSize -= freed;
+            size = coldLines + lines.size();
+        }
+
+        reportSizeChange(-freed);
+        fireTrimmed(size, removed);
+        return freed;
+    }
+
+    /**
+     * Compresses all but the most recent lines of this document into blocks, to reduce the memory
+     * used by windows that are not being viewed. Compressed lines are inflated again when they are
+     * next retrieved using {@link #getLine(int)}.
+     *
+     * @return The approximate number of bytes that were freed.
+     */
+    long hibernate() {
+        long freed = 0;
+        synchronized (lines) {
+            int compressed = 0;
+            while (lines.size() - compressed >= BLOCK_SIZE) {
+                final List<Line> chunk = lines.subList(compressed, compressed + BLOCK_SIZE);
+                final List<IRCLine> blockLines = new ArrayList<>(BLOCK_SIZE);
+                for (Line line : chunk) {
+                    if (!(line instanceof IRCLine)) {
+                        break;
+                    }
+                    blockLines.add((IRCLine) line);
+                }
+                if (blockLines.size() < BLOCK_SIZE) {
+                    break;
+                }
+                final CompressedLineBlock block = CompressedLineBlock.compress(blockLines);
+                coldBlocks.addLast(block);
+                coldLines += BLOCK_SIZE;
+                freed += getRetainedSize(chunk) - block.getRetainedSize();
+                compressed += BLOCK_SIZE;
+            }
+            lines.subList(0, compressed).clear();
+            retainedSize -= freed;
+        }
+        reportSizeChange(-freed);
+        return freed;
+    }
+
+    /**
+     * Inflates compressed blocks, newest first, until the given line is no longer compressed.
+     * Must be called while holding the lock on {@link #lines}.
+     *
+     * @param lineNumber The line that needs to be available.
+     * @return The increase in the retained size of this document, in bytes.
+     */
+    private long inflateFrom(final int lineNumber) {
+        long added = 0;
+        while (coldLines > lineNumber) {
+            final CompressedLineBlock block = coldBlocks.removeLast();
+            final List<IRCLine> inflated = block.inflate(lineStyliser, fontSize, fontName);
+            lines.addAll(0, inflated);
+            coldLines -= block.getLineCount();
+            added += getRetainedSize(lines.subList(0, inflated.size())) - block.getRetainedSize();
+        }
+        retainedSize += added;
+        return added;
+    }
+
+    /**
+     * Removes the oldest lines from this document. Compressed lines are only ever removed a block
+     * at a time, so more lines than requested may be removed. Must be called while holding the
+     * lock on {@link #lines}.
+     *
+     * @param count The number of lines to remove.
+     * @return The number of lines actually removed.
+     */
+    private int removeOldest(final int count) {
+        int removed = 0;
+        long freed = 0;
+        while (removed < count && !coldBlocks.isEmpty()) {
+            final CompressedLineBlock block = coldBlocks.removeFirst();
+            coldLines -= block.getLineCount();
+            removed += block.getLineCount();
+            freed += block.getRetainedSize();
+        }
+        if (removed < count) {
+            final List<Line> trimmed = lines.subList(0, Math.min(count - removed, lines.size()));
+            removed += trimmed.size();
+            freed += getRetainedSize(trimmed);
+            trimmed.clear();
+        }
+        pagedLines = Math.max(0, pagedLines - removed);
+        retainedSize -= freed;
+        return removed;
+    }
+
+    private void reportSizeChange(final long delta) {
+        if (budget != null && delta != 0) {
+            budget.adjust(this, delta);
+        }
+    }
+
+    private static long getRetainedSize(final Line line) {
+        return LINE_OVERHEAD + 2L * line.getLength();
+    }
+
+    private static long getRetainedSize(final List<? extends Line> lines) {
+        long size = 0;
+        for (Line line : lines) {
+            size += getRetainedSize(line);
+        }
+        return size;
+    }
+
+    private long getFirstJournalPosition() {
+        for (Line line : lines) {
+            if (line instanceof IRCLine) {
+                final long position = ((IRCLine) line).getJournalPosition();
+                if (position != ScrollbackJournal.NO_POSITION) {
+                    return position;
+                }
+            }
+        }
+        return ScrollbackJournal.NO_POSITION;
+    }
+
+    private List<Line> createLines(final List<ScrollbackJournal.Entry> entries) {
+        final List<Line> result = new ArrayList<>(entries.size());
+        for (ScrollbackJournal.Entry entry : entries) {
+            result.add(new IRCLine(lineStyliser, formatTimestamp(entry.getTimestamp()),
+                    entry.getText(), entry.getProperties(), fontSize, fontName,
+                    entry.getPosition()));
+        }
+        return result;
+    }
+
     private String formatTimestamp(final LocalDateTime timestamp) {
         return Formatter.formatMessage(configManager, "timestamp", timestamp);
     }
 
     @Override
     public void trim(final int numLines) {
+        long freed = 0;
         synchronized (lines) {
             if (frameBufferSize != null && frameBufferSize > 0) {
-                final int i = lines.size() - numLines;
+                final int i = coldLines + lines.size() - pagedLines - numLines;
                 if (i > 0) {
-                    lines.subList(0, i).clear();
-                    fireTrimmed(numLines, i);
+                    final long previousSize = retainedSize;
+                    final int removed = removeOldest(i);
+                    freed = previousSize - retainedSize;
+                    metrics.linesTrimmed.add(removed);
+                    fireTrimmed(coldLines + lines.size(), removed);
                 }
             }
         }
+        reportSizeChange(-freed);
     }
 
     @Override
     public void clear() {
+        final long freed;
         synchronized (lines) {
             lines.clear();
+            coldBlocks.clear();
+            coldLines = 0;
+            pagedLines = 0;
+            freed = retainedSize;
+            retainedSize = 0;
         }
+        reportSizeChange(-freed);
         fireCleared();
     }
 
@@ -142,11 +482,24 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
     protected void fireLinesAdded(final int index, final int size) {
         for (DocumentListener listener
                 : listeners.get(DocumentListener.class)) {
-            listener.linesAdded(index, size, lines.size());
+            listener.linesAdded(index, size, getNumLines());
         }
         trim(frameBufferSize);
     }
 
+    /**
+     * Fires the lines prepended method on all listeners.
+     *
+     * @param length Number of lines inserted
+     * @param size   New document size
+     */
+    protected void fireLinesPrepended(final int length, final int size) {
+        for (DocumentListener listener
+                : listeners.get(DocumentListener.class)) {
+            listener.linesPrepended(length, size);
+        }
+    }
+
     /**
      * Fires the trimmed method on all listeners.
      *
@@ -194,23 +547,41 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
      * Sets all the cached settings in this document.
      */
     private void setCachedSettings() {
-        final Font defaultFont = UIManager.getFont("TextPane.font");
-        if (configManager.hasOptionString("ui", "textPaneFontName")) {
+        final boolean hasFontName = configManager.hasOptionString("ui", "textPaneFontName");
+        final boolean hasFontSize = configManager.hasOptionString("ui", "textPaneFontSize");
+        // Only ask Swing for its default font if it's actually needed, so headless clients never
+        // load AWT fonts or the look and feel.
+        final boolean useLookAndFeel = !(hasFontName && hasFontSize)
+                && !GraphicsEnvironment.isHeadless();
+        if (hasFontName) {
             fontName = configManager.getOption("ui", "textPaneFontName");
         } else {
-            fontName = defaultFont.getName();
+            fontName = useLookAndFeel ? LookAndFeelFont.getName() : DEFAULT_FONT_NAME;
         }
-        if (configManager.hasOptionString("ui", "textPaneFontSize")) {
+        if (hasFontSize) {
             fontSize = configManager.getOptionInt("ui", "textPaneFontSize");
         } else {
-            fontSize = defaultFont.getSize();
+            fontSize = useLookAndFeel ? LookAndFeelFont.getSize() : DEFAULT_FONT_SIZE;
         }
         frameBufferSize = configManager.getOptionInt("ui", "frameBufferSize", true);
         trim(frameBufferSize);
     }
 
+    @Override
+    public void configChanged(final ConfigChangeSet changes) {
+        // All of our settings are re-read and re-applied together, so only do it once per set.
+        applySettings();
+    }
+
     @Override
     public void configChanged(final String domain, final String key) {
+        applySettings();
+    }
+
+    /**
+     * Re-reads the document's settings and applies them to every line.
+     */
+    private void applySettings() {
         setCachedSettings();
         synchronized (lines) {
             for (Line line : lines) {
@@ -220,4 +591,55 @@ public class IRCDocument implements Serializable, ConfigChangeListener, Document
         }
         fireRepaintNeeded();
     }
+
+    /**
+     * Styles text using the document's current styliser, so that lines are styled consistently
+     * after the styliser has been replaced.
+     */
+    private class CurrentStyliser implements StyleApplier {
+
+        @Override
+        public void addStyledString(final StyledMessageMaker<?> maker, final String... strings) {
+            styliser.addStyledString(maker, strings);
+        }
+
+        @Override
+        public String doLinks(final String string) {
+            return styliser.doLinks(string);
+        }
+
+    }
+
+    /**
+     * Reads the look and feel's text pane font. This is kept in its own class so that AWT's font
+     * and Swing's look and feel are only loaded when it is first used, which headless clients
+     * never do.
+     */
+    private static final class LookAndFeelFont {
+
+        private LookAndFeelFont() {
+            // Shouldn't be instantiated
+        }
+
+        /**
+         * Gets the name of the look and feel's text pane font.
+         *
+         * @return The font's name, or the default name if the look and feel has no font.
+         */
+        static String getName() {
+            final Font font = UIManager.getFont("TextPane.font");
+            return font == null ? DEFAULT_FONT_NAME : font.getName();
+        }
+
+        /**
+         * Gets the size of the look and feel's text pane font.
+         *
+         * @return The font's size, or the default size if the look and feel has no font.
+         */
+        static int getSize() {
+            final Font font = UIManager.getFont("TextPane.font");
+            return font == null ? DEFAULT_FONT_SIZE : font.getSize();
+        }
+
+    }
 }
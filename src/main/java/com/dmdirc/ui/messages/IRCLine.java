@@ -29,9 +29,11 @@ public class IRCLine implements Line {
 
     private final String timestamp;
     private final String text;
-    private final Styliser styliser;
+    private final StyleApplier styliser;
     private final StyledMessageUtils styleUtils = new StyledMessageUtils(); // TODO: Inject
     private final DisplayPropertyMap displayProperties;
+    /** The position of this line in the window's scrollback journal, if any. */
+    private final long journalPosition;
     private int fontSize;
     private String fontName;
 
@@ -45,14 +47,69 @@ public class IRCLine implements Line {
      * @param fontSize  The height for this line
      * @param fontName  The name of the font to use for this line
      */
-    public IRCLine(final Styliser styliser, final String timestamp, final String text,
+    public IRCLine(final StyleApplier styliser, final String timestamp, final String text,
             final DisplayPropertyMap displayProperties, final int fontSize, final String fontName) {
+        this(styliser, timestamp, text, displayProperties, fontSize, fontName,
+                ScrollbackJournal.NO_POSITION);
+    }
+
+    /**
+     * Creates a new line that has been recorded in a scrollback journal.
+     *
+     * @param styliser  The styliser to use to style this line
+     * @param timestamp The textual timestamp to use for the line
+     * @param text      The textual content of the line
+     * @param displayProperties The properties to use when displaying the line.
+     * @param fontSize  The height for this line
+     * @param fontName  The name of the font to use for this line
+     * @param journalPosition The position of the line in the journal
+     */
+    IRCLine(final StyleApplier styliser, final String timestamp, final String text,
+            final DisplayPropertyMap displayProperties, final int fontSize, final String fontName,
+            final long journalPosition) {
         this.styliser = styliser;
         this.timestamp = timestamp; // TODO: Make this a long and convert further down the line
         this.text = text;
         this.displayProperties = displayProperties;
         this.fontName = fontName;
         this.fontSize = fontSize;
+        this.journalPosition = journalPosition;
+    }
+
+    /**
+     * Gets the position of this line in the owning window's scrollback journal.
+     *
+     * @return The journal position, or {@link ScrollbackJournal#NO_POSITION} if not journalled.
+     */
+    long getJournalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * Gets the textual timestamp of this line.
+     *
+     * @return This line's timestamp.
+     */
+    String getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the text of this line, excluding the timestamp and with control codes intact.
+     *
+     * @return This line's raw text.
+     */
+    String getRawText() {
+        return text;
+    }
+
+    /**
+     * Gets the properties used when displaying this line.
+     *
+     * @return This line's display properties.
+     */
+    DisplayPropertyMap getDisplayProperties() {
+        return displayProperties;
     }
 
     /**
@@ -61,7 +118,7 @@ public class IRCLine implements Line {
      * @return Lines parts
      */
     private String[] getLineParts() {
-        if (displayProperties.get(DisplayProperty.NO_TIMESTAMPS).orElse(false)) {
+        if (displayProperties.getOrDefault(DisplayProperty.NO_TIMESTAMPS, false)) {
             return new String[] { text };
         } else {
             return new String[] { timestamp, text };
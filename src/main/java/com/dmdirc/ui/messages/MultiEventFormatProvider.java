@@ -19,18 +19,26 @@ package com.dmdirc.ui.messages;
 
 import com.dmdirc.events.DisplayableEvent;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Provides formats from multiple other {@link EventFormatProvider}.
+ *
+ * <p>The result of looking up a format for each event class is cached until the providers change
+ * or are reloaded.
  */
 public class MultiEventFormatProvider implements EventFormatProvider {
 
     /** Providers to test for formats, in order. */
-    private final List<EventFormatProvider> providers = new ArrayList<>();
+    private final List<EventFormatProvider> providers = new CopyOnWriteArrayList<>();
+    /** Cache of previously looked up formats, keyed on event type. */
+    private final Map<Class<? extends DisplayableEvent>, Optional<EventFormat>> cache =
+            new ConcurrentHashMap<>();
 
     public MultiEventFormatProvider(final EventFormatProvider ... providers) {
         this.providers.addAll(Arrays.asList(providers));
@@ -38,14 +46,20 @@ public class MultiEventFormatProvider implements EventFormatProvider {
 
     public void addProvider(final EventFormatProvider provider) {
         providers.add(provider);
+        cache.clear();
     }
 
     public void removeProvider(final EventFormatProvider provider) {
         providers.remove(provider);
+        cache.clear();
     }
 
     @Override
     public Optional<EventFormat> getFormat(final Class<? extends DisplayableEvent> eventType) {
+        return cache.computeIfAbsent(eventType, this::lookupFormat);
+    }
+
+    private Optional<EventFormat> lookupFormat(final Class<? extends DisplayableEvent> eventType) {
         return providers.stream()
                 .map(provider -> provider.getFormat(eventType))
                 .filter(Optional::isPresent)
@@ -58,5 +72,14 @@ public class MultiEventFormatProvider implements EventFormatProvider {
         for (final EventFormatProvider evp : providers) {
             evp.reload();
         }
+        cache.clear();
+    }
+
+    @Override
+    public void reloadIfChanged() {
+        for (final EventFormatProvider evp : providers) {
+            evp.reloadIfChanged();
+        }
+        cache.clear();
     }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
+import com.dmdirc.events.ClientFrameChangedEvent;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.util.LoggingScheduledExecutorService;
+import com.dmdirc.util.system.SystemLifecycleComponent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.engio.mbassy.listener.Handler;
+
+/**
+ * Enforces a process-wide limit on the approximate memory retained by the scrollback of all
+ * windows.
+ *
+ * <p>Each {@link IRCDocument} reports changes to its retained size. When the total exceeds the
+ * {@code scrollback.budget} setting, the oldest lines of the least recently viewed windows are
+ * evicted until usage drops back below the budget. The most recently focused window always keeps
+ * at least {@code scrollback.protectedlines} lines.
+ *
+ * <p>Windows that have not been viewed for {@code scrollback.hibernatedelay} milliseconds are
+ * periodically hibernated, compressing their older lines until they are next displayed.
+ */
+@Singleton
+public class ScrollbackBudget implements SystemLifecycleComponent, ConfigChangeListener {
+
+    /** Eviction frees space down to this proportion of the budget, to avoid evicting every line. */
+    private static final double LOW_WATER_MARK = 0.9;
+    /** How often to look for idle windows to hibernate, in milliseconds. */
+    private static final long HIBERNATE_INTERVAL = 60000;
+
+    private final AggregateConfigProvider config;
+    private final EventBus eventBus;
+    /** Usage of each document, ordered from least to most recently viewed. */
+    private final Map<IRCDocument, Usage> usage = new LinkedHashMap<>();
+    /** Lock guarding access to {@link #usage}, {@link #total}, {@link #focused} and {@link #evicting}. */
+    private final Object lock = new Object();
+    /** The total retained size of all documents, in bytes. */
+    private long total;
+    /** The document belonging to the most recently focused window. */
+    @Nullable private IRCDocument focused;
+    /** Whether an eviction is currently in progress. */
+    private boolean evicting;
+    /** The budget in bytes, or zero if unlimited. */
+    private volatile long budget;
+    /** The number of lines protected in the focused window. */
+    private volatile int protectedLines;
+    /** The time after which unviewed windows are hibernated, or zero to never hibernate. */
+    private volatile long hibernateDelay;
+    /** Executor used to periodically hibernate idle windows. */
+    @Nullable private ScheduledExecutorService executor;
+
+    @Inject
+    public ScrollbackBudget(@GlobalConfig final AggregateConfigProvider config,
+            final EventBus eventBus) {
+        this.config = config;
+        this.eventBus = eventBus;
+        readSettings();
+    }
+
+    @Override
+    public void startUp() {
+        config.addChangeListener("scrollback", this);
+        eventBus.subscribe(this);
+        executor = new LoggingScheduledExecutorService(1, "scrollback-hibernation");
+        executor.scheduleWithFixedDelay(() -> hibernateIdle(System.currentTimeMillis()),
+                HIBERNATE_INTERVAL, HIBERNATE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        eventBus.unsubscribe(this);
+        config.removeListener(this);
+    }
+
+    @Override
+    public void configChanged(final String domain, final String key) {
+        readSettings();
+        enforce();
+    }
+
+    @Override
+    public void configChanged(final ConfigChangeSet changes) {
+        readSettings();
+        enforce();
+    }
+
+    /**
+     * Starts accounting for the given document.
+     *
+     * @param owner The window that owns the document.
+     * @param document The document to account for.
+     */
+    void register(final WindowModel owner, final IRCDocument document) {
+        synchronized (lock) {
+            final Usage entry = new Usage(owner, System.currentTimeMillis());
+            usage.put(document, entry);
+            entry.bytes = document.getRetainedSize();
+            total += entry.bytes;
+        }
+        enforce();
+    }
+
+    /**
+     * Stops accounting for the given document.
+     *
+     * @param document The document to stop accounting for.
+     */
+    void unregister(final IRCDocument document) {
+        synchronized (lock) {
+            final Usage entry = usage.remove(document);
+            if (entry != null) {
+                total -= entry.bytes;
+            }
+            if (focused == document) {
+                focused = null;
+            }
+        }
+    }
+
+    /**
+     * Records a change in the retained size of a document. Must not be called while holding the
+     * document's lock, as growth may cause other documents to be evicted.
+     *
+     * @param document The document whose size has changed.
+     * @param delta The change in size, in bytes.
+     */
+    void adjust(final IRCDocument document, final long delta) {
+        synchronized (lock) {
+            final Usage entry = usage.get(document);
+            if (entry == null) {
+                return;
+            }
+            entry.bytes += delta;
+            total += delta;
+        }
+        if (delta > 0) {
+            enforce();
+        }
+    }
+
+    /**
+     * Gets the approximate retained size of each window's scrollback.
+     *
+     * @return A map of windows to their usage, in bytes, from least to most recently viewed.
+     */
+    public Map<WindowModel, Long> getUsage() {
+        synchronized (lock) {
+            final Map<WindowModel, Long> result = new LinkedHashMap<>();
+            usage.values().forEach(entry -> result.put(entry.owner, entry.bytes));
+            return Collections.unmodifiableMap(result);
+        }
+    }
+
+    /**
+     * Gets the approximate retained size of all windows' scrollback.
+     *
+     * @return The total usage, in bytes.
+     */
+    public long getTotalUsage() {
+        synchronized (lock) {
+            return total;
+        }
+    }
+
+    /**
+     * Gets the configured budget.
+     *
+     * @return The budget in bytes, or zero if unlimited.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    @Handler
+    private void handleFrameChanged(final ClientFrameChangedEvent event) {
+        final Document document = event.getFrameContainer().getBackBuffer().getDocument();
+        if (document instanceof IRCDocument) {
+            markViewed((IRCDocument) document);
+        }
+    }
+
+    /**
+     * Marks the given document as the most recently viewed, protecting it from eviction.
+     *
+     * @param document The document that has been viewed.
+     */
+    void markViewed(final IRCDocument document) {
+        synchronized (lock) {
+            final Usage entry = usage.remove(document);
+            if (entry != null) {
+                // Re-inserting moves the document to the most recently viewed end.
+                usage.put(document, entry);
+                entry.lastViewed = System.currentTimeMillis();
+                focused = document;
+            }
+        }
+    }
+
+    /**
+     * Hibernates all documents that have not been viewed within the configured delay.
+     *
+     * @param now The current time, in milliseconds since the epoch.
+     */
+    void hibernateIdle(final long now) {
+        final long delay = hibernateDelay;
+        if (delay <= 0) {
+            return;
+        }
+
+        final List<IRCDocument> idle = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<IRCDocument, Usage> entry : usage.entrySet()) {
+                if (entry.getKey() != focused && now - entry.getValue().lastViewed >= delay) {
+                    idle.add(entry.getKey());
+                }
+            }
+        }
+        idle.forEach(IRCDocument::hibernate);
+    }
+
+    /**
+     * Evicts lines from the least recently viewed documents if the budget has been exceeded.
+     */
+    private void enforce() {
+        final Map<IRCDocument, Long> plan = new IdentityHashMap<>();
+        final List<IRCDocument> order = new ArrayList<>();
+        final IRCDocument protectedDocument;
+        synchronized (lock) {
+            final long limit = budget;
+            if (limit <= 0 || total <= limit || evicting) {
+                return;
+            }
+            evicting = true;
+            protectedDocument = focused;
+
+            long required = total - (long) (limit * LOW_WATER_MARK);
+            for (Map.Entry<IRCDocument, Usage> entry : usage.entrySet()) {
+                if (required <= 0) {
+                    break;
+                }
+                final long bytes = Math.min(required, entry.getValue().bytes);
+                if (bytes > 0) {
+                    plan.put(entry.getKey(), bytes);
+                    order.add(entry.getKey());
+                    required -= bytes;
+                }
+            }
+        }
+
+        try {
+            for (IRCDocument document : order) {
+                document.evict(plan.get(document), document == protectedDocument ? protectedLines : 0);
+            }
+        } finally {
+            synchronized (lock) {
+                evicting = false;
+            }
+        }
+    }
+
+    private void readSettings() {
+        budget = Math.max(0, config.getOptionInt("scrollback", "budget"));
+        protectedLines = Math.max(0, config.getOptionInt("scrollback", "protectedlines"));
+        hibernateDelay = Math.max(0, config.getOptionInt("scrollback", "hibernatedelay"));
+    }
+
+    /**
+     * Tracks the usage of a single document.
+     */
+    private static class Usage {
+
+        private final WindowModel owner;
+        private long bytes;
+        private long lastViewed;
+
+        Usage(final WindowModel owner, final long lastViewed) {
+            this.owner = owner;
+            this.lastViewed = lastViewed;
+        }
+
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayPropertyMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * An append-only journal of the lines shown in a single window, stored in a directory of fixed
+ * size, memory-mapped segment files.
+ *
+ * <p>Each record holds the line's timestamp (as epoch milliseconds), a bit set describing its
+ * display properties, and the raw (unstyled) text. Records are addressed by a position, which
+ * combines the segment number and the offset within that segment; positions increase
+ * monotonically so older lines can be paged back in by reading backwards from a known position.
+ *
+ * <p>Once the number of segments exceeds the configured retention, the oldest segments are
+ * deleted.
+ */
+class ScrollbackJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollbackJournal.class);
+    /** Position returned when there is no record. */
+    static final long NO_POSITION = -1;
+    /** Suffix used for segment files. */
+    private static final String SUFFIX = ".journal";
+    /** Size of the fixed part of a record: length, timestamp, flags, foreground and background. */
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 4;
+
+    /** The directory the segments are stored in. */
+    private final Path directory;
+    /** The size of each segment file, in bytes. */
+    private final int segmentSize;
+    /** The maximum number of segments to retain. */
+    private final int maxSegments;
+    /** The numbers of all segments currently on disk. */
+    private final NavigableSet<Integer> segments = new TreeSet<>();
+    /** Lock guarding the segment list and the current segment. */
+    private final Object lock = new Object();
+    /** The segment currently being written. */
+    private MappedByteBuffer current;
+    /** The number of the segment currently being written. */
+    private int currentSegment;
+
+    /**
+     * Opens (or creates) a journal in the given directory.
+     *
+     * @param directory The directory to store segments in.
+     * @param segmentSize The size of each segment, in bytes.
+     * @param maxSegments The maximum number of segments to retain.
+     * @throws IOException If the journal could not be opened.
+     */
+    ScrollbackJournal(final Path directory, final int segmentSize, final int maxSegments)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, HEADER_SIZE * 16);
+        this.maxSegments = Math.max(maxSegments, 1);
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, '*' + SUFFIX)) {
+            for (Path path : stream) {
+                final String name = path.getFileName().toString();
+                try {
+                    segments.add(Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException ex) {
+                    LOG.debug("Ignoring unexpected file in scrollback journal: {}", path);
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            currentSegment = segments.last();
+            current = map(currentSegment, FileChannel.MapMode.READ_WRITE);
+            current.position(findEnd(current));
+        }
+    }
+
+    /**
+     * Appends a line to the journal.
+     *
+     * @param timestamp The timestamp of the line.
+     * @param properties The display properties of the line.
+     * @param text The raw text of the line.
+     * @return The position of the new record, or {@link #NO_POSITION} if it could not be written.
+     */
+    long append(final LocalDateTime timestamp, final DisplayPropertyMap properties,
+            final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final int length = HEADER_SIZE + bytes.length;
+        if (length > segmentSize) {
+            LOG.debug("Not journalling line of {} bytes: larger than segment size", length);
+            return NO_POSITION;
+        }
+
+        final int flags = StoredDisplayProperties.getFlags(properties);
+        final int foreground = StoredDisplayProperties.getForeground(properties);
+        final int background = StoredDisplayProperties.getBackground(properties);
+
+        synchronized (lock) {
+            try {
+                if (current == null) {
+                    return NO_POSITION;
+                }
+                if (current.remaining() < length + 4) {
+                    openSegment(currentSegment + 1);
+                }
+
+                final int offset = current.position();
+                current.position(offset + 4);
+                current.putLong(timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                current.putInt(flags);
+                current.putInt(foreground);
+                current.putInt(background);
+                current.put(bytes);
+                // The length is written last, so a partially written record reads as the end.
+                current.putInt(offset, length);
+                return toPosition(currentSegment, offset);
+            } catch (IOException ex) {
+                LOG.warn(USER_ERROR, "Unable to write scrollback journal in {}: {}", directory,
+                        ex.getMessage(), ex);
+                current = null;
+                return NO_POSITION;
+            }
+        }
+    }
+
+    /**
+     * Reads the most recent lines in the journal.
+     *
+     * @param count The maximum number of lines to read.
+     * @return The lines, oldest first.
+     */
+    List<Entry> readTail(final int count) {
+        return readBefore(Long.MAX_VALUE, count);
+    }
+
+    /**
+     * Reads the lines that were written before the given position.
+     *
+     * @param position The position to read before, exclusive.
+     * @param count The maximum number of lines to read.
+     * @return The lines, oldest first.
+     */
+    List<Entry> readBefore(final long position, final int count) {
+        final Deque<Entry> result = new ArrayDeque<>(Math.min(count, 1024));
+        if (count <= 0 || position == NO_POSITION) {
+            return new ArrayList<>(result);
+        }
+
+        final NavigableSet<Integer> candidates;
+        synchronized (lock) {
+            candidates = new TreeSet<>(segments.headSet(getSegment(position), true));
+        }
+
+        for (int segment : candidates.descendingSet()) {
+            final List<Entry> entries;
+            try {
+                entries = readSegment(segment, position);
+            } catch (IOException ex) {
+                LOG.warn(USER_ERROR, "Unable to read scrollback journal in {}: {}", directory,
+                        ex.getMessage(), ex);
+                break;
+            }
+            for (int i = entries.size() - 1; i >= 0 && result.size() < count; i--) {
+                result.addFirst(entries.get(i));
+            }
+            if (result.size() >= count) {
+                break;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (current != null) {
+                current.force();
+                current = null;
+            }
+        }
+    }
+
+    private List<Entry> readSegment(final int segment, final long before) throws IOException {
+        final ByteBuffer buffer;
+        synchronized (lock) {
+            if (segment == currentSegment && current != null) {
+                buffer = current.duplicate();
+                buffer.limit(buffer.position());
+            } else if (segments.contains(segment)) {
+                buffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            } else {
+                return new ArrayList<>();
+            }
+        }
+
+        final List<Entry> entries = new ArrayList<>();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.limit()) {
+            final int length = buffer.getInt(offset);
+            if (length < HEADER_SIZE || offset + length > buffer.limit()) {
+                break;
+            }
+            final long position = toPosition(segment, offset);
+            if (position >= before) {
+                break;
+            }
+            entries.add(readEntry(buffer, offset, length, position));
+            offset += length;
+        }
+        return entries;
+    }
+
+    private static Entry readEntry(final ByteBuffer buffer, final int offset, final int length,
+            final long position) {
+        final long time = buffer.getLong(offset + 4);
+        final int flags = buffer.getInt(offset + 12);
+        final int foreground = buffer.getInt(offset + 16);
+        final int background = buffer.getInt(offset + 20);
+        final byte[] bytes = new byte[length - HEADER_SIZE];
+        final ByteBuffer text = buffer.duplicate();
+        text.position(offset + HEADER_SIZE);
+        text.get(bytes);
+
+        return new Entry(position,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()),
+                StoredDisplayProperties.create(flags, foreground, background),
+                new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Finds the offset just past the last complete record in a segment.
+     */
+    private static int findEnd(final ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.limit()) {
+            final int length = buffer.getInt(offset);
+            if (length < HEADER_SIZE || offset + length > buffer.limit()) {
+                break;
+            }
+            offset += length;
+        }
+        return offset;
+    }
+
+    private void openSegment(final int segment) throws IOException {
+        if (current != null) {
+            current.force();
+        }
+        current = map(segment, FileChannel.MapMode.READ_WRITE);
+        currentSegment = segment;
+        segments.add(segment);
+
+        while (segments.size() > maxSegments) {
+            final int oldest = segments.pollFirst();
+            try {
+                Files.deleteIfExists(getPath(oldest));
+            } catch (IOException ex) {
+                LOG.debug("Unable to delete old scrollback segment {}", getPath(oldest), ex);
+            }
+        }
+    }
+
+    private MappedByteBuffer map(final int segment, final FileChannel.MapMode mode)
+            throws IOException {
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(getPath(segment), StandardOpenOption.READ)) {
+                return channel.map(mode, 0, channel.size());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(getPath(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed.
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    private Path getPath(final int segment) {
+        return directory.resolve(String.format("%08d", segment) + SUFFIX);
+    }
+
+    private static long toPosition(final int segment, final int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int getSegment(final long position) {
+        return position == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) (position >>> 32);
+    }
+
+    /**
+     * A single line read back from the journal.
+     */
+    static class Entry {
+
+        private final long position;
+        private final LocalDateTime timestamp;
+        private final DisplayPropertyMap properties;
+        private final String text;
+
+        Entry(final long position, final LocalDateTime timestamp,
+                final DisplayPropertyMap properties, final String text) {
+            this.position = position;
+            this.timestamp = timestamp;
+            this.properties = properties;
+            this.text = text;
+        }
+
+        long getPosition() {
+            return position;
+        }
+
+        LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        DisplayPropertyMap getProperties() {
+            return properties;
+        }
+
+        String getText() {
+            return text;
+        }
+
+    }
+
+}
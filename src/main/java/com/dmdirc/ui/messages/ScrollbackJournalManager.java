@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.commandline.CommandLineOptionsModule.Directory;
+import com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.WindowModel;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Opens and closes the {@link ScrollbackJournal}s used by windows.
+ *
+ * <p>Journals are only opened for windows whose config has the {@code scrollback.journal} setting
+ * enabled. Each window is keyed by its network and name, so reopening a window (for example, when
+ * the client is restarted) finds the history written by its previous incarnation. Only one window
+ * may write to a given journal at a time.
+ */
+@Singleton
+public class ScrollbackJournalManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollbackJournalManager.class);
+    /** The directory that journals are stored beneath. */
+    private final Path directory;
+    /** Journals that are currently open, keyed by their relative path. */
+    private final Map<String, ScrollbackJournal> journals = new HashMap<>();
+    /** Lock guarding access to {@link #journals}. */
+    private final Object lock = new Object();
+
+    @Inject
+    public ScrollbackJournalManager(@Directory(DirectoryType.BASE) final Path baseDirectory) {
+        this.directory = baseDirectory.resolve("scrollback");
+    }
+
+    /**
+     * Opens the journal for the given window, if journalling is enabled for it.
+     *
+     * @param owner The window to open a journal for.
+     * @return The window's journal, or an empty optional if it should not be journalled.
+     */
+    Optional<ScrollbackJournal> getJournal(final WindowModel owner) {
+        final AggregateConfigProvider config = owner.getConfigManager();
+        if (!config.getOptionBool("scrollback", "journal")) {
+            return Optional.empty();
+        }
+
+        final String key = getKey(owner);
+        synchronized (lock) {
+            if (journals.containsKey(key)) {
+                LOG.debug("Scrollback journal {} is already in use", key);
+                return Optional.empty();
+            }
+            try {
+                final ScrollbackJournal journal = new ScrollbackJournal(directory.resolve(key),
+                        config.getOptionInt("scrollback", "segmentsize"),
+                        config.getOptionInt("scrollback", "segments"));
+                journals.put(key, journal);
+                return Optional.of(journal);
+            } catch (IOException ex) {
+                LOG.warn(USER_ERROR, "Unable to open scrollback journal {}: {}", key,
+                        ex.getMessage(), ex);
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Closes a journal previously returned by {@link #getJournal(WindowModel)}.
+     *
+     * @param journal The journal to close.
+     */
+    void releaseJournal(final ScrollbackJournal journal) {
+        synchronized (lock) {
+            journals.values().remove(journal);
+        }
+        journal.close();
+    }
+
+    private static String getKey(final WindowModel owner) {
+        final String network = owner.getConnection().map(Connection::getNetwork)
+                .filter(n -> !n.isEmpty()).orElse("global");
+        return encode(network) + '/' + encode(owner.getName());
+    }
+
+    private static String encode(final String name) {
+        try {
+            // Dots are encoded as well, so no name can refer to a parent directory.
+            return URLEncoder.encode(name.toLowerCase(Locale.ROOT), "UTF-8").replace(".", "%2E");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException("UTF-8 is not supported", ex);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayProperty;
+import com.dmdirc.events.DisplayPropertyMap;
+import com.dmdirc.util.colours.Colour;
+
+/**
+ * Encodes the display properties that affect how a line is rendered as a compact set of integers,
+ * for storing lines outside of the heap or in compressed form.
+ *
+ * <p>Only the properties that matter once a line has been added to a document are stored: whether
+ * timestamps are hidden, and the foreground and background colours.
+ */
+final class StoredDisplayProperties {
+
+    /** Flag set when the line should not show a timestamp. */
+    private static final int FLAG_NO_TIMESTAMPS = 1;
+    /** Flag set when the line has a foreground colour. */
+    private static final int FLAG_FOREGROUND = 1 << 1;
+    /** Flag set when the line has a background colour. */
+    private static final int FLAG_BACKGROUND = 1 << 2;
+
+    private StoredDisplayProperties() {
+    }
+
+    /**
+     * Gets the flags describing which properties are set in the given map.
+     *
+     * @param properties The properties to encode.
+     * @return The encoded flags.
+     */
+    static int getFlags(final DisplayPropertyMap properties) {
+        int flags = 0;
+        if (properties.getOrDefault(DisplayProperty.NO_TIMESTAMPS, false)) {
+            flags |= FLAG_NO_TIMESTAMPS;
+        }
+        if (properties.contains(DisplayProperty.FOREGROUND_COLOUR)) {
+            flags |= FLAG_FOREGROUND;
+        }
+        if (properties.contains(DisplayProperty.BACKGROUND_COLOUR)) {
+            flags |= FLAG_BACKGROUND;
+        }
+        return flags;
+    }
+
+    /**
+     * Gets the foreground colour in the given map as a packed RGB value.
+     *
+     * @param properties The properties to encode.
+     * @return The packed foreground colour, or zero if there is none.
+     */
+    static int getForeground(final DisplayPropertyMap properties) {
+        final Colour colour = properties.getOrDefault(DisplayProperty.FOREGROUND_COLOUR, null);
+        return colour == null ? 0 : toRgb(colour);
+    }
+
+    /**
+     * Gets the background colour in the given map as a packed RGB value.
+     *
+     * @param properties The properties to encode.
+     * @return The packed background colour, or zero if there is none.
+     */
+    static int getBackground(final DisplayPropertyMap properties) {
+        final Colour colour = properties.getOrDefault(DisplayProperty.BACKGROUND_COLOUR, null);
+        return colour == null ? 0 : toRgb(colour);
+    }
+
+    /**
+     * Recreates a property map from its encoded form.
+     *
+     * @param flags The flags returned by {@link #getFlags(DisplayPropertyMap)}.
+     * @param foreground The packed foreground colour.
+     * @param background The packed background colour.
+     * @return A new property map, or {@link DisplayPropertyMap#EMPTY} if no properties were set.
+     */
+    static DisplayPropertyMap create(final int flags, final int foreground, final int background) {
+        if (flags == 0) {
+            return DisplayPropertyMap.EMPTY;
+        }
+
+        final DisplayPropertyMap properties = new DisplayPropertyMap();
+        if ((flags & FLAG_NO_TIMESTAMPS) != 0) {
+            properties.put(DisplayProperty.NO_TIMESTAMPS, true);
+        }
+        if ((flags & FLAG_FOREGROUND) != 0) {
+            properties.put(DisplayProperty.FOREGROUND_COLOUR, fromRgb(foreground));
+        }
+        if ((flags & FLAG_BACKGROUND) != 0) {
+            properties.put(DisplayProperty.BACKGROUND_COLOUR, fromRgb(background));
+        }
+        return properties;
+    }
+
+    private static int toRgb(final Colour colour) {
+        return colour.getRed() << 16 | colour.getGreen() << 8 | colour.getBlue();
+    }
+
+    private static Colour fromRgb(final int rgb) {
+        return new Colour(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff);
+    }
+
+}
@@ -20,9 +20,14 @@ package com.dmdirc.ui.messages;
 import com.dmdirc.interfaces.Connection;
 import com.dmdirc.config.provider.AggregateConfigProvider;
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.util.colours.Colour;
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -77,18 +82,19 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
     /** The regular expression to use for marking up channels. */
     private static final String URL_CHANNEL = "(?i)(?<![^\\s\\+@\\-<>\\(\"',])([\\Q%s\\E]"
             + RESERVED_CHARS + "+)";
-    /** Whether or not we should style links. */
-    private boolean styleURIs;
-    /** Whether or not we should style channel names. */
-    private boolean styleChannels;
+    /** The keys in the "ui" domain that affect styling. */
+    static final String[] UI_SETTINGS = {"linkcolour", "channelcolour", "stylelinks", "stylechannels"};
+    /** The settings currently in use. */
+    private volatile Settings settings;
     /** Colour to use for URIs. */
-    private Colour uriColour;
+    private volatile Colour uriColour;
     /** Colour to use for channel names. */
-    private Colour channelColour;
+    private volatile Colour channelColour;
     /** Connection to get channel prefixes from, or null if not applicable. */
     @Nullable
     private final Connection connection;
-    /** Config manager to retrieve settings from. */
+    /** Config manager to retrieve settings from, or null if this styliser's settings are fixed. */
+    @Nullable
     private final AggregateConfigProvider configManager;
     /** Colour manager to use to parse colours. */
     private final ColourManager colourManager;
@@ -109,16 +115,50 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
         this.configManager = configManager;
         this.colourManager = colourManager;
 
-        configManager.addChangeListener("ui", "linkcolour", this);
-        configManager.addChangeListener("ui", "channelcolour", this);
-        configManager.addChangeListener("ui", "stylelinks", this);
-        configManager.addChangeListener("ui", "stylechannels", this);
-        styleURIs = configManager.getOptionBool("ui", "stylelinks");
-        styleChannels = configManager.getOptionBool("ui", "stylechannels");
-        uriColour = colourManager.getColourFromString(
-                configManager.getOptionString("ui", "linkcolour"), null);
-        channelColour = colourManager.getColourFromString(
-                configManager.getOptionString("ui", "channelcolour"), null);
+        for (String key : UI_SETTINGS) {
+            configManager.addChangeListener("ui", key, this);
+        }
+        configManager.addChangeListener("icon", this);
+        applySettings(Settings.read(configManager));
+    }
+
+    /**
+     * Creates a new instance of Styliser with fixed settings, which does not listen for changes.
+     * Such stylisers can be shared by all windows on the same connection whose settings resolve to
+     * the same values.
+     *
+     * @param connection    The {@link Connection} that this styliser is for. May be {@code null}.
+     * @param settings      The settings to style text with.
+     * @param colourManager The {@link ColourManager} to get colours from.
+     */
+    Styliser(@Nullable final Connection connection, final Settings settings,
+            final ColourManager colourManager) {
+        this.connection = connection;
+        this.configManager = null;
+        this.colourManager = colourManager;
+
+        applySettings(settings);
+    }
+
+    /**
+     * Stops listening for changes to the styliser's settings. The styliser should not be used after
+     * this has been called.
+     */
+    public void dispose() {
+        if (configManager != null) {
+            configManager.removeListener(this);
+        }
+    }
+
+    /**
+     * Switches to the given settings, resolving the colours they specify.
+     *
+     * @param newSettings The settings to use.
+     */
+    private void applySettings(final Settings newSettings) {
+        uriColour = colourManager.getColourFromString(newSettings.linkColour, null);
+        channelColour = colourManager.getColourFromString(newSettings.channelColour, null);
+        settings = newSettings;
     }
 
     @Override
@@ -189,21 +229,8 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
      */
     private String doSmilies(final String string) {
         // TODO: Check if they're enabled.
-        // TODO: Store the list instead of building it every line
-
-        final StringBuilder smilies = new StringBuilder();
-
-        configManager.getOptions("icon").entrySet().stream()
-                .filter(icon -> icon.getKey().startsWith("smilie-")).forEach(icon -> {
-            if (smilies.length() > 0) {
-                smilies.append('|');
-            }
-
-            smilies.append(Pattern.quote(icon.getKey().substring(7)));
-        });
-
-        return string.replaceAll("(\\s|^)(" + smilies + ")(?=\\s|$)",
-                "$1" + CODE_SMILIE + "$2" + CODE_SMILIE);
+        return settings.smiliePattern.matcher(string)
+                .replaceAll("$1" + CODE_SMILIE + "$2" + CODE_SMILIE);
     }
 
     /**
@@ -292,7 +319,7 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
 
         // Hyperlinks
         if (string.charAt(0) == CODE_HYPERLINK) {
-            if (!isNegated && styleURIs) {
+            if (!isNegated && settings.styleLinks) {
                 maker.toggleHyperlinkStyle(uriColour);
             }
 
@@ -308,7 +335,7 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
 
         // Channel links
         if (string.charAt(0) == CODE_CHANNEL) {
-            if (!isNegated && styleChannels) {
+            if (!isNegated && settings.styleChannels) {
                 maker.toggleChannelLinkStyle(channelColour);
             }
 
@@ -516,26 +543,103 @@ public class Styliser implements ConfigChangeListener, StyleApplier {
         return res;
     }
 
+    @Override
+    public void configChanged(final ConfigChangeSet changes) {
+        // All of our settings are re-read together, so only do it once per set.
+        reloadSettings();
+    }
+
     @Override
     public void configChanged(final String domain, final String key) {
-        switch (key) {
-            case "stylelinks":
-                styleURIs = configManager.getOptionBool("ui", "stylelinks");
-                break;
-            case "stylechannels":
-                styleChannels = configManager.getOptionBool("ui", "stylechannels");
-                break;
-            case "linkcolour":
-                uriColour = colourManager.getColourFromString(
-                        configManager.getOptionString("ui", "linkcolour"), null);
-                break;
-            case "channelcolour":
-                channelColour = colourManager.getColourFromString(
-                        configManager.getOptionString("ui", "channelcolour"), null);
-                break;
+        reloadSettings();
+    }
+
+    /**
+     * Re-reads this styliser's settings from its config, if it has one.
+     */
+    private void reloadSettings() {
+        if (configManager != null) {
+            applySettings(Settings.read(configManager));
         }
     }
 
+    /**
+     * The resolved settings that affect how a styliser styles text. Settings are immutable and
+     * compare equal if they resolve to the same values, whichever config they were read from.
+     */
+    static final class Settings {
+
+        /** Whether or not we should style links. */
+        private final boolean styleLinks;
+        /** Whether or not we should style channel names. */
+        private final boolean styleChannels;
+        /** The colour spec to use for URIs. */
+        @Nullable private final String linkColour;
+        /** The colour spec to use for channel names. */
+        @Nullable private final String channelColour;
+        /** The names of the configured smilies. */
+        private final List<String> smilies;
+        /** Pattern matching any of the configured smilies. */
+        private final Pattern smiliePattern;
+
+        private Settings(final boolean styleLinks, final boolean styleChannels,
+                @Nullable final String linkColour, @Nullable final String channelColour,
+                final List<String> smilies) {
+            this.styleLinks = styleLinks;
+            this.styleChannels = styleChannels;
+            this.linkColour = linkColour;
+            this.channelColour = channelColour;
+            this.smilies = Collections.unmodifiableList(smilies);
+
+            final StringBuilder alternatives = new StringBuilder();
+            for (String smilie : smilies) {
+                if (alternatives.length() > 0) {
+                    alternatives.append('|');
+                }
+                alternatives.append(Pattern.quote(smilie));
+            }
+            smiliePattern = Pattern.compile("(\\s|^)(" + alternatives + ")(?=\\s|$)");
+        }
+
+        /**
+         * Reads the current styling settings from the given config.
+         *
+         * @param configManager The config to read settings from.
+         * @return The resolved settings.
+         */
+        static Settings read(final AggregateConfigProvider configManager) {
+            final List<String> smilies = new ArrayList<>();
+            configManager.getOptions("icon").keySet().stream()
+                    .filter(icon -> icon.startsWith("smilie-"))
+                    .forEach(icon -> smilies.add(icon.substring(7)));
+
+            return new Settings(
+                    configManager.getOptionBool("ui", "stylelinks"),
+                    configManager.getOptionBool("ui", "stylechannels"),
+                    configManager.getOptionString("ui", "linkcolour"),
+                    configManager.getOptionString("ui", "channelcolour"),
+                    smilies);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Settings)) {
+                return false;
+            }
+            final Settings other = (Settings) obj;
+            return styleLinks == other.styleLinks && styleChannels == other.styleChannels
+                    && Objects.equals(linkColour, other.linkColour)
+                    && Objects.equals(channelColour, other.channelColour)
+                    && smilies.equals(other.smilies);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(styleLinks, styleChannels, linkColour, channelColour, smilies);
+        }
+
+    }
+
     private static class StyliserState {
 
         boolean isNegated;
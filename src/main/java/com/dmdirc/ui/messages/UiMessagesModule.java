@@ -19,6 +19,7 @@ package com.dmdirc.ui.messages;
 
 import com.dmdirc.commandline.CommandLineOptionsModule.Directory;
 import com.dmdirc.config.GlobalConfig;
+import com.dmdirc.util.system.SystemLifecycleComponent;
 import dagger.Module;
 import dagger.Provides;
 
@@ -52,4 +53,14 @@ public class UiMessagesModule {
         return provider;
     }
 
+    @Provides(type = Provides.Type.SET)
+    public SystemLifecycleComponent getFormatWatcher(final EventFormatFileWatcher watcher) {
+        return watcher;
+    }
+
+    @Provides(type = Provides.Type.SET)
+    public SystemLifecycleComponent getScrollbackBudget(final ScrollbackBudget budget) {
+        return budget;
+    }
+
 }
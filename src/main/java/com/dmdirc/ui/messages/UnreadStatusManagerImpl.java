@@ -30,6 +30,7 @@ import com.dmdirc.interfaces.WindowModel;
 import com.dmdirc.util.colours.Colour;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import net.engio.mbassy.listener.Handler;
 
@@ -40,7 +41,8 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
 
     private final EventBus eventBus;
     private final WindowModel container;
-    private final ColourManager colourManager;
+    /** Supplies the colour manager for the window's current colour settings. */
+    private final Supplier<ColourManager> colourManager;
 
     private int unreadLines;
     private Optional<Colour> notificationColour = Optional.empty();
@@ -49,10 +51,11 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
     private Optional<Colour> messageColour = Optional.of(Colour.BLUE);
     private Optional<Colour> highlightColour = Optional.of(Colour.RED);
 
-    public UnreadStatusManagerImpl(final WindowModel container) {
+    public UnreadStatusManagerImpl(final WindowModel container,
+            final Supplier<ColourManager> colourManager) {
         this.container = container;
         this.eventBus = container.getEventBus();
-        this.colourManager = new ColourManagerImpl(container.getConfigManager());
+        this.colourManager = colourManager;
     }
 
     @Handler
@@ -92,7 +95,7 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
 
     private boolean includeEvent(final DisplayableEvent event) {
         return event.getSource().equals(container)
-                && !event.getDisplayProperty(DisplayProperty.DO_NOT_DISPLAY).orElse(false);
+                && !event.getDisplayProperties().getOrDefault(DisplayProperty.DO_NOT_DISPLAY, false);
     }
 
     @Override
@@ -146,7 +149,7 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
     @ConfigBinding(domain = "ui", key = "miscellaneousNotificationColour")
     void handleMiscellaneousColour(final String colour) {
         final Optional<Colour> newColour = Optional.ofNullable(
-                colourManager.getColourFromString(colour, Colour.GREEN));
+                colourManager.get().getColourFromString(colour, Colour.GREEN));
         if (notificationColour.equals(miscellaneousColour)) {
             notificationColour = newColour;
             publishChangedEvent();
@@ -157,7 +160,7 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
     @ConfigBinding(domain = "ui", key = "messageNotificationColour")
     void handleMessageColour(final String colour) {
         final Optional<Colour> newColour = Optional.ofNullable(
-                colourManager.getColourFromString(colour, Colour.BLUE));
+                colourManager.get().getColourFromString(colour, Colour.BLUE));
         if (notificationColour.equals(messageColour)) {
             notificationColour = newColour;
             publishChangedEvent();
@@ -168,7 +171,7 @@ public class UnreadStatusManagerImpl implements UnreadStatusManager {
     @ConfigBinding(domain = "ui", key = "highlightNotificationColour")
     void handleHighlightColour(final String colour) {
         final Optional<Colour> newColour = Optional.ofNullable(
-                colourManager.getColourFromString(colour, Colour.RED));
+                colourManager.get().getColourFromString(colour, Colour.RED));
         if (notificationColour.equals(highlightColour)) {
             notificationColour = newColour;
             publishChangedEvent();
@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -53,7 +54,14 @@ public class YamlEventFormatProvider implements EventFormatProvider {
     private final Path path;
     private final ColourManager colourManager;
     private final DisplayLocationManager displayLocationManager;
-    private final Map<String, EventFormat> formats = new HashMap<>();
+    /** Lock guarding loading of formats. */
+    private final Object lock = new Object();
+    /** The bundled default formats, as of the last full load. */
+    private Map<String, EventFormat> defaultFormats;
+    /** The current formats, replaced wholesale on each (re)load. */
+    private volatile Map<String, EventFormat> formats = Collections.emptyMap();
+    /** The modification time and size of the user's file when it was last loaded. */
+    private Optional<String> fileStamp = Optional.empty();
 
     public YamlEventFormatProvider(final Path path, final ColourManager colourManager,
                                    final DisplayLocationManager displayLocationManager) {
@@ -63,33 +71,66 @@ public class YamlEventFormatProvider implements EventFormatProvider {
     }
 
     public void load() {
-        formats.clear();
+        load(true);
+    }
 
-        try (final InputStream stream = getClass().getResourceAsStream("format.yml")) {
-            load(stream);
-        } catch (IOException e) {
-            LOG.error(FATAL_APP_ERROR, "Unable to load default event templates", e);
-        }
+    /**
+     * Loads the formats from the bundled defaults and the user's file.
+     *
+     * @param reloadDefaults Whether to re-read the bundled defaults. If false, the defaults from
+     *                       the previous load are reused where available.
+     */
+    private void load(final boolean reloadDefaults) {
+        synchronized (lock) {
+            if (reloadDefaults || defaultFormats == null) {
+                final Map<String, EventFormat> newDefaults = new HashMap<>();
+                try (final InputStream stream = getClass().getResourceAsStream("format.yml")) {
+                    load(stream, newDefaults);
+                } catch (IOException e) {
+                    LOG.error(FATAL_APP_ERROR, "Unable to load default event templates", e);
+                }
+                defaultFormats = newDefaults;
+            }
 
-        if (Files.exists(path)) {
-            try (final InputStream stream = Files.newInputStream(path)) {
-                load(stream);
-            } catch (IOException e) {
-                LOG.info(USER_ERROR, "Unable to load event templates from {}", path, e);
+            final Map<String, EventFormat> newFormats = new HashMap<>(defaultFormats);
+            fileStamp = getFileStamp();
+            if (fileStamp.isPresent()) {
+                try (final InputStream stream = Files.newInputStream(path)) {
+                    load(stream, newFormats);
+                } catch (IOException e) {
+                    LOG.info(USER_ERROR, "Unable to load event templates from {}", path, e);
+                }
             }
+
+            formats = newFormats;
         }
     }
 
-    private void load(final InputStream stream) throws IOException {
+    private void load(final InputStream stream, final Map<String, EventFormat> target)
+            throws IOException {
         try (final InputStreamReader reader = new InputStreamReader(stream, CHARSET)) {
             final YamlReader yamlReader = new YamlReader(reader);
             final Object root = yamlReader.read();
             final Map<Object, Object> entries = asMap(root);
-            entries.forEach((k, v) -> formats.put(k.toString(), readFormat(v)));
+            entries.forEach((k, v) -> target.put(k.toString(), readFormat(v)));
             yamlReader.close();
         }
     }
 
+    /**
+     * Gets a stamp describing the current state of the user's format file. If the stamp is
+     * unchanged the file is assumed not to have been modified.
+     *
+     * @return The last modified time and size of the file, or empty if it does not exist.
+     */
+    private Optional<String> getFileStamp() {
+        try {
+            return Optional.of(Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path));
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
     private EventFormat readFormat(final Object format) {
         final Map<Object, Object> info = asMap(format);
         final String template = info.get("format").toString();
@@ -143,6 +184,20 @@ public class YamlEventFormatProvider implements EventFormatProvider {
 
     @Override
     public void reload() {
-        load();
+        load(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The formats are only re-read if the user's format file has changed since it was last read.
+     */
+    @Override
+    public void reloadIfChanged() {
+        synchronized (lock) {
+            if (defaultFormats == null || !getFileStamp().equals(fileStamp)) {
+                load(false);
+            }
+        }
     }
 }
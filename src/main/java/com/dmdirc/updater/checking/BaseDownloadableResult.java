@@ -21,6 +21,9 @@ import com.dmdirc.updater.UpdateComponent;
 import com.dmdirc.updater.Version;
 
 import java.net.URL;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
 
 /**
  * A simple implementation of a {@link DownloadableUpdate}.
@@ -29,6 +32,8 @@ public class BaseDownloadableResult extends BaseCheckResult implements Downloada
 
     /** The URL the update may be downloaded from. */
     private final URL url;
+    /** The expected SHA-256 hash of the update, if known. */
+    @Nullable private final String checksum;
 
     /**
      * Creates a new instance of {@link BaseDownloadableResult}.
@@ -40,9 +45,25 @@ public class BaseDownloadableResult extends BaseCheckResult implements Downloada
      */
     public BaseDownloadableResult(final UpdateComponent component, final URL url,
             final String updatedVersionName, final Version updatedVersion) {
+        this(component, url, updatedVersionName, updatedVersion, null);
+    }
+
+    /**
+     * Creates a new instance of {@link BaseDownloadableResult}.
+     *
+     * @param component          The component that this result is for
+     * @param url                The URL the update may be downloaded from
+     * @param updatedVersionName The friendly name of the updated version
+     * @param updatedVersion     The version of the file available at that URL
+     * @param checksum           The expected SHA-256 hash of the file, as hex, or null if unknown
+     */
+    public BaseDownloadableResult(final UpdateComponent component, final URL url,
+            final String updatedVersionName, final Version updatedVersion,
+            @Nullable final String checksum) {
         super(component, true, updatedVersionName, updatedVersion);
 
         this.url = url;
+        this.checksum = checksum == null ? null : checksum.toLowerCase();
     }
 
     @Override
@@ -50,9 +71,15 @@ public class BaseDownloadableResult extends BaseCheckResult implements Downloada
         return url;
     }
 
+    @Override
+    public Optional<String> getChecksum() {
+        return Optional.ofNullable(checksum);
+    }
+
     @Override
     public String toString() {
-        return "BaseDownloadableResult{super=" + super.toString() + ", url=" + url + '}';
+        return "BaseDownloadableResult{super=" + super.toString() + ", url=" + url
+                + ", checksum=" + checksum + '}';
     }
 
 }
@@ -24,43 +24,84 @@ import com.dmdirc.updater.UpdateChannel;
 import com.dmdirc.updater.UpdateComponent;
 import com.dmdirc.updater.Version;
 import com.dmdirc.util.LogUtils;
-import com.dmdirc.util.io.Downloader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * A strategy which sends a request to the DMDirc update service for information.
+ *
+ * <p>Responses are cached. If the server supplied an entity tag, an identical request is sent with
+ * {@code If-None-Match}, and the cached response is reused if the server reports it is unchanged.
+ * An "outofdate" line may include the SHA-256 hash of the update after its URL, which is used to
+ * verify the download.
  */
 public class DMDircCheckStrategy implements UpdateCheckStrategy {
 
     private static final Logger LOG = LoggerFactory.getLogger(DMDircCheckStrategy.class);
     /** The URL to request to check for updates. */
     private static final String UPDATE_URL = "https://updates.dmdirc.com/";
+    /** The time to wait to connect to or hear from the update server, in milliseconds. */
+    private static final int TIMEOUT = 30000;
+    /** Pattern matching a hex-encoded SHA-256 hash. */
+    private static final Pattern CHECKSUM = Pattern.compile("[0-9a-fA-F]{64}");
+    /** The URL to send update checks to. */
+    private final URL updateUrl;
+    /** Lock guarding the cached response. */
+    private final Object responseLock = new Object();
     /** The update channel to check for updates on. */
     private UpdateChannel channel;
-    /** Downloader to download files. */
-    private final Downloader downloader;
+    /** The payload of the cached response. */
+    @Nullable private String cachedPayload;
+    /** The entity tag of the cached response. */
+    @Nullable private String cachedTag;
+    /** The cached response. */
+    private List<String> cachedResponse = Collections.emptyList();
 
     /**
      * Creates a new instance of {@link DMDircCheckStrategy}.
      *
      * @param configProvider The provider to use to retrieve update channel information.
-     * @param downloader     Used to download files
      */
     @Inject
-    public DMDircCheckStrategy(@GlobalConfig final AggregateConfigProvider configProvider,
-            final Downloader downloader) {
+    public DMDircCheckStrategy(@GlobalConfig final AggregateConfigProvider configProvider) {
+        this(configProvider, getDefaultUrl());
+    }
+
+    /**
+     * Creates a new instance of {@link DMDircCheckStrategy} that uses the given update service.
+     *
+     * @param configProvider The provider to use to retrieve update channel information.
+     * @param updateUrl      The URL of the update service.
+     */
+    DMDircCheckStrategy(final AggregateConfigProvider configProvider, final URL updateUrl) {
         configProvider.getBinder().bind(this, DMDircCheckStrategy.class);
-        this.downloader = downloader;
+        this.updateUrl = updateUrl;
+    }
+
+    private static URL getDefaultUrl() {
+        try {
+            return new URL(UPDATE_URL);
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 
     /**
@@ -86,7 +127,7 @@ public class DMDircCheckStrategy implements UpdateCheckStrategy {
         final Map<String, UpdateComponent> names = getComponentsByName(components);
 
         try {
-            final List<String> response = downloader.getPage(UPDATE_URL, getPayload(components));
+            final List<String> response = getResponse(getPayload(components));
             LOG.trace("Response from update server: {}", response);
 
             for (String line : response) {
@@ -110,6 +151,67 @@ public class DMDircCheckStrategy implements UpdateCheckStrategy {
         return res;
     }
 
+    /**
+     * Posts the payload to the update server and reads its response. If the server has previously
+     * answered the same payload with an entity tag, the request is made conditional, and the
+     * cached response is returned if it has not changed.
+     *
+     * @param payload The payload to send
+     *
+     * @return The lines the server responded with
+     *
+     * @throws IOException If the server could not be contacted or returned an error
+     */
+    private List<String> getResponse(final String payload) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) updateUrl.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        synchronized (responseLock) {
+            if (cachedTag != null && payload.equals(cachedPayload)) {
+                connection.setRequestProperty("If-None-Match", cachedTag);
+            }
+        }
+
+        try {
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(payload.getBytes(StandardCharsets.UTF_8));
+            }
+
+            final int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED
+                    || code == HttpURLConnection.HTTP_PRECON_FAILED) {
+                // 412 is the standard answer to a matching If-None-Match on a POST.
+                synchronized (responseLock) {
+                    if (payload.equals(cachedPayload)) {
+                        LOG.debug("Update server response unchanged, using cached response");
+                        return cachedResponse;
+                    }
+                }
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Update server returned " + code);
+            }
+
+            final List<String> response;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    connection.getInputStream(), StandardCharsets.UTF_8))) {
+                response = Collections.unmodifiableList(reader.lines().collect(Collectors.toList()));
+            }
+
+            synchronized (responseLock) {
+                cachedPayload = payload;
+                cachedTag = connection.getHeaderField("ETag");
+                cachedResponse = response;
+            }
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
     /**
      * Builds the data payload which will be sent to the update server. Specifically, iterates over
      * each component and appends their name, the channel name, and the component's version number.
@@ -181,8 +283,8 @@ public class DMDircCheckStrategy implements UpdateCheckStrategy {
     }
 
     /**
-     * Parses an "outofdate" response from the server. Extracts the URL, remote version and remote
-     * friendly version into a {@link BaseDownloadableResult}.
+     * Parses an "outofdate" response from the server. Extracts the URL, remote version, remote
+     * friendly version and, if present, the SHA-256 hash into a {@link BaseDownloadableResult}.
      *
      * @param parts The tokenised parts of the response line
      *
@@ -190,9 +292,18 @@ public class DMDircCheckStrategy implements UpdateCheckStrategy {
      */
     private UpdateCheckResult parseOutOfDateResponse(
             final UpdateComponent component, final String[] parts) {
+        String checksum = null;
+        if (parts.length > 6) {
+            if (CHECKSUM.matcher(parts[6]).matches()) {
+                checksum = parts[6];
+            } else {
+                LOG.warn("Ignoring invalid checksum for {}: {}", component.getName(), parts[6]);
+            }
+        }
+
         try {
             return new BaseDownloadableResult(component, new URL(parts[5]),
-                    parts[4], new Version(parts[3]));
+                    parts[4], new Version(parts[3]), checksum);
         } catch (MalformedURLException ex) {
             LOG.error(LogUtils.APP_ERROR, "Unable to construct URL for update. Parts: {}", parts,
                     ex);
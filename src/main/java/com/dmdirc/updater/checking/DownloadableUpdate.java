@@ -18,6 +18,7 @@
 package com.dmdirc.updater.checking;
 
 import java.net.URL;
+import java.util.Optional;
 
 /**
  * A specialised {@link UpdateCheckResult} that specifies where the update may be downloaded from.
@@ -31,4 +32,13 @@ public interface DownloadableUpdate extends UpdateCheckResult {
      */
     URL getUrl();
 
+    /**
+     * Gets the expected SHA-256 hash of the update, if the check service supplied one.
+     *
+     * @return The update's SHA-256 hash, as lowercase hex.
+     */
+    default Optional<String> getChecksum() {
+        return Optional.empty();
+    }
+
 }
@@ -22,11 +22,20 @@ import com.dmdirc.commandline.CommandLineOptionsModule.DirectoryType;
 import com.dmdirc.updater.UpdateComponent;
 import com.dmdirc.updater.checking.DownloadableUpdate;
 import com.dmdirc.util.collections.ListenerList;
-import com.dmdirc.util.io.DownloadListener;
-import com.dmdirc.util.io.Downloader;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -35,59 +44,219 @@ import org.slf4j.LoggerFactory;
 /**
  * An {@link UpdateRetrievalStrategy} that downloads a file specified in a
  * {@link DownloadableUpdate}.
+ *
+ * <p>Downloads are hashed as they are written. If the update specifies a checksum, the download
+ * is verified against it, a previously downloaded copy is reused from the update cache, and an
+ * interrupted download is resumed from where it stopped. If a resumed download fails verification,
+ * it is downloaded again from the start once before giving up.
  */
 public class DownloadRetrievalStrategy extends TypeSensitiveRetrievalStrategy<DownloadableUpdate> {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(
             DownloadRetrievalStrategy.class);
+    /** The time to wait to connect to or hear from the download server, in milliseconds. */
+    private static final int TIMEOUT = 30000;
+    /** The size of the buffer used when downloading. */
+    private static final int BUFFER_SIZE = 65536;
     /** List of registered listeners. */
     private final ListenerList listenerList = new ListenerList();
+    /** Locks guarding each partial download, so two retrievals never write the same file. */
+    private final Map<Path, Object> partialLocks = new ConcurrentHashMap<>();
     /** The directory to put temporary update files in. */
     private final Path directory;
-    /** Downloader to download files. */
-    private final Downloader downloader;
+    /** The cache of completed and partial downloads. */
+    private final UpdateCache cache;
 
     /**
      * Creates a new {@link DownloadRetrievalStrategy} which will place its temporary files in the
      * given directory.
      *
-     * @param directory  The directory to use to download files to#
-     * @param downloader Used to download files
+     * @param directory The directory to use to download files to
      */
     @Inject
-    public DownloadRetrievalStrategy(@Directory(DirectoryType.BASE) final Path directory,
-            final Downloader downloader) {
+    public DownloadRetrievalStrategy(@Directory(DirectoryType.BASE) final Path directory) {
         super(DownloadableUpdate.class);
 
         this.directory = directory;
-        this.downloader = downloader;
+        this.cache = new UpdateCache(directory.resolve("updates"));
     }
 
     @Override
     protected UpdateRetrievalResult retrieveImpl(final DownloadableUpdate checkResult) {
+        final UpdateComponent component = checkResult.getComponent();
+        final Optional<String> checksum = checkResult.getChecksum();
         try {
             final Path file = getFile();
 
             listenerList.getCallable(UpdateRetrievalListener.class)
-                    .retrievalProgressChanged(checkResult.getComponent(), 0);
+                    .retrievalProgressChanged(component, 0);
 
-            LOG.debug("Downloading file from {} to {}", checkResult.getUrl(), file);
-            downloader.downloadPage(checkResult.getUrl().toString(), file,
-                    new DownloadProgressListener(checkResult.getComponent()));
+            final Optional<Path> cached = checksum.flatMap(cache::get);
+            if (cached.isPresent()) {
+                LOG.debug("Using cached copy of {}", checkResult.getUrl());
+                cache.checkout(cached.get(), file);
+            } else {
+                final Path partial = cache.getPartialFile(checkResult.getUrl().toString());
+                synchronized (partialLocks.computeIfAbsent(partial, k -> new Object())) {
+                    LOG.debug("Downloading file from {} to {}", checkResult.getUrl(), partial);
+                    final boolean resumed = checksum.isPresent() && Files.exists(partial)
+                            && Files.size(partial) > 0;
+                    String hash = download(checkResult, partial, checksum.isPresent());
+                    if (resumed && !checksum.get().equalsIgnoreCase(hash)) {
+                        // The partial file may have been left by a different file at the same URL.
+                        LOG.debug("Resumed download of {} failed verification, restarting",
+                                checkResult.getUrl());
+                        hash = download(checkResult, partial, false);
+                    }
+                    if (checksum.isPresent() && !checksum.get().equalsIgnoreCase(hash)) {
+                        Files.deleteIfExists(partial);
+                        throw new IOException("Checksum mismatch: expected " + checksum.get()
+                                + " but downloaded " + hash);
+                    }
+                    cache.checkout(cache.store(partial, hash), file);
+                }
+            }
 
             listenerList.getCallable(UpdateRetrievalListener.class)
-                    .retrievalCompleted(checkResult.getComponent());
+                    .retrievalCompleted(component);
 
             return new BaseSingleFileResult(checkResult, file);
         } catch (IOException ex) {
             LOG.warn("I/O exception downloading update from {}", checkResult.getUrl(), ex);
             listenerList.getCallable(UpdateRetrievalListener.class)
-                    .retrievalFailed(checkResult.getComponent());
+                    .retrievalFailed(component);
         }
 
         return new BaseRetrievalResult(checkResult, false);
     }
 
+    /**
+     * Downloads an update to a partial file, hashing it as it is written.
+     *
+     * <p>If resuming is allowed and the partial file already has content, only the remaining bytes
+     * are requested. Resuming is only safe if the result can be verified, as the remote file may
+     * have changed since the partial file was written.
+     *
+     * @param update  The update to download
+     * @param partial The file to download to
+     * @param resume  Whether to resume an existing partial download
+     *
+     * @return The hex-encoded SHA-256 hash of the complete file
+     *
+     * @throws IOException If the file could not be downloaded
+     */
+    private String download(final DownloadableUpdate update, final Path partial,
+            final boolean resume) throws IOException {
+        final long existing = resume && Files.exists(partial) ? Files.size(partial) : 0;
+        final HttpURLConnection connection =
+                (HttpURLConnection) update.getUrl().openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (existing > 0) {
+            connection.setRequestProperty("Range", "bytes=" + existing + '-');
+        }
+
+        try {
+            final int code = connection.getResponseCode();
+            if (existing > 0 && code == 416) {
+                // The partial file is at least as long as the remote one, so it is either complete
+                // or stale.
+                final String hash = UpdateCache.hash(partial);
+                if (update.getChecksum().map(hash::equalsIgnoreCase).orElse(false)) {
+                    return hash;
+                }
+                LOG.debug("Discarding stale partial download {}", partial);
+                return download(update, partial, false);
+            }
+
+            final boolean append = existing > 0 && code == HttpURLConnection.HTTP_PARTIAL
+                    && isRangeFrom(connection.getHeaderField("Content-Range"), existing);
+            if (code != HttpURLConnection.HTTP_OK && !append) {
+                if (existing > 0 && code == HttpURLConnection.HTTP_PARTIAL) {
+                    LOG.debug("Unexpected range {}, restarting download",
+                            connection.getHeaderField("Content-Range"));
+                    return download(update, partial, false);
+                }
+                throw new IOException("Server returned " + code + " for " + update.getUrl());
+            }
+
+            final MessageDigest digest = UpdateCache.newDigest();
+            final long offset;
+            if (append) {
+                LOG.debug("Resuming download of {} from byte {}", update.getUrl(), existing);
+                UpdateCache.update(digest, partial);
+                offset = existing;
+            } else {
+                offset = 0;
+            }
+            final long length = connection.getContentLengthLong();
+            final long total = length < 0 ? -1 : offset + length;
+
+            try (ReadableByteChannel in = Channels.newChannel(connection.getInputStream());
+                    FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND
+                                    : StandardOpenOption.TRUNCATE_EXISTING)) {
+                transfer(update.getComponent(), in, out, digest, offset, total);
+            }
+
+            return UpdateCache.toHex(digest.digest());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Copies the remainder of a download into a file, updating the digest and reporting progress
+     * as it goes.
+     *
+     * @param component The component being downloaded
+     * @param in        The channel to read from
+     * @param out       The channel to write to
+     * @param digest    The digest to update with each byte written
+     * @param offset    The number of bytes already downloaded
+     * @param total     The total size of the file, or -1 if unknown
+     *
+     * @throws IOException If the data could not be read or written
+     */
+    private void transfer(final UpdateComponent component, final ReadableByteChannel in,
+            final FileChannel out, final MessageDigest digest, final long offset,
+            final long total) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long done = offset;
+        int lastPercent = -1;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            buffer.flip();
+            digest.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+
+            done += read;
+            if (total > 0) {
+                final int percent = (int) Math.min(100, 100 * done / total);
+                if (percent != lastPercent) {
+                    lastPercent = percent;
+                    listenerList.getCallable(UpdateRetrievalListener.class)
+                            .retrievalProgressChanged(component, percent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a Content-Range header describes a range starting at the given offset.
+     *
+     * @param contentRange The value of the header, or null if not present
+     * @param offset       The expected offset
+     *
+     * @return True if the range starts at the offset, false otherwise
+     */
+    private static boolean isRangeFrom(final String contentRange, final long offset) {
+        return contentRange != null && contentRange.startsWith("bytes " + offset + '-');
+    }
+
     /**
      * Creates a random local file name to download the remote file to.
      *
@@ -107,30 +276,4 @@ public class DownloadRetrievalStrategy extends TypeSensitiveRetrievalStrategy<Do
         listenerList.remove(UpdateRetrievalListener.class, listener);
     }
 
-    /**
-     * A {@link DownloadListener} which proxies progress updates on to this strategy's
-     * {@link UpdateRetrievalListener}s.
-     */
-    private class DownloadProgressListener implements DownloadListener {
-
-        /** The component to fire updates for. */
-        private final UpdateComponent component;
-
-        public DownloadProgressListener(final UpdateComponent component) {
-            this.component = component;
-        }
-
-        @Override
-        public void downloadProgress(final float percent) {
-            listenerList.getCallable(UpdateRetrievalListener.class)
-                    .retrievalProgressChanged(component, percent);
-        }
-
-        @Override
-        public void setIndeterminate(final boolean indeterminate) {
-            // Do nothing
-        }
-
-    }
-
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.updater.retrieving;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content-addressed store of downloaded updates, along with the partial downloads that have not
+ * yet completed. Completed files are named after their SHA-256 hash, so an update that has already
+ * been fetched need not be downloaded again, and partial files are named after the hash of the URL
+ * they are being downloaded from so they can be resumed.
+ */
+class UpdateCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateCache.class);
+    /** The algorithm used to identify files. */
+    static final String ALGORITHM = "SHA-256";
+    /** The number of completed files to keep. */
+    private static final int MAX_ENTRIES = 8;
+    /** The suffix used for partial downloads. */
+    private static final String PARTIAL_SUFFIX = ".part";
+    /** The directory the cache lives in. */
+    private final Path directory;
+
+    /**
+     * Creates a new cache in the given directory, which will be created when first needed.
+     *
+     * @param directory The directory to store files in
+     */
+    UpdateCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the file where a partial download from the given URL should be stored.
+     *
+     * @param url The URL being downloaded
+     *
+     * @return The path of the partial file, which may not exist
+     *
+     * @throws IOException If the cache directory could not be created
+     */
+    Path getPartialFile(final String url) throws IOException {
+        Files.createDirectories(directory);
+        final MessageDigest digest = newDigest();
+        digest.update(url.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(toHex(digest.digest()) + PARTIAL_SUFFIX);
+    }
+
+    /**
+     * Looks up a completed file. The file's contents are hashed again before it is returned, and
+     * it is removed if it no longer matches.
+     *
+     * @param checksum The hex-encoded SHA-256 hash of the file
+     *
+     * @return The cached file, if it is present and intact
+     */
+    Optional<Path> get(final String checksum) {
+        final Path file = directory.resolve(checksum.toLowerCase(Locale.ROOT));
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        try {
+            if (hash(file).equals(file.getFileName().toString())) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return Optional.of(file);
+            }
+            LOG.info("Discarding corrupt cached update {}", file);
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOG.warn("Unable to read cached update {}", file, ex);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Moves a completed download into the cache, and removes the oldest entries if the cache has
+     * grown too large.
+     *
+     * @param file     The file to store
+     * @param checksum The hex-encoded SHA-256 hash of the file's contents
+     *
+     * @return The location of the file in the cache
+     *
+     * @throws IOException If the file could not be moved
+     */
+    Path store(final Path file, final String checksum) throws IOException {
+        final Path target = directory.resolve(checksum.toLowerCase(Locale.ROOT));
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        prune(target);
+        return target;
+    }
+
+    /**
+     * Creates a working copy of a cached file. Installing an update moves or deletes the file it is
+     * given, so the cached copy is never handed out directly. A hard link is used where possible to
+     * avoid copying the data.
+     *
+     * @param file   The cached file
+     * @param target The path of the working copy
+     *
+     * @throws IOException If the copy could not be made
+     */
+    void checkout(final Path file, final Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, file);
+        } catch (IOException | UnsupportedOperationException ex) {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Removes the least recently used completed files, keeping at most {@link #MAX_ENTRIES}.
+     *
+     * @param keep A file which should never be removed
+     */
+    private void prune(final Path keep) {
+        final List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                path -> !path.getFileName().toString().endsWith(PARTIAL_SUFFIX))) {
+            stream.forEach(entries::add);
+        } catch (IOException ex) {
+            LOG.warn("Unable to list update cache {}", directory, ex);
+            return;
+        }
+
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(UpdateCache::getModifiedTime));
+        for (Path entry : entries.subList(0, entries.size() - MAX_ENTRIES)) {
+            if (!entry.equals(keep)) {
+                try {
+                    Files.deleteIfExists(entry);
+                } catch (IOException ex) {
+                    LOG.warn("Unable to remove cached update {}", entry, ex);
+                }
+            }
+        }
+    }
+
+    private static FileTime getModifiedTime(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Calculates the hex-encoded SHA-256 hash of a file.
+     *
+     * @param file The file to hash
+     *
+     * @return The file's hash, in lower case
+     *
+     * @throws IOException If the file could not be read
+     */
+    static String hash(final Path file) throws IOException {
+        final MessageDigest digest = newDigest();
+        update(digest, file);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Feeds the contents of a file into a digest.
+     *
+     * @param digest The digest to update
+     * @param file   The file to read
+     *
+     * @throws IOException If the file could not be read
+     */
+    static void update(final MessageDigest digest, final Path file) throws IOException {
+        final byte[] buffer = new byte[65536];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     *
+     * @return A new digest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Encodes a hash as lower case hex.
+     *
+     * @param hash The bytes to encode
+     *
+     * @return The encoded hash
+     */
+    static String toHex(final byte[] hash) {
+        return BaseEncoding.base16().lowerCase().encode(hash);
+    }
+
+}
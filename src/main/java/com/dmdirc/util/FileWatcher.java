@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.util;
+
+import com.dmdirc.util.system.SystemLifecycleComponent;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.dmdirc.util.LogUtils.APP_ERROR;
+import static com.dmdirc.util.LogUtils.USER_ERROR;
+
+/**
+ * Watches files and directories for changes made outside of the client.
+ * <p>
+ * Changes are debounced: a handler is called once per changed path, after no further events have
+ * been seen for {@link #DEBOUNCE_MILLIS}. Handlers are called on the watcher's own thread. If a
+ * path is deleted, the handler is still called and should check whether the file exists.
+ * <p>
+ * If the watch service overflows and events are lost, each affected watch's handler is called
+ * with its root directory.
+ */
+@Singleton
+public class FileWatcher implements SystemLifecycleComponent {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileWatcher.class);
+    /** The time to wait for further changes before notifying handlers. */
+    static final long DEBOUNCE_MILLIS = 500;
+    /** Lock guarding the watch service and registered directories. */
+    private final Object lock = new Object();
+    /** The registered watches. */
+    private final List<Watch> watches = new CopyOnWriteArrayList<>();
+    /** Map of watch keys to the directories they represent. */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /** The service used to receive change notifications. */
+    private WatchService watchService;
+    /** The file system {@link #watchService} belongs to. */
+    private FileSystem fileSystem;
+
+    @Inject
+    public FileWatcher() {
+    }
+
+    @Override
+    public void startUp() {
+        // Watching starts when the first watch is registered.
+    }
+
+    /**
+     * Watches a single file for changes.
+     *
+     * @param file    The file to watch.
+     * @param handler The handler to call when the file changes.
+     */
+    public void watchFile(final Path file, final Consumer<Path> handler) {
+        watch(file.getParent(), false, file::equals, handler);
+    }
+
+    /**
+     * Watches all files within a directory for changes.
+     *
+     * @param directory The directory to watch.
+     * @param recursive Whether to watch subdirectories as well.
+     * @param filter    Filter to apply to changed paths before calling the handler.
+     * @param handler   The handler to call when a file changes.
+     */
+    public void watch(final Path directory, final boolean recursive,
+            final Predicate<Path> filter, final Consumer<Path> handler) {
+        synchronized (lock) {
+            try {
+                if (watchService == null) {
+                    fileSystem = directory.getFileSystem();
+                    final WatchService service = fileSystem.newWatchService();
+                    watchService = service;
+                    final Thread thread = new Thread(() -> run(service), "File watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                } else if (!fileSystem.equals(directory.getFileSystem())) {
+                    LOG.debug("Not watching {}: it is on a different file system", directory);
+                    return;
+                }
+
+                register(directory, recursive);
+                watches.add(new Watch(directory, recursive, filter, handler));
+            } catch (IOException | UnsupportedOperationException ex) {
+                LOG.info(USER_ERROR, "Unable to watch {} for changes", directory, ex);
+            }
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        synchronized (lock) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ex) {
+                    LOG.debug("Unable to close watch service", ex);
+                }
+                watchService = null;
+                watches.clear();
+                directories.clear();
+            }
+        }
+    }
+
+    /**
+     * Registers the given directory, and optionally all of its subdirectories, with the watch
+     * service.
+     *
+     * @param directory The directory to register.
+     * @param recursive Whether to also register subdirectories.
+     *
+     * @throws IOException If the directory could not be registered.
+     */
+    private void register(final Path directory, final boolean recursive) throws IOException {
+        synchronized (lock) {
+            if (watchService == null) {
+                return;
+            }
+
+            if (!recursive) {
+                registerDirectory(directory);
+                return;
+            }
+
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir,
+                        final BasicFileAttributes attrs) throws IOException {
+                    registerDirectory(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private void registerDirectory(final Path directory) throws IOException {
+        if (!directories.containsValue(directory)) {
+            directories.put(directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY), directory);
+        }
+    }
+
+    /**
+     * Services the watch service until it is closed, collecting changes and dispatching them once
+     * they have settled.
+     *
+     * @param service The watch service to read events from.
+     */
+    private void run(final WatchService service) {
+        final Map<Path, Set<Watch>> pending = new LinkedHashMap<>();
+        long deadline = 0;
+
+        try {
+            while (true) {
+                final WatchKey key = pending.isEmpty() ? service.take()
+                        : service.poll(Math.max(1, deadline - System.currentTimeMillis()),
+                                TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    if (handleKey(key, pending)) {
+                        deadline = System.currentTimeMillis() + DEBOUNCE_MILLIS;
+                    }
+                    continue;
+                }
+
+                if (System.currentTimeMillis() >= deadline) {
+                    dispatch(pending);
+                    pending.clear();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            LOG.debug("File watcher stopping");
+        }
+    }
+
+    /**
+     * Processes the events on the given key, adding any relevant paths to the pending map.
+     *
+     * @param key     The key that has been signalled.
+     * @param pending The map of pending paths to the watches interested in them.
+     *
+     * @return True if any relevant events were found, false otherwise.
+     */
+    private boolean handleKey(final WatchKey key, final Map<Path, Set<Watch>> pending) {
+        final Path directory;
+        synchronized (lock) {
+            directory = directories.get(key);
+        }
+
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                for (Watch watch : watches) {
+                    if (watch.appliesTo(directory)) {
+                        pending.computeIfAbsent(watch.root, p -> new LinkedHashSet<>()).add(watch);
+                        found = true;
+                    }
+                }
+                continue;
+            }
+
+            final Path path = directory.resolve((Path) event.context());
+            for (Watch watch : watches) {
+                if (!watch.appliesTo(directory)) {
+                    continue;
+                }
+
+                if (watch.recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(path)) {
+                    try {
+                        register(path, true);
+                    } catch (IOException ex) {
+                        LOG.info(USER_ERROR, "Unable to watch {} for changes", path, ex);
+                    }
+                }
+
+                if (watch.filter.test(path)) {
+                    pending.computeIfAbsent(path, p -> new LinkedHashSet<>()).add(watch);
+                    found = true;
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            synchronized (lock) {
+                directories.remove(key);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Calls the handlers for all pending changes.
+     *
+     * @param pending The map of pending paths to the watches interested in them.
+     */
+    private void dispatch(final Map<Path, Set<Watch>> pending) {
+        for (Map.Entry<Path, Set<Watch>> entry : pending.entrySet()) {
+            for (Watch watch : entry.getValue()) {
+                try {
+                    watch.handler.accept(entry.getKey());
+                } catch (RuntimeException ex) {
+                    LOG.warn(APP_ERROR, "Error handling change to {}", entry.getKey(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes a single registered watch.
+     */
+    private static class Watch {
+
+        /** The root directory being watched. */
+        private final Path root;
+        /** Whether subdirectories are included. */
+        private final boolean recursive;
+        /** The filter to apply to changed paths. */
+        private final Predicate<Path> filter;
+        /** The handler to call when a path changes. */
+        private final Consumer<Path> handler;
+
+        Watch(final Path root, final boolean recursive, final Predicate<Path> filter,
+                final Consumer<Path> handler) {
+            this.root = root;
+            this.recursive = recursive;
+            this.filter = filter;
+            this.handler = handler;
+        }
+
+        /**
+         * Determines whether events in the given directory are relevant to this watch.
+         *
+         * @param directory The directory that changed.
+         *
+         * @return True if the directory is covered by this watch.
+         */
+        boolean appliesTo(final Path directory) {
+            return recursive ? directory.startsWith(root) : directory.equals(root);
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatManager;
+import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.parser.interfaces.Parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MessageEncoderTest {
+
+    private static final byte[] UTF8_BYTES = "café".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LATIN1_BYTES = "café".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Mock private Connection connection;
+    @Mock private Parser parser;
+    @Mock private WindowModel windowModel;
+    @Mock private AggregateConfigProvider config;
+    @Mock private GroupChatManager groupChatManager;
+    @Mock private GroupChat channel;
+    @Mock private WindowModel channelWindowModel;
+    @Mock private AggregateConfigProvider channelConfig;
+    private MessageEncoder encoder;
+
+    @Before
+    public void setUp() {
+        when(connection.getWindowModel()).thenReturn(windowModel);
+        when(windowModel.getConfigManager()).thenReturn(config);
+        encoder = new MessageEncoder(connection, parser);
+    }
+
+    @Test
+    public void testDecodesUsingConfiguredEncoding() {
+        when(config.getOption("general", "encoding")).thenReturn("ISO-8859-1");
+        assertEquals("café", encoder.encode("source", null, LATIN1_BYTES, 0, LATIN1_BYTES.length));
+    }
+
+    @Test
+    public void testDecodesPartOfArray() {
+        when(config.getOption("general", "encoding")).thenReturn("UTF-8");
+        assertEquals("afé", encoder.encode("source", null, UTF8_BYTES, 1, UTF8_BYTES.length - 1));
+    }
+
+    @Test
+    public void testReplacesInvalidInputWithoutFallback() {
+        when(config.getOption("general", "encoding")).thenReturn("UTF-8");
+        assertEquals("caf\uFFFD", encoder.encode("source", null, LATIN1_BYTES, 0, LATIN1_BYTES.length));
+    }
+
+    @Test
+    public void testFallsBackForInvalidUtf8() {
+        when(config.getOption("general", "encoding")).thenReturn("UTF-8");
+        when(config.getOptionString(eq("general"), eq("encodingfallback"), anyBoolean(), any()))
+                .thenReturn("ISO-8859-1");
+        assertEquals("café", encoder.encode("source", null, UTF8_BYTES, 0, UTF8_BYTES.length));
+        assertEquals("café", encoder.encode("source", null, LATIN1_BYTES, 0, LATIN1_BYTES.length));
+    }
+
+    @Test
+    public void testUsesChannelEncoding() {
+        when(parser.isValidChannelName("#chan")).thenReturn(true);
+        when(connection.getGroupChatManager()).thenReturn(groupChatManager);
+        when(groupChatManager.getChannel("#chan")).thenReturn(Optional.of(channel));
+        when(channel.getWindowModel()).thenReturn(channelWindowModel);
+        when(channelWindowModel.getConfigManager()).thenReturn(channelConfig);
+        when(channelConfig.getOption("general", "encoding")).thenReturn("ISO-8859-1");
+        assertEquals("café", encoder.encode("source", "#chan", LATIN1_BYTES, 0, LATIN1_BYTES.length));
+    }
+
+    @Test
+    public void testUpdatesWhenEncodingChanges() {
+        when(config.getOption("general", "encoding")).thenReturn("UTF-8", "ISO-8859-1");
+        assertEquals("caf\uFFFD", encoder.encode("source", null, LATIN1_BYTES, 0, LATIN1_BYTES.length));
+
+        final ArgumentCaptor<ConfigChangeListener> listener =
+                ArgumentCaptor.forClass(ConfigChangeListener.class);
+        verify(config).addChangeListener(eq("general"), eq("encoding"), listener.capture());
+        listener.getValue().configChanged("general", "encoding");
+        assertEquals("café", encoder.encode("source", null, LATIN1_BYTES, 0, LATIN1_BYTES.length));
+    }
+
+}
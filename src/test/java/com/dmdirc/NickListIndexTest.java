@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc;
+
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NickListIndexTest {
+
+    /** Sorts users with op ("o") before voice ("v") before everyone else. */
+    private static final Comparator<String> MODE_COMPARATOR =
+            (first, second) -> Integer.compare(rank(second), rank(first));
+
+    private GroupChatUser alice;
+    private GroupChatUser bob;
+    private GroupChatUser carol;
+    private NickListIndex index;
+
+    @Before
+    public void setUp() {
+        alice = createUser("", "alice");
+        bob = createUser("", "Bob");
+        carol = createUser("", "carol");
+        index = new NickListIndex();
+    }
+
+    @Test
+    public void testAddReportsSortedPosition() {
+        assertEquals(0, index.add(carol).get().getToIndex());
+        assertEquals(0, index.add(alice).get().getToIndex());
+        assertEquals(1, index.add(bob).get().getToIndex());
+        assertEquals(Arrays.asList(alice, bob, carol), index.snapshot());
+    }
+
+    @Test
+    public void testAddDuplicate() {
+        index.add(alice);
+        assertFalse(index.add(alice).isPresent());
+        assertEquals(1, index.snapshot().size());
+    }
+
+    @Test
+    public void testModesSortBeforeNicknames() {
+        when(carol.getAllModes()).thenReturn("o");
+        when(bob.getAllModes()).thenReturn("v");
+        index.reset(Arrays.asList(alice, bob, carol));
+
+        assertEquals(Arrays.asList(carol, bob, alice), index.snapshot());
+    }
+
+    @Test
+    public void testRemoveReportsPreviousPosition() {
+        index.reset(Arrays.asList(alice, bob, carol));
+
+        assertEquals(1, index.remove(bob).get().getFromIndex());
+        assertFalse(index.remove(bob).isPresent());
+        assertEquals(Arrays.asList(alice, carol), index.snapshot());
+    }
+
+    @Test
+    public void testUpdateMovesUser() {
+        index.reset(Arrays.asList(alice, bob, carol));
+        when(carol.getAllModes()).thenReturn("o");
+
+        final NickListIndex.Change change = index.update(carol).get();
+        assertEquals(2, change.getFromIndex());
+        assertEquals(0, change.getToIndex());
+        assertEquals(Arrays.asList(carol, alice, bob), change.getSnapshot());
+    }
+
+    @Test
+    public void testUpdateWithoutChange() {
+        index.reset(Arrays.asList(alice, bob));
+        assertFalse(index.update(alice).isPresent());
+        assertFalse(index.update(carol).isPresent());
+    }
+
+    @Test
+    public void testSnapshotsAreUnaffectedByLaterChanges() {
+        index.reset(Arrays.asList(alice, bob));
+        final List<GroupChatUser> snapshot = index.snapshot();
+
+        index.add(carol);
+        index.remove(alice);
+
+        assertEquals(Arrays.asList(alice, bob), snapshot);
+        assertEquals(Arrays.asList(bob, carol), index.snapshot());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        index.reset(Arrays.asList(alice, bob, carol));
+        assertEquals(Collections.singletonList(bob), index.removeAll(Arrays.asList(alice, carol)));
+    }
+
+    @Test
+    public void testLargeListMatchesSortedOrder() {
+        final List<GroupChatUser> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final GroupChatUser user = createUser(i % 7 == 0 ? "o" : i % 3 == 0 ? "v" : "",
+                    String.format("user%04d", 999 - i));
+            users.add(user);
+            index.add(user);
+        }
+
+        users.sort(Comparator.comparing(GroupChatUser::getAllModes, MODE_COMPARATOR)
+                .thenComparing(GroupChatUser::getNickname));
+        assertEquals(users, index.snapshot());
+        for (int i = 0; i < users.size(); i++) {
+            assertSame(users.get(i), index.snapshot().get(i));
+        }
+    }
+
+    private static GroupChatUser createUser(final String modes, final String nickname) {
+        final GroupChatUser user = mock(GroupChatUser.class);
+        when(user.getAllModes()).thenReturn(modes);
+        when(user.getNickname()).thenReturn(nickname);
+        when(user.getModeComparator()).thenReturn(MODE_COMPARATOR);
+        return user;
+    }
+
+    private static int rank(final String modes) {
+        return modes.contains("o") ? 2 : modes.contains("v") ? 1 : 0;
+    }
+
+}
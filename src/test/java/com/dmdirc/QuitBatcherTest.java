@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.ChannelQuitBatchEvent;
+import com.dmdirc.interfaces.GroupChat;
+import com.dmdirc.interfaces.GroupChatUser;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QuitBatcherTest {
+
+    private static final String SPLIT = "hub.example.net leaf.example.net";
+
+    @Mock private GroupChat channel;
+    @Mock private AggregateConfigProvider config;
+    @Mock private ScheduledExecutorService executor;
+    @Mock private ScheduledFuture<?> future;
+    @Mock private Consumer<ChannelQuitBatchEvent> consumer;
+    @Mock private GroupChatUser user1;
+    @Mock private GroupChatUser user2;
+    @Captor private ArgumentCaptor<Runnable> runnableCaptor;
+    @Captor private ArgumentCaptor<ChannelQuitBatchEvent> eventCaptor;
+    private final Object deliveryLock = new Object();
+    private QuitBatcher batcher;
+
+    @Before
+    public void setUp() {
+        when(config.getOptionBool("channel", "batchquits")).thenReturn(true);
+        when(config.getOptionInt("channel", "quitbatchdelay")).thenReturn(1000);
+        doReturn(future).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        batcher = new QuitBatcher(channel, config, executor, deliveryLock, consumer);
+    }
+
+    @Test
+    public void testDoesNotBatchNormalQuit() {
+        assertFalse(batcher.offer(LocalDateTime.now(), user1, "Goodbye!"));
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testDoesNotBatchWhenDisabled() {
+        when(config.getOptionBool("channel", "batchquits")).thenReturn(false);
+        assertFalse(batcher.offer(LocalDateTime.now(), user1, SPLIT));
+    }
+
+    @Test
+    public void testBatchesNetsplitQuits() {
+        assertTrue(batcher.offer(LocalDateTime.now(), user1, SPLIT));
+        assertTrue(batcher.offer(LocalDateTime.now(), user2, SPLIT));
+        verify(executor, times(1)).schedule(runnableCaptor.capture(), eq(1000L),
+                eq(TimeUnit.MILLISECONDS));
+
+        runnableCaptor.getValue().run();
+
+        verify(consumer).accept(eventCaptor.capture());
+        assertEquals(2, eventCaptor.getValue().getCount());
+        assertSame(user1, eventCaptor.getValue().getClients().get(0));
+        assertSame(user2, eventCaptor.getValue().getClients().get(1));
+        assertTrue(eventCaptor.getValue().isNetsplit());
+        assertEquals(SPLIT, eventCaptor.getValue().getMessage());
+    }
+
+    @Test
+    public void testBatchesRepeatedQuitMessages() {
+        assertFalse(batcher.offer(LocalDateTime.now(), user1, "Excess Flood"));
+        assertTrue(batcher.offer(LocalDateTime.now(), user2, "Excess Flood"));
+
+        batcher.flush();
+
+        verify(consumer).accept(eventCaptor.capture());
+        assertEquals(1, eventCaptor.getValue().getCount());
+        assertFalse(eventCaptor.getValue().isNetsplit());
+    }
+
+    @Test
+    public void testDifferentMessageFlushesBatch() {
+        assertTrue(batcher.offer(LocalDateTime.now(), user1, SPLIT));
+        assertFalse(batcher.offer(LocalDateTime.now(), user2, "Goodbye!"));
+
+        verify(consumer).accept(eventCaptor.capture());
+        assertEquals(1, eventCaptor.getValue().getCount());
+        verify(future).cancel(false);
+    }
+
+    @Test
+    public void testDeliversWhileHoldingDeliveryLock() {
+        final List<Boolean> held = new ArrayList<>();
+        doAnswer(invocation -> held.add(Thread.holdsLock(deliveryLock)))
+                .when(consumer).accept(any(ChannelQuitBatchEvent.class));
+        assertTrue(batcher.offer(LocalDateTime.now(), user1, SPLIT));
+
+        batcher.flush();
+
+        assertEquals(Collections.singletonList(true), held);
+    }
+
+    @Test
+    public void testDoesNotBatchOnceExecutorIsShutDown() {
+        doThrow(new RejectedExecutionException()).when(executor)
+                .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        assertFalse(batcher.offer(LocalDateTime.now(), user1, SPLIT));
+        batcher.flush();
+        verify(consumer, never()).accept(any(ChannelQuitBatchEvent.class));
+    }
+
+    @Test
+    public void testFlushWithNothingPending() {
+        batcher.flush();
+        verify(consumer, never()).accept(any(ChannelQuitBatchEvent.class));
+    }
+
+    @Test
+    public void testReplayLargeNetsplit() {
+        final List<GroupChatUser> users = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            final GroupChatUser user = mock(GroupChatUser.class);
+            users.add(user);
+            assertTrue(batcher.offer(LocalDateTime.now(), user, SPLIT));
+        }
+
+        verify(executor, times(1)).schedule(runnableCaptor.capture(), anyLong(), any(TimeUnit.class));
+        runnableCaptor.getValue().run();
+
+        verify(consumer, times(1)).accept(eventCaptor.capture());
+        assertEquals(users, eventCaptor.getValue().getClients());
+    }
+
+    @Test
+    public void testNetsplitPattern() {
+        assertTrue(QuitBatcher.NETSPLIT_PATTERN.matcher(SPLIT).matches());
+        assertTrue(QuitBatcher.NETSPLIT_PATTERN.matcher("*.net *.split").matches());
+        assertFalse(QuitBatcher.NETSPLIT_PATTERN.matcher("Quit: leaving.now bye.bye").matches());
+        assertFalse(QuitBatcher.NETSPLIT_PATTERN.matcher("Ping timeout").matches());
+    }
+
+}
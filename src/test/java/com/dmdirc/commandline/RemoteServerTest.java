@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.commandline;
+
+import com.dmdirc.interfaces.Connection;
+import com.dmdirc.interfaces.ConnectionManager;
+import com.dmdirc.interfaces.GroupChatManager;
+import com.dmdirc.parser.common.ChannelJoinRequest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Provider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RemoteServerTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    @Mock private Provider<ConnectionManager> connectionManagerProvider;
+    @Mock private ConnectionManager connectionManager;
+    @Mock private Connection connection;
+    @Mock private GroupChatManager groupChatManager;
+    private Path directory;
+    private RemoteServer server;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath();
+        server = new RemoteServer(connectionManagerProvider);
+    }
+
+    @After
+    public void tearDown() {
+        server.unbind();
+    }
+
+    @Test
+    public void testNoInstanceWithoutLockFile() {
+        assertNull(RemoteServer.getServer(directory));
+    }
+
+    @Test
+    public void testStaleLockFileIsIgnored() throws IOException {
+        Files.write(directory.resolve(RemoteServer.LOCK_FILE),
+                "3634 token\n".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(RemoteServer.getServer(directory));
+    }
+
+    @Test
+    public void testCommandsArePassedToRunningInstance() throws Exception {
+        when(connectionManagerProvider.get()).thenReturn(connectionManager);
+        when(connectionManager.getConnections()).thenReturn(Collections.singletonList(connection));
+        when(connection.getNetwork()).thenReturn("Quakenet");
+        when(connection.getAddress()).thenReturn("irc.quakenet.org");
+        when(connection.getGroupChatManager()).thenReturn(groupChatManager);
+        final URI uri = new URI("irc://irc.example.com/");
+
+        server.bind(directory);
+        awaitServer().execute(Arrays.asList(RemoteCommand.connect(uri),
+                RemoteCommand.join("quakenet", "#DMDirc"),
+                RemoteCommand.raw("irc.quakenet.org", "PRIVMSG #DMDirc :hi")));
+
+        verify(connectionManager).connectToAddress(uri);
+        verify(groupChatManager).join(new ChannelJoinRequest("#DMDirc"));
+        verify(connection).sendLine("PRIVMSG #DMDirc :hi");
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongTokenIsRejected() throws IOException, InterruptedException {
+        server.bind(directory);
+        awaitServer();
+        final String[] contents = new String(Files.readAllBytes(
+                directory.resolve(RemoteServer.LOCK_FILE)), StandardCharsets.UTF_8).trim().split(" ");
+
+        new RemoteClient(Integer.parseInt(contents[0]), "wrong")
+                .execute(Collections.singletonList(RemoteCommand.join("quakenet", "#DMDirc")));
+    }
+
+    @Test
+    public void testLockFileIsOnlyReadableByOwner() throws IOException, InterruptedException {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        server.bind(directory);
+        awaitServer();
+
+        assertEquals("rw-------", PosixFilePermissions.toString(
+                Files.getPosixFilePermissions(directory.resolve(RemoteServer.LOCK_FILE))));
+    }
+
+    @Test(timeout = 4000)
+    public void testSlowClientDoesNotBlockOthers() throws Exception {
+        when(connectionManagerProvider.get()).thenReturn(connectionManager);
+        final URI uri = new URI("irc://irc.example.com/");
+        server.bind(directory);
+        final RemoteInterface remote = awaitServer();
+        final String[] contents = new String(Files.readAllBytes(
+                directory.resolve(RemoteServer.LOCK_FILE)), StandardCharsets.UTF_8).trim().split(" ");
+
+        try (Socket slow = new Socket(InetAddress.getLoopbackAddress(),
+                Integer.parseInt(contents[0]))) {
+            remote.execute(Collections.singletonList(RemoteCommand.connect(uri)));
+        }
+
+        verify(connectionManager).connectToAddress(uri);
+    }
+
+    /** Waits for the server to advertise itself, which happens in the background. */
+    private RemoteInterface awaitServer() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            final RemoteInterface remote = RemoteServer.getServer(directory);
+            if (remote != null) {
+                return remote;
+            }
+            Thread.sleep(10);
+        }
+        fail("Server did not start");
+        return null;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.commandparser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandHistoryTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    private Path file;
+    private CommandHistory history;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("commandhistory");
+        history = new CommandHistory(3, file);
+    }
+
+    @Test
+    public void testRepeatedCommandIsMovedToEnd() {
+        history.add("net/#chan", "one");
+        history.add("net/#chan", "two");
+        history.add("net/#chan", "one");
+
+        assertEquals(Arrays.asList("two", "one"), history.getEntries("net/#chan"));
+    }
+
+    @Test
+    public void testOldestCommandsAreDiscarded() {
+        for (int i = 0; i < 5; i++) {
+            history.add("net/#chan", "command " + i);
+        }
+
+        assertEquals(Arrays.asList("command 2", "command 3", "command 4"),
+                history.getEntries("net/#chan"));
+        assertEquals(0L, history.getLastUsed(null, "command 1"));
+    }
+
+    @Test
+    public void testSearchReturnsMostRecentFirst() {
+        history.add("net/#chan", "msg bob hi");
+        history.add("net/#other", "msg alice hi");
+        history.add("net/#chan", "me waves");
+        history.add("net/#other", "msg bob hi");
+
+        assertEquals(Arrays.asList("msg bob hi", "msg alice hi"), history.search(null, "msg"));
+        assertEquals(Collections.singletonList("msg bob hi"), history.search("net/#chan", "msg"));
+        assertEquals(Collections.emptyList(), history.search("net/#none", "msg"));
+    }
+
+    @Test
+    public void testLastUsedIgnoresCase() {
+        history.add("net/#chan", "Command this is a test");
+
+        assertTrue(history.getLastUsed(null, "command THIS is a test") > 0);
+        assertEquals(0L, history.getLastUsed(null, "command"));
+    }
+
+    @Test
+    public void testLastUsedMatchesPatterns() {
+        history.add("net/#chan", "join #dmdirc");
+
+        assertTrue(history.getLastUsed(null, "JOIN #.*") > 0);
+        assertTrue(history.getLastUsed("net/#chan", "join #.*") > 0);
+        assertEquals(0L, history.getLastUsed("net/#other", "join #.*"));
+        assertEquals(0L, history.getLastUsed(null, "join"));
+    }
+
+    @Test
+    public void testHistoryIsPersisted() {
+        history.add("net/#chan", "one");
+        history.add("global/global", "two\tthree\nfour\\");
+        history.add("net/#chan", "one");
+
+        final CommandHistory reloaded = new CommandHistory(3, file);
+        assertEquals(Collections.singletonList("one"), reloaded.getEntries("net/#chan"));
+        assertEquals(Collections.singletonList("two\tthree\nfour\\"),
+                reloaded.getEntries("global/global"));
+        assertEquals(history.getLastUsed(null, "one"), reloaded.getLastUsed(null, "one"));
+    }
+
+    @Test
+    public void testSensitiveCommandsAreNotPersisted() {
+        history.add("net/#chan", "msg NickServ identify hunter2");
+        history.add("net/#chan", "quote PASS hunter2");
+        history.add("net/#chan", "msg #chan hello");
+
+        assertEquals(Arrays.asList("msg NickServ identify hunter2", "quote PASS hunter2",
+                "msg #chan hello"), history.getEntries("net/#chan"));
+        assertEquals(Collections.singletonList("msg #chan hello"),
+                new CommandHistory(3, file).getEntries("net/#chan"));
+    }
+
+    @Test
+    public void testIsSensitive() {
+        assertTrue(CommandHistory.isSensitive("pass hunter2"));
+        assertTrue(CommandHistory.isSensitive("OPER admin hunter2"));
+        assertTrue(CommandHistory.isSensitive("msg nickserv@services.example.com identify x"));
+        assertTrue(CommandHistory.isSensitive("msg Q@CServe.quakenet.org auth user x"));
+        assertTrue(CommandHistory.isSensitive("raw PRIVMSG NickServ :identify x"));
+        assertFalse(CommandHistory.isSensitive("msg #chan identify"));
+        assertFalse(CommandHistory.isSensitive("query Q"));
+        assertFalse(CommandHistory.isSensitive("join #dmdirc"));
+    }
+
+    @Test
+    public void testHistoryIsWrittenOnExecutor() {
+        final List<Runnable> tasks = new ArrayList<>();
+        history = new CommandHistory(3, file, tasks::add);
+        history.add("net/#chan", "one");
+        history.add("net/#chan", "two");
+
+        assertEquals(1, tasks.size());
+        assertFalse(Files.exists(file));
+
+        tasks.get(0).run();
+        assertEquals(Arrays.asList("one", "two"), new CommandHistory(3, file).getEntries("net/#chan"));
+    }
+
+    @Test
+    public void testFileIsCompacted() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            history.add("net/#chan", "command " + i);
+        }
+
+        assertTrue(Files.readAllLines(file).size() < 100);
+        assertEquals(Arrays.asList("command 497", "command 498", "command 499"),
+                new CommandHistory(3, file).getEntries("net/#chan"));
+    }
+
+}
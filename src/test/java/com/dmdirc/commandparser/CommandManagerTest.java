@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.commandparser;
+
+import com.dmdirc.commandparser.commands.Command;
+import com.dmdirc.ui.input.TabCompletionSource;
+import com.dmdirc.ui.input.TabCompletionType;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommandManagerTest {
+
+    @Mock private Command command;
+    private CommandManager manager;
+    private CommandInfo channelInfo;
+    private CommandInfo serverInfo;
+
+    @Before
+    public void setUp() {
+        manager = new CommandManager();
+        manager.setCommandChar('/');
+        manager.setSilenceChar('.');
+        channelInfo = new BaseCommandInfo("topic", "help", CommandType.TYPE_CHANNEL);
+        serverInfo = new BaseCommandInfo("whois", "help", CommandType.TYPE_SERVER);
+    }
+
+    @Test
+    public void testGetCommandByTypeAndName() {
+        manager.registerCommand(command, channelInfo);
+
+        assertSame(channelInfo, manager.getCommand(CommandType.TYPE_CHANNEL, "topic").getKey());
+        assertSame(command, manager.getCommand("topic").getValue());
+        assertNull(manager.getCommand(CommandType.TYPE_SERVER, "topic"));
+        assertNull(manager.getCommand("whois"));
+    }
+
+    @Test
+    public void testUnregisterRemovesCommand() {
+        manager.registerCommand(command, channelInfo);
+        manager.unregisterCommand(channelInfo);
+
+        assertNull(manager.getCommand(CommandType.TYPE_CHANNEL, "topic"));
+        assertFalse(manager.isChannelCommand("topic"));
+    }
+
+    @Test
+    public void testIsChannelCommand() {
+        manager.registerCommand(command, channelInfo);
+        manager.registerCommand(command, serverInfo);
+
+        assertTrue(manager.isChannelCommand("topic"));
+        assertFalse(manager.isChannelCommand("whois"));
+    }
+
+    @Test
+    public void testCompletionSourceReflectsRegistrations() {
+        final TabCompletionSource source = manager.getCompletionSource(
+                CommandType.TYPE_CHANNEL, CommandType.TYPE_SERVER);
+        assertTrue(Lists.newArrayList(source.getEntries(TabCompletionType.COMMAND)).isEmpty());
+
+        manager.registerCommand(command, channelInfo);
+        manager.registerCommand(command, serverInfo);
+        assertEquals(Lists.newArrayList("/topic", "/.topic", "/whois", "/.whois"),
+                Lists.newArrayList(source.getEntries(TabCompletionType.COMMAND)));
+        assertTrue(Lists.newArrayList(source.getEntries(TabCompletionType.CHANNEL)).isEmpty());
+
+        manager.unregisterCommand(channelInfo);
+        manager.setCommandChar('!');
+        assertEquals(Lists.newArrayList("!whois", "!.whois"),
+                Lists.newArrayList(source.getEntries(TabCompletionType.COMMAND)));
+    }
+
+}
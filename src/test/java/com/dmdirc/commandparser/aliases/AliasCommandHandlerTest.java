@@ -32,6 +32,8 @@ import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.InputModel;
 import com.dmdirc.interfaces.WindowModel;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -43,6 +45,10 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -72,7 +78,7 @@ public class AliasCommandHandlerTest {
         final AliasCommandHandler handler = new AliasCommandHandler(commandController, alias);
         final CommandArguments arguments = new CommandArguments(commandController, "#test");
         handler.execute(container, arguments, context);
-        verify(commandParser).parseCommand(container, "#test2");
+        verify(commandParser).parseCommands(container, Collections.singletonList("#test2"));
     }
 
     @Test
@@ -82,7 +88,8 @@ public class AliasCommandHandlerTest {
         final CommandArguments arguments
                 = new CommandArguments(commandController, "#test agadoo do");
         handler.execute(container, arguments, context);
-        verify(commandParser).parseCommand(container, "#test2 agadoo do do agadoo do do");
+        verify(commandParser).parseCommands(container,
+                Collections.singletonList("#test2 agadoo do do agadoo do do"));
     }
 
     @Test
@@ -113,7 +120,34 @@ public class AliasCommandHandlerTest {
         final AliasCommandHandler handler = new AliasCommandHandler(commandController, alias);
         final CommandArguments arguments = new CommandArguments(commandController, "#/test agadoo");
         handler.execute(container, arguments, context);
-        verify(commandParser).parseCommand(container, "#/blah");
+        verify(commandParser).parseCommands(container, Collections.singletonList("#/blah"));
+    }
+
+    @Test
+    public void testMultipleLinesDispatchedTogether() {
+        final Alias alias = new Alias(CommandType.TYPE_CHAT, "test", 0, "one $1\r\ntwo $2-");
+        final AliasCommandHandler handler = new AliasCommandHandler(commandController, alias);
+        final CommandArguments arguments
+                = new CommandArguments(commandController, "#test agadoo do do");
+        handler.execute(container, arguments, context);
+        verify(commandParser).parseCommands(container, Arrays.asList("#one agadoo", "#two do do"));
+    }
+
+    @Test
+    public void testRecursionIsCapped() {
+        final Alias alias = new Alias(CommandType.TYPE_CHAT, "test", 0, "test");
+        final AliasCommandHandler handler = new AliasCommandHandler(commandController, alias);
+        final CommandArguments arguments = new CommandArguments(commandController, "#test");
+        doAnswer(invocation -> {
+            handler.execute(container, arguments, context);
+            return null;
+        }).when(commandParser).parseCommands(any(WindowModel.class), anyCollection());
+        handler.execute(container, arguments, context);
+        verify(commandParser, times(AliasCommandHandler.MAX_DEPTH))
+                .parseCommands(any(WindowModel.class), anyCollection());
+        verify(eventbus).publishAsync(errorEventCaptor.capture());
+        assertEquals("test: aliases nested too deeply (possible recursion).",
+                errorEventCaptor.getValue().getMessage());
     }
 
 }
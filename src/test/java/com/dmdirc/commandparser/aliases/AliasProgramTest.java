@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.commandparser.aliases;
+
+import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.interfaces.CommandController;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AliasProgramTest {
+
+    @Mock private CommandController commandController;
+
+    @Before
+    public void setup() {
+        when(commandController.getCommandChar()).thenReturn('/');
+        when(commandController.getSilenceChar()).thenReturn('.');
+    }
+
+    @Test
+    public void testLiteralOnly() {
+        final AliasProgram program = AliasProgram.compile("join #dmdirc");
+        assertEquals(Collections.singletonList("/join #dmdirc"),
+                program.expand(new CommandArguments(commandController, "/test"), "/"));
+    }
+
+    @Test
+    public void testSplitsAndTrimsLines() {
+        final AliasProgram program = AliasProgram.compile(" one\r\ntwo \r\nthree");
+        assertEquals(3, program.getLineCount());
+        assertEquals(Arrays.asList("one", "two", "three"),
+                program.expand(new CommandArguments(commandController, "/test"), ""));
+    }
+
+    @Test
+    public void testMultiDigitReferences() {
+        final AliasProgram program = AliasProgram.compile("$10 $1");
+        assertEquals(Collections.singletonList("j a"), program.expand(
+                new CommandArguments(commandController, "/test a b c d e f g h i j"), ""));
+    }
+
+    @Test
+    public void testMissingReferencesLeftVerbatim() {
+        final AliasProgram program = AliasProgram.compile("$1 $2 $3- $0 $");
+        assertEquals(Collections.singletonList("a $2 $3- $0 $"),
+                program.expand(new CommandArguments(commandController, "/test a"), ""));
+    }
+
+    @Test
+    public void testReplacementsAreNotRescanned() {
+        final AliasProgram program = AliasProgram.compile("$1 $2");
+        assertEquals(Collections.singletonList("$2 b"),
+                program.expand(new CommandArguments(commandController, "/test $2 b"), ""));
+    }
+
+    @Test
+    public void testRemainderPreservesWhitespace() {
+        final AliasProgram program = AliasProgram.compile("say $2-");
+        assertEquals(Collections.singletonList("say b   c"),
+                program.expand(new CommandArguments(commandController, "/test a b   c"), ""));
+    }
+
+}
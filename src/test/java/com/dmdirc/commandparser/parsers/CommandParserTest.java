@@ -23,6 +23,7 @@
 package com.dmdirc.commandparser.parsers;
 
 import com.dmdirc.Channel;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.harness.TestCommandParser;
@@ -32,7 +33,6 @@ import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.GroupChatManager;
 import com.dmdirc.interfaces.InputModel;
 import com.dmdirc.interfaces.WindowModel;
-import com.dmdirc.config.provider.AggregateConfigProvider;
 
 import java.util.Optional;
 
@@ -52,7 +52,6 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class CommandParserTest {
 
-    @Mock private AggregateConfigProvider configProvider;
     @Mock private CommandController commandController;
     @Mock private CommandInfo commandInfo;
     @Mock private CommandInfo channelCommandInfo;
@@ -64,6 +63,7 @@ public class CommandParserTest {
     @Mock private Connection connection;
     @Mock private GroupChatManager groupChatManager;
     @Mock private EventBus eventBus;
+    private final CommandHistory history = new CommandHistory(10, null);
     private TestCommandParser commandParser;
     private TestCommandParser channelCommandParser;
 
@@ -76,18 +76,16 @@ public class CommandParserTest {
         when(commandInfo.getName()).thenReturn("command");
         when(channelCommandInfo.getName()).thenReturn("channel");
 
-        when(configProvider.getOptionInt("general", "commandhistory")).thenReturn(10);
-
         when(container.getConnection()).thenReturn(Optional.of(connection));
         when(connection.getGroupChatManager()).thenReturn(groupChatManager);
         when(groupChatManager.isValidChannelName("#channel1")).thenReturn(true);
         when(groupChatManager.getChannel("#channel1")).thenReturn(Optional.of(channel));
 
-        commandParser = new TestCommandParser(configProvider, commandController, eventBus);
+        commandParser = new TestCommandParser(history, commandController, eventBus);
         commandParser.registerCommand(command, commandInfo);
         commandParser.registerCommand(channelCommand, channelCommandInfo);
 
-        channelCommandParser = new TestCommandParser(configProvider, commandController, eventBus);
+        channelCommandParser = new TestCommandParser(history, commandController, eventBus);
         channelCommandParser.registerCommand(channelCommand, channelCommandInfo);
 
         when(channel.getWindowModel()).thenReturn(channel);
@@ -194,6 +192,13 @@ public class CommandParserTest {
         assertEquals(0L, commandParser.getCommandTime("command"));
     }
 
+    @Test
+    public void testGetCommandTimeIgnoresOtherWindows() {
+        history.add("net/#other", "command this is a test");
+
+        assertEquals(0L, commandParser.getCommandTime("command this is a test"));
+    }
+
     @Test
     public void testParseChannelCommandWithArguments() {
         when(container.getConnection()).thenReturn(Optional.of(connection));
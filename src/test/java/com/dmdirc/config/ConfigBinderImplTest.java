@@ -24,11 +24,19 @@ package com.dmdirc.config;
 
 import com.dmdirc.config.binding.ConfigBinder;
 import com.dmdirc.config.binding.ConfigBinding;
+import com.dmdirc.config.binding.Invocation;
 import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -36,6 +44,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -99,4 +108,63 @@ public class ConfigBinderImplTest {
         assertEquals("test456", test.bar);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testReappliesPrimitiveSettingWhenChanged() {
+        class IntTest {
+            @ConfigBinding(domain = "test", key="foo")
+            private int field;
+        }
+
+        final IntTest test = new IntTest();
+        when(configProvider.getOptionInt("test", "foo")).thenReturn(12, 34);
+        binder.bind(test, IntTest.class);
+        assertEquals(12, test.field);
+
+        final ArgumentCaptor<ConfigChangeListener> listener =
+                ArgumentCaptor.forClass(ConfigChangeListener.class);
+        verify(configProvider).addChangeListener(eq("test"), eq("foo"), listener.capture());
+        listener.getValue().configChanged("test", "foo");
+        assertEquals(34, test.field);
+    }
+
+    @Test
+    public void testSharesInvocationBetweenInstances() {
+        class InvocationTest {
+            @ConfigBinding(domain = "test", key="foo", invocation = RecordingInvocation.class)
+            public String field;
+        }
+
+        final InvocationTest first = new InvocationTest();
+        final InvocationTest second = new InvocationTest();
+        when(configProvider.getOptionString(eq("test"), eq("foo"), anyBoolean(), any()))
+                .thenReturn("test123");
+        binder.bind(first, InvocationTest.class);
+        binder.bind(second, InvocationTest.class);
+
+        assertEquals("test123", first.field);
+        assertEquals("test123", second.field);
+        assertEquals(1, RecordingInvocation.INSTANCES.size());
+    }
+
+    public static class RecordingInvocation extends Invocation {
+
+        private static final Map<RecordingInvocation, Boolean> INSTANCES = new IdentityHashMap<>();
+
+        @Override
+        public void invoke(final Field field, final Object instance, final Object value) {
+            INSTANCES.put(this, true);
+            try {
+                field.set(instance, value);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public void invoke(final Method method, final Object instance, final Object value) {
+            INSTANCES.put(this, true);
+        }
+
+    }
+
+}
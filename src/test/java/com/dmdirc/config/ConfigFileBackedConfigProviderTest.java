@@ -23,6 +23,7 @@
 package com.dmdirc.config;
 
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.config.provider.ConfigProvider;
 import com.dmdirc.tests.JimFsRule;
 import com.dmdirc.util.io.InvalidConfigFileException;
@@ -32,13 +33,18 @@ import com.dmdirc.util.validators.PermissiveValidator;
 import com.google.common.collect.Lists;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -46,8 +52,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -64,7 +72,7 @@ public class ConfigFileBackedConfigProviderTest {
     @Rule public final JimFsRule jimFsRule = new JimFsRule();
 
     @Mock private IdentityManager identityManager;
-    @Mock private ConfigChangeListener changeListener;
+    @Mock(answer = Answers.CALLS_REAL_METHODS) private ConfigChangeListener changeListener;
 
     @Before
     public void setUp() throws Exception {
@@ -203,6 +211,35 @@ public class ConfigFileBackedConfigProviderTest {
         assertEquals("DMDircircd!", loaded.getTarget().getData());
     }
 
+    @Test
+    public void testSaveDoesNotPersistTemporarySettings() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.setOption("temp", "test123", 47);
+        provider.setOption("newdomain", "test123", 47);
+        provider.save();
+
+        assertTrue(provider.hasOptionInt("temp", "test123"));
+        assertFalse(Files.exists(jimFsRule.getPath("simple-ircd.tmp")));
+
+        final ConfigFileBackedConfigProvider loaded = getProvider("simple-ircd");
+        assertFalse(loaded.hasOptionInt("temp", "test123"));
+        assertTrue(loaded.hasOptionInt("newdomain", "test123"));
+    }
+
+    @Test
+    public void testSchedulesSaveWhenChanged() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.setOption("newdomain", "test123", 47);
+        verify(identityManager).scheduleSave(provider);
+    }
+
+    @Test
+    public void testDoesNotScheduleSaveForTemporarySettings() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.setOption("temp", "test123", 47);
+        verify(identityManager, never()).scheduleSave(provider);
+    }
+
     @Test
     public void testFiresSettingChanged() throws Exception {
         final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
@@ -246,6 +283,32 @@ public class ConfigFileBackedConfigProviderTest {
         verify(changeListener, never()).configChanged(anyString(), anyString());
     }
 
+    @Test
+    public void testBatchFiresSingleChangeSet() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.addListener(changeListener);
+        provider.batch(() -> {
+            provider.setOption("new", "option", "boo");
+            provider.setOption("new", "other", "boo");
+            provider.batch(() -> provider.setOption("new", "option", "meep"));
+            verify(changeListener, never()).configChanged(any(ConfigChangeSet.class));
+        });
+
+        final ArgumentCaptor<ConfigChangeSet> changes = ArgumentCaptor.forClass(ConfigChangeSet.class);
+        verify(changeListener).configChanged(changes.capture());
+        assertEquals(2, changes.getValue().size());
+        assertTrue(changes.getValue().contains("new", "option"));
+        assertTrue(changes.getValue().contains("new", "other"));
+    }
+
+    @Test
+    public void testReloadFiresSingleChangeSet() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.addListener(changeListener);
+        copyFileAndReload(provider);
+        verify(changeListener, times(1)).configChanged(any(ConfigChangeSet.class));
+    }
+
     @Test
     public void testReloadLoadsExtraSettings() throws Exception {
         final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
@@ -296,6 +359,46 @@ public class ConfigFileBackedConfigProviderTest {
         verify(changeListener, never()).configChanged("meep", "mop");
     }
 
+    @Test
+    public void testReloadIgnoresFileStamp() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.addListener(changeListener);
+        editFileKeepingStamp();
+        provider.reload();
+        verify(changeListener).configChanged("meep", "moop");
+    }
+
+    @Test
+    public void testReloadIfChangedSkipsFileWithSameStamp() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.addListener(changeListener);
+        editFileKeepingStamp();
+        provider.reloadIfChanged();
+        verify(changeListener, never()).configChanged(anyString(), anyString());
+        assertEquals("2", provider.getOption("meep", "moop"));
+    }
+
+    @Test
+    public void testReloadIfChangedReloadsModifiedFile() throws Exception {
+        final ConfigFileBackedConfigProvider provider = getProvider("simple-ircd");
+        provider.addListener(changeListener);
+        Files.copy(jimFsRule.getPath("simple-ircd-extra"), jimFsRule.getPath("simple-ircd"),
+                StandardCopyOption.REPLACE_EXISTING);
+        provider.reloadIfChanged();
+        verify(changeListener).configChanged("more", "settings");
+    }
+
+    /**
+     * Changes a setting in the simple-ircd file without changing its size or modification time.
+     */
+    private void editFileKeepingStamp() throws IOException {
+        final Path path = jimFsRule.getPath("simple-ircd");
+        final FileTime modified = Files.getLastModifiedTime(path);
+        final String contents = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Files.write(path, contents.replace("moop=2", "moop=3").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, modified);
+    }
+
     private void copyFileAndReload(final ConfigProvider provider)
             throws IOException, InvalidConfigFileException {
         Files.copy(jimFsRule.getPath("simple-ircd-extra"), jimFsRule.getPath("simple-ircd"),
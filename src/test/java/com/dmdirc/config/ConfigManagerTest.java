@@ -23,6 +23,7 @@
 package com.dmdirc.config;
 
 import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.config.provider.ConfigChangeSet;
 import com.dmdirc.util.validators.PermissiveValidator;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,6 +33,8 @@ import org.mockito.runners.MockitoJUnitRunner;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -59,7 +62,7 @@ public class ConfigManagerTest {
 
     @Test
     public void testDomainListener() {
-        final ConfigChangeListener listener = mock(ConfigChangeListener.class);
+        final ConfigChangeListener listener = mock(ConfigChangeListener.class, CALLS_REAL_METHODS);
         final ConfigManager cm = new ConfigManager(identityManager, "", "", "", "");
         cm.addChangeListener("unit-test", listener);
 
@@ -72,7 +75,7 @@ public class ConfigManagerTest {
 
     @Test
     public void testDomainKeyListener() {
-        final ConfigChangeListener listener = mock(ConfigChangeListener.class);
+        final ConfigChangeListener listener = mock(ConfigChangeListener.class, CALLS_REAL_METHODS);
         final ConfigManager cm = new ConfigManager(identityManager, "", "", "", "");
         cm.addChangeListener("unit-test", "foo", listener);
 
@@ -86,4 +89,23 @@ public class ConfigManagerTest {
         verify(listener).configChanged("unit-test", "foo");
     }
 
+    @Test
+    public void testListenerReceivesEachChangeSetOnce() {
+        final ConfigChangeListener listener = mock(ConfigChangeListener.class, CALLS_REAL_METHODS);
+        final ConfigManager cm = new ConfigManager(identityManager, "", "", "", "");
+        cm.addChangeListener("unit-test", listener);
+        cm.addChangeListener("unit-test", "foo", listener);
+
+        cm.configChanged(ConfigChangeSet.builder()
+                .add("unit-test", "foo")
+                .add("unit-test", "bar")
+                .add("other", "foo")
+                .build());
+
+        verify(listener).configChanged(any(ConfigChangeSet.class));
+        verify(listener).configChanged("unit-test", "foo");
+        verify(listener).configChanged("unit-test", "bar");
+        verify(listener, never()).configChanged("other", "foo");
+    }
+
 }
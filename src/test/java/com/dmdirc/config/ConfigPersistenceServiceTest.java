@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigPersistenceServiceTest {
+
+    @Mock private ScheduledExecutorService executor;
+    @Mock private ConfigFileBackedConfigProvider provider1;
+    @Mock private ConfigFileBackedConfigProvider provider2;
+    @Captor private ArgumentCaptor<Runnable> runnableCaptor;
+    private ConfigPersistenceService service;
+
+    @Before
+    public void setUp() {
+        service = new ConfigPersistenceService(executor, 5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSchedulesSingleFlushForMultipleChanges() {
+        service.schedule(provider1);
+        service.schedule(provider1);
+        service.schedule(provider2);
+        verify(executor, times(1)).schedule(runnableCaptor.capture(), eq(5L),
+                eq(TimeUnit.SECONDS));
+
+        runnableCaptor.getValue().run();
+        verify(provider1, times(1)).save();
+        verify(provider2, times(1)).save();
+    }
+
+    @Test
+    public void testSchedulesAgainAfterFlush() {
+        service.schedule(provider1);
+        service.flush();
+        service.schedule(provider1);
+        verify(executor, times(2)).schedule(runnableCaptor.capture(), eq(5L),
+                eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFlushOnlySavesPendingProviders() {
+        service.schedule(provider1);
+        service.flush();
+        service.flush();
+        verify(provider1, times(1)).save();
+        verify(provider2, never()).save();
+    }
+
+    @Test
+    public void testWithoutExecutorOnlySavesOnFlush() {
+        final ConfigPersistenceService manual = new ConfigPersistenceService();
+        manual.schedule(provider1);
+        verify(provider1, never()).save();
+        manual.flush();
+        verify(provider1).save();
+    }
+
+}
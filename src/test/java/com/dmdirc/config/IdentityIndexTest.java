@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dmdirc.config;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdentityIndexTest {
+
+    @Mock private ConfigFileBackedConfigProvider global;
+    @Mock private ConfigFileBackedConfigProvider channel;
+    @Mock private ConfigFileBackedConfigProvider otherChannel;
+    @Mock private ConfigFileBackedConfigProvider regexNetwork;
+    @Mock private ConfigFileBackedConfigProvider custom;
+    private IdentityIndex index;
+
+    @Before
+    public void setUp() {
+        final ConfigTarget globalTarget = new ConfigTarget();
+        globalTarget.setGlobal();
+        when(global.getTarget()).thenReturn(globalTarget);
+
+        final ConfigTarget channelTarget = new ConfigTarget();
+        channelTarget.setChannel("#DMDirc@Quakenet");
+        when(channel.getTarget()).thenReturn(channelTarget);
+
+        final ConfigTarget otherChannelTarget = new ConfigTarget();
+        otherChannelTarget.setChannel("#other@quakenet");
+        when(otherChannel.getTarget()).thenReturn(otherChannelTarget);
+
+        final ConfigTarget regexTarget = new ConfigTarget();
+        regexTarget.setNetwork("re:quake.*");
+        when(regexNetwork.getTarget()).thenReturn(regexTarget);
+
+        final ConfigTarget customTarget = new ConfigTarget();
+        customTarget.setCustom("profile");
+        when(custom.getTarget()).thenReturn(customTarget);
+
+        index = new IdentityIndex();
+        index.add(global);
+        index.add(channel);
+        index.add(otherChannel);
+        index.add(regexNetwork);
+        index.add(custom);
+    }
+
+    @Test
+    public void testFindIgnoresCase() {
+        assertSame(channel, index.find(ConfigTarget.TYPE.CHANNEL, "#dmdirc@quakenet").get());
+    }
+
+    @Test
+    public void testFindIgnoresRegexTargets() {
+        assertFalse(index.find(ConfigTarget.TYPE.NETWORK, "quakenet").isPresent());
+    }
+
+    @Test
+    public void testGetApplicable() {
+        final ConfigManager manager = new ConfigManager(null, "irc", "", "quakenet", "",
+                "#dmdirc");
+        final List<ConfigFileBackedConfigProvider> result =
+                index.getApplicable(manager::getTargetData);
+        assertEquals(3, result.size());
+        assertTrue(result.contains(global));
+        assertTrue(result.contains(channel));
+        assertTrue(result.contains(regexNetwork));
+    }
+
+    @Test
+    public void testGetApplicableMatchesIdentityApplies() {
+        final ConfigManager manager = new ConfigManager(null, "irc", "", "quakenet", "",
+                "#other");
+        for (ConfigFileBackedConfigProvider identity
+                : index.getApplicable(manager::getTargetData)) {
+            assertTrue(manager.identityApplies(identity));
+        }
+        assertFalse(manager.identityApplies(custom));
+        assertFalse(manager.identityApplies(channel));
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove(channel);
+        index.remove(regexNetwork);
+        assertFalse(index.find(ConfigTarget.TYPE.CHANNEL, "#dmdirc@quakenet").isPresent());
+
+        final ConfigManager manager = new ConfigManager(null, "irc", "", "quakenet", "",
+                "#dmdirc");
+        final List<ConfigFileBackedConfigProvider> result =
+                index.getApplicable(manager::getTargetData);
+        assertEquals(1, result.size());
+        assertTrue(result.contains(global));
+    }
+
+}
@@ -86,4 +86,33 @@ public class IdentityManagerTest {
         assertEquals("New Profile", profiles.stream().findAny().get().getName());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLoadsNewIdentityWhenFileChanged() throws Exception {
+        final IdentityManager identityManager = new IdentityManager(baseDirectory, identitiesDirectory);
+        identityManager.initialise();
+        assertEquals(0, identityManager.getProvidersByType("profile").size());
+
+        final Path file = identitiesDirectory.resolve("profile");
+        Files.copy(getClass().getResourceAsStream("profile-new"), file);
+        identityManager.handleFileChanged(file);
+
+        assertEquals(1, identityManager.getProvidersByType("profile").size());
+    }
+
+    @Test
+    public void testRemovesIdentityWhenFileDeleted() throws Exception {
+        Files.createDirectories(identitiesDirectory);
+        final Path file = identitiesDirectory.resolve("profile");
+        Files.copy(getClass().getResourceAsStream("profile-new"), file);
+
+        final IdentityManager identityManager = new IdentityManager(baseDirectory, identitiesDirectory);
+        identityManager.initialise();
+        assertEquals(1, identityManager.getProvidersByType("profile").size());
+
+        Files.delete(file);
+        identityManager.handleFileChanged(file);
+
+        assertEquals(0, identityManager.getProvidersByType("profile").size());
+    }
+
+}
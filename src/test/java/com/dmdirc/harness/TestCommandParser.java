@@ -23,6 +23,7 @@
 package com.dmdirc.harness;
 
 import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandInfo;
 import com.dmdirc.commandparser.commands.Command;
 import com.dmdirc.commandparser.commands.context.CommandContext;
@@ -30,7 +31,6 @@ import com.dmdirc.commandparser.parsers.BaseCommandParser;
 import com.dmdirc.interfaces.CommandController;
 import com.dmdirc.events.eventbus.EventBus;
 import com.dmdirc.interfaces.WindowModel;
-import com.dmdirc.config.provider.AggregateConfigProvider;
 
 import javax.annotation.Nonnull;
 
@@ -48,9 +48,9 @@ public class TestCommandParser extends BaseCommandParser {
 
     public String invalidCommand;
 
-    public TestCommandParser(final AggregateConfigProvider configManager,
+    public TestCommandParser(final CommandHistory history,
             final CommandController commandManager, final EventBus eventBus) {
-        super(configManager, commandManager, eventBus);
+        super(history, commandManager, eventBus);
     }
 
     @Override
@@ -24,6 +24,7 @@ package com.dmdirc.harness;
 
 import com.dmdirc.DefaultInputModel;
 import com.dmdirc.FrameContainer;
+import com.dmdirc.commandparser.CommandHistory;
 import com.dmdirc.commandparser.CommandManager;
 import com.dmdirc.commandparser.parsers.GlobalCommandParser;
 import com.dmdirc.interfaces.Connection;
@@ -48,7 +49,8 @@ public class TestWritableFrameContainer extends FrameContainer {
         setInputModel(
                 new DefaultInputModel(
                         line -> {},
-                        new GlobalCommandParser(cm, commandManager, eventBus),
+                        new GlobalCommandParser(new CommandHistory(10, null), commandManager,
+                                eventBus),
                         new TabCompleterImpl(cm),
                         () -> lineLength));
     }
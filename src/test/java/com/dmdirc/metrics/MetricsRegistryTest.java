@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.metrics;
+
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+    }
+
+    @Test
+    public void testCountersAreShared() {
+        final Counter counter = registry.getCounter("test.counter");
+        counter.increment();
+        counter.add(4);
+
+        assertSame(counter, registry.getCounter("test.counter"));
+        assertEquals(5, registry.getSnapshot().get("test.counter").longValue());
+        assertTrue(registry.getSnapshot().containsKey("test.counter.rate"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeClash() {
+        registry.getCounter("test.metric");
+        registry.getHistogram("test.metric");
+    }
+
+    @Test
+    public void testGaugeIsReadOnSnapshot() {
+        final long[] value = {1};
+        registry.registerGauge("test.gauge", () -> value[0]);
+        assertEquals(1, registry.getSnapshot().get("test.gauge").longValue());
+
+        value[0] = 42;
+        assertEquals(42, registry.getSnapshot().get("test.gauge").longValue());
+    }
+
+    @Test
+    public void testRemoveAllRemovesChildren() {
+        registry.getCounter("connection.1.lines.in");
+        registry.getCounter("connection.1");
+        registry.getCounter("connection.10.lines.in");
+
+        registry.removeAll("connection.1");
+
+        final Map<String, Number> snapshot = registry.getSnapshot();
+        assertFalse(snapshot.containsKey("connection.1.lines.in"));
+        assertFalse(snapshot.containsKey("connection.1"));
+        assertTrue(snapshot.containsKey("connection.10.lines.in"));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        final Histogram histogram = registry.getHistogram("test.histogram");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(63, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+
+        final Map<String, Number> snapshot = registry.getSnapshot();
+        assertEquals(100, snapshot.get("test.histogram.count").longValue());
+        assertEquals(50.5, snapshot.get("test.histogram.mean").doubleValue(), 0.001);
+        assertEquals(100, snapshot.get("test.histogram.max").longValue());
+    }
+
+    @Test
+    public void testHistogramHandlesZeroAndNegative() {
+        final Histogram histogram = registry.getHistogram("test.histogram");
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        histogram.record(-5);
+        histogram.record(0);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void testPublishExposesAttributes() throws Exception {
+        final MBeanServer server = MBeanServerFactory.newMBeanServer();
+        registry.getCounter("test.counter").add(3);
+        registry.publish(server);
+
+        assertEquals(3L, server.getAttribute(new ObjectName(MetricsRegistry.OBJECT_NAME),
+                "test.counter"));
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.plugins;
+
+import com.dmdirc.commandparser.BaseCommandInfo;
+import com.dmdirc.commandparser.CommandArguments;
+import com.dmdirc.commandparser.CommandInfo;
+import com.dmdirc.commandparser.CommandManager;
+import com.dmdirc.commandparser.CommandType;
+import com.dmdirc.commandparser.commands.Command;
+import com.dmdirc.commandparser.commands.context.CommandContext;
+import com.dmdirc.events.ClientOpenedEvent;
+import com.dmdirc.events.FeedbackNagEvent;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.WindowModel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PluginActivatorTest {
+
+    @Mock private EventBus eventBus;
+    @Mock private PluginInfo plugin;
+    @Mock private PluginMetaData metaData;
+    @Mock private Command realCommand;
+    @Mock private WindowModel origin;
+    @Mock private CommandContext context;
+    private CommandManager commandManager;
+    private PluginActivator activator;
+
+    @Before
+    public void setUp() {
+        when(plugin.getMetaData()).thenReturn(metaData);
+        commandManager = new CommandManager();
+        activator = new PluginActivator(commandManager, eventBus);
+    }
+
+    @Test
+    public void testPluginWithoutTriggersIsNotDeferred() {
+        when(metaData.getActivationTriggers()).thenReturn(Collections.emptyList());
+
+        assertFalse(activator.defer(plugin));
+        verify(eventBus, never()).subscribe(activator);
+    }
+
+    @Test
+    public void testCommandTriggerRegistersStub() {
+        when(metaData.getActivationTriggers()).thenReturn(
+                Collections.singletonList("command foo server"));
+
+        assertTrue(activator.defer(plugin));
+        assertNotNull(commandManager.getCommand(CommandType.TYPE_SERVER, "foo"));
+        assertNull(commandManager.getCommand(CommandType.TYPE_GLOBAL, "foo"));
+        verify(plugin, never()).loadPlugin();
+    }
+
+    @Test
+    public void testStubLoadsPluginAndRunsRealCommand() {
+        when(metaData.getActivationTriggers()).thenReturn(Collections.singletonList("command foo"));
+        final CommandInfo realInfo = new BaseCommandInfo("foo", "help", CommandType.TYPE_GLOBAL);
+        doAnswer(invocation -> {
+            commandManager.registerCommand(realCommand, realInfo);
+            when(plugin.isLoaded()).thenReturn(true);
+            return null;
+        }).when(plugin).loadPlugin();
+        activator.defer(plugin);
+
+        final CommandArguments args = new CommandArguments(commandManager, "/foo bar");
+        commandManager.getCommand(CommandType.TYPE_GLOBAL, "foo").getValue()
+                .execute(origin, args, context);
+
+        verify(plugin).loadPlugin();
+        verify(realCommand).execute(origin, args, context);
+        assertSame(realCommand, commandManager.getCommand(CommandType.TYPE_GLOBAL, "foo").getValue());
+    }
+
+    @Test
+    public void testEventTriggerLoadsPlugin() {
+        when(metaData.getActivationTriggers()).thenReturn(Arrays.asList(
+                "event " + ClientOpenedEvent.class.getName(), "command foo"));
+        activator.defer(plugin);
+        verify(eventBus).subscribe(activator);
+
+        activator.handleEvent(new FeedbackNagEvent());
+        verify(plugin, never()).loadPlugin();
+
+        activator.handleEvent(new ClientOpenedEvent());
+        verify(plugin).loadPlugin();
+        verify(eventBus).unsubscribe(activator);
+        assertNull(commandManager.getCommand(CommandType.TYPE_GLOBAL, "foo"));
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentActivationLoadsPluginOnce() throws InterruptedException {
+        when(metaData.getActivationTriggers()).thenReturn(Collections.singletonList("command foo"));
+        final AtomicBoolean loaded = new AtomicBoolean();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        when(plugin.isLoaded()).thenAnswer(invocation -> loaded.get());
+        doAnswer(invocation -> {
+            loading.countDown();
+            finish.await();
+            loaded.set(true);
+            return null;
+        }).when(plugin).loadPlugin();
+        activator.defer(plugin);
+
+        final Thread first = new Thread(() -> activator.activate(plugin));
+        first.start();
+        loading.await();
+        final Thread second = new Thread(() -> activator.activate(plugin));
+        second.start();
+        while (second.getState() != Thread.State.BLOCKED) {
+            Thread.yield();
+        }
+        finish.countDown();
+        first.join();
+        second.join();
+
+        verify(plugin).loadPlugin();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.plugins;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.CommandController;
+import com.dmdirc.interfaces.config.IdentityController;
+import com.dmdirc.updater.manager.UpdateManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import dagger.ObjectGraph;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PluginManagerTest {
+
+    @Mock private EventBus eventBus;
+    @Mock private ServiceManager serviceManager;
+    @Mock private CommandController commandController;
+    @Mock private IdentityController identityController;
+    @Mock private AggregateConfigProvider globalConfig;
+    @Mock private UpdateManager updateManager;
+    @Mock private ObjectGraph objectGraph;
+    @Mock private PluginFileHandler fileHandler;
+    @Mock private PluginInfo uiPlugin;
+    @Mock private PluginMetaData uiMetaData;
+    @Mock private PluginInfo otherPlugin;
+    @Mock private PluginMetaData otherMetaData;
+    @Mock private PluginInfo parentPlugin;
+    @Mock private PluginMetaData parentMetaData;
+    private PluginManager pluginManager;
+
+    @Before
+    public void setUp() {
+        when(identityController.getGlobalConfiguration()).thenReturn(globalConfig);
+        when(globalConfig.getOptionList("plugins", "autoload"))
+                .thenReturn(Arrays.asList("ui.jar", "other.jar"));
+        pluginManager = spy(new PluginManager(eventBus, serviceManager, commandController,
+                identityController, updateManager, objectGraph, fileHandler, "plugins"));
+        doReturn(uiPlugin).when(pluginManager).getPluginInfo("ui.jar");
+        doReturn(otherPlugin).when(pluginManager).getPluginInfo("other.jar");
+    }
+
+    @Test
+    public void testAutoLoadLoadsAllPlugins() {
+        pluginManager.doAutoLoad(false);
+        verify(uiPlugin).loadPlugin();
+        verify(otherPlugin).loadPlugin();
+    }
+
+    @Test
+    public void testHeadlessAutoLoadSkipsPluginProvidingUI() {
+        when(uiPlugin.getMetaData()).thenReturn(uiMetaData);
+        when(uiMetaData.getServices()).thenReturn(Collections.singletonList("swing ui"));
+        setUpPluginWithoutUI();
+        pluginManager.doAutoLoad(true);
+        verify(uiPlugin, never()).loadPlugin();
+        verify(otherPlugin).loadPlugin();
+    }
+
+    @Test
+    public void testHeadlessAutoLoadSkipsPluginRequiringUI() {
+        when(uiPlugin.getMetaData()).thenReturn(uiMetaData);
+        when(uiMetaData.getServices()).thenReturn(Collections.emptyList());
+        when(uiMetaData.getRequiredServices()).thenReturn(Collections.singletonList("any ui"));
+        setUpPluginWithoutUI();
+        pluginManager.doAutoLoad(true);
+        verify(uiPlugin, never()).loadPlugin();
+        verify(otherPlugin).loadPlugin();
+    }
+
+    @Test
+    public void testHeadlessAutoLoadSkipsPluginWhoseParentProvidesUI() {
+        when(uiPlugin.getMetaData()).thenReturn(uiMetaData);
+        when(uiMetaData.getServices()).thenReturn(Collections.emptyList());
+        when(uiMetaData.getRequiredServices()).thenReturn(Collections.emptyList());
+        when(uiMetaData.getParent()).thenReturn("swing");
+        when(parentPlugin.getMetaData()).thenReturn(parentMetaData);
+        when(parentMetaData.getServices()).thenReturn(Collections.singletonList("swing ui"));
+        doReturn(parentPlugin).when(pluginManager).getPluginInfoByName("swing");
+        setUpPluginWithoutUI();
+        pluginManager.doAutoLoad(true);
+        verify(uiPlugin, never()).loadPlugin();
+        verify(otherPlugin).loadPlugin();
+    }
+
+    private void setUpPluginWithoutUI() {
+        when(otherPlugin.getMetaData()).thenReturn(otherMetaData);
+        when(otherMetaData.getServices()).thenReturn(Collections.singletonList("logging export"));
+        when(otherMetaData.getRequiredServices()).thenReturn(Collections.emptyList());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.startup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupTaskGraphTest {
+
+    private ExecutorService executor;
+    private StartupTimeline timeline;
+    private StartupTaskGraph graph;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        timeline = new StartupTimeline();
+        graph = new StartupTaskGraph(timeline);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDependenciesRunFirst() {
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        graph.addTask("a", () -> order.add("a"))
+                .addTask("b", () -> order.add("b"), "a")
+                .addTask("c", () -> order.add("c"), "a")
+                .addTask("d", () -> order.add("d"), "b", "c")
+                .run(executor);
+
+        assertEquals(4, order.size());
+        assertEquals("a", order.get(0));
+        assertEquals("d", order.get(3));
+    }
+
+    @Test
+    public void testIndependentTasksRunConcurrently() {
+        // Each task waits for the other, so this only finishes if both run at once.
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Runnable task = () -> {
+            latch.countDown();
+            try {
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+        graph.addTask("a", task).addTask("b", task).run(executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() {
+        graph.addTask("a", () -> {}, "b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateName() {
+        graph.addTask("a", () -> {}).addTask("a", () -> {});
+    }
+
+    @Test
+    public void testFailureSkipsDependants() {
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        graph.addTask("a", () -> { throw new UnsupportedOperationException("failed"); })
+                .addTask("b", () -> order.add("b"), "a")
+                .addTask("c", () -> order.add("c"));
+        try {
+            graph.run(executor);
+            fail("Expected the failure to be rethrown");
+        } catch (UnsupportedOperationException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+        assertEquals(Collections.singletonList("c"), order);
+    }
+
+    @Test
+    public void testCriticalPathFollowsLatestDependency() {
+        timeline = new StartupTimeline(0);
+        timeline.record("a", Collections.emptyList(), "main", 0, 10);
+        timeline.record("b", Collections.singletonList("a"), "main", 10, 20);
+        timeline.record("c", Collections.singletonList("a"), "main", 10, 50);
+        timeline.record("d", Arrays.asList("b", "c"), "main", 50, 60);
+        timeline.record("e", Collections.emptyList(), "main", 0, 30);
+
+        assertEquals(Arrays.asList("a", "c", "d"), timeline.getCriticalPath());
+        assertEquals(60, timeline.getElapsed(TimeUnit.NANOSECONDS));
+        assertTrue(timeline.getReport().endsWith("a -> c -> d"));
+    }
+
+}
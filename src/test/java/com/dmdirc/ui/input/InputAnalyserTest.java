@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InputAnalyserTest {
+
+    private InputAnalyser analyser;
+
+    @Before
+    public void setUp() {
+        analyser = new InputAnalyser();
+    }
+
+    @Test
+    public void testEmptyText() {
+        assertEquals(0, analyser.getByteCount());
+        assertEquals(0, analyser.getNumLines(10));
+        assertEquals(1, analyser.getNumLines(0));
+    }
+
+    @Test
+    public void testCountsBytesAsTextIsTyped() {
+        final StringBuilder text = new StringBuilder();
+        for (char c : "h\u00e9llo \u20ac".toCharArray()) {
+            text.append(c);
+            analyser.update(text.toString());
+        }
+
+        assertEquals(10, analyser.getByteCount());
+        assertEquals(1, analyser.getNumLines(10));
+        assertEquals(2, analyser.getNumLines(8));
+    }
+
+    @Test
+    public void testCountsSurrogatePairs() {
+        analyser.update("a\uD83D\uDE00b");
+        assertEquals(6, analyser.getByteCount());
+    }
+
+    @Test
+    public void testSplitsOnAllLineTerminators() {
+        analyser.update("one\ntwo\r\nthree\rfour");
+        assertEquals(4, analyser.getNumLines(0));
+        assertEquals(15, analyser.getByteCount());
+    }
+
+    @Test
+    public void testTrailingTerminatorAddsEmptyLine() {
+        analyser.update("one\n");
+        assertEquals(2, analyser.getNumLines(0));
+        assertEquals(1, analyser.getNumLines(10));
+    }
+
+    @Test
+    public void testJoinsCarriageReturnAndNewLine() {
+        analyser.update("one\rtwo");
+        analyser.update("one\r\ntwo");
+        assertEquals(2, analyser.getNumLines(0));
+
+        analyser.update("one\n\ntwo");
+        assertEquals(3, analyser.getNumLines(0));
+    }
+
+    @Test
+    public void testDeletingLines() {
+        analyser.update("one\ntwo\nthree");
+        analyser.update("onethree");
+        assertEquals(1, analyser.getNumLines(0));
+        assertEquals(8, analyser.getByteCount());
+
+        analyser.update("");
+        assertEquals(0, analyser.getByteCount());
+        assertEquals(1, analyser.getNumLines(0));
+    }
+
+    @Test
+    public void testWrapsLongLines() {
+        analyser.update("0123456789\n01234567890");
+        assertEquals(3, analyser.getNumLines(10));
+        assertEquals(2, analyser.getNumLines(11));
+    }
+
+    @Test
+    public void testColourCode() {
+        analyser.update("text\u0003");
+        assertTrue(analyser.isAfterColourCode(5));
+        analyser.update("text\u00034");
+        assertTrue(analyser.isAfterColourCode(6));
+        analyser.update("text\u000304");
+        assertTrue(analyser.isAfterColourCode(7));
+        analyser.update("text\u0003045");
+        assertFalse(analyser.isAfterColourCode(8));
+        assertTrue(analyser.isAfterColourCode(7));
+        analyser.update("text");
+        assertFalse(analyser.isAfterColourCode(4));
+        assertFalse(analyser.isAfterColourCode(0));
+    }
+
+    @Test
+    public void testHexColourCode() {
+        analyser.update("\u0004FF00AA");
+        assertTrue(analyser.isAfterHexColourCode(7));
+        assertFalse(analyser.isAfterHexColourCode(6));
+        assertFalse(analyser.isAfterColourCode(7));
+
+        analyser.update("\u0004ff00aa");
+        assertFalse(analyser.isAfterHexColourCode(7));
+    }
+
+}
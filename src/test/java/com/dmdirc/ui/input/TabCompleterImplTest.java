@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.input;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TabCompleterImplTest {
+
+    @Mock private AggregateConfigProvider configProvider;
+    private TabCompleterImpl completer;
+
+    @Before
+    public void setUp() {
+        when(configProvider.getOptionBool("tabcompletion", "casesensitive")).thenReturn(false);
+        when(configProvider.getOptionBool("tabcompletion", "allowempty")).thenReturn(false);
+        completer = new TabCompleterImpl(configProvider, null,
+                type -> type == TabCompletionType.COMMAND
+                        ? Lists.newArrayList("/topic", "/.topic") : Collections.emptyList());
+    }
+
+    @Test
+    public void testCompletesFromSourceAndEntries() {
+        completer.addEntry(TabCompletionType.CHANNEL_NICK, "tom");
+        assertEquals(Lists.newArrayList("/topic"), completer.complete("/t", null));
+        assertEquals(Lists.newArrayList("tom"), completer.complete("t", null));
+    }
+
+    @Test
+    public void testClearTypeRemovesSourceEntries() {
+        completer.addEntry(TabCompletionType.CHANNEL_NICK, "/tom");
+        completer.clear(TabCompletionType.COMMAND);
+        assertEquals(Lists.newArrayList("/tom"), completer.complete("/t", null));
+    }
+
+    @Test
+    public void testClearRemovesSourceEntries() {
+        completer.addEntry(TabCompletionType.CHANNEL_NICK, "/tom");
+        completer.clear();
+        assertTrue(completer.complete("/t", null).isEmpty());
+    }
+
+    @Test
+    public void testEntriesCanBeReaddedAfterClear() {
+        completer.clear(TabCompletionType.COMMAND);
+        completer.addEntry(TabCompletionType.COMMAND, "/test");
+        assertEquals(Lists.newArrayList("/test"), completer.complete("/t", null));
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.WindowModel;
+import com.dmdirc.metrics.MetricsRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BackBufferFactoryTest {
+
+    @Mock private EventFormatter formatter;
+    @Mock private ScrollbackJournalManager journalManager;
+    @Mock private ScrollbackBudget budget;
+    @Mock private EventBus eventBus;
+    @Mock private WindowModel window1;
+    @Mock private WindowModel window2;
+    @Mock private AggregateConfigProvider config1;
+    @Mock private AggregateConfigProvider config2;
+    @Captor private ArgumentCaptor<ConfigChangeListener> listener;
+    private BackBufferFactory factory;
+
+    @Before
+    public void setUp() {
+        when(window1.getConfigManager()).thenReturn(config1);
+        when(window1.getEventBus()).thenReturn(eventBus);
+        factory = new BackBufferFactory(new ColourManagerFactory(), formatter, journalManager,
+                budget, new MetricsRegistry());
+    }
+
+    @Test
+    public void testSharesStyliserBetweenWindowsWithSameSettings() {
+        setUpWindow2();
+        final BackBufferImpl first = factory.getBackBuffer(window1);
+        final BackBufferImpl second = factory.getBackBuffer(window2);
+
+        assertSame(first.getStyliser(), second.getStyliser());
+    }
+
+    @Test
+    public void testDoesNotShareStyliserWhenSettingsDiffer() {
+        setUpWindow2();
+        when(config2.getOptionBool("ui", "stylelinks")).thenReturn(true);
+        final BackBufferImpl first = factory.getBackBuffer(window1);
+        final BackBufferImpl second = factory.getBackBuffer(window2);
+
+        assertNotSame(first.getStyliser(), second.getStyliser());
+    }
+
+    @Test
+    public void testRegistersOneListenerPerWindow() {
+        factory.getBackBuffer(window1);
+
+        verify(config1).addChangeListener(eq("colour"), listener.capture());
+        verify(config1).addChangeListener(eq("icon"), same(listener.getValue()));
+        for (String key : Styliser.UI_SETTINGS) {
+            verify(config1).addChangeListener(eq("ui"), eq(key), same(listener.getValue()));
+        }
+        verify(config1, never()).addChangeListener(anyString(), anyString(),
+                any(Styliser.class));
+    }
+
+    @Test
+    public void testMovesWindowToNewStyliserWhenSettingsChange() {
+        setUpWindow2();
+        final BackBufferImpl first = factory.getBackBuffer(window1);
+        final BackBufferImpl second = factory.getBackBuffer(window2);
+        final Styliser original = first.getStyliser();
+        verify(config1).addChangeListener(eq("colour"), listener.capture());
+
+        when(config1.getOptionBool("ui", "stylelinks")).thenReturn(true);
+        listener.getValue().configChanged("ui", "stylelinks");
+
+        assertNotSame(original, first.getStyliser());
+        assertSame(original, second.getStyliser());
+    }
+
+    @Test
+    public void testWindowsMovedToSameSettingsShareStyliser() {
+        setUpWindow2();
+        when(config2.getOptionBool("ui", "stylelinks")).thenReturn(true);
+        final BackBufferImpl first = factory.getBackBuffer(window1);
+        final BackBufferImpl second = factory.getBackBuffer(window2);
+        verify(config1).addChangeListener(eq("colour"), listener.capture());
+
+        when(config1.getOptionBool("ui", "stylelinks")).thenReturn(true);
+        listener.getValue().configChanged("ui", "stylelinks");
+
+        assertSame(second.getStyliser(), first.getStyliser());
+    }
+
+    @Test
+    public void testReleaseRemovesListener() {
+        final BackBufferImpl backBuffer = factory.getBackBuffer(window1);
+        verify(config1).addChangeListener(eq("colour"), listener.capture());
+
+        factory.releaseBackBuffer(backBuffer);
+
+        verify(config1).removeListener(listener.getValue());
+    }
+
+    @Test
+    public void testCreatesNewStyliserAfterLastRelease() {
+        final BackBufferImpl first = factory.getBackBuffer(window1);
+        final Styliser styliser = first.getStyliser();
+        factory.releaseBackBuffer(first);
+
+        assertNotSame(styliser, factory.getBackBuffer(window1).getStyliser());
+    }
+
+    private void setUpWindow2() {
+        when(window2.getConfigManager()).thenReturn(config2);
+        when(window2.getEventBus()).thenReturn(eventBus);
+    }
+
+}
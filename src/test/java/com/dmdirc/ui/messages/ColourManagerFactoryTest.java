@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+import com.dmdirc.util.colours.Colour;
+import com.dmdirc.util.colours.ColourUtils;
+import com.dmdirc.util.validators.ColourValidator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ColourManagerFactoryTest {
+
+    @Mock private AggregateConfigProvider config1;
+    @Mock private AggregateConfigProvider config2;
+    private ColourManagerFactory factory;
+
+    @Before
+    public void setUp() {
+        factory = new ColourManagerFactory();
+    }
+
+    @Test
+    public void testSharesManagersForSameColours() {
+        final ColourManager first = factory.getColourManager(config1);
+        final ColourManager second = factory.getColourManager(config2);
+
+        assertSame(first, second);
+        assertSame(first.getColourFromHex("ff0f0f"), second.getColourFromHex("ff0f0f"));
+    }
+
+    @Test
+    public void testSharedManagersDoNotListenForChanges() {
+        factory.getColourManager(config1);
+
+        verify(config1, never()).addChangeListener(anyString(), any(ConfigChangeListener.class));
+    }
+
+    @Test
+    public void testDoesNotShareManagersForDifferentColours() {
+        when(config2.hasOptionString(eq("colour"), eq("4"), any(ColourValidator.class)))
+                .thenReturn(true);
+        when(config2.getOptionString("colour", "4")).thenReturn("00FF00");
+        final ColourManager first = factory.getColourManager(config1);
+        final ColourManager second = factory.getColourManager(config2);
+
+        assertNotSame(first, second);
+        assertEquals(Colour.RED, first.getColourFromIrcCode(4));
+        assertEquals("00ff00", ColourUtils.getHex(second.getColourFromIrcCode(4)).toLowerCase());
+        assertNotSame(first.getColourFromHex("ff0f0f"), second.getColourFromHex("ff0f0f"));
+    }
+
+    @Test
+    public void testReturnsManagerForCurrentColours() {
+        final ColourManager first = factory.getColourManager(config1);
+        when(config1.hasOptionString(eq("colour"), eq("4"), any(ColourValidator.class)))
+                .thenReturn(true);
+        when(config1.getOptionString("colour", "4")).thenReturn("00FF00");
+        final ColourManager second = factory.getColourManager(config1);
+
+        assertNotSame(first, second);
+        assertEquals(Colour.RED, first.getColourFromIrcCode(4));
+        assertEquals("00ff00", ColourUtils.getHex(second.getColourFromIrcCode(4)).toLowerCase());
+    }
+
+}
@@ -148,4 +148,21 @@ public class ColourManagerTest {
         configListener.getValue().configChanged("colour", "4");
         assertEquals("ff0000", ColourUtils.getHex(manager.getColourFromIrcCode(4)).toLowerCase());
     }
+
+    @Test
+    public void testCustomColourInvalidatesCachedSpec() {
+        assertEquals(Colour.RED, manager.getColourFromString("4", Colour.WHITE));
+
+        when(configManager.hasOptionString(eq("colour"), eq("4"), any(ColourValidator.class))).thenReturn(true);
+        when(configManager.getOptionString("colour", "4")).thenReturn("00FF00");
+        configListener.getValue().configChanged("colour", "4");
+
+        assertEquals("00ff00", ColourUtils.getHex(manager.getColourFromString("4", Colour.WHITE)).toLowerCase());
+    }
+
+    @Test
+    public void testDisposeRemovesListener() {
+        ((ColourManagerImpl) manager).dispose();
+        verify(configManager).removeListener(configListener.getValue());
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayProperty;
+import com.dmdirc.events.DisplayPropertyMap;
+import com.dmdirc.interfaces.User;
+import com.dmdirc.util.colours.Colour;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CompressedLineBlockTest {
+
+    private final Styliser styliser = mock(Styliser.class);
+
+    @Test
+    public void testInflatesOriginalLines() {
+        final List<IRCLine> lines = createLines(256);
+
+        final List<IRCLine> inflated = CompressedLineBlock.compress(lines).inflate(styliser, 14, "Serif");
+
+        assertEquals(256, inflated.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(lines.get(i).getTimestamp(), inflated.get(i).getTimestamp());
+            assertEquals(lines.get(i).getRawText(), inflated.get(i).getRawText());
+            assertEquals(i, inflated.get(i).getJournalPosition());
+            assertEquals(14, inflated.get(i).getFontSize());
+        }
+    }
+
+    @Test
+    public void testPreservesDisplayProperties() {
+        final DisplayPropertyMap coloured = new DisplayPropertyMap();
+        coloured.put(DisplayProperty.NO_TIMESTAMPS, true);
+        coloured.put(DisplayProperty.BACKGROUND_COLOUR, new Colour(10, 20, 30));
+        final DisplayPropertyMap linked = new DisplayPropertyMap();
+        linked.put(DisplayProperty.LINK_USER, mock(User.class));
+        final List<IRCLine> lines = new ArrayList<>();
+        lines.add(new IRCLine(styliser, "[00:00] ", "coloured", coloured, 12, "Dialog", 0));
+        lines.add(new IRCLine(styliser, "[00:00] ", "linked", linked, 12, "Dialog", 1));
+
+        final List<IRCLine> inflated = CompressedLineBlock.compress(lines).inflate(styliser, 12, "Dialog");
+
+        final DisplayPropertyMap first = inflated.get(0).getDisplayProperties();
+        assertTrue(first.get(DisplayProperty.NO_TIMESTAMPS).get());
+        assertEquals(new Colour(10, 20, 30), first.get(DisplayProperty.BACKGROUND_COLOUR).get());
+        assertSame(linked, inflated.get(1).getDisplayProperties());
+    }
+
+    @Test
+    public void testCompressesRepetitiveText() {
+        final List<IRCLine> lines = createLines(256);
+        long uncompressed = 0;
+        for (IRCLine line : lines) {
+            uncompressed += 2L * line.getLength();
+        }
+
+        assertTrue(CompressedLineBlock.compress(lines).getRetainedSize() < uncompressed / 4);
+    }
+
+    private List<IRCLine> createLines(final int count) {
+        final List<IRCLine> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(new IRCLine(styliser, String.format("[%02d:%02d] ", i / 60, i % 60),
+                    "<nick" + i % 7 + "> this is line number " + i + " of the test channel",
+                    DisplayPropertyMap.EMPTY, 12, "Dialog", i));
+        }
+        return lines;
+    }
+
+}
@@ -24,8 +24,10 @@ package com.dmdirc.ui.messages;
 
 import com.dmdirc.Channel;
 import com.dmdirc.events.ChannelMessageEvent;
+import com.dmdirc.events.DisplayLocation;
 import com.dmdirc.events.DisplayPropertyMap;
 
+import java.util.Arrays;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -35,6 +37,11 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -126,4 +133,39 @@ public class EventFormatterTest {
         assertEquals("Template {{channel}} meep", formatter.format(messageEvent).orElse(null));
     }
 
+    @Test
+    public void testFormatsEachEventOnce() {
+        messageEvent = new ChannelMessageEvent(channel, null, null);
+
+        when(templateProvider.getFormat(ChannelMessageEvent.class))
+                .thenReturn(Optional.of(
+                        EventFormat.create(
+                                "Template {{channel}} meep",
+                                Optional.of("Before!"),
+                                Optional.empty(),
+                                Optional.empty(),
+                                new DisplayPropertyMap())));
+        when(propertyManager.getProperty(messageEvent, ChannelMessageEvent.class, "channel"))
+                .thenReturn(Optional.of("MONKEY"));
+
+        final FormattedEvent first = formatter.getFormattedEvent(messageEvent);
+        final FormattedEvent second = formatter.getFormattedEvent(messageEvent);
+
+        assertSame(first, second);
+        assertEquals(Arrays.asList("Before!", "Template MONKEY meep"), first.getLines());
+        verify(propertyManager, times(1)).getProperty(messageEvent, ChannelMessageEvent.class, "channel");
+    }
+
+    @Test
+    public void testUnformattedEvent() {
+        messageEvent = new ChannelMessageEvent(channel, null, null);
+
+        when(templateProvider.getFormat(ChannelMessageEvent.class)).thenReturn(Optional.empty());
+
+        final FormattedEvent formatted = formatter.getFormattedEvent(messageEvent);
+        assertFalse(formatted.getText().isPresent());
+        assertTrue(formatted.getLines().isEmpty());
+        assertSame(DisplayLocation.SOURCE, formatted.getDisplayLocation());
+    }
+
 }
@@ -22,9 +22,14 @@
 package com.dmdirc.ui.messages;
 
 import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.config.provider.ConfigChangeListener;
+
+import java.time.LocalDateTime;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -33,7 +38,10 @@ import org.mockito.stubbing.Answer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -83,4 +91,36 @@ public class FormatterTest {
     public void testFormatDuration() {
         assertEquals("1 minute, 1 second", Formatter.formatMessage(configProvider, "1%1$u", "61"));
     }
+
+    @Test
+    public void testTemporalFormatsMatchStringFormat() {
+        final String format = "%1$tH:%1$tM:%1$tS %1$tA, %1$tB %1$te %1$tY | %1$tT %1$ty %1$tL %%";
+        for (int i = 0; i < 100; i++) {
+            final LocalDateTime time = LocalDateTime.of(1990 + i % 40, 1 + i % 12, 1 + i % 28,
+                    i % 24, i % 60, (i * 7) % 60, i * 1000000);
+            assertEquals(String.format(format, time),
+                    Formatter.formatMessage(configProvider, '1' + format, time));
+        }
+    }
+
+    @Test
+    public void testTemporalFormatsAcceptEpochSeconds() {
+        assertEquals(String.format("%1$tY", 1000L * 86400),
+                Formatter.formatMessage(configProvider, "1%1$tY", "86400"));
+    }
+
+    @Test
+    public void testFormatsAreReloadedWhenConfigChanges() {
+        assertEquals("a!", Formatter.formatMessage(configProvider, "1%1$s!", "a"));
+        assertEquals("b!", Formatter.formatMessage(configProvider, "1%1$s!", "b"));
+        verify(configProvider, times(1)).getOption(any(String.class), eq("1%1$s!"));
+
+        final ArgumentCaptor<ConfigChangeListener> listener =
+                ArgumentCaptor.forClass(ConfigChangeListener.class);
+        verify(configProvider).addChangeListener(eq("formatter"), listener.capture());
+        listener.getValue().configChanged("formatter", "1%1$s!");
+
+        assertEquals("c!", Formatter.formatMessage(configProvider, "1%1$s!", "c"));
+        verify(configProvider, times(2)).getOption(any(String.class), eq("1%1$s!"));
+    }
 }
@@ -35,6 +35,8 @@ import org.mockito.runners.MockitoJUnitRunner;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -104,4 +106,26 @@ public class MultiEventFormatProviderTest {
         assertFalse(provider.getFormat(ChannelModesDiscoveredEvent.class).isPresent());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCachesLookups() {
+        final EventFormatProvider provider = new MultiEventFormatProvider(mockEventFormatProvider1);
+        provider.getFormat(ChannelModesDiscoveredEvent.class);
+        provider.getFormat(ChannelModesDiscoveredEvent.class);
+
+        verify(mockEventFormatProvider1, times(1)).getFormat(ChannelModesDiscoveredEvent.class);
+    }
+
+    @Test
+    public void testReloadInvalidatesCache() {
+        final EventFormatProvider provider = new MultiEventFormatProvider(mockEventFormatProvider1);
+        provider.getFormat(ChannelModesDiscoveredEvent.class);
+
+        when(mockEventFormatProvider1.getFormat(ChannelModesDiscoveredEvent.class))
+                .thenReturn(Optional.of(mockEventFormat2));
+        provider.reload();
+
+        verify(mockEventFormatProvider1).reload();
+        assertSame(mockEventFormat2, provider.getFormat(ChannelModesDiscoveredEvent.class).get());
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.events.eventbus.EventBus;
+import com.dmdirc.interfaces.WindowModel;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScrollbackBudgetTest {
+
+    @Mock private AggregateConfigProvider config;
+    @Mock private EventBus eventBus;
+    @Mock private WindowModel window1;
+    @Mock private WindowModel window2;
+    @Mock private IRCDocument document1;
+    @Mock private IRCDocument document2;
+    private ScrollbackBudget budget;
+
+    @Before
+    public void setUp() {
+        when(config.getOptionInt("scrollback", "budget")).thenReturn(1000);
+        when(config.getOptionInt("scrollback", "protectedlines")).thenReturn(50);
+        when(config.getOptionInt("scrollback", "hibernatedelay")).thenReturn(60000);
+        budget = new ScrollbackBudget(config, eventBus);
+        budget.register(window1, document1);
+        budget.register(window2, document2);
+    }
+
+    @Test
+    public void testTracksUsagePerWindow() {
+        budget.adjust(document1, 100);
+        budget.adjust(document2, 200);
+        budget.adjust(document2, -50);
+
+        final Map<WindowModel, Long> usage = budget.getUsage();
+        assertEquals(100L, (long) usage.get(window1));
+        assertEquals(150L, (long) usage.get(window2));
+        assertEquals(250L, budget.getTotalUsage());
+    }
+
+    @Test
+    public void testDoesNotEvictWithinBudget() {
+        budget.adjust(document1, 500);
+        budget.adjust(document2, 500);
+
+        verify(document1, never()).evict(anyLong(), anyInt());
+        verify(document2, never()).evict(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyViewedFirst() {
+        budget.markViewed(document1);
+        budget.adjust(document1, 600);
+        budget.adjust(document2, 600);
+
+        verify(document2).evict(300L, 0);
+        verify(document1, never()).evict(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testProtectsFocusedWindow() {
+        budget.markViewed(document2);
+        budget.markViewed(document1);
+        budget.adjust(document2, 100);
+        budget.adjust(document1, 1100);
+
+        verify(document2).evict(100L, 0);
+        verify(document1).evict(200L, 50);
+    }
+
+    @Test
+    public void testHibernatesIdleWindows() {
+        budget.markViewed(document1);
+        budget.hibernateIdle(System.currentTimeMillis() + 120000);
+
+        verify(document2).hibernate();
+        verify(document1, never()).hibernate();
+    }
+
+    @Test
+    public void testDoesNotHibernateRecentlyViewedWindows() {
+        budget.hibernateIdle(System.currentTimeMillis());
+
+        verify(document1, never()).hibernate();
+        verify(document2, never()).hibernate();
+    }
+
+    @Test
+    public void testUnregisterReleasesUsage() {
+        budget.adjust(document1, 600);
+        budget.unregister(document1);
+        budget.adjust(document2, 600);
+
+        assertEquals(600L, budget.getTotalUsage());
+        verify(document2, never()).evict(anyLong(), anyInt());
+    }
+
+}
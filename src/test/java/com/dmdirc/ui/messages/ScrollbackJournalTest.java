@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.ui.messages;
+
+import com.dmdirc.events.DisplayProperty;
+import com.dmdirc.events.DisplayPropertyMap;
+import com.dmdirc.util.colours.Colour;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScrollbackJournalTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2017, 1, 2, 3, 4, 5);
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    private Path directory;
+    private ScrollbackJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath().resolve("journal");
+        journal = new ScrollbackJournal(directory, 1024, 4);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    public void testReadsTailInOrder() {
+        for (int i = 0; i < 10; i++) {
+            journal.append(TIME.plusSeconds(i), DisplayPropertyMap.EMPTY, "line " + i);
+        }
+
+        final List<ScrollbackJournal.Entry> entries = journal.readTail(3);
+        assertEquals(3, entries.size());
+        assertEquals("line 7", entries.get(0).getText());
+        assertEquals("line 9", entries.get(2).getText());
+        assertEquals(TIME.plusSeconds(9), entries.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testPersistsProperties() {
+        final DisplayPropertyMap properties = new DisplayPropertyMap();
+        properties.put(DisplayProperty.NO_TIMESTAMPS, true);
+        properties.put(DisplayProperty.FOREGROUND_COLOUR, new Colour(1, 2, 3));
+        journal.append(TIME, properties, "text");
+
+        final DisplayPropertyMap read = journal.readTail(1).get(0).getProperties();
+        assertTrue(read.get(DisplayProperty.NO_TIMESTAMPS).orElse(false));
+        assertEquals(new Colour(1, 2, 3), read.get(DisplayProperty.FOREGROUND_COLOUR).get());
+        assertFalse(read.get(DisplayProperty.BACKGROUND_COLOUR).isPresent());
+    }
+
+    @Test
+    public void testPagesBackwardsAcrossSegments() {
+        for (int i = 0; i < 50; i++) {
+            journal.append(TIME, DisplayPropertyMap.EMPTY, "line " + i);
+        }
+
+        final List<ScrollbackJournal.Entry> tail = journal.readTail(5);
+        final List<ScrollbackJournal.Entry> older = journal.readBefore(tail.get(0).getPosition(), 20);
+        assertEquals(20, older.size());
+        assertEquals("line 25", older.get(0).getText());
+        assertEquals("line 44", older.get(19).getText());
+    }
+
+    @Test
+    public void testRestoresAfterReopening() throws IOException {
+        journal.append(TIME, DisplayPropertyMap.EMPTY, "before");
+        journal.close();
+
+        journal = new ScrollbackJournal(directory, 1024, 4);
+        journal.append(TIME, DisplayPropertyMap.EMPTY, "after");
+
+        final List<ScrollbackJournal.Entry> entries = journal.readTail(10);
+        assertEquals(2, entries.size());
+        assertEquals("before", entries.get(0).getText());
+        assertEquals("after", entries.get(1).getText());
+    }
+
+    @Test
+    public void testDeletesSegmentsBeyondRetention() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            journal.append(TIME, DisplayPropertyMap.EMPTY, "line " + i);
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(4, files.collect(Collectors.toList()).size());
+        }
+        final List<ScrollbackJournal.Entry> entries = journal.readTail(1000);
+        assertTrue(entries.size() < 500);
+        assertEquals("line 499", entries.get(entries.size() - 1).getText());
+    }
+
+    @Test
+    public void testIgnoresRecordsLargerThanSegment() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append('x');
+        }
+
+        assertEquals(ScrollbackJournal.NO_POSITION,
+                journal.append(TIME, DisplayPropertyMap.EMPTY, text.toString()));
+        assertTrue(journal.readTail(1).isEmpty());
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.updater.checking;
+
+import com.dmdirc.config.binding.ConfigBinder;
+import com.dmdirc.config.provider.AggregateConfigProvider;
+import com.dmdirc.updater.UpdateComponent;
+import com.dmdirc.updater.Version;
+
+import com.google.common.io.ByteStreams;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DMDircCheckStrategyTest {
+
+    private static final String CHECKSUM =
+            "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    @Mock private AggregateConfigProvider config;
+    @Mock private ConfigBinder configBinder;
+    @Mock private UpdateComponent component;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String response;
+    private volatile String entityTag;
+    private volatile String lastMethod;
+    private volatile String lastBody;
+    private volatile String lastIfNoneMatch;
+    private HttpServer server;
+    private DMDircCheckStrategy strategy;
+
+    @Before
+    public void setUp() throws IOException {
+        when(config.getBinder()).thenReturn(configBinder);
+        when(component.getName()).thenReturn("client");
+        when(component.getVersion()).thenReturn(new Version("1.0"));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        strategy = new DMDircCheckStrategy(config, new URL("http",
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getAddress().getPort(), "/"));
+        strategy.setChannel("stable");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testPostsComponentVersions() {
+        response = "uptodate STABLE client 1.0";
+
+        final UpdateCheckResult result = check();
+        assertFalse(result.isUpdateAvailable());
+        assertEquals("POST", lastMethod);
+        assertEquals("data=client,STABLE,1.0;", lastBody);
+        assertNull(lastIfNoneMatch);
+    }
+
+    @Test
+    public void testParsesChecksum() {
+        response = "outofdate client STABLE 2.0 2.0-final http://example.com/client.jar " + CHECKSUM;
+
+        final DownloadableUpdate result = (DownloadableUpdate) check();
+        assertTrue(result.isUpdateAvailable());
+        assertEquals("http://example.com/client.jar", result.getUrl().toString());
+        assertEquals("2.0-final", result.getUpdatedVersionName());
+        assertEquals(Optional.of(CHECKSUM), result.getChecksum());
+    }
+
+    @Test
+    public void testIgnoresInvalidChecksum() {
+        response = "outofdate client STABLE 2.0 2.0-final http://example.com/client.jar abc123";
+
+        assertEquals(Optional.empty(), ((DownloadableUpdate) check()).getChecksum());
+    }
+
+    @Test
+    public void testOutOfDateWithoutChecksum() {
+        response = "outofdate client STABLE 2.0 2.0-final http://example.com/client.jar";
+
+        assertEquals(Optional.empty(), ((DownloadableUpdate) check()).getChecksum());
+    }
+
+    @Test
+    public void testReusesResponseWhenPreconditionFails() {
+        response = "outofdate client STABLE 2.0 2.0-final http://example.com/client.jar " + CHECKSUM;
+        entityTag = "\"v1\"";
+        check();
+        assertNull(lastIfNoneMatch);
+
+        final DownloadableUpdate result = (DownloadableUpdate) check();
+        assertEquals(2, requests.get());
+        assertEquals("\"v1\"", lastIfNoneMatch);
+        assertEquals("http://example.com/client.jar", result.getUrl().toString());
+        assertEquals(Optional.of(CHECKSUM), result.getChecksum());
+    }
+
+    @Test
+    public void testDoesNotReuseResponseForDifferentPayload() {
+        response = "uptodate STABLE client 1.0";
+        entityTag = "\"v1\"";
+        check();
+
+        when(component.getVersion()).thenReturn(new Version("2.0"));
+        check();
+        assertEquals(2, requests.get());
+        assertEquals("data=client,STABLE,2.0;", lastBody);
+        assertNull(lastIfNoneMatch);
+    }
+
+    @Test
+    public void testDoesNotReuseResponseWithoutEntityTag() {
+        response = "uptodate STABLE client 1.0";
+        check();
+        check();
+
+        assertEquals(2, requests.get());
+        assertNull(lastIfNoneMatch);
+    }
+
+    private UpdateCheckResult check() {
+        final Map<UpdateComponent, UpdateCheckResult> results =
+                strategy.checkForUpdates(Collections.singletonList(component));
+        assertEquals(1, results.size());
+        return results.get(component);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        lastMethod = exchange.getRequestMethod();
+        lastBody = new String(ByteStreams.toByteArray(exchange.getRequestBody()),
+                StandardCharsets.UTF_8);
+        lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+
+        final String tag = entityTag;
+        if (tag != null && tag.equals(lastIfNoneMatch)) {
+            exchange.sendResponseHeaders(412, -1);
+            exchange.close();
+            return;
+        }
+
+        if (tag != null) {
+            exchange.getResponseHeaders().add("ETag", tag);
+        }
+        final byte[] body = (response + '\n').getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
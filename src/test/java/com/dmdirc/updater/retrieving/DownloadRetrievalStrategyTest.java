@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.updater.retrieving;
+
+import com.dmdirc.updater.UpdateComponent;
+import com.dmdirc.updater.Version;
+import com.dmdirc.updater.checking.BaseDownloadableResult;
+import com.dmdirc.updater.checking.DownloadableUpdate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DownloadRetrievalStrategyTest {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    @Mock private UpdateComponent component;
+    private final AtomicInteger requests = new AtomicInteger();
+    private byte[] content;
+    private String checksum;
+    private volatile String lastRange;
+    private volatile boolean rangesSupported;
+    private HttpServer server;
+    private URL url;
+    private Path directory;
+    private DownloadRetrievalStrategy strategy;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[300000];
+        new Random(1).nextBytes(content);
+        checksum = UpdateCache.toHex(UpdateCache.newDigest().digest(content));
+        rangesSupported = true;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/update.zip", this::handle);
+        server.start();
+        url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(),
+                server.getAddress().getPort(), "/update.zip");
+
+        directory = folder.newFolder().toPath();
+        strategy = new DownloadRetrievalStrategy(directory);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDownloadsAndVerifiesChecksum() throws IOException {
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testDownloadsWithoutChecksum() throws IOException {
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(null));
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testFailsOnChecksumMismatch() throws IOException {
+        final String wrong = UpdateCache.toHex(UpdateCache.newDigest().digest(new byte[1]));
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(wrong));
+        assertFalse(result.isSuccessful());
+        assertFalse(Files.exists(getPartialFile()));
+    }
+
+    @Test
+    public void testResumesPartialDownload() throws IOException {
+        Files.write(getPartialFile(), Arrays.copyOf(content, 100000));
+
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertEquals("bytes=100000-", lastRange);
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testCompletesFinishedPartialDownload() throws IOException {
+        Files.write(getPartialFile(), content);
+
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertEquals("bytes=300000-", lastRange);
+        assertEquals(1, requests.get());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testRestartsIfServerIgnoresRange() throws IOException {
+        rangesSupported = false;
+        Files.write(getPartialFile(), new byte[100000]);
+
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testRestartsIfResumedDownloadIsStale() throws IOException {
+        Files.write(getPartialFile(), new byte[100000]);
+
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertEquals(2, requests.get());
+        assertNull(lastRange);
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testDoesNotResumeWithoutChecksum() throws IOException {
+        Files.write(getPartialFile(), Arrays.copyOf(content, 100000));
+
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(null));
+        assertTrue(result.isSuccessful());
+        assertNull(lastRange);
+    }
+
+    @Test
+    public void testReusesCachedDownload() throws IOException {
+        assertTrue(strategy.retrieve(getUpdate(checksum)).isSuccessful());
+        final UpdateRetrievalResult result = strategy.retrieve(getUpdate(checksum));
+        assertTrue(result.isSuccessful());
+        assertEquals(1, requests.get());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) result).getFile()));
+    }
+
+    @Test
+    public void testCachedCopySurvivesInstallation() throws IOException {
+        final UpdateRetrievalResult first = strategy.retrieve(getUpdate(checksum));
+        Files.delete(((SingleFileRetrievalResult) first).getFile());
+
+        final UpdateRetrievalResult second = strategy.retrieve(getUpdate(checksum));
+        assertTrue(second.isSuccessful());
+        assertEquals(1, requests.get());
+        assertArrayEquals(content, Files.readAllBytes(((SingleFileRetrievalResult) second).getFile()));
+    }
+
+    private DownloadableUpdate getUpdate(final String sum) {
+        return new BaseDownloadableResult(component, url, "1.0", new Version("1.0"), sum);
+    }
+
+    private Path getPartialFile() throws IOException {
+        return new UpdateCache(directory.resolve("updates")).getPartialFile(url.toString());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        lastRange = range;
+
+        int offset = 0;
+        if (rangesSupported && range != null) {
+            offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (offset >= content.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range",
+                    "bytes " + offset + '-' + (content.length - 1) + '/' + content.length);
+            exchange.sendResponseHeaders(206, content.length - offset);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+        }
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content, offset, content.length - offset);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2006-2017 DMDirc Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.dmdirc.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileWatcherTest {
+
+    /** Upper bound on how long to wait for a change to be delivered. */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+    private final BlockingQueue<Path> changes = new LinkedBlockingQueue<>();
+    private FileWatcher watcher;
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath().toRealPath();
+        watcher = new FileWatcher();
+        watcher.startUp();
+    }
+
+    @After
+    public void tearDown() {
+        watcher.shutDown();
+    }
+
+    @Test
+    public void testFileChangeFiresHandlerOnceAfterDebounce() throws Exception {
+        final Path file = Files.createFile(root.resolve("test.config"));
+        watcher.watchFile(file, changes::add);
+
+        for (int i = 0; i < 3; i++) {
+            write(file, "change " + i);
+        }
+
+        assertNull(changes.poll(FileWatcher.DEBOUNCE_MILLIS / 2, TimeUnit.MILLISECONDS));
+        assertEquals(file, changes.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertNull(changes.poll(FileWatcher.DEBOUNCE_MILLIS * 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testIgnoresOtherFilesInDirectory() throws Exception {
+        final Path file = Files.createFile(root.resolve("test.config"));
+        watcher.watchFile(file, changes::add);
+
+        write(root.resolve("other.config"), "change");
+
+        assertNull(changes.poll(FileWatcher.DEBOUNCE_MILLIS * 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWatchesNewSubdirectories() throws Exception {
+        watcher.watch(root, true, path -> true, changes::add);
+
+        final Path directory = Files.createDirectory(root.resolve("new"));
+        assertTrue(awaitChange(directory));
+
+        final Path file = directory.resolve("test.config");
+        write(file, "change");
+        assertTrue(awaitChange(file));
+    }
+
+    @Test
+    public void testShutDownStopsDelivery() throws Exception {
+        final Path file = Files.createFile(root.resolve("test.config"));
+        watcher.watchFile(file, changes::add);
+
+        watcher.shutDown();
+        write(file, "change");
+
+        assertNull(changes.poll(FileWatcher.DEBOUNCE_MILLIS * 2, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Waits for the handler to be called for the given path, ignoring changes to other paths.
+     *
+     * @param path The path to wait for.
+     *
+     * @return True if the path was reported within the timeout, false otherwise.
+     */
+    private boolean awaitChange(final Path path) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (path.equals(changes.poll(deadline - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void write(final Path file, final String contents) throws IOException {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+}